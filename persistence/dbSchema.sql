@@ -3,6 +3,10 @@
 --
 -- Screaming Hairy Armadillo Team
 
+-- Lo schema creato corrisponde alla versione 0: all'avvio l'applicazione
+-- applica le migrazioni contenute nella cartella migrations (tabelle
+-- aggiuntive e indici).
+
 -- Eliminazione tabelle eventualmente esistenti
 
 DROP TABLE IF EXISTS Movie;
@@ -13,6 +17,42 @@ DROP TABLE IF EXISTS Coupon;
 DROP TABLE IF EXISTS Reservation;
 DROP TABLE IF EXISTS OccupiedSeat;
 DROP TABLE IF EXISTS Cinema;
+DROP TABLE IF EXISTS Sequence;
+DROP TABLE IF EXISTS SchemaVersion;
+
+-- Eliminazione delle tabelle create dalle migrazioni, che le ricreano
+
+DROP VIEW IF EXISTS MovieCredit;
+DROP TABLE IF EXISTS MovieGenre;
+DROP TABLE IF EXISTS MovieDirector;
+DROP TABLE IF EXISTS MovieCast;
+DROP TABLE IF EXISTS Genre;
+DROP TABLE IF EXISTS Person;
+DROP TABLE IF EXISTS SeatMap;
+DROP TABLE IF EXISTS CatalogVersion;
+DROP TRIGGER IF EXISTS MovieInsertVersion;
+DROP TRIGGER IF EXISTS MovieUpdateVersion;
+DROP TRIGGER IF EXISTS MovieDeleteVersion;
+DROP TRIGGER IF EXISTS MovieGenreInsertVersion;
+DROP TRIGGER IF EXISTS MovieGenreUpdateVersion;
+DROP TRIGGER IF EXISTS MovieGenreDeleteVersion;
+DROP TRIGGER IF EXISTS MovieDirectorInsertVersion;
+DROP TRIGGER IF EXISTS MovieDirectorUpdateVersion;
+DROP TRIGGER IF EXISTS MovieDirectorDeleteVersion;
+DROP TRIGGER IF EXISTS MovieCastInsertVersion;
+DROP TRIGGER IF EXISTS MovieCastUpdateVersion;
+DROP TRIGGER IF EXISTS MovieCastDeleteVersion;
+DROP TRIGGER IF EXISTS GenreUpdateVersion;
+DROP TRIGGER IF EXISTS PersonUpdateVersion;
+DROP TRIGGER IF EXISTS RoomInsertVersion;
+DROP TRIGGER IF EXISTS RoomUpdateVersion;
+DROP TRIGGER IF EXISTS RoomDeleteVersion;
+DROP TRIGGER IF EXISTS ProjectionInsertVersion;
+DROP TRIGGER IF EXISTS ProjectionUpdateVersion;
+DROP TRIGGER IF EXISTS ProjectionDeleteVersion;
+DROP TRIGGER IF EXISTS SeatMapInsertVersion;
+DROP TRIGGER IF EXISTS SeatMapUpdateVersion;
+DROP TRIGGER IF EXISTS SeatMapDeleteVersion;
 
 -- Creazione tabelle
 
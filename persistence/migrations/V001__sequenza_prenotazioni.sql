@@ -0,0 +1,12 @@
+-- Sequenza da cui vengono riservati a blocchi gli identificativi delle
+-- prenotazioni.
+--
+-- Screaming Hairy Armadillo Team
+
+CREATE TABLE IF NOT EXISTS Sequence(
+	name TEXT PRIMARY KEY NOT NULL,
+	nextvalue INTEGER NOT NULL
+);
+
+INSERT OR IGNORE INTO Sequence(name, nextvalue)
+	SELECT 'Reservation', IFNULL(MAX(id), 0) + 1 FROM Reservation;
@@ -0,0 +1,15 @@
+-- Indici sui percorsi di accesso utilizzati dalle interfacce verso il database:
+-- proiezioni per film e per data, prenotazioni per proiezione, posti occupati
+-- per prenotazione e sconti per tipo.
+--
+-- Screaming Hairy Armadillo Team
+
+CREATE INDEX IF NOT EXISTS ProjectionMovieDatetime ON Projection(movie, datetime);
+
+CREATE INDEX IF NOT EXISTS ProjectionDatetime ON Projection(datetime);
+
+CREATE INDEX IF NOT EXISTS ReservationProjection ON Reservation(projection);
+
+CREATE INDEX IF NOT EXISTS OccupiedSeatReservation ON OccupiedSeat(reservation);
+
+CREATE INDEX IF NOT EXISTS DiscountType ON Discount(type);
@@ -0,0 +1,14 @@
+-- Conversione delle date salvate come testo nel numero intero di secondi
+-- trascorsi dal 1 gennaio 1970 (data e ora locali considerate in UTC): data e
+-- ora delle proiezioni ("yyyy-MM-dd HH:mm:ss"), date degli sconti e date di
+-- acquisto delle prenotazioni ("yyyy-MM-dd", convertite nella mezzanotte del
+-- giorno). I valori già numerici non vengono modificati; un valore testuale
+-- non valido fa fallire la migrazione.
+--
+-- Screaming Hairy Armadillo Team
+
+UPDATE Projection SET datetime = CAST(strftime('%s', datetime) AS INTEGER) WHERE typeof(datetime) = 'text';
+
+UPDATE Discount SET date = CAST(strftime('%s', date) AS INTEGER) WHERE typeof(date) = 'text';
+
+UPDATE Reservation SET date = CAST(strftime('%s', date) AS INTEGER) WHERE typeof(date) = 'text';
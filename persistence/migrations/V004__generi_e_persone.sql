@@ -0,0 +1,92 @@
+-- Spostamento di generi, registi e cast dei film dalle colonne testuali
+-- separate da virgole a tabelle di associazione: ogni genere e ogni persona
+-- sono salvati una sola volta e la posizione mantiene l'ordine originale.
+-- La vista MovieCredit riunisce i nomi associati ai film (kind 0 per i generi,
+-- 1 per i registi e 2 per il cast).
+--
+-- Screaming Hairy Armadillo Team
+
+CREATE TABLE Genre(
+    id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+    name TEXT NOT NULL UNIQUE
+);
+
+CREATE TABLE Person(
+    id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,
+    name TEXT NOT NULL UNIQUE
+);
+
+CREATE TABLE MovieGenre(
+    movie INTEGER NOT NULL,
+    position INTEGER NOT NULL,
+    genre INTEGER NOT NULL,
+    PRIMARY KEY (movie, position),
+    FOREIGN KEY (movie) REFERENCES Movie(id) ON UPDATE CASCADE ON DELETE CASCADE,
+    FOREIGN KEY (genre) REFERENCES Genre(id) ON UPDATE CASCADE ON DELETE CASCADE
+) WITHOUT ROWID;
+
+CREATE TABLE MovieDirector(
+    movie INTEGER NOT NULL,
+    position INTEGER NOT NULL,
+    person INTEGER NOT NULL,
+    PRIMARY KEY (movie, position),
+    FOREIGN KEY (movie) REFERENCES Movie(id) ON UPDATE CASCADE ON DELETE CASCADE,
+    FOREIGN KEY (person) REFERENCES Person(id) ON UPDATE CASCADE ON DELETE CASCADE
+) WITHOUT ROWID;
+
+CREATE TABLE MovieCast(
+    movie INTEGER NOT NULL,
+    position INTEGER NOT NULL,
+    person INTEGER NOT NULL,
+    PRIMARY KEY (movie, position),
+    FOREIGN KEY (movie) REFERENCES Movie(id) ON UPDATE CASCADE ON DELETE CASCADE,
+    FOREIGN KEY (person) REFERENCES Person(id) ON UPDATE CASCADE ON DELETE CASCADE
+) WITHOUT ROWID;
+
+CREATE INDEX MovieGenreGenre ON MovieGenre(genre, movie);
+
+-- Scomposizione delle liste separate da virgole, eliminando gli spazi attorno
+-- ai nomi e gli elementi vuoti
+
+CREATE TEMP TABLE SplitName(movie INTEGER, kind INTEGER, position INTEGER, name TEXT);
+
+WITH RECURSIVE split(movie, kind, position, name, rest) AS (
+    SELECT movie, kind, -1, NULL, list || ',' FROM (
+        SELECT id AS movie, 0 AS kind, genres AS list FROM Movie
+        UNION ALL SELECT id, 1, directors FROM Movie
+        UNION ALL SELECT id, 2, "cast" FROM Movie)
+    UNION ALL
+    SELECT movie, kind, position + 1, trim(substr(rest, 1, instr(rest, ',') - 1)), substr(rest, instr(rest, ',') + 1)
+    FROM split WHERE rest <> ''
+)
+INSERT INTO SplitName(movie, kind, position, name)
+SELECT movie, kind, position, name FROM split WHERE position >= 0 AND name <> '';
+
+INSERT OR IGNORE INTO Genre(name) SELECT name FROM SplitName WHERE kind = 0 ORDER BY movie, position;
+
+INSERT OR IGNORE INTO Person(name) SELECT name FROM SplitName WHERE kind > 0 ORDER BY movie, kind, position;
+
+INSERT INTO MovieGenre(movie, position, genre)
+SELECT s.movie, s.position, g.id FROM SplitName s JOIN Genre g ON g.name = s.name WHERE s.kind = 0;
+
+INSERT INTO MovieDirector(movie, position, person)
+SELECT s.movie, s.position, p.id FROM SplitName s JOIN Person p ON p.name = s.name WHERE s.kind = 1;
+
+INSERT INTO MovieCast(movie, position, person)
+SELECT s.movie, s.position, p.id FROM SplitName s JOIN Person p ON p.name = s.name WHERE s.kind = 2;
+
+DROP TABLE SplitName;
+
+ALTER TABLE Movie DROP COLUMN genres;
+
+ALTER TABLE Movie DROP COLUMN directors;
+
+ALTER TABLE Movie DROP COLUMN "cast";
+
+CREATE VIEW MovieCredit AS
+    SELECT mg.movie AS movie, 0 AS kind, mg.position AS position, g.name AS name
+    FROM MovieGenre mg JOIN Genre g ON g.id = mg.genre
+    UNION ALL
+    SELECT md.movie, 1, md.position, p.name FROM MovieDirector md JOIN Person p ON p.id = md.person
+    UNION ALL
+    SELECT mc.movie, 2, mc.position, p.name FROM MovieCast mc JOIN Person p ON p.id = mc.person;
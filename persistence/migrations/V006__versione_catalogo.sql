@@ -0,0 +1,48 @@
+-- Contatori delle modifiche al catalogo (film, sale e proiezioni) e
+-- all'occupazione dei posti, usati per riconoscere un'istantanea del catalogo
+-- non più aggiornata. I contatori vengono incrementati dai trigger a ogni riga
+-- inserita, modificata o eliminata e sopravvivono al riavvio dell'applicazione
+-- (a differenza di PRAGMA data_version, che vale solamente per la connessione
+-- che lo legge). Ogni trigger è scritto su un'unica riga perché il punto e
+-- virgola a fine riga termina un'istruzione della migrazione.
+--
+-- Screaming Hairy Armadillo Team
+
+CREATE TABLE CatalogVersion(
+    id INTEGER PRIMARY KEY NOT NULL CHECK (id = 1),
+    catalog INTEGER NOT NULL,
+    occupancy INTEGER NOT NULL
+);
+
+INSERT INTO CatalogVersion(id, catalog, occupancy) VALUES (1, 0, 0);
+
+CREATE TRIGGER MovieInsertVersion AFTER INSERT ON Movie BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieUpdateVersion AFTER UPDATE ON Movie BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieDeleteVersion AFTER DELETE ON Movie BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER MovieGenreInsertVersion AFTER INSERT ON MovieGenre BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieGenreUpdateVersion AFTER UPDATE ON MovieGenre BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieGenreDeleteVersion AFTER DELETE ON MovieGenre BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER MovieDirectorInsertVersion AFTER INSERT ON MovieDirector BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieDirectorUpdateVersion AFTER UPDATE ON MovieDirector BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieDirectorDeleteVersion AFTER DELETE ON MovieDirector BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER MovieCastInsertVersion AFTER INSERT ON MovieCast BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieCastUpdateVersion AFTER UPDATE ON MovieCast BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER MovieCastDeleteVersion AFTER DELETE ON MovieCast BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER GenreUpdateVersion AFTER UPDATE ON Genre BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER PersonUpdateVersion AFTER UPDATE ON Person BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER RoomInsertVersion AFTER INSERT ON Room BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER RoomUpdateVersion AFTER UPDATE ON Room BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER RoomDeleteVersion AFTER DELETE ON Room BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER ProjectionInsertVersion AFTER INSERT ON Projection BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER ProjectionUpdateVersion AFTER UPDATE ON Projection BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+CREATE TRIGGER ProjectionDeleteVersion AFTER DELETE ON Projection BEGIN UPDATE CatalogVersion SET catalog = catalog + 1; END;
+
+CREATE TRIGGER SeatMapInsertVersion AFTER INSERT ON SeatMap BEGIN UPDATE CatalogVersion SET occupancy = occupancy + 1; END;
+CREATE TRIGGER SeatMapUpdateVersion AFTER UPDATE ON SeatMap BEGIN UPDATE CatalogVersion SET occupancy = occupancy + 1; END;
+CREATE TRIGGER SeatMapDeleteVersion AFTER DELETE ON SeatMap BEGIN UPDATE CatalogVersion SET occupancy = occupancy + 1; END;
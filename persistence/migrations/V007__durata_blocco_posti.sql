@@ -0,0 +1,8 @@
+-- Durata, in secondi, del blocco dei posti selezionati da una prenotazione non
+-- ancora acquistata. Il blocco viene rinnovato a ogni modifica della
+-- prenotazione e, una volta scaduto, i posti tornano disponibili agli altri
+-- spettatori.
+--
+-- Screaming Hairy Armadillo Team
+
+ALTER TABLE Cinema ADD COLUMN seatHoldSeconds INTEGER NOT NULL DEFAULT 600;
@@ -6,14 +6,21 @@ import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import cinema.controller.util.*;
 import cinema.controller.handlers.EmailHandler;
 import cinema.controller.handlers.util.HandlerException;
 import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.Movie;
 import cinema.model.payment.util.PaymentErrorException;
+import cinema.model.persistence.AsyncPersistenceFacade;
+import cinema.model.persistence.PersistenceConfiguration;
 import cinema.model.persistence.PersistenceFacade;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
@@ -25,6 +32,7 @@ import cinema.model.reservation.discount.types.Discount;
 import cinema.model.reservation.discount.types.util.DiscountException;
 import cinema.model.reservation.discount.types.util.TypeOfDiscount;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.hold.SeatHoldRegistry;
 import cinema.model.reservation.util.ReservationException;
 import cinema.model.reservation.util.SeatAvailabilityException;
 import cinema.model.spectator.Spectator;
@@ -55,9 +63,10 @@ public class Cinema {
 	private HashMap<Integer, Projection> newProjections;
 
 	/**
-	 * Lista contenente tutte le prenotazioni generate dal cinema.
+	 * Prenotazioni generate dal cinema, identificate dal loro progressivo.
+	 * Possono essere create contemporaneamente da più richieste concorrenti.
 	 */
-	private List<Reservation> cinemaReservations;
+	private Map<Long, Reservation> cinemaReservations;
 
 	/**
 	 * Corrente strategia di sconto applicata dal cinema.
@@ -70,11 +79,39 @@ public class Cinema {
 	private PersistenceFacade persistenceFacade;
 
 	/**
-	 * Costruttore del cinema.
+	 * Permette di eseguire in parallelo richieste indipendenti alla persistenza
+	 * dei dati.
+	 */
+	private AsyncPersistenceFacade asyncPersistenceFacade;
+
+	/**
+	 * Blocchi temporanei dei posti selezionati dalle prenotazioni non ancora
+	 * acquistate, che li rendono non disponibili agli altri spettatori.
+	 */
+	private SeatHoldRegistry seatHolds;
+
+	/**
+	 * Costruttore del cinema, che legge la configurazione della persistenza dal
+	 * file {@code PersistenceConfiguration.DEFAULT_PATH}.
 	 */
 	public Cinema() {
+		this(null);
+	}
+
+	/**
+	 * Costruttore del cinema con una configurazione della persistenza
+	 * specificata (ad esempio per mantenere i dati in memoria durante i test).
+	 * 
+	 * @param configuration configurazione della persistenza, o null per leggerla
+	 *                      dal file {@code PersistenceConfiguration.DEFAULT_PATH}.
+	 */
+	public Cinema(PersistenceConfiguration configuration) {
 		try {
-			persistenceFacade = new PersistenceFacade("jdbc:sqlite:persistence/cinemaDb.db");
+			if (configuration == null)
+				configuration = PersistenceConfiguration.load(PersistenceConfiguration.DEFAULT_PATH);
+			persistenceFacade = new PersistenceFacade(configuration);
+			asyncPersistenceFacade = new AsyncPersistenceFacade(persistenceFacade, configuration.getMaxPoolSize(),
+					AsyncPersistenceFacade.DEFAULT_QUEUE_CAPACITY);
 			cinemaInfo = persistenceFacade.getAllCinemaInfo(1);
 			cinemaDiscount = getDiscountByStrategy(TypeOfDiscount.valueOf(cinemaInfo.get("discountStrategy")));
 		} catch (SQLException | PersistenceException | DiscountNotFoundException e) {
@@ -82,8 +119,28 @@ public class Cinema {
 		}
 		emailHandler = new EmailHandler(cinemaInfo.get("name"), cinemaInfo.get("email"), cinemaInfo.get("mailPassword"),
 				getLocation(), cinemaInfo.get("logoURL"));
-		cinemaReservations = new ArrayList<Reservation>();
+		cinemaReservations = new ConcurrentHashMap<Long, Reservation>();
 		newProjections = new HashMap<>();
+		seatHolds = new SeatHoldRegistry(getSeatHoldMillis());
+	}
+
+	/**
+	 * Restituisce la durata del blocco dei posti selezionati, letta dalle
+	 * informazioni del cinema ({@code seatHoldSeconds}).
+	 * 
+	 * @return la durata in millisecondi, o
+	 *         {@code SeatHoldRegistry.DEFAULT_TTL_MILLIS} se non è specificata o
+	 *         non è valida.
+	 */
+	private long getSeatHoldMillis() {
+		try {
+			long seconds = Long.parseLong(cinemaInfo.get("seatHoldSeconds"));
+			if (seconds > 0)
+				return seconds * 1000;
+		} catch (NumberFormatException e) {
+			// Durata assente (ad esempio nel database in memoria) o non valida
+		}
+		return SeatHoldRegistry.DEFAULT_TTL_MILLIS;
 	}
 
 	/**
@@ -94,12 +151,47 @@ public class Cinema {
 	 *                              l'uso di meccanismi di persistenza.
 	 */
 	public long createReservation() throws PersistenceException {
-		Reservation r = new Reservation(cinemaDiscount, persistenceFacade.getLastReservationId() + 1);
-		cinemaReservations.add(r);
+		Reservation r = new Reservation(cinemaDiscount, persistenceFacade.nextReservationId());
+		cinemaReservations.put(r.getProgressive(), r);
 		persistenceFacade.putEmptyReservation(r);
 		return r.getProgressive();
 	}
 
+	/**
+	 * Crea una nuova prenotazione per la proiezione {@code projectionId}.
+	 * 
+	 * <p>
+	 * Il salvataggio della prenotazione e la lettura della proiezione vengono
+	 * eseguiti in parallelo. Se la proiezione non esiste (o non può essere letta)
+	 * la prenotazione salvata viene eliminata.
+	 * 
+	 * @param projectionId codice identificativo della proiezione.
+	 * @return il codice identificativo della nuova prenotazione.
+	 * @throws ProjectionException  qualora la proiezione non esista.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public long createReservation(int projectionId) throws ProjectionException, PersistenceException {
+		Reservation r = new Reservation(cinemaDiscount, persistenceFacade.nextReservationId());
+		CompletableFuture<Void> stored = asyncPersistenceFacade.putEmptyReservation(r);
+		CompletableFuture<Projection> projection = asyncPersistenceFacade.getProjection(projectionId);
+		AsyncPersistenceFacade.join(stored);
+		Projection p;
+		try {
+			p = AsyncPersistenceFacade.join(projection);
+		} catch (PersistenceException e) {
+			persistenceFacade.deleteReservation(r.getProgressive());
+			throw e;
+		}
+		if (p == null) {
+			persistenceFacade.deleteReservation(r.getProgressive());
+			throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		}
+		r.setProjection(p);
+		cinemaReservations.put(r.getProgressive(), r);
+		return r.getProgressive();
+	}
+
 	/**
 	 * Restituisce una prenotazione, dato il suo id.
 	 * 
@@ -109,10 +201,9 @@ public class Cinema {
 	 *                              esista.
 	 */
 	public Reservation getReservation(long progressive) throws ReservationException {
-		for (Reservation r : cinemaReservations) {
-			if (r.getProgressive() == progressive)
-				return r;
-		}
+		Reservation r = cinemaReservations.get(progressive);
+		if (r != null)
+			return r;
 		throw new ReservationException("La prenotazione " + progressive + " non esiste.");
 	}
 
@@ -141,6 +232,19 @@ public class Cinema {
 		return persistenceFacade.getAllProjections();
 	}
 
+	/**
+	 * Restituisce tutte le proiezioni di cui il cinema dispone sotto forma di
+	 * stream, senza mantenerle tutte in memoria.
+	 * 
+	 * @return lo stream delle proiezioni del cinema, da chiudere al termine
+	 *         dell'utilizzo.
+	 * @throws PersistenceException qualora vi siano errori riscontrati durante
+	 *                              l'uso di meccanismi di persistenza.
+	 */
+	public Stream<Projection> streamProjections() throws PersistenceException {
+		return persistenceFacade.streamAllProjections(PersistenceFacade.DEFAULT_FETCH_SIZE);
+	}
+
 	/**
 	 * Crea una proiezione e gli imposta l'id.
 	 * 
@@ -278,11 +382,7 @@ public class Cinema {
 		List<Projection> movieProjections = new ArrayList<Projection>();
 		Movie m = getMovie(movieId);
 		if (m != null) {
-			for (Projection p : getProjections()) {
-				if ((p.getMovie().getId() == movieId) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-					movieProjections.add(p);
-				}
-			}
+			movieProjections = persistenceFacade.getUpcomingProjectionsByMovie(movieId, LocalDateTime.now());
 		}
 		if (movieProjections.size() != 0)
 			return movieProjections;
@@ -311,19 +411,8 @@ public class Cinema {
 	 */
 	public List<Movie> getCurrentlyAvailableMovies() throws PersistenceException {
 		List<Movie> movies = new ArrayList<Movie>();
-		for (Projection p : getProjections()) {
-			if ((p.getDateTime() != null) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-				boolean alreadyExists = false;
-				for (Movie m : movies) {
-					if (p.getMovie().getId() == m.getId()) {
-						alreadyExists = true;
-						break;
-					}
-				}
-				if (!alreadyExists) {
-					movies.add(p.getMovie());
-				}
-			}
+		for (int movieId : persistenceFacade.getUpcomingMovieIds(LocalDateTime.now())) {
+			movies.add(persistenceFacade.getMovie(movieId));
 		}
 		return movies;
 	}
@@ -393,16 +482,17 @@ public class Cinema {
 	 */
 	public Projection getCurrentlyAvailableProjection(int projectionId)
 			throws ProjectionException, PersistenceException {
-		for (Projection p : getProjections()) {
-			if ((p.getId() == projectionId) && (p.getDateTime().isAfter(LocalDateTime.now()))) {
-				return p;
-			}
-			if ((p.getId() == projectionId) && (p.getDateTime().isBefore(LocalDateTime.now()))) {
-				throw new ProjectionException(
-						"La proiezione selezionata con ID " + projectionId + " non è più disponibile.");
-			}
+		Projection p = null;
+		try {
+			p = persistenceFacade.getProjection(projectionId);
+		} catch (RoomException e) {
+			// Una proiezione con una sala non valida viene trattata come inesistente
 		}
-		throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		if (p == null)
+			throw new ProjectionException("La proiezione con id " + projectionId + " non esiste.");
+		if (p.getDateTime().isAfter(LocalDateTime.now()))
+			return p;
+		throw new ProjectionException("La proiezione selezionata con ID " + projectionId + " non è più disponibile.");
 	}
 
 	/**
@@ -535,6 +625,35 @@ public class Cinema {
 		return getReservation(reservationId).getProjection().getRoom().getNumberOfRows();
 	}
 
+	/**
+	 * Restituisce la disponibilità di tutti i posti della proiezione associata
+	 * alla prenotazione, a partire dall'occupazione letta insieme alla proiezione
+	 * (senza ulteriori richieste alla persistenza) e dai posti selezionati dalle
+	 * altre prenotazioni.
+	 * 
+	 * @param reservationId codice identificativo della prenotazione.
+	 * @return per ogni fila e colonna, True: libero, False: occupato o
+	 *         selezionato da un'altra prenotazione non ancora acquistata.
+	 * @throws ReservationException qualora l'id della prenotazione inserita non
+	 *                              esista.
+	 */
+	public boolean[][] getReservationProjectionSeatsAvailability(long reservationId) throws ReservationException {
+		Projection projection = getReservation(reservationId).getProjection();
+		Room room = projection.getRoom();
+		boolean[][] available = new boolean[room.getNumberOfRows()][room.getNumberOfCols()];
+		try {
+			for (int row = 0; row < available.length; row++) {
+				for (int col = 0; col < available[row].length; col++)
+					available[row][col] = projection.checkIfSeatIsAvailable(row, col)
+							&& !seatHolds.isHeld(projection.getId(), SeatId.of(row, col));
+			}
+		} catch (RoomException e) {
+			// Le coordinate sono sempre comprese nelle dimensioni della sala
+			throw new IllegalStateException(e);
+		}
+		return available;
+	}
+
 	/**
 	 * Controlla se il posto della sala selezionata dalla prenotazione è libero o
 	 * meno.
@@ -542,7 +661,8 @@ public class Cinema {
 	 * @param projectionId codice identificativo della proiezione.
 	 * @param row          coordinata riga posto.
 	 * @param col          coordinata colonna posto.
-	 * @return True: libero, False: occupato.
+	 * @return True: libero, False: occupato o selezionato da una prenotazione non
+	 *         ancora acquistata.
 	 * @throws RoomException        qualora la sala cercata non sia presente
 	 *                              all'interno del cinema.
 	 * @throws ReservationException qualora l'id della prenotazione inserita non
@@ -555,7 +675,8 @@ public class Cinema {
 	 */
 	public boolean checkIfProjectionSeatIsAvailable(int projectionId, int row, int col)
 			throws RoomException, ReservationException, ProjectionException, PersistenceException {
-		return persistenceFacade.getOccupiedSeat(projectionId, row, col);
+		return persistenceFacade.getOccupiedSeat(projectionId, row, col)
+				&& !seatHolds.isHeld(projectionId, SeatId.of(row, col));
 	}
 
 	/**
@@ -566,15 +687,12 @@ public class Cinema {
 	 * @throws ReservationException qualora la prenotazine inserita non esista.
 	 */
 	public int getReservationProjection(long reservationId) throws ReservationException {
-		for (Reservation reservation : cinemaReservations) {
-			if (reservation.getProgressive() == reservationId)
-				return reservation.getProjection().getId();
-		}
-		throw new ReservationException("La prenotazione " + reservationId + " non esiste.");
+		return getReservation(reservationId).getProjection().getId();
 	}
 
 	/**
-	 * Aggiunge un posto alla reservation.
+	 * Aggiunge un posto alla reservation e lo blocca, fino all'acquisto o alla
+	 * scadenza del blocco, per gli altri spettatori.
 	 * 
 	 * @param reservationId codice identificativo della prenotazione.
 	 * @param row           coordinata riga posto.
@@ -582,13 +700,20 @@ public class Cinema {
 	 * @throws RoomException             qualora la sala cercata non sia presente
 	 *                                   all'interno del cinema.
 	 * @throws SeatAvailabilityException qualora il posto richiesto non sia
-	 *                                   disponibile.
+	 *                                   disponibile o sia stato selezionato da
+	 *                                   un altro spettatore.
 	 * @throws ReservationException      qualora l'id della prenotazione inserita
 	 *                                   non esista.
 	 */
 	public void addSeatToReservation(long reservationId, int row, int col)
 			throws RoomException, SeatAvailabilityException, ReservationException {
-		getReservation(reservationId).addSeat(row, col);
+		Reservation reservation = getReservation(reservationId);
+		reservation.addSeat(row, col);
+		if (!seatHolds.hold(reservationId, reservation.getProjection().getId(), SeatId.of(row, col))) {
+			reservation.removeSeat(row, col);
+			throw new SeatAvailabilityException("Il posto " + Room.rowIndexToRowLetter(row) + "-" + (col + 1)
+					+ " è stato selezionato da un altro spettatore.");
+		}
 	}
 
 	/**
@@ -604,7 +729,10 @@ public class Cinema {
 	 */
 	public void removeSeatFromReservation(long reservationId, int row, int col)
 			throws RoomException, ReservationException {
-		getReservation(reservationId).removeSeat(row, col);
+		Reservation reservation = getReservation(reservationId);
+		reservation.removeSeat(row, col);
+		seatHolds.release(reservationId, reservation.getProjection().getId(), SeatId.of(row, col));
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -624,6 +752,7 @@ public class Cinema {
 	public void setReservationPurchaser(long reservationId, String name, String surname, String email)
 			throws InvalidSpectatorInfoException, ReservationException {
 		getReservation(reservationId).setPurchaser(new Spectator(name, surname, email));
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -640,6 +769,7 @@ public class Cinema {
 	public void setReservationPaymentCard(long reservationId, String number, String owner, String cvv,
 			YearMonth expirationDate) throws ReservationException {
 		getReservation(reservationId).setPaymentCard(number, owner, cvv, expirationDate);
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -657,6 +787,7 @@ public class Cinema {
 	public void setReservationNumberPeopleUntilMinAge(long reservationId, int number)
 			throws DiscountException, ReservationException {
 		getReservation(reservationId).setNumberPeopleUnderMinAge(number);
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -674,6 +805,7 @@ public class Cinema {
 	public void setReservationNumberPeopleOverMaxAge(long reservationId, int number)
 			throws DiscountException, ReservationException {
 		getReservation(reservationId).setNumberPeopleOverMaxAge(number);
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -692,6 +824,7 @@ public class Cinema {
 			throw new CouponException("Il coupon " + code + " è già stato usato.");
 		} else
 			getReservation(reservationId).setCoupon(coupon);
+		seatHolds.touch(reservationId);
 	}
 
 	/**
@@ -703,7 +836,8 @@ public class Cinema {
 	 *                                   con formato non corretto in un valore
 	 *                                   numerico.
 	 * @throws SeatAvailabilityException qualora il posto richiesto non sia
-	 *                                   disponibile.
+	 *                                   disponibile o, scaduto il blocco, sia
+	 *                                   stato selezionato da un altro spettatore.
 	 * @throws RoomException             qualora la sala cercata non sia presente
 	 *                                   all'interno del cinema.
 	 * @throws ReservationException      qualora l'id della prenotazione inserita
@@ -711,28 +845,37 @@ public class Cinema {
 	 * @throws PaymentErrorException     qualora vi siano errori riscontrati nelle
 	 *                                   procedure di pagamento.
 	 * @throws ReservationException      qualora l'id della prenotazione inserita
-	 *                                   non esista.
+	 *                                   non esista o il coupon associato sia già
+	 *                                   stato utilizzato.
 	 * @throws PersistenceException      qualora vi siano errori riscontrati durante
 	 *                                   l'uso di meccanismi di persistenza.
 	 */
 	public void buyReservation(long reservationId) throws NumberFormatException, SeatAvailabilityException,
 			RoomException, ReservationException, PaymentErrorException, ReservationException, PersistenceException {
+		Reservation reservation = getReservation(reservationId);
 		try {
-			getReservation(reservationId).buy();
-		} catch (PaymentErrorException e) {
-			persistenceFacade.deleteReservation(reservationId);
-			throw new PaymentErrorException(e.getMessage());
-		}
-		/*
-		 * Se la reservation è associata ad un coupon, una volta terminato il metodo
-		 * buy, il coupon viene segnato come già utilizzato in modo da impedirne il
-		 * riutilizzo.
-		 */
-		Coupon coupon = getReservation(reservationId).getCoupon();
-		if (coupon != null) {
-			persistenceFacade.setCouponUsed(coupon.getCode());
+			// I blocchi scaduti potrebbero essere stati presi da altre prenotazioni
+			for (int seatId : reservation.getSeatIds()) {
+				if (!seatHolds.hold(reservationId, reservation.getProjection().getId(), seatId))
+					throw new SeatAvailabilityException("Il posto " + Room.rowIndexToRowLetter(SeatId.row(seatId))
+							+ "-" + (SeatId.col(seatId) + 1) + " è stato selezionato da un altro spettatore.");
+			}
+			try {
+				reservation.buy();
+			} catch (PaymentErrorException e) {
+				persistenceFacade.deleteReservation(reservationId);
+				throw new PaymentErrorException(e.getMessage());
+			}
+			// I posti restano bloccati finché l'acquisto non è persistente, in modo
+			// che nessun'altra prenotazione possa selezionarli nel frattempo
+			try {
+				persistenceFacade.commitPurchase(reservation);
+			} catch (CouponException e) {
+				throw new ReservationException(e.getMessage());
+			}
+		} finally {
+			seatHolds.releaseAll(reservationId);
 		}
-		persistenceFacade.setReservationFields(getReservation(reservationId));
 	}
 
 	/**
@@ -21,7 +21,8 @@ import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
 
-import cinema.model.cinema.PhysicalSeat;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.reservation.Reservation;
 import cinema.controller.handlers.util.HandlerException;
@@ -177,15 +178,12 @@ public class ReportHandler {
 		c1.setVerticalAlignment(Element.ALIGN_MIDDLE);
 		c1.setMinimumHeight(30);
 		table.addCell(c1);
-		for (PhysicalSeat s : reservation.getSeats()) {
-			String seatCoordinates = reservation.getProjection().getSeatCoordinates(s);
-			if (seatCoordinates != null) {
-				PdfPCell cSeat = new PdfPCell(new Phrase("Fila " + seatCoordinates.replaceAll("\\d", "") + ",   Posto "
-						+ seatCoordinates.replaceAll("[\\D]", "")));
-				cSeat.setVerticalAlignment(Element.ALIGN_MIDDLE);
-				cSeat.setMinimumHeight(20);
-				table.addCell(cSeat);
-			}
+		for (int seatId : reservation.getSeatIds()) {
+			PdfPCell cSeat = new PdfPCell(new Phrase("Fila " + Room.rowIndexToRowLetter(SeatId.row(seatId))
+					+ ",   Posto " + (SeatId.col(seatId) + 1)));
+			cSeat.setVerticalAlignment(Element.ALIGN_MIDDLE);
+			cSeat.setMinimumHeight(20);
+			table.addCell(cSeat);
 		}
 	}
 
@@ -1,9 +1,6 @@
 package cinema.model.cinema;
 
-import java.util.ArrayList;
-
 import cinema.model.cinema.util.RoomException;
-import cinema.model.cinema.util.TypeOfSeat;
 
 /**
  * Una specifica sala del cinema.
@@ -19,9 +16,10 @@ public class Room {
 	private final int number;
 
 	/**
-	 * Matrice di posti contenuti nella sala.
+	 * Disposizione dei posti contenuti nella sala, condivisa con le altre sale
+	 * con le stesse dimensioni.
 	 */
-	private ArrayList<ArrayList<PhysicalSeat>> seats;
+	private final RoomLayout layout;
 
 	/**
 	 * Costruttore della sala.
@@ -37,17 +35,18 @@ public class Room {
 	 *                       sono valide.
 	 */
 	public Room(int number, int rows, int cols) throws RoomException {
-		if (rows <= 0 || cols <= 0)
-			throw new RoomException("La stanza deve contenere almeno un posto.");
-		seats = new ArrayList<ArrayList<PhysicalSeat>>();
-		for (int i = 0; i < rows; i++) {
-			ArrayList<PhysicalSeat> row = new ArrayList<PhysicalSeat>();
-			for (int j = 0; j < cols; j++) {
-				row.add(new PhysicalSeat(TypeOfSeat.NORMAL));
-			}
-			seats.add(row);
-		}
+		this(number, RoomLayout.of(rows, cols));
+	}
+
+	/**
+	 * Costruttore della sala con una disposizione dei posti già ottenuta.
+	 * 
+	 * @param number identificativo univoco della sala.
+	 * @param layout disposizione dei posti della sala.
+	 */
+	public Room(int number, RoomLayout layout) {
 		this.number = number;
+		this.layout = layout;
 	}
 
 	/**
@@ -56,7 +55,7 @@ public class Room {
 	 * @return il numero totale di posti.
 	 */
 	public int getNumberOfSeats() {
-		return seats.size() * seats.get(0).size();
+		return layout.getNumberOfSeats();
 	}
 
 	/**
@@ -65,7 +64,7 @@ public class Room {
 	 * @return il numero di posti per fila.
 	 */
 	public int getNumberOfCols() {
-		return seats.get(0).size();
+		return layout.getNumberOfCols();
 	}
 
 	/**
@@ -74,7 +73,7 @@ public class Room {
 	 * @return il numero di righe.
 	 */
 	public int getNumberOfRows() {
-		return seats.size();
+		return layout.getNumberOfRows();
 	}
 
 	/**
@@ -86,7 +85,7 @@ public class Room {
 	 * @return il posto della sala richiesto.
 	 */
 	public PhysicalSeat getSeat(int row, int col) {
-		return seats.get(row).get(col);
+		return layout.getSeat(row, col);
 	}
 
 	/**
@@ -116,6 +115,10 @@ public class Room {
 		return number;
 	}
 
+	public RoomLayout getLayout() {
+		return layout;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Sala %d: %d posti", number, getNumberOfSeats());
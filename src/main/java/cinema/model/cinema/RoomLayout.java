@@ -0,0 +1,183 @@
+package cinema.model.cinema;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.cinema.util.TypeOfSeat;
+
+/**
+ * Disposizione immutabile dei posti di una sala: numero di file, posti per fila
+ * e tipo di ciascun posto.
+ *
+ * <p>
+ * Le disposizioni vengono ottenute tramite {@code of(rows, cols)} e
+ * {@code of(rows, cols, types)}, che restituiscono sempre la stessa istanza per
+ * le stesse dimensioni e gli stessi tipi: tutte le sale (e quindi tutte le
+ * proiezioni) con la stessa disposizione la condividono. I tipi dei posti sono
+ * memorizzati in un {@code byte[]}, mentre i {@code PhysicalSeat} vengono creati
+ * solo alla prima richiesta e poi restituiti sempre uguali, in modo che il
+ * confronto tra posti per identità continui a valere.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public final class RoomLayout {
+
+	/**
+	 * Disposizioni già create, identificate dalle dimensioni e dai tipi dei posti.
+	 */
+	private static final ConcurrentHashMap<RoomLayout, RoomLayout> LAYOUTS = new ConcurrentHashMap<RoomLayout, RoomLayout>();
+
+	/**
+	 * Tipi dei posti, nell'ordine dei valori di {@code TypeOfSeat}.
+	 */
+	private static final TypeOfSeat[] TYPES = TypeOfSeat.values();
+
+	private final int rows;
+
+	private final int cols;
+
+	/**
+	 * Tipo di ciascun posto (indice in {@code TYPES}): il posto nella fila
+	 * {@code row} e nella colonna {@code col} si trova in posizione
+	 * {@code row * cols + col}.
+	 */
+	private final byte[] types;
+
+	/**
+	 * Posti fisici già richiesti, nelle stesse posizioni di {@code types}.
+	 */
+	private final AtomicReferenceArray<PhysicalSeat> seats;
+
+	private RoomLayout(int rows, int cols, byte[] types) {
+		this.rows = rows;
+		this.cols = cols;
+		this.types = types;
+		this.seats = new AtomicReferenceArray<PhysicalSeat>(types.length);
+	}
+
+	/**
+	 * Restituisce la disposizione di una sala con {@code rows} file di
+	 * {@code cols} posti di tipo {@code TypeOfSeat.NORMAL}.
+	 *
+	 * @param rows numero di file della sala.
+	 * @param cols numero di posti per fila della sala.
+	 * @return la disposizione condivisa.
+	 * @throws RoomException se le dimensioni della sala non sono valide.
+	 */
+	public static RoomLayout of(int rows, int cols) throws RoomException {
+		checkSize(rows, cols);
+		byte[] types = new byte[rows * cols];
+		Arrays.fill(types, (byte) TypeOfSeat.NORMAL.ordinal());
+		return intern(new RoomLayout(rows, cols, types));
+	}
+
+	/**
+	 * Restituisce la disposizione di una sala con {@code rows} file di
+	 * {@code cols} posti, in cui il posto nella fila {@code row} e nella colonna
+	 * {@code col} è del tipo {@code types[row * cols + col]}.
+	 *
+	 * @param rows  numero di file della sala.
+	 * @param cols  numero di posti per fila della sala.
+	 * @param types tipi dei posti.
+	 * @return la disposizione condivisa.
+	 * @throws RoomException se le dimensioni della sala non sono valide o non
+	 *                       corrispondono al numero dei tipi.
+	 */
+	public static RoomLayout of(int rows, int cols, TypeOfSeat[] types) throws RoomException {
+		checkSize(rows, cols);
+		if (types.length != rows * cols)
+			throw new RoomException("Il numero dei tipi dei posti non corrisponde alle dimensioni della sala.");
+		byte[] ordinals = new byte[types.length];
+		for (int i = 0; i < types.length; i++)
+			ordinals[i] = (byte) types[i].ordinal();
+		return intern(new RoomLayout(rows, cols, ordinals));
+	}
+
+	/**
+	 * Restituisce il numero di disposizioni distinte create finora.
+	 *
+	 * @return il numero di disposizioni.
+	 */
+	public static int getNumberOfLayouts() {
+		return LAYOUTS.size();
+	}
+
+	private static void checkSize(int rows, int cols) throws RoomException {
+		if (rows <= 0 || cols <= 0)
+			throw new RoomException("La stanza deve contenere almeno un posto.");
+	}
+
+	private static RoomLayout intern(RoomLayout layout) {
+		RoomLayout existing = LAYOUTS.putIfAbsent(layout, layout);
+		return existing != null ? existing : layout;
+	}
+
+	public int getNumberOfRows() {
+		return rows;
+	}
+
+	public int getNumberOfCols() {
+		return cols;
+	}
+
+	public int getNumberOfSeats() {
+		return types.length;
+	}
+
+	/**
+	 * Restituisce il tipo del posto nella fila {@code row} e nella colonna
+	 * {@code col}.
+	 *
+	 * @param row fila del posto.
+	 * @param col numero del posto all'interno della fila.
+	 * @return il tipo del posto.
+	 * @throws IndexOutOfBoundsException se il posto non esiste.
+	 */
+	public TypeOfSeat getSeatType(int row, int col) {
+		return TYPES[types[index(row, col)]];
+	}
+
+	/**
+	 * Restituisce il posto fisico nella fila {@code row} e nella colonna
+	 * {@code col}, creandolo alla prima richiesta.
+	 *
+	 * @param row fila del posto.
+	 * @param col numero del posto all'interno della fila.
+	 * @return il posto fisico, sempre la stessa istanza per le stesse coordinate.
+	 * @throws IndexOutOfBoundsException se il posto non esiste.
+	 */
+	public PhysicalSeat getSeat(int row, int col) {
+		int index = index(row, col);
+		PhysicalSeat seat = seats.get(index);
+		if (seat != null)
+			return seat;
+		seat = new PhysicalSeat(TYPES[types[index]]);
+		return seats.compareAndSet(index, null, seat) ? seat : seats.get(index);
+	}
+
+	private int index(int row, int col) {
+		Objects.checkIndex(row, rows);
+		Objects.checkIndex(col, cols);
+		return row * cols + col;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof RoomLayout))
+			return false;
+		RoomLayout layout = (RoomLayout) other;
+		return rows == layout.rows && cols == layout.cols && Arrays.equals(types, layout.types);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * rows + cols) + Arrays.hashCode(types);
+	}
+
+}
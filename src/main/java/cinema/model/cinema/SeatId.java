@@ -0,0 +1,73 @@
+package cinema.model.cinema;
+
+/**
+ * Identificativo di un posto all'interno di una sala, rappresentato da un
+ * {@code int} che contiene la fila (nei 16 bit più significativi) e il posto
+ * all'interno della fila (nei 16 bit meno significativi).
+ *
+ * <p>
+ * La classe contiene solamente i metodi per comporre e scomporre gli
+ * identificativi, che possono così essere conservati in array di {@code int}
+ * senza creare alcun oggetto per ciascun posto.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public final class SeatId {
+
+	/**
+	 * Valore massimo della fila e del posto all'interno della fila.
+	 */
+	public static final int MAX_INDEX = 0xFFFF;
+
+	private SeatId() {
+	}
+
+	/**
+	 * Restituisce l'identificativo del posto nella fila {@code row} e nella
+	 * colonna {@code col}.
+	 *
+	 * @param row fila del posto (a partire da 0).
+	 * @param col posto all'interno della fila (a partire da 0).
+	 * @return l'identificativo del posto.
+	 * @throws IllegalArgumentException se la fila o il posto non sono compresi
+	 *                                  tra 0 e {@code MAX_INDEX}.
+	 */
+	public static int of(int row, int col) {
+		if (row < 0 || row > MAX_INDEX || col < 0 || col > MAX_INDEX)
+			throw new IllegalArgumentException("Le coordinate del posto (" + row + ", " + col + ") non sono valide.");
+		return row << 16 | col;
+	}
+
+	/**
+	 * Restituisce la fila del posto {@code seatId}.
+	 *
+	 * @param seatId identificativo del posto.
+	 * @return la fila (a partire da 0).
+	 */
+	public static int row(int seatId) {
+		return seatId >>> 16;
+	}
+
+	/**
+	 * Restituisce il posto all'interno della fila del posto {@code seatId}.
+	 *
+	 * @param seatId identificativo del posto.
+	 * @return il posto all'interno della fila (a partire da 0).
+	 */
+	public static int col(int seatId) {
+		return seatId & MAX_INDEX;
+	}
+
+	/**
+	 * Restituisce le coordinate del posto {@code seatId} come vengono mostrate
+	 * allo spettatore, ad esempio "B7".
+	 *
+	 * @param seatId identificativo del posto.
+	 * @return la lettera della fila seguita dal numero del posto (a partire da 1).
+	 */
+	public static String toString(int seatId) {
+		return Room.rowIndexToRowLetter(row(seatId)) + (col(seatId) + 1);
+	}
+
+}
@@ -0,0 +1,471 @@
+package cinema.model.persistence;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.coupon.Coupon;
+import cinema.model.reservation.discount.types.DiscountAge;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+
+/**
+ * Variante asincrona del facade controller che gestisce la persistenza dei
+ * dati.
+ *
+ * <p>
+ * Ogni metodo esegue il corrispondente metodo di {@code PersistenceFacade} su
+ * un insieme limitato di thread dedicati alla persistenza e restituisce subito
+ * un {@code CompletableFuture} con il risultato. In questo modo chi gestisce
+ * una richiesta può avviare insieme più letture indipendenti e attenderle con
+ * {@code join(future)}, impiegando il tempo della più lenta invece della somma
+ * dei tempi di tutte.
+ *
+ * <p>
+ * Un future fallisce con la stessa eccezione che avrebbe lanciato il metodo
+ * sincrono (normalmente {@code PersistenceException}). Se la coda delle
+ * richieste in attesa è piena la richiesta viene rifiutata e il future fallisce
+ * con {@code PersistenceException}. I metodi che restituiscono stream e le
+ * unità di lavoro, legati al thread che li ha ottenuti, non hanno una variante
+ * asincrona.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class AsyncPersistenceFacade implements AutoCloseable {
+
+	/**
+	 * Numero predefinito di richieste che possono restare in attesa di un thread.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+	/**
+	 * Operazione sul meccanismo di persistenza dei dati eseguita in modo
+	 * asincrono.
+	 *
+	 * @param <T> tipo del risultato dell'operazione.
+	 */
+	public interface PersistenceCall<T> {
+
+		/**
+		 * Esegue l'operazione.
+		 *
+		 * @return il risultato dell'operazione.
+		 * @throws Exception se l'operazione fallisce.
+		 */
+		T call() throws Exception;
+
+	}
+
+	/**
+	 * Facade controller sincrono a cui vengono delegate le operazioni.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Thread dedicati alla persistenza, con la relativa coda limitata.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Numero di richieste rifiutate perché la coda era piena.
+	 */
+	private final AtomicLong rejectedCount;
+
+	/**
+	 * Costruttore del facade controller asincrono.
+	 *
+	 * @param persistenceFacade facade controller sincrono a cui delegare le
+	 *                          operazioni.
+	 * @param threads           numero di thread dedicati alla persistenza (di
+	 *                          norma pari al numero di connessioni di lettura).
+	 * @param queueCapacity     numero massimo di richieste in attesa di un
+	 *                          thread.
+	 */
+	public AsyncPersistenceFacade(PersistenceFacade persistenceFacade, int threads, int queueCapacity) {
+		this.persistenceFacade = persistenceFacade;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "persistence-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.rejectedCount = new AtomicLong();
+	}
+
+	/**
+	 * Esegue un'operazione qualsiasi sui thread dedicati alla persistenza.
+	 *
+	 * @param <T>  tipo del risultato dell'operazione.
+	 * @param call operazione da eseguire.
+	 * @return il future che conterrà il risultato dell'operazione o l'eccezione
+	 *         da essa lanciata.
+	 */
+	public <T> CompletableFuture<T> supply(PersistenceCall<T> call) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(call.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedCount.incrementAndGet();
+			future.completeExceptionally(
+					new PersistenceException("Troppe richieste in attesa del meccanismo di persistenza dei dati."));
+		}
+		return future;
+	}
+
+	/**
+	 * Attende il risultato di un future ottenuto dal facade controller
+	 * asincrono.
+	 *
+	 * <p>
+	 * Le eccezioni non controllate vengono rilanciate così come sono, mentre
+	 * quelle controllate diverse da {@code PersistenceException} vengono
+	 * riportate come {@code PersistenceException} con lo stesso messaggio. Se il
+	 * thread viene interrotto durante l'attesa, l'interruzione viene registrata
+	 * nuovamente sul thread e viene lanciata una {@code PersistenceException};
+	 * l'operazione prosegue comunque sull'esecutore.
+	 *
+	 * @param <T>    tipo del risultato.
+	 * @param future future di cui attendere il risultato.
+	 * @return il risultato dell'operazione.
+	 * @throws PersistenceException se l'operazione è fallita o l'attesa è stata
+	 *                              interrotta.
+	 */
+	public static <T> T join(CompletableFuture<T> future) throws PersistenceException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof PersistenceException)
+				throw (PersistenceException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new PersistenceException(cause.getMessage());
+		}
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getMovie(id)}.
+	 *
+	 * @param id identificativo del film.
+	 * @return il future del film o di null se non è presente.
+	 */
+	public CompletableFuture<Movie> getMovie(int id) {
+		return supply(() -> persistenceFacade.getMovie(id));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllMovies()}.
+	 *
+	 * @return il future di tutti i film.
+	 */
+	public CompletableFuture<ArrayList<Movie>> getAllMovies() {
+		return supply(() -> persistenceFacade.getAllMovies());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getMoviesByGenre(genre)}.
+	 *
+	 * @param genre nome del genere.
+	 * @return il future dei film del genere.
+	 */
+	public CompletableFuture<ArrayList<Movie>> getMoviesByGenre(String genre) {
+		return supply(() -> persistenceFacade.getMoviesByGenre(genre));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getRoom(id)}.
+	 *
+	 * @param id identificativo della sala.
+	 * @return il future della sala o di null se non è presente.
+	 */
+	public CompletableFuture<Room> getRoom(int id) {
+		return supply(() -> persistenceFacade.getRoom(id));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllRooms()}.
+	 *
+	 * @return il future di tutte le sale.
+	 */
+	public CompletableFuture<ArrayList<Room>> getAllRooms() {
+		return supply(() -> persistenceFacade.getAllRooms());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getProjection(projectionId)}.
+	 * Se la sala della proiezione non esiste il future fallisce con
+	 * {@code RoomException}.
+	 *
+	 * @param projectionId identificativo della proiezione.
+	 * @return il future della proiezione o di null se non è presente.
+	 */
+	public CompletableFuture<Projection> getProjection(int projectionId) {
+		return supply(() -> persistenceFacade.getProjection(projectionId));
+	}
+
+	/**
+	 * Variante asincrona di
+	 * {@code PersistenceFacade.getAllProjectionsByMovieId(movieId)}. Se la sala di
+	 * una proiezione non esiste il future fallisce con {@code RoomException}.
+	 *
+	 * @param movieId identificativo del film.
+	 * @return il future delle proiezioni del film.
+	 */
+	public CompletableFuture<ArrayList<Projection>> getAllProjectionsByMovieId(int movieId) {
+		return supply(() -> persistenceFacade.getAllProjectionsByMovieId(movieId));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllProjections()}.
+	 *
+	 * @return il future di tutte le proiezioni.
+	 */
+	public CompletableFuture<ArrayList<Projection>> getAllProjections() {
+		return supply(() -> persistenceFacade.getAllProjections());
+	}
+
+	/**
+	 * Variante asincrona di
+	 * {@code PersistenceFacade.getProjectionsBetween(from, to)}.
+	 *
+	 * @param from inizio dell'intervallo temporale (incluso).
+	 * @param to   fine dell'intervallo temporale (escluso).
+	 * @return il future delle proiezioni comprese nell'intervallo.
+	 */
+	public CompletableFuture<ArrayList<Projection>> getProjectionsBetween(LocalDateTime from, LocalDateTime to) {
+		return supply(() -> persistenceFacade.getProjectionsBetween(from, to));
+	}
+
+	/**
+	 * Variante asincrona di
+	 * {@code PersistenceFacade.getUpcomingProjectionsByMovie(movieId, now)}.
+	 *
+	 * @param movieId identificativo del film.
+	 * @param now     istante dopo il quale devono svolgersi le proiezioni.
+	 * @return il future delle proiezioni future del film.
+	 */
+	public CompletableFuture<ArrayList<Projection>> getUpcomingProjectionsByMovie(int movieId, LocalDateTime now) {
+		return supply(() -> persistenceFacade.getUpcomingProjectionsByMovie(movieId, now));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getUpcomingMovieIds(now)}.
+	 *
+	 * @param now istante dopo il quale devono svolgersi le proiezioni.
+	 * @return il future degli identificativi dei film in programmazione.
+	 */
+	public CompletableFuture<ArrayList<Integer>> getUpcomingMovieIds(LocalDateTime now) {
+		return supply(() -> persistenceFacade.getUpcomingMovieIds(now));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllCoupons()}.
+	 *
+	 * @return il future di tutti i coupon.
+	 */
+	public CompletableFuture<ArrayList<Coupon>> getAllCoupons() {
+		return supply(() -> persistenceFacade.getAllCoupons());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getCoupon(promocode)}.
+	 *
+	 * @param promocode codice promozionale del coupon.
+	 * @return il future del coupon o di null se non è presente.
+	 */
+	public CompletableFuture<Coupon> getCoupon(String promocode) {
+		return supply(() -> persistenceFacade.getCoupon(promocode));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllDayDiscounts()}.
+	 *
+	 * @return il future degli sconti sul giorno della proiezione.
+	 */
+	public CompletableFuture<DiscountDay> getAllDayDiscounts() {
+		return supply(() -> persistenceFacade.getAllDayDiscounts());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAgeDiscounts()}.
+	 *
+	 * @return il future degli sconti sull'età degli spettatori.
+	 */
+	public CompletableFuture<DiscountAge> getAgeDiscounts() {
+		return supply(() -> persistenceFacade.getAgeDiscounts());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getGroupDiscounts()}.
+	 *
+	 * @return il future degli sconti sul numero di biglietti acquistati.
+	 */
+	public CompletableFuture<DiscountNumberSpectators> getGroupDiscounts() {
+		return supply(() -> persistenceFacade.getGroupDiscounts());
+	}
+
+	/**
+	 * Variante asincrona di
+	 * {@code PersistenceFacade.getOccupiedSeat(projectionId, row, column)}.
+	 *
+	 * @param projectionId identificativo della proiezione.
+	 * @param row          fila del posto.
+	 * @param column       posto nella fila.
+	 * @return il future di true se il posto è libero, false se è occupato.
+	 */
+	public CompletableFuture<Boolean> getOccupiedSeat(int projectionId, int row, int column) {
+		return supply(() -> persistenceFacade.getOccupiedSeat(projectionId, row, column));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getLastReservationId()}.
+	 *
+	 * @return il future dell'identificativo dell'ultima prenotazione.
+	 */
+	public CompletableFuture<Long> getLastReservationId() {
+		return supply(() -> persistenceFacade.getLastReservationId());
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.getAllCinemaInfo(cinemaId)}.
+	 *
+	 * @param cinemaId identificativo del cinema.
+	 * @return il future delle informazioni del cinema e del suo gestore.
+	 */
+	public CompletableFuture<HashMap<String, String>> getAllCinemaInfo(int cinemaId) {
+		return supply(() -> persistenceFacade.getAllCinemaInfo(cinemaId));
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.nextReservationId()}.
+	 *
+	 * @return il future di un nuovo identificativo per una prenotazione.
+	 */
+	public CompletableFuture<Long> nextReservationId() {
+		return supply(() -> persistenceFacade.nextReservationId());
+	}
+
+	/**
+	 * Variante asincrona di
+	 * {@code PersistenceFacade.putEmptyReservation(newReservation)}.
+	 *
+	 * @param newReservation la prenotazione da rendere persistente.
+	 * @return il future completato quando la prenotazione è stata resa
+	 *         persistente.
+	 */
+	public CompletableFuture<Void> putEmptyReservation(Reservation newReservation) {
+		return supply(() -> {
+			persistenceFacade.putEmptyReservation(newReservation);
+			return null;
+		});
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.deleteReservation(reservationId)}.
+	 *
+	 * @param reservationId identificativo della prenotazione da eliminare.
+	 * @return il future completato quando la prenotazione è stata eliminata.
+	 */
+	public CompletableFuture<Void> deleteReservation(long reservationId) {
+		return supply(() -> {
+			persistenceFacade.deleteReservation(reservationId);
+			return null;
+		});
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.putProjection(newProjection)}.
+	 *
+	 * @param newProjection proiezione da rendere persistente.
+	 * @return il future completato quando la proiezione è stata resa
+	 *         persistente.
+	 */
+	public CompletableFuture<Void> putProjection(Projection newProjection) {
+		return supply(() -> {
+			persistenceFacade.putProjection(newProjection);
+			return null;
+		});
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.removeProjection(projectionId)}.
+	 *
+	 * @param projectionId identificativo della proiezione da eliminare.
+	 * @return il future completato quando la proiezione è stata eliminata.
+	 */
+	public CompletableFuture<Void> removeProjection(int projectionId) {
+		return supply(() -> {
+			persistenceFacade.removeProjection(projectionId);
+			return null;
+		});
+	}
+
+	/**
+	 * Variante asincrona di {@code PersistenceFacade.setCouponUsed(promocode)}.
+	 *
+	 * @param promocode codice promozionale del coupon utilizzato.
+	 * @return il future di true se il coupon è stato segnato come utilizzato,
+	 *         false se non esiste o era già stato utilizzato.
+	 */
+	public CompletableFuture<Boolean> setCouponUsed(String promocode) {
+		return supply(() -> persistenceFacade.setCouponUsed(promocode));
+	}
+
+	/**
+	 * Restituisce le statistiche di utilizzo del facade controller sincrono
+	 * insieme a quelle dei thread dedicati alla persistenza: thread attivi,
+	 * richieste in coda, completate e rifiutate.
+	 *
+	 * @return le statistiche di utilizzo, identificate dal loro nome.
+	 */
+	public HashMap<String, Number> getMetrics() {
+		HashMap<String, Number> metrics = new LinkedHashMap<String, Number>(persistenceFacade.getMetrics());
+		metrics.put("async.threads", executor.getPoolSize());
+		metrics.put("async.active", executor.getActiveCount());
+		metrics.put("async.queued", executor.getQueue().size());
+		metrics.put("async.completed", executor.getCompletedTaskCount());
+		metrics.put("async.rejected", rejectedCount.get());
+		return metrics;
+	}
+
+	public PersistenceFacade getPersistenceFacade() {
+		return persistenceFacade;
+	}
+
+	/**
+	 * Termina i thread dedicati alla persistenza dopo aver eseguito le richieste
+	 * già accettate. Il facade controller sincrono non viene chiuso.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,140 @@
+package cinema.model.persistence;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Assegna identificativi univoci riservandoli a blocchi dal meccanismo di
+ * persistenza dei dati (strategia hi/lo).
+ *
+ * <p>
+ * Ogni blocco è un intervallo di identificativi consecutivi che il meccanismo
+ * di persistenza non assegnerà più a nessun altro, nemmeno ad altri processi
+ * che condividono lo stesso database o dopo un riavvio dell'applicazione. Gli
+ * identificativi del blocco corrente vengono distribuiti in memoria senza
+ * sincronizzazione; solamente l'esaurimento del blocco richiede di accedere al
+ * meccanismo di persistenza. Gli identificativi non utilizzati di un blocco
+ * vengono persi alla chiusura dell'applicazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class HiLoIdAllocator {
+
+	/**
+	 * Sorgente dei blocchi di identificativi.
+	 */
+	interface BlockSource {
+
+		/**
+		 * Riserva un blocco di identificativi consecutivi.
+		 *
+		 * @param blockSize numero di identificativi da riservare.
+		 * @return il primo identificativo del blocco riservato.
+		 * @throws SQLException se occorrono errori nell'interazione con il
+		 *                      meccanismo di persistenza.
+		 */
+		long reserve(int blockSize) throws SQLException;
+
+	}
+
+	/**
+	 * Intervallo di identificativi [{@code next}, {@code end}) riservato
+	 * dall'allocatore.
+	 */
+	private static final class Block {
+
+		/**
+		 * Prossimo identificativo da assegnare.
+		 */
+		private final AtomicLong next;
+
+		/**
+		 * Primo identificativo non appartenente al blocco.
+		 */
+		private final long end;
+
+		private Block(long first, long end) {
+			this.next = new AtomicLong(first);
+			this.end = end;
+		}
+
+	}
+
+	/**
+	 * Sorgente da cui vengono riservati i blocchi.
+	 */
+	private final BlockSource source;
+
+	/**
+	 * Numero di identificativi riservati per ogni blocco.
+	 */
+	private final int blockSize;
+
+	/**
+	 * Blocco da cui vengono attualmente assegnati gli identificativi.
+	 */
+	private final AtomicReference<Block> current;
+
+	/**
+	 * Numero di identificativi assegnati.
+	 */
+	private final AtomicLong allocatedIds;
+
+	/**
+	 * Numero di blocchi riservati dal meccanismo di persistenza.
+	 */
+	private final AtomicLong reservedBlocks;
+
+	/**
+	 * Costruttore dell'allocatore.
+	 *
+	 * @param source    sorgente da cui riservare i blocchi di identificativi.
+	 * @param blockSize numero di identificativi riservati per ogni blocco.
+	 */
+	HiLoIdAllocator(BlockSource source, int blockSize) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("La dimensione dei blocchi deve essere positiva.");
+		this.source = source;
+		this.blockSize = blockSize;
+		this.current = new AtomicReference<Block>(new Block(0, 0));
+		this.allocatedIds = new AtomicLong();
+		this.reservedBlocks = new AtomicLong();
+	}
+
+	/**
+	 * Restituisce un nuovo identificativo, riservando un nuovo blocco se quello
+	 * corrente è esaurito.
+	 *
+	 * @return un identificativo mai assegnato in precedenza.
+	 * @throws SQLException se non è possibile riservare un nuovo blocco.
+	 */
+	long next() throws SQLException {
+		while (true) {
+			Block block = current.get();
+			long id = block.next.getAndIncrement();
+			if (id < block.end) {
+				allocatedIds.incrementAndGet();
+				return id;
+			}
+			synchronized (this) {
+				// Un altro thread potrebbe aver già sostituito il blocco esaurito
+				if (current.get() == block) {
+					long first = source.reserve(blockSize);
+					current.set(new Block(first, first + blockSize));
+					reservedBlocks.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	long getAllocatedIds() {
+		return allocatedIds.get();
+	}
+
+	long getReservedBlocks() {
+		return reservedBlocks.get();
+	}
+
+}
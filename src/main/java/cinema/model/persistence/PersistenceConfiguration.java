@@ -0,0 +1,480 @@
+package cinema.model.persistence;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import cinema.model.persistence.pool.PersistenceProfile;
+import cinema.model.persistence.util.PersistenceException;
+
+/**
+ * Configurazione del meccanismo di persistenza dei dati: URI del database,
+ * profilo delle connessioni, dimensioni del pool, cartella delle migrazioni,
+ * registro delle query lente, giornale degli acquisti, tipo di meccanismo di
+ * persistenza e istantanea del catalogo.
+ *
+ * <p>
+ * La configurazione viene normalmente letta da un file di proprietà (si veda
+ * {@code load(path)}) con le seguenti chiavi, tutte facoltative:
+ * <ul>
+ * <li>{@code url}: URI del database;</li>
+ * <li>{@code profile}: nome del profilo delle connessioni ({@code durable},
+ * {@code balanced} o {@code throughput});</li>
+ * <li>{@code pool.minSize}, {@code pool.maxSize} e
+ * {@code pool.borrowTimeout}: dimensionamento del pool di connessioni;</li>
+ * <li>{@code migrations}: cartella contenente le migrazioni dello schema;</li>
+ * <li>{@code metrics.slowQueryMillis}: durata minima in millisecondi di una
+ * chiamata da riportare nel registro delle query lente;</li>
+ * <li>{@code metrics.slowQueryLog}: file a cui aggiungere le voci del registro
+ * delle query lente e fallite (se assente il registro è mantenuto solamente in
+ * memoria);</li>
+ * <li>{@code journal.enabled}: se {@code true} gli acquisti vengono resi
+ * persistenti a gruppi dal giornale degli acquisti (predefinito
+ * {@code false});</li>
+ * <li>{@code journal.maxBatch} e {@code journal.maxDelayMillis}: numero massimo
+ * di acquisti per transazione e attesa massima in millisecondi per completare
+ * un gruppo;</li>
+ * <li>{@code backend}: {@code rdb} per il database relazionale (predefinito)
+ * o {@code memory} per mantenere tutti i dati in memoria, senza accessi al
+ * disco e senza conservarli alla chiusura;</li>
+ * <li>{@code memory.seed}: script SQL da cui vengono letti i dati iniziali del
+ * meccanismo di persistenza in memoria (predefinito
+ * {@code persistence/dbSchema.sql});</li>
+ * <li>{@code snapshot.path}: file in cui salvare l'istantanea del catalogo da
+ * cui ricostruirlo all'avvio (se assente l'istantanea non viene usata; viene
+ * ignorata se i dati sono mantenuti in memoria).</li>
+ * </ul>
+ *
+ * <p>
+ * Una configurazione può essere creata anche tramite un costruttore ottenuto da
+ * {@code rdb(url)} o da {@code memory(seed)}, su cui impostare solamente i
+ * valori diversi da quelli predefiniti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PersistenceConfiguration {
+
+	/**
+	 * Percorso predefinito del file di configurazione.
+	 */
+	public static final String DEFAULT_PATH = "persistence/persistence.properties";
+
+	/**
+	 * URI predefinito del database.
+	 */
+	public static final String DEFAULT_URL = "jdbc:sqlite:persistence/cinemaDb.db";
+
+	/**
+	 * Profilo predefinito delle connessioni.
+	 */
+	public static final PersistenceProfile DEFAULT_PROFILE = PersistenceProfile.DURABLE;
+
+	/**
+	 * Script predefinito da cui leggere i dati iniziali del meccanismo di
+	 * persistenza in memoria.
+	 */
+	public static final String DEFAULT_MEMORY_SEED = "persistence/dbSchema.sql";
+
+	/**
+	 * Meccanismo di persistenza dei dati.
+	 */
+	public enum Backend {
+
+		/**
+		 * Database relazionale identificato dall'URI della configurazione.
+		 */
+		RDB,
+
+		/**
+		 * Dati mantenuti in memoria, letti all'avvio da uno script SQL e non
+		 * conservati alla chiusura.
+		 */
+		MEMORY
+
+	}
+
+	/**
+	 * Meccanismo di persistenza dei dati.
+	 */
+	private final Backend backend;
+
+	/**
+	 * URI del database relazionale.
+	 */
+	private final String url;
+
+	/**
+	 * Profilo applicato alle connessioni.
+	 */
+	private final PersistenceProfile profile;
+
+	/**
+	 * Numero di connessioni aperte all'avvio.
+	 */
+	private final int minPoolSize;
+
+	/**
+	 * Numero massimo di connessioni aperte contemporaneamente.
+	 */
+	private final int maxPoolSize;
+
+	/**
+	 * Millisecondi di attesa massimi per ottenere una connessione.
+	 */
+	private final long borrowTimeout;
+
+	/**
+	 * Cartella contenente le migrazioni dello schema.
+	 */
+	private final String migrationsPath;
+
+	/**
+	 * Durata minima in millisecondi di una chiamata lenta.
+	 */
+	private final long slowQueryThreshold;
+
+	/**
+	 * File del registro delle query lente e fallite, o null.
+	 */
+	private final String slowQueryLog;
+
+	/**
+	 * Indica se gli acquisti vengono resi persistenti dal giornale degli acquisti.
+	 */
+	private final boolean journalEnabled;
+
+	/**
+	 * Numero massimo di acquisti resi persistenti in un'unica transazione dal
+	 * giornale degli acquisti.
+	 */
+	private final int journalMaxBatch;
+
+	/**
+	 * Millisecondi di attesa massimi per completare un gruppo di acquisti.
+	 */
+	private final long journalMaxDelay;
+
+	/**
+	 * Script SQL con i dati iniziali del meccanismo di persistenza in memoria.
+	 */
+	private final String memorySeed;
+
+	/**
+	 * File dell'istantanea del catalogo, o null.
+	 */
+	private final String snapshotPath;
+
+	/**
+	 * Costruttore della configurazione, con i valori impostati in
+	 * {@code builder}.
+	 *
+	 * @param builder costruttore della configurazione.
+	 */
+	private PersistenceConfiguration(Builder builder) {
+		this.backend = builder.backend;
+		this.url = builder.url;
+		this.profile = builder.profile;
+		this.minPoolSize = builder.minPoolSize;
+		this.maxPoolSize = builder.maxPoolSize;
+		this.borrowTimeout = builder.borrowTimeout;
+		this.migrationsPath = builder.migrationsPath;
+		this.slowQueryThreshold = builder.slowQueryThreshold;
+		this.slowQueryLog = builder.slowQueryLog;
+		this.journalEnabled = builder.journalEnabled;
+		this.journalMaxBatch = builder.journalMaxBatch;
+		this.journalMaxDelay = builder.journalMaxDelay;
+		this.memorySeed = builder.memorySeed;
+		this.snapshotPath = builder.snapshotPath;
+	}
+
+	/**
+	 * Restituisce il costruttore di una configurazione con il database
+	 * relazionale identificato da {@code url}. I valori non impostati assumono
+	 * quelli predefiniti e il giornale degli acquisti non viene usato.
+	 *
+	 * @param url URI del database.
+	 * @return il costruttore della configurazione.
+	 */
+	public static Builder rdb(String url) {
+		Builder builder = new Builder(Backend.RDB);
+		builder.url = url;
+		return builder;
+	}
+
+	/**
+	 * Restituisce il costruttore di una configurazione che mantiene i dati in
+	 * memoria, letti all'avvio dallo script SQL {@code seed}. I valori non
+	 * impostati assumono quelli predefiniti e il giornale degli acquisti non
+	 * viene usato.
+	 *
+	 * @param seed script SQL con i dati iniziali.
+	 * @return il costruttore della configurazione.
+	 */
+	public static Builder memory(String seed) {
+		Builder builder = new Builder(Backend.MEMORY);
+		builder.memorySeed = seed;
+		return builder;
+	}
+
+	/**
+	 * Costruttore di una configurazione del meccanismo di persistenza dei dati,
+	 * ottenuto da {@code rdb(url)} o da {@code memory(seed)}.
+	 */
+	public static final class Builder {
+
+		private final Backend backend;
+
+		private String url;
+
+		private PersistenceProfile profile;
+
+		private int minPoolSize;
+
+		private int maxPoolSize;
+
+		private long borrowTimeout;
+
+		private String migrationsPath;
+
+		private long slowQueryThreshold;
+
+		private String slowQueryLog;
+
+		private boolean journalEnabled;
+
+		private int journalMaxBatch;
+
+		private long journalMaxDelay;
+
+		private String memorySeed;
+
+		private String snapshotPath;
+
+		private Builder(Backend backend) {
+			this.backend = backend;
+			this.url = DEFAULT_URL;
+			this.profile = DEFAULT_PROFILE;
+			this.minPoolSize = PersistenceFacade.DEFAULT_MIN_POOL_SIZE;
+			this.maxPoolSize = PersistenceFacade.DEFAULT_MAX_POOL_SIZE;
+			this.borrowTimeout = PersistenceFacade.DEFAULT_BORROW_TIMEOUT;
+			this.migrationsPath = PersistenceFacade.DEFAULT_MIGRATIONS_PATH;
+			this.slowQueryThreshold = PersistenceFacade.DEFAULT_SLOW_QUERY_THRESHOLD;
+			this.journalMaxBatch = PersistenceFacade.DEFAULT_JOURNAL_MAX_BATCH;
+			this.journalMaxDelay = PersistenceFacade.DEFAULT_JOURNAL_MAX_DELAY;
+			this.memorySeed = DEFAULT_MEMORY_SEED;
+		}
+
+		/**
+		 * Imposta il profilo da applicare alle connessioni.
+		 *
+		 * @param profile profilo delle connessioni.
+		 * @return questo costruttore.
+		 */
+		public Builder profile(PersistenceProfile profile) {
+			this.profile = profile;
+			return this;
+		}
+
+		/**
+		 * Imposta le dimensioni del pool di connessioni.
+		 *
+		 * @param minPoolSize   numero di connessioni aperte all'avvio.
+		 * @param maxPoolSize   numero massimo di connessioni aperte
+		 *                      contemporaneamente.
+		 * @param borrowTimeout millisecondi di attesa massimi per ottenere una
+		 *                      connessione.
+		 * @return questo costruttore.
+		 */
+		public Builder pool(int minPoolSize, int maxPoolSize, long borrowTimeout) {
+			this.minPoolSize = minPoolSize;
+			this.maxPoolSize = maxPoolSize;
+			this.borrowTimeout = borrowTimeout;
+			return this;
+		}
+
+		/**
+		 * Imposta la cartella contenente le migrazioni dello schema.
+		 *
+		 * @param migrationsPath cartella delle migrazioni.
+		 * @return questo costruttore.
+		 */
+		public Builder migrations(String migrationsPath) {
+			this.migrationsPath = migrationsPath;
+			return this;
+		}
+
+		/**
+		 * Imposta il registro delle query lente e fallite.
+		 *
+		 * @param slowQueryThreshold durata minima in millisecondi di una chiamata
+		 *                           lenta.
+		 * @param slowQueryLog       file del registro, o null per mantenerlo
+		 *                           solamente in memoria.
+		 * @return questo costruttore.
+		 */
+		public Builder slowQueries(long slowQueryThreshold, String slowQueryLog) {
+			this.slowQueryThreshold = slowQueryThreshold;
+			this.slowQueryLog = slowQueryLog;
+			return this;
+		}
+
+		/**
+		 * Fa rendere persistenti gli acquisti a gruppi dal giornale degli acquisti.
+		 *
+		 * @param maxBatch numero massimo di acquisti per transazione.
+		 * @param maxDelay millisecondi di attesa massimi per completare un gruppo
+		 *                 di acquisti.
+		 * @return questo costruttore.
+		 * @throws IllegalArgumentException se il numero massimo di acquisti non è
+		 *                                  positivo.
+		 */
+		public Builder journal(int maxBatch, long maxDelay) {
+			if (maxBatch < 1)
+				throw new IllegalArgumentException("journal.maxBatch deve essere positivo");
+			this.journalEnabled = true;
+			this.journalMaxBatch = maxBatch;
+			this.journalMaxDelay = maxDelay;
+			return this;
+		}
+
+		/**
+		 * Imposta il file dell'istantanea del catalogo, ignorato se i dati sono
+		 * mantenuti in memoria.
+		 *
+		 * @param snapshotPath file dell'istantanea, o null per non usarla.
+		 * @return questo costruttore.
+		 */
+		public Builder snapshot(String snapshotPath) {
+			this.snapshotPath = snapshotPath;
+			return this;
+		}
+
+		/**
+		 * Crea la configurazione.
+		 *
+		 * @return la configurazione.
+		 */
+		public PersistenceConfiguration build() {
+			return new PersistenceConfiguration(this);
+		}
+
+	}
+
+	/**
+	 * Legge la configurazione dal file di proprietà {@code path}. Le chiavi
+	 * assenti (o l'intero file, se non esiste) assumono i valori predefiniti.
+	 *
+	 * @param path percorso del file di configurazione.
+	 * @return la configurazione letta.
+	 * @throws PersistenceException se il file non può essere letto o contiene
+	 *                              valori non validi.
+	 */
+	public static PersistenceConfiguration load(String path) throws PersistenceException {
+		Properties properties = new Properties();
+		Path file = Paths.get(path);
+		if (Files.exists(file)) {
+			try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				properties.load(reader);
+			} catch (IOException e) {
+				throw new PersistenceException("Impossibile leggere la configurazione " + path + ".");
+			}
+		}
+		try {
+			String backend = properties.getProperty("backend", "rdb").trim().toLowerCase();
+			Builder builder;
+			if (backend.equals("rdb"))
+				builder = rdb(properties.getProperty("url", DEFAULT_URL));
+			else if (backend.equals("memory"))
+				builder = memory(properties.getProperty("memory.seed", DEFAULT_MEMORY_SEED).trim());
+			else
+				throw new IllegalArgumentException("backend sconosciuto: " + backend);
+			builder.profile(PersistenceProfile.fromName(properties.getProperty("profile", DEFAULT_PROFILE.name())))
+					.pool(Integer.parseInt(properties.getProperty("pool.minSize",
+							String.valueOf(PersistenceFacade.DEFAULT_MIN_POOL_SIZE)).trim()),
+							Integer.parseInt(properties.getProperty("pool.maxSize",
+									String.valueOf(PersistenceFacade.DEFAULT_MAX_POOL_SIZE)).trim()),
+							Long.parseLong(properties.getProperty("pool.borrowTimeout",
+									String.valueOf(PersistenceFacade.DEFAULT_BORROW_TIMEOUT)).trim()))
+					.migrations(properties.getProperty("migrations", PersistenceFacade.DEFAULT_MIGRATIONS_PATH))
+					.slowQueries(Long.parseLong(properties.getProperty("metrics.slowQueryMillis",
+							String.valueOf(PersistenceFacade.DEFAULT_SLOW_QUERY_THRESHOLD)).trim()),
+							properties.getProperty("metrics.slowQueryLog"))
+					.snapshot(properties.getProperty("snapshot.path"));
+			if (Boolean.parseBoolean(properties.getProperty("journal.enabled", "false").trim()))
+				builder.journal(
+						Integer.parseInt(properties.getProperty("journal.maxBatch",
+								String.valueOf(PersistenceFacade.DEFAULT_JOURNAL_MAX_BATCH)).trim()),
+						Long.parseLong(properties.getProperty("journal.maxDelayMillis",
+								String.valueOf(PersistenceFacade.DEFAULT_JOURNAL_MAX_DELAY)).trim()));
+			return builder.build();
+		} catch (IllegalArgumentException e) {
+			throw new PersistenceException("La configurazione " + path + " non è valida: " + e.getMessage());
+		}
+	}
+
+	public Backend getBackend() {
+		return backend;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public PersistenceProfile getProfile() {
+		return profile;
+	}
+
+	public int getMinPoolSize() {
+		return minPoolSize;
+	}
+
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	public String getMigrationsPath() {
+		return migrationsPath;
+	}
+
+	public long getSlowQueryThreshold() {
+		return slowQueryThreshold;
+	}
+
+	public String getSlowQueryLog() {
+		return slowQueryLog;
+	}
+
+	public boolean isJournalEnabled() {
+		return journalEnabled;
+	}
+
+	public int getJournalMaxBatch() {
+		return journalMaxBatch;
+	}
+
+	public long getJournalMaxDelay() {
+		return journalMaxDelay;
+	}
+
+	public boolean isInMemory() {
+		return backend == Backend.MEMORY;
+	}
+
+	public String getMemorySeed() {
+		return memorySeed;
+	}
+
+	public String getSnapshotPath() {
+		return snapshotPath;
+	}
+
+}
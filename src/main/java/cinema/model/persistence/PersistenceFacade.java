@@ -1,14 +1,31 @@
 package cinema.model.persistence;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
+import cinema.model.cinema.RoomLayout;
+import cinema.model.cinema.SeatId;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.cache.IdentityMap;
+import cinema.model.persistence.cache.NameDictionary;
+import cinema.model.persistence.codec.SeatBitmapCodec;
+import cinema.model.persistence.dao.interfaces.ICatalogDao;
 import cinema.model.persistence.dao.interfaces.ICinemaDao;
 import cinema.model.persistence.dao.interfaces.ICouponDao;
 import cinema.model.persistence.dao.interfaces.IDiscountDao;
@@ -17,6 +34,17 @@ import cinema.model.persistence.dao.interfaces.IOccupiedSeatDao;
 import cinema.model.persistence.dao.interfaces.IProjectionDao;
 import cinema.model.persistence.dao.interfaces.IReservationDao;
 import cinema.model.persistence.dao.interfaces.IRoomDao;
+import cinema.model.persistence.dao.memoryClasses.CatalogMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.CinemaMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.CouponMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.DiscountMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase;
+import cinema.model.persistence.dao.memoryClasses.MovieMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.OccupiedSeatMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.ProjectionMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.ReservationMemoryDao;
+import cinema.model.persistence.dao.memoryClasses.RoomMemoryDao;
+import cinema.model.persistence.dao.rdbClasses.CatalogRdbDao;
 import cinema.model.persistence.dao.rdbClasses.CinemaRdbDao;
 import cinema.model.persistence.dao.rdbClasses.CouponRdbDao;
 import cinema.model.persistence.dao.rdbClasses.DiscountRdbDao;
@@ -25,6 +53,14 @@ import cinema.model.persistence.dao.rdbClasses.OccupiedSeatRdbDao;
 import cinema.model.persistence.dao.rdbClasses.ProjectionRdbDao;
 import cinema.model.persistence.dao.rdbClasses.ReservationRdbDao;
 import cinema.model.persistence.dao.rdbClasses.RoomRdbDao;
+import cinema.model.persistence.metrics.DaoMetrics;
+import cinema.model.persistence.metrics.InstrumentedDao;
+import cinema.model.persistence.migration.MigrationRunner;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.ISession;
+import cinema.model.persistence.pool.PooledConnection;
+import cinema.model.persistence.snapshot.CatalogSnapshot;
+import cinema.model.persistence.snapshot.CatalogVersion;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
 import cinema.model.reservation.Reservation;
@@ -33,6 +69,7 @@ import cinema.model.reservation.discount.coupon.util.CouponException;
 import cinema.model.reservation.discount.types.DiscountAge;
 import cinema.model.reservation.discount.types.DiscountDay;
 import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Contiene i metodi necessari per interfacciare l'applicazione con un
@@ -42,15 +79,116 @@ import cinema.model.reservation.discount.types.DiscountNumberSpectators;
  * La classe implementa tutti i metodi per implementare la persistenza dei dati
  * interfacciando l'applicazione col meccanismo di persistenza dei dati.
  * 
+ * <p>
+ * Le letture e le scritture usano connessioni distinte: i metodi che leggono i
+ * dati ({@code get*} e {@code stream*}) prendono in prestito una connessione di
+ * sola lettura da un pool, mentre i metodi che li modificano ({@code put*},
+ * {@code set*}, {@code delete*}, {@code remove*} e le unità di lavoro) usano
+ * un'unica connessione di scrittura, per la quale i thread attendono in ordine
+ * di arrivo. Con il journal WAL le letture non vengono quindi rallentate dalle
+ * scritture in corso e le scritture non si contendono il lock del database.
+ * Fa eccezione {@code setOccupiedSeats(projection)}, che aggiorna solamente la
+ * proiezione locale e viene quindi eseguito come una lettura.
+ * 
+ * <p>
+ * In alternativa al database relazionale, i dati possono essere mantenuti
+ * solamente in memoria ({@code InMemoryDatabase}), scegliendolo alla creazione
+ * del facade controller. In questo caso non vengono usate connessioni né pool:
+ * le scritture vengono serializzate dal lock del database in memoria e le
+ * letture non attendono le scritture in corso.
+ * 
+ * <p>
+ * Con il database relazionale può essere configurata un'istantanea del
+ * catalogo ({@code CatalogSnapshot}): se all'avvio la sua versione coincide con
+ * quella del database, i film, le sale e le proiezioni vengono restituiti
+ * dall'istantanea senza interrogare il database fino alla prima scrittura. Il
+ * file dell'istantanea viene riscritto dopo ogni modifica alle proiezioni e
+ * alla chiusura del facade controller.
+ * 
  * @author Screaming Hairy Armadillo Team
  *
  */
 public class PersistenceFacade {
 
 	/**
-	 * Connessione al meccanismo di persistenza dei dati.
+	 * Numero di connessioni aperte all'avvio dal pool predefinito.
+	 */
+	public static final int DEFAULT_MIN_POOL_SIZE = 2;
+
+	/**
+	 * Numero massimo di connessioni aperte contemporaneamente dal pool
+	 * predefinito.
+	 */
+	public static final int DEFAULT_MAX_POOL_SIZE = 10;
+
+	/**
+	 * Millisecondi di attesa massimi per ottenere una connessione dal pool
+	 * predefinito.
 	 */
-	Connection connection;
+	public static final long DEFAULT_BORROW_TIMEOUT = 5000;
+
+	/**
+	 * Cartella predefinita contenente le migrazioni dello schema del database.
+	 */
+	public static final String DEFAULT_MIGRATIONS_PATH = "persistence/migrations";
+
+	/**
+	 * Numero predefinito di righe lette per volta dagli stream restituiti dal
+	 * facade controller.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 256;
+
+	/**
+	 * Numero di identificativi delle prenotazioni riservati ad ogni accesso alla
+	 * sequenza delle prenotazioni.
+	 */
+	public static final int RESERVATION_ID_BLOCK_SIZE = 32;
+
+	/**
+	 * Durata minima predefinita in millisecondi di una chiamata da riportare
+	 * nel registro delle query lente.
+	 */
+	public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 100;
+
+	/**
+	 * Numero massimo predefinito di acquisti resi persistenti in un'unica
+	 * transazione dal giornale degli acquisti.
+	 */
+	public static final int DEFAULT_JOURNAL_MAX_BATCH = 64;
+
+	/**
+	 * Millisecondi di attesa massimi predefiniti per completare un gruppo di
+	 * acquisti del giornale.
+	 */
+	public static final long DEFAULT_JOURNAL_MAX_DELAY = 2;
+
+	/**
+	 * Millisecondi di attesa massimi per la conferma di un acquisto accodato nel
+	 * giornale degli acquisti (ampiamente superiori all'attesa della connessione
+	 * di scrittura).
+	 */
+	public static final long PURCHASE_TIMEOUT = 30_000;
+
+	/**
+	 * Pool di connessioni di sola lettura al meccanismo di persistenza dei dati
+	 * condiviso da tutte le interfacce verso la persistenza, o null se i dati
+	 * sono mantenuti in memoria.
+	 */
+	ConnectionPool readPool;
+
+	/**
+	 * Pool contenente l'unica connessione di scrittura al meccanismo di
+	 * persistenza dei dati. Mentre un thread la possiede, le interfacce verso la
+	 * persistenza la usano anche per le letture. Vale null se i dati sono
+	 * mantenuti in memoria.
+	 */
+	ConnectionPool writerPool;
+
+	/**
+	 * Database in memoria che mantiene i dati, o null se viene usato il database
+	 * relazionale.
+	 */
+	private final InMemoryDatabase memoryDatabase;
 
 	/**
 	 * Interfaccia con la persistenza dei dati del film.
@@ -92,23 +230,250 @@ public class PersistenceFacade {
 	 */
 	ICinemaDao iCinemaDao;
 
+	/**
+	 * Interfaccia con la versione del catalogo.
+	 */
+	ICatalogDao iCatalogDao;
+
+	/**
+	 * Film già recuperati dal meccanismo di persistenza, condivisi da tutte le
+	 * proiezioni che li riguardano.
+	 */
+	private final IdentityMap<Integer, Movie> movies = new IdentityMap<Integer, Movie>();
+
+	/**
+	 * Sale già recuperate dal meccanismo di persistenza, condivise da tutte le
+	 * proiezioni che vi si svolgono.
+	 */
+	private final IdentityMap<Integer, Room> rooms = new IdentityMap<Integer, Room>();
+
+	/**
+	 * Dizionario dei generi, dei registi e degli attori dei film, condiviso tra i
+	 * film caricati.
+	 */
+	private final NameDictionary names = new NameDictionary();
+
+	/**
+	 * Statistiche delle chiamate alle interfacce verso la persistenza e registro
+	 * delle query lente e fallite.
+	 */
+	private final DaoMetrics daoMetrics;
+
+	/**
+	 * Esecutore delle migrazioni dello schema del database, applicate alla
+	 * creazione del facade controller, o null se i dati sono mantenuti in
+	 * memoria.
+	 */
+	private final MigrationRunner migrationRunner;
+
+	/**
+	 * Allocatore degli identificativi delle nuove prenotazioni.
+	 */
+	private final HiLoIdAllocator reservationIdAllocator;
+
+	/**
+	 * Giornale che rende persistenti gli acquisti a gruppi, o null se ogni
+	 * acquisto viene reso persistente in una propria transazione.
+	 */
+	private final ReservationJournal reservationJournal;
+
+	/**
+	 * Numero di unità di lavoro confermate.
+	 */
+	private final AtomicLong committedUnitsOfWork = new AtomicLong();
+
+	/**
+	 * Numero di unità di lavoro annullate.
+	 */
+	private final AtomicLong rolledBackUnitsOfWork = new AtomicLong();
+
+	/**
+	 * Numero di transazioni confermate all'interno delle unità di lavoro
+	 * confermate.
+	 */
+	private final AtomicLong unitOfWorkCommits = new AtomicLong();
+
+	/**
+	 * File dell'istantanea del catalogo, o null se l'istantanea non viene usata.
+	 */
+	private final Path snapshotPath;
+
+	/**
+	 * Istantanea del catalogo da cui vengono restituiti film, sale e proiezioni,
+	 * o null se è stata scartata (o non è stata caricata all'avvio). Viene
+	 * scartata dalle modifiche al catalogo, mentre i posti venduti vi vengono
+	 * occupati dopo la conferma della transazione.
+	 */
+	private volatile CatalogSnapshot catalogSnapshot;
+
+	/**
+	 * Indica se all'avvio è stata caricata un'istantanea aggiornata.
+	 */
+	private final boolean snapshotLoaded;
+
+	/**
+	 * Numero di richieste soddisfatte dall'istantanea del catalogo.
+	 */
+	private final AtomicLong snapshotHits = new AtomicLong();
+
+	/**
+	 * Numero di istantanee del catalogo scritte.
+	 */
+	private final AtomicLong snapshotWrites = new AtomicLong();
+
+	/**
+	 * Numero di prenotazioni i cui posti sono stati occupati nell'istantanea del
+	 * catalogo in uso.
+	 */
+	private final AtomicLong snapshotPatches = new AtomicLong();
+
 	/**
 	 * Costruttore del facade controller che gestisce la persistenza dei dati.
 	 * 
+	 * <p>
+	 * Viene utilizzato un pool di connessioni con le dimensioni predefinite.
+	 * 
 	 * @param url URI del meccanismo di persistenza dei dati.
 	 * @throws SQLException se occorrono degli errori nella connessione al
 	 *                      meccanismo di persistenza dei dati.
 	 */
 	public PersistenceFacade(String url) throws SQLException {
-		connection = DriverManager.getConnection(url);
-		iMovieDao = new MovieRdbDao(connection);
-		iRoomDao = new RoomRdbDao(connection);
-		iProjectionDao = new ProjectionRdbDao(connection);
-		iCouponDao = new CouponRdbDao(connection);
-		iDiscountDao = new DiscountRdbDao(connection);
-		iOccupiedSeatDao = new OccupiedSeatRdbDao(connection);
-		iReservationDao = new ReservationRdbDao(connection);
-		iCinemaDao = new CinemaRdbDao(connection);
+		this(url, DEFAULT_MIN_POOL_SIZE, DEFAULT_MAX_POOL_SIZE, DEFAULT_BORROW_TIMEOUT);
+	}
+
+	/**
+	 * Costruttore del facade controller che gestisce la persistenza dei dati
+	 * tramite un pool di connessioni di dimensioni specificate.
+	 * 
+	 * @param url           URI del meccanismo di persistenza dei dati.
+	 * @param minPoolSize   numero di connessioni aperte all'avvio.
+	 * @param maxPoolSize   numero massimo di connessioni aperte
+	 *                      contemporaneamente.
+	 * @param borrowTimeout millisecondi di attesa massimi per ottenere una
+	 *                      connessione.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      meccanismo di persistenza dei dati.
+	 */
+	public PersistenceFacade(String url, int minPoolSize, int maxPoolSize, long borrowTimeout) throws SQLException {
+		this(url, minPoolSize, maxPoolSize, borrowTimeout, DEFAULT_MIGRATIONS_PATH);
+	}
+
+	/**
+	 * Costruttore del facade controller che gestisce la persistenza dei dati
+	 * tramite un pool di connessioni di dimensioni specificate, a cui viene
+	 * applicato il profilo {@code PersistenceConfiguration.DEFAULT_PROFILE}.
+	 * 
+	 * @param url            URI del meccanismo di persistenza dei dati.
+	 * @param minPoolSize    numero di connessioni aperte all'avvio.
+	 * @param maxPoolSize    numero massimo di connessioni aperte
+	 *                       contemporaneamente.
+	 * @param borrowTimeout  millisecondi di attesa massimi per ottenere una
+	 *                       connessione.
+	 * @param migrationsPath cartella contenente le migrazioni dello schema.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      meccanismo di persistenza dei dati o
+	 *                      nell'applicazione delle migrazioni.
+	 */
+	public PersistenceFacade(String url, int minPoolSize, int maxPoolSize, long borrowTimeout, String migrationsPath)
+			throws SQLException {
+		this(PersistenceConfiguration.rdb(url).pool(minPoolSize, maxPoolSize, borrowTimeout).migrations(migrationsPath)
+				.build());
+	}
+
+	/**
+	 * Costruttore del facade controller che gestisce la persistenza dei dati
+	 * secondo la configurazione {@code configuration}.
+	 * 
+	 * <p>
+	 * Prima di rendere disponibile il meccanismo di persistenza vengono applicate
+	 * le migrazioni dello schema non ancora applicate al database. Le dimensioni
+	 * del pool indicate nella configurazione riguardano le connessioni di
+	 * lettura, a cui si aggiunge la connessione di scrittura. Se la
+	 * configurazione prevede di mantenere i dati in memoria, il database in
+	 * memoria viene invece popolato con lo script indicato e non viene aperta
+	 * alcuna connessione.
+	 * 
+	 * @param configuration configurazione del meccanismo di persistenza.
+	 * @throws SQLException se occorrono degli errori nella connessione al
+	 *                      meccanismo di persistenza dei dati,
+	 *                      nell'applicazione delle migrazioni o nella lettura
+	 *                      dello script dei dati iniziali.
+	 */
+	public PersistenceFacade(PersistenceConfiguration configuration) throws SQLException {
+		memoryDatabase = configuration.isInMemory() ? InMemoryDatabase.load(Paths.get(configuration.getMemorySeed()))
+				: null;
+		daoMetrics = new DaoMetrics(configuration.getSlowQueryThreshold(),
+				configuration.getSlowQueryLog() == null ? null : Paths.get(configuration.getSlowQueryLog()));
+		if (memoryDatabase != null) {
+			migrationRunner = null;
+			iMovieDao = InstrumentedDao.wrap(IMovieDao.class, new MovieMemoryDao(memoryDatabase), daoMetrics);
+			iRoomDao = InstrumentedDao.wrap(IRoomDao.class, new RoomMemoryDao(memoryDatabase), daoMetrics);
+			iProjectionDao = InstrumentedDao.wrap(IProjectionDao.class, new ProjectionMemoryDao(memoryDatabase),
+					daoMetrics);
+			iCouponDao = InstrumentedDao.wrap(ICouponDao.class, new CouponMemoryDao(memoryDatabase), daoMetrics);
+			iDiscountDao = InstrumentedDao.wrap(IDiscountDao.class, new DiscountMemoryDao(memoryDatabase),
+					daoMetrics);
+			iOccupiedSeatDao = InstrumentedDao.wrap(IOccupiedSeatDao.class,
+					new OccupiedSeatMemoryDao(memoryDatabase), daoMetrics);
+			iReservationDao = InstrumentedDao.wrap(IReservationDao.class, new ReservationMemoryDao(memoryDatabase),
+					daoMetrics);
+			iCinemaDao = InstrumentedDao.wrap(ICinemaDao.class, new CinemaMemoryDao(memoryDatabase), daoMetrics);
+			iCatalogDao = InstrumentedDao.wrap(ICatalogDao.class, new CatalogMemoryDao(memoryDatabase), daoMetrics);
+		} else {
+			migrationRunner = new MigrationRunner(Paths.get(configuration.getMigrationsPath()));
+			writerPool = new ConnectionPool(configuration.getUrl(), configuration.getProfile(), 1, 1,
+					configuration.getBorrowTimeout());
+			try (PooledConnection connection = writerPool.borrow()) {
+				migrationRunner.migrate(connection.getConnection());
+			} catch (IOException e) {
+				writerPool.close();
+				throw new SQLException("Impossibile leggere le migrazioni del database: " + e.getMessage(), e);
+			} catch (SQLException e) {
+				writerPool.close();
+				throw e;
+			}
+			try {
+				readPool = new ConnectionPool(configuration.getUrl(), configuration.getProfile(),
+						configuration.getMinPoolSize(), configuration.getMaxPoolSize(),
+						configuration.getBorrowTimeout(), writerPool);
+			} catch (SQLException e) {
+				writerPool.close();
+				throw e;
+			}
+			MovieRdbDao movieDao = new MovieRdbDao(readPool, movies, names);
+			RoomRdbDao roomDao = new RoomRdbDao(readPool, rooms);
+			iMovieDao = InstrumentedDao.wrap(IMovieDao.class, movieDao, daoMetrics);
+			iRoomDao = InstrumentedDao.wrap(IRoomDao.class, roomDao, daoMetrics);
+			iProjectionDao = InstrumentedDao.wrap(IProjectionDao.class,
+					new ProjectionRdbDao(readPool, movieDao, roomDao), daoMetrics);
+			iCouponDao = InstrumentedDao.wrap(ICouponDao.class, new CouponRdbDao(readPool), daoMetrics);
+			iDiscountDao = InstrumentedDao.wrap(IDiscountDao.class, new DiscountRdbDao(readPool), daoMetrics);
+			iOccupiedSeatDao = InstrumentedDao.wrap(IOccupiedSeatDao.class, new OccupiedSeatRdbDao(readPool),
+					daoMetrics);
+			iReservationDao = InstrumentedDao.wrap(IReservationDao.class, new ReservationRdbDao(readPool),
+					daoMetrics);
+			iCinemaDao = InstrumentedDao.wrap(ICinemaDao.class, new CinemaRdbDao(readPool), daoMetrics);
+			iCatalogDao = InstrumentedDao.wrap(ICatalogDao.class, new CatalogRdbDao(readPool), daoMetrics);
+		}
+		snapshotPath = memoryDatabase == null && configuration.getSnapshotPath() != null
+				? Paths.get(configuration.getSnapshotPath())
+				: null;
+		if (snapshotPath != null && migrationRunner.getAppliedMigrations() > 0) {
+			// Dopo un ripristino del database con dbSchema.sql i contatori di
+			// CatalogVersion ripartono da zero, quindi un'istantanea precedente
+			// potrebbe risultare aggiornata pur non corrispondendo ai dati
+			deleteCatalogSnapshot();
+			catalogSnapshot = null;
+		} else {
+			catalogSnapshot = snapshotPath != null ? loadCatalogSnapshot() : null;
+		}
+		snapshotLoaded = catalogSnapshot != null;
+		reservationIdAllocator = new HiLoIdAllocator(blockSize -> {
+			return runWrite(() -> iReservationDao.reserveReservationIds(blockSize));
+		}, RESERVATION_ID_BLOCK_SIZE);
+		reservationJournal = configuration.isJournalEnabled()
+				? new ReservationJournal(this, configuration.getJournalMaxBatch(), configuration.getJournalMaxDelay())
+				: null;
 	}
 
 	/**
@@ -122,6 +487,11 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public Movie getMovie(int id) throws PersistenceException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getMovie(id);
+		}
 		try {
 			return iMovieDao.getMovie(id);
 		} catch (SQLException e) {
@@ -138,6 +508,11 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public ArrayList<Movie> getAllMovies() throws PersistenceException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getMovies();
+		}
 		try {
 			return iMovieDao.getAllMovies();
 		} catch (SQLException e) {
@@ -145,6 +520,46 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce i film di un genere mantenuti dal meccanismo di persistenza dei
+	 * dati.
+	 * 
+	 * @param genre nome del genere (ad esempio "Drammatico").
+	 * @return i film del genere, in ordine di identificativo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public ArrayList<Movie> getMoviesByGenre(String genre) throws PersistenceException {
+		try {
+			return iMovieDao.getMoviesByGenre(genre);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce tutti i film mantenuti dal meccanismo di persistenza dei
+	 * dati sotto forma di stream, letti man mano che vengono consumati.
+	 * 
+	 * <p>
+	 * Lo stream va utilizzato come quello restituito da
+	 * {@code streamAllProjections(fetchSize)}.
+	 * 
+	 * @param fetchSize numero di elementi da leggere dal meccanismo di
+	 *                  persistenza per volta (ad esempio
+	 *                  {@code DEFAULT_FETCH_SIZE}).
+	 * @return lo stream dei film, da chiudere al termine dell'utilizzo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public Stream<Movie> streamAllMovies(int fetchSize) throws PersistenceException {
+		try {
+			return iMovieDao.openAllMovies(fetchSize).stream();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Restituisce una sala dato il suo numero identificativo.
 	 * 
@@ -154,6 +569,11 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public Room getRoom(int id) throws PersistenceException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getRoom(id);
+		}
 		try {
 			return iRoomDao.getRoom(id);
 		} catch (RoomException | SQLException e) {
@@ -170,6 +590,11 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public ArrayList<Room> getAllRooms() throws PersistenceException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getRooms();
+		}
 		try {
 			return iRoomDao.getAllRooms();
 		} catch (RoomException | SQLException e) {
@@ -177,6 +602,29 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce tutte le sale mantenute dal meccanismo di persistenza dei
+	 * dati sotto forma di stream, lette man mano che vengono consumate.
+	 * 
+	 * <p>
+	 * Lo stream va utilizzato come quello restituito da
+	 * {@code streamAllProjections(fetchSize)}.
+	 * 
+	 * @param fetchSize numero di elementi da leggere dal meccanismo di
+	 *                  persistenza per volta (ad esempio
+	 *                  {@code DEFAULT_FETCH_SIZE}).
+	 * @return lo stream delle sale, da chiudere al termine dell'utilizzo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public Stream<Room> streamAllRooms(int fetchSize) throws PersistenceException {
+		try {
+			return iRoomDao.openAllRooms(fetchSize).stream();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Restituisce una proiezione dato il suo identificativo tra quelle mantenute
 	 * dal meccanismo di persistenza dei dati.
@@ -190,6 +638,11 @@ public class PersistenceFacade {
 	 *                              proiezione
 	 */
 	public Projection getProjection(int projectionId) throws PersistenceException, RoomException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getProjection(projectionId);
+		}
 		try {
 			return this.iProjectionDao.getProjection(projectionId);
 		} catch (SQLException e) {
@@ -225,6 +678,11 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public ArrayList<Projection> getAllProjections() throws PersistenceException {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot != null) {
+			snapshotHits.incrementAndGet();
+			return snapshot.getProjections();
+		}
 		try {
 			return this.iProjectionDao.getAllProjections();
 		} catch (SQLException e) {
@@ -232,6 +690,88 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce tutte le proiezioni mantenute dal meccanismo di persistenza dei
+	 * dati sotto forma di stream, lette man mano che vengono consumate.
+	 * 
+	 * <p>
+	 * Lo stream mantiene occupata una connessione al meccanismo di persistenza
+	 * fino alla sua chiusura, quindi va consumato in un blocco try-with-resources
+	 * dallo stesso thread che lo ha ottenuto. Gli errori durante la lettura
+	 * vengono segnalati con {@code UncheckedPersistenceException}.
+	 * 
+	 * @param fetchSize numero di elementi da leggere dal meccanismo di
+	 *                  persistenza per volta (ad esempio
+	 *                  {@code DEFAULT_FETCH_SIZE}).
+	 * @return lo stream delle proiezioni, da chiudere al termine dell'utilizzo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public Stream<Projection> streamAllProjections(int fetchSize) throws PersistenceException {
+		try {
+			return iProjectionDao.openAllProjections(fetchSize).stream();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce le proiezioni che si svolgono tra {@code from} (incluso) e
+	 * {@code to} (escluso), filtrandole direttamente nel meccanismo di
+	 * persistenza dei dati.
+	 * 
+	 * @param from inizio dell'intervallo temporale.
+	 * @param to   fine dell'intervallo temporale.
+	 * @return le proiezioni comprese nell'intervallo, in ordine cronologico.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public ArrayList<Projection> getProjectionsBetween(LocalDateTime from, LocalDateTime to)
+			throws PersistenceException {
+		try {
+			return this.iProjectionDao.getProjectionsBetween(from, to);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce le proiezioni del film identificato da {@code movieId} che si
+	 * svolgono dopo {@code now}, filtrandole direttamente nel meccanismo di
+	 * persistenza dei dati.
+	 * 
+	 * @param movieId identificativo del film.
+	 * @param now     istante dopo il quale devono svolgersi le proiezioni.
+	 * @return le proiezioni future del film, in ordine cronologico.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public ArrayList<Projection> getUpcomingProjectionsByMovie(int movieId, LocalDateTime now)
+			throws PersistenceException {
+		try {
+			return this.iProjectionDao.getUpcomingProjectionsByMovie(movieId, now);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Restituisce gli identificativi dei film che hanno almeno una proiezione
+	 * dopo {@code now}.
+	 * 
+	 * @param now istante dopo il quale devono svolgersi le proiezioni.
+	 * @return gli identificativi dei film in programmazione.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public ArrayList<Integer> getUpcomingMovieIds(LocalDateTime now) throws PersistenceException {
+		try {
+			return this.iProjectionDao.getUpcomingMovieIds(now);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Elimina una determinata proiezione sulla base del suo identificativo.
 	 * 
@@ -240,11 +780,16 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public void removeProjection(int projectionId) throws PersistenceException {
+		catalogSnapshot = null;
 		try {
-			this.iProjectionDao.removeProjection(projectionId);
+			runWrite(() -> {
+				this.iProjectionDao.removeProjection(projectionId);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
+		refreshCatalogSnapshot();
 	}
 
 	/**
@@ -255,11 +800,16 @@ public class PersistenceFacade {
 	 *                              dati fallisce.
 	 */
 	public void putProjection(Projection newProjection) throws PersistenceException {
+		catalogSnapshot = null;
 		try {
-			this.iProjectionDao.putProjection(newProjection);
+			runWrite(() -> {
+				this.iProjectionDao.putProjection(newProjection);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buonfine");
 		}
+		refreshCatalogSnapshot();
 	}
 
 	/**
@@ -277,6 +827,29 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce tutti i coupon mantenuti dal meccanismo di persistenza dei
+	 * dati sotto forma di stream, letti man mano che vengono consumati.
+	 * 
+	 * <p>
+	 * Lo stream va utilizzato come quello restituito da
+	 * {@code streamAllProjections(fetchSize)}.
+	 * 
+	 * @param fetchSize numero di elementi da leggere dal meccanismo di
+	 *                  persistenza per volta (ad esempio
+	 *                  {@code DEFAULT_FETCH_SIZE}).
+	 * @return lo stream dei coupon, da chiudere al termine dell'utilizzo.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public Stream<Coupon> streamAllCoupons(int fetchSize) throws PersistenceException {
+		try {
+			return iCouponDao.openAllCoupons(fetchSize).stream();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Restituisce un coupon sulla base del suo codice promozionale.
 	 * 
@@ -298,12 +871,14 @@ public class PersistenceFacade {
 	 * Rende persistente la proprietà di un coupon di essere stato utilizzato.
 	 * 
 	 * @param promocode codice promozionale del coupon che è stato usato.
+	 * @return true se il coupon è stato segnato come utilizzato, false se non
+	 *         esiste o era già stato utilizzato.
 	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
 	 *                              dati fallisce.
 	 */
-	public void setCouponUsed(String promocode) throws PersistenceException {
+	public boolean setCouponUsed(String promocode) throws PersistenceException {
 		try {
-			this.iCouponDao.setCouponUsed(promocode);
+			return runWrite(() -> this.iCouponDao.setCouponUsed(promocode));
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
@@ -416,6 +991,29 @@ public class PersistenceFacade {
 		}
 	}
 
+	/**
+	 * Restituisce un nuovo identificativo per una prenotazione.
+	 * 
+	 * <p>
+	 * Gli identificativi vengono riservati a blocchi dal meccanismo di persistenza
+	 * dei dati e poi assegnati in memoria, quindi la maggior parte delle chiamate
+	 * non accede al meccanismo di persistenza. Gli identificativi restituiti sono
+	 * univoci anche tra thread concorrenti, tra riavvii dell'applicazione e tra
+	 * processi diversi che condividono lo stesso meccanismo di persistenza, ma non
+	 * sono necessariamente consecutivi.
+	 * 
+	 * @return un identificativo mai assegnato ad altre prenotazioni.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 */
+	public long nextReservationId() throws PersistenceException {
+		try {
+			return reservationIdAllocator.next();
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
 	/**
 	 * Elimina una proiezione dal meccanismo di persistenza dei dati.
 	 * 
@@ -425,7 +1023,10 @@ public class PersistenceFacade {
 	 */
 	public void deleteReservation(long reservationId) throws PersistenceException {
 		try {
-			iReservationDao.deleteReservation(reservationId);
+			runWrite(() -> {
+				iReservationDao.deleteReservation(reservationId);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
@@ -446,7 +1047,10 @@ public class PersistenceFacade {
 	 */
 	public void putEmptyReservation(Reservation newReservation) throws PersistenceException {
 		try {
-			iReservationDao.putEmptyReservation(newReservation);
+			runWrite(() -> {
+				iReservationDao.putEmptyReservation(newReservation);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
@@ -459,20 +1063,23 @@ public class PersistenceFacade {
 	 * La prenotazione a cui si fa riferimento deve essere stata inserita nel
 	 * meccanismo di persistenza precedentemente col metodo
 	 * {@code putEmptyReservation(Reservation newReservation)}. Questo è neccessario
-	 * per mantenere la consistenza degli identificativi delle prenotazioni.
+	 * per mantenere la consistenza degli identificativi delle prenotazioni. I dati
+	 * e i posti della prenotazione vengono scritti in un'unica unità di lavoro.
 	 * 
 	 * @param reservation prenotazione di cui si vogliono rendere persisteni le
 	 *                    informazioni.
-	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
-	 *                              dati fallisce.
-	 * @throws RoomException        se la stanza referenziata nella prenotazione non
-	 *                              è valida.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non è valida.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   risultano già occupati.
 	 */
-	public void setReservationFields(Reservation reservation) throws PersistenceException, RoomException {
-		try {
-			iReservationDao.setReservationFields(reservation);
-		} catch (SQLException e) {
-			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+	public void setReservationFields(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException {
+		try (UnitOfWork unitOfWork = beginUnitOfWork()) {
+			unitOfWork.setReservationFields(reservation);
+			unitOfWork.commit();
 		}
 	}
 
@@ -481,17 +1088,24 @@ public class PersistenceFacade {
 	 * 
 	 * @param reservation prenotazioni di cui si vuole rendere persistente
 	 *                    l'occupazione dei posti.
-	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
-	 *                              dati fallisce.
-	 * @throws RoomException        se la stanza referenziata nella prenotazione non
-	 *                              è valida.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non è valida.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   risultano già occupati.
 	 */
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws PersistenceException, RoomException {
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException {
 		try {
-			iOccupiedSeatDao.putOccupiedSeatsFromReservation(reservation);
+			this.<Void, RoomException, SeatAvailabilityException>runWrite(() -> {
+				iOccupiedSeatDao.putOccupiedSeatsFromReservation(reservation);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
+		occupySnapshotSeats(reservation);
 	}
 
 	/**
@@ -523,7 +1137,10 @@ public class PersistenceFacade {
 	 */
 	public void setPassword(int cinemaId, String newPassword) throws PersistenceException {
 		try {
-			iCinemaDao.setPassword(cinemaId, newPassword);
+			runWrite(() -> {
+				iCinemaDao.setPassword(cinemaId, newPassword);
+				return null;
+			});
 		} catch (SQLException e) {
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
@@ -542,10 +1159,442 @@ public class PersistenceFacade {
 	 */
 	public void setDiscountStrategy(int cinemaId, String discountStrategyName) throws PersistenceException {
 		try {
-			iCinemaDao.setDiscountStrategy(cinemaId, discountStrategyName);
+			runWrite(() -> {
+				iCinemaDao.setDiscountStrategy(cinemaId, discountStrategyName);
+				return null;
+			});
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Apre una sessione di scrittura: prende in prestito la connessione di
+	 * scrittura o, se i dati sono mantenuti in memoria, acquisisce il lock di
+	 * scrittura del database in memoria.
+	 * 
+	 * @return la sessione di scrittura, da chiudere al termine dell'utilizzo.
+	 * @throws SQLException se non è possibile ottenere la connessione di
+	 *                      scrittura.
+	 */
+	ISession beginWrite() throws SQLException {
+		return memoryDatabase != null ? memoryDatabase.beginWrite() : writerPool.borrow();
+	}
+
+	/**
+	 * Operazione eseguita all'interno di una sessione di scrittura.
+	 * 
+	 * @param <T>  tipo del risultato dell'operazione.
+	 * @param <E1> eccezione sollevata dall'operazione, oltre a
+	 *             {@code SQLException}.
+	 * @param <E2> ulteriore eccezione sollevata dall'operazione.
+	 */
+	@FunctionalInterface
+	private interface WriteOperation<T, E1 extends Exception, E2 extends Exception> {
+
+		T run() throws SQLException, E1, E2;
+
+	}
+
+	/**
+	 * Esegue {@code operation} all'interno di una sessione di scrittura, chiusa al
+	 * termine dell'operazione.
+	 * 
+	 * @param operation operazione da eseguire.
+	 * @return il risultato dell'operazione.
+	 * @throws SQLException se non è possibile aprire la sessione o l'operazione
+	 *                      fallisce.
+	 * @throws E1           se l'operazione la solleva.
+	 * @throws E2           se l'operazione la solleva.
+	 */
+	private <T, E1 extends Exception, E2 extends Exception> T runWrite(WriteOperation<T, E1, E2> operation)
+			throws SQLException, E1, E2 {
+		ISession session = beginWrite();
+		try {
+			return operation.run();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Inizia un'unità di lavoro, ovvero un insieme di operazioni che vengono rese
+	 * persistenti all'interno di un'unica transazione.
+	 * 
+	 * @return l'unità di lavoro, da chiudere al termine dell'utilizzo.
+	 * @throws PersistenceException se non è possibile iniziare la transazione.
+	 */
+	public UnitOfWork beginUnitOfWork() throws PersistenceException {
+		ISession session = null;
+		try {
+			session = beginWrite();
+			return new UnitOfWork(this, session);
 		} catch (SQLException e) {
+			if (session != null)
+				session.close();
 			throw new PersistenceException("La richiesta al database non è andata a buon fine");
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Rende persistente un acquisto: l'eventuale coupon associato alla
+	 * prenotazione viene segnato come utilizzato e vengono salvati i dati della
+	 * prenotazione e i posti occupati. Se una delle operazioni fallisce (ad
+	 * esempio perché il coupon è stato utilizzato nel frattempo da un acquisto
+	 * concorrente) non viene reso persistente nulla.
+	 * 
+	 * <p>
+	 * Se è abilitato il giornale degli acquisti, l'acquisto viene reso
+	 * persistente insieme agli altri acquisti accodati nello stesso intervallo,
+	 * altrimenti in una propria unità di lavoro. In entrambi i casi il metodo
+	 * termina solamente dopo che la transazione contenente l'acquisto è stata
+	 * confermata. Un acquisto accodato nel giornale che non viene reso persistente
+	 * entro {@code PURCHASE_TIMEOUT} millisecondi viene ritirato e rifiutato con
+	 * una {@code PersistenceException}.
+	 * 
+	 * @param reservation prenotazione acquistata.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non esiste.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   sono già occupati.
+	 * @throws CouponException           se il coupon non esiste o è già stato
+	 *                                   utilizzato.
+	 */
+	public void commitPurchase(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException, CouponException {
+		if (reservationJournal == null) {
+			try (UnitOfWork unitOfWork = beginUnitOfWork()) {
+				if (reservation.getCoupon() != null)
+					unitOfWork.setCouponUsed(reservation.getCoupon().getCode());
+				unitOfWork.setReservationFields(reservation);
+				unitOfWork.commit();
+			}
+			return;
+		}
+		CompletableFuture<Void> result = reservationJournal.submit(reservation);
+		try {
+			try {
+				result.get(PURCHASE_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (reservationJournal.withdraw(result))
+					throw new PersistenceException("La richiesta al database non è andata a buon fine");
+				// L'acquisto è già stato estratto dal giornale e la sua transazione
+				// viene conclusa a breve, quindi se ne attende l'esito
+				result.get(PURCHASE_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reservationJournal.withdraw(result);
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		} catch (TimeoutException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SeatAvailabilityException)
+				throw (SeatAvailabilityException) cause;
+			if (cause instanceof CouponException)
+				throw (CouponException) cause;
+			if (cause instanceof RoomException)
+				throw (RoomException) cause;
+			if (cause instanceof PersistenceException)
+				throw (PersistenceException) cause;
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Registra il termine di un'unità di lavoro.
+	 * 
+	 * @param committed true se l'unità di lavoro è stata confermata.
+	 * @param commits   numero di transazioni confermate durante l'unità di lavoro.
+	 */
+	void recordUnitOfWork(boolean committed, long commits) {
+		if (committed) {
+			committedUnitsOfWork.incrementAndGet();
+			unitOfWorkCommits.addAndGet(commits);
+		} else {
+			rolledBackUnitsOfWork.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Scarta il film identificato da {@code movieId} tra quelli già recuperati, in
+	 * modo che venga letto nuovamente dal meccanismo di persistenza dei dati. Va
+	 * chiamato quando le informazioni del film vengono modificate al di fuori
+	 * dell'applicazione.
+	 * 
+	 * @param movieId identificativo del film modificato.
+	 */
+	public void invalidateMovie(int movieId) {
+		catalogSnapshot = null;
+		movies.invalidate(movieId);
+	}
+
+	/**
+	 * Scarta la sala identificata da {@code roomId} tra quelle già recuperate, in
+	 * modo che venga letta nuovamente dal meccanismo di persistenza dei dati.
+	 * 
+	 * @param roomId identificativo della sala modificata.
+	 */
+	public void invalidateRoom(int roomId) {
+		catalogSnapshot = null;
+		rooms.invalidate(roomId);
+	}
+
+	/**
+	 * Scarta tutti i film e le sale già recuperati dal meccanismo di persistenza
+	 * dei dati.
+	 */
+	public void invalidateCatalog() {
+		catalogSnapshot = null;
+		movies.invalidateAll();
+		rooms.invalidateAll();
+	}
+
+	/**
+	 * Legge l'istantanea del catalogo e ne inserisce i film e le sale tra quelli
+	 * già recuperati, se la versione del catalogo coincide con quella del
+	 * meccanismo di persistenza dei dati. Se nel frattempo sono stati venduti dei
+	 * posti, l'occupazione dei posti dell'istantanea viene letta nuovamente dal
+	 * meccanismo di persistenza dei dati.
+	 * 
+	 * @return l'istantanea letta o null se non esiste, non può essere letta o il
+	 *         catalogo non è aggiornato.
+	 */
+	private CatalogSnapshot loadCatalogSnapshot() {
+		if (!Files.isRegularFile(snapshotPath))
+			return null;
+		try {
+			CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotPath, names);
+			CatalogVersion version = iCatalogDao.getCatalogVersion();
+			if (snapshot.getVersion().getCatalog() != version.getCatalog())
+				return null;
+			for (Movie movie : snapshot.getMovies())
+				movies.put(movie.getId(), movie, movies.getVersion());
+			for (Room room : snapshot.getRooms())
+				rooms.put(room.getNumber(), room, rooms.getVersion());
+			if (snapshot.getVersion().getOccupancy() != version.getOccupancy()) {
+				for (Projection projection : iProjectionDao.getAllProjections())
+					snapshot.setOccupiedSeats(projection.getId(), projection.getOccupiedSeats());
+			}
+			return snapshot;
+		} catch (IOException | SQLException | PersistenceException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Elimina il file dell'istantanea del catalogo, se esiste. Un errore viene
+	 * ignorato: l'istantanea non viene comunque usata e viene sostituita alla
+	 * chiusura.
+	 */
+	private void deleteCatalogSnapshot() {
+		try {
+			Files.deleteIfExists(snapshotPath);
+		} catch (IOException e) {
+			// L'istantanea viene sovrascritta alla prossima scrittura
+		}
+	}
+
+	/**
+	 * Scrive l'istantanea del catalogo con i film, le sale e le proiezioni
+	 * mantenuti dal meccanismo di persistenza dei dati. Se il catalogo viene
+	 * modificato durante la lettura l'istantanea non viene scritta, dato che non
+	 * corrisponderebbe a nessuna versione; i posti venduti durante la lettura
+	 * vengono invece letti nuovamente al caricamento dell'istantanea.
+	 * 
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza
+	 *                              dei dati fallisce o il file dell'istantanea
+	 *                              non può essere scritto.
+	 */
+	public synchronized void writeCatalogSnapshot() throws PersistenceException {
+		if (snapshotPath == null)
+			return;
+		try {
+			CatalogVersion version = iCatalogDao.getCatalogVersion();
+			ArrayList<Movie> allMovies = iMovieDao.getAllMovies();
+			ArrayList<Room> allRooms = iRoomDao.getAllRooms();
+			ArrayList<Projection> allProjections = iProjectionDao.getAllProjections();
+			if (version.getCatalog() != iCatalogDao.getCatalogVersion().getCatalog())
+				return;
+			CatalogSnapshot.write(snapshotPath, version, allMovies, allRooms, allProjections);
+			snapshotWrites.incrementAndGet();
+		} catch (SQLException | RoomException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		} catch (IOException e) {
+			throw new PersistenceException("Impossibile scrivere l'istantanea del catalogo " + snapshotPath + ".");
+		}
+	}
+
+	/**
+	 * Riscrive l'istantanea del catalogo dopo una modifica. Un errore non
+	 * interrompe l'operazione che ha modificato il catalogo: l'istantanea non
+	 * aggiornata viene riconosciuta e ignorata al prossimo avvio.
+	 */
+	private void refreshCatalogSnapshot() {
+		try {
+			writeCatalogSnapshot();
+		} catch (PersistenceException e) {
+			// L'istantanea precedente resta su disco con una versione superata
+		}
+	}
+
+	/**
+	 * Occupa nell'istantanea del catalogo in uso i posti di una prenotazione, dopo
+	 * che la transazione che li ha resi persistenti è stata confermata.
+	 * 
+	 * @param reservation prenotazione di cui sono stati occupati i posti.
+	 */
+	void occupySnapshotSeats(Reservation reservation) {
+		CatalogSnapshot snapshot = catalogSnapshot;
+		if (snapshot == null)
+			return;
+		Projection projection = reservation.getProjection();
+		int columns = projection.getRoom().getNumberOfCols();
+		BitSet seats = new BitSet();
+		for (int seatId : reservation.getSeatIds())
+			seats.set(SeatBitmapCodec.index(SeatId.row(seatId), SeatId.col(seatId), columns));
+		snapshot.occupySeats(projection.getId(), seats);
+		snapshotPatches.incrementAndGet();
+	}
+
+	/**
+	 * Restituisce le statistiche di utilizzo del meccanismo di persistenza dei
+	 * dati.
+	 * 
+	 * <p>
+	 * Per il pool di connessioni di lettura ({@code pool.read}) vengono riportati
+	 * il numero di prestiti, il tempo di attesa medio e massimo (in millisecondi)
+	 * per ottenere una connessione, la durata media e massima dei prestiti, il
+	 * numero di attese scadute e l'utilizzo corrente delle connessioni. Per la
+	 * connessione di scrittura ({@code pool.write}) vengono riportati gli stessi
+	 * tempi insieme al numero di thread in coda, in modo da confrontare le latenze
+	 * dei due percorsi. Per le query preparate vengono riportati i riutilizzi dalla
+	 * cache, le query che è stato necessario analizzare e le query attualmente
+	 * aperte. Per gli identificativi delle prenotazioni vengono riportati gli
+	 * identificativi assegnati e i blocchi riservati. Per le transazioni vengono
+	 * riportate le conferme e gli annullamenti, il numero di unità di lavoro
+	 * concluse e il numero medio di conferme per ogni unità di lavoro. Se è
+	 * abilitato il giornale degli acquisti ({@code journal}) vengono riportati i
+	 * gruppi confermati, gli acquisti resi persistenti e falliti, il numero medio
+	 * di acquisti per gruppo e gli acquisti in attesa. Per i film e le sale già
+	 * recuperati vengono riportate le richieste soddisfatte senza accedere al
+	 * meccanismo di persistenza, quelle che hanno richiesto un accesso e il numero
+	 * di istanze mantenute, insieme al numero di nomi distinti (generi, registi e
+	 * attori) condivisi tra i film e al numero di disposizioni dei posti condivise
+	 * tra le sale. Per le interfacce verso la persistenza vengono riportate le
+	 * chiamate complessive, quelle fallite e quelle lente (il dettaglio per metodo
+	 * è disponibile tramite {@code getDaoMetrics()}). Se è configurata l'istantanea
+	 * del catalogo ({@code snapshot}) vengono riportati se è stata caricata
+	 * all'avvio, se è ancora in uso, le richieste soddisfatte, le prenotazioni i
+	 * cui posti sono stati occupati nell'istantanea e le istantanee scritte. Per lo
+	 * schema vengono riportate la versione raggiunta e le migrazioni applicate
+	 * all'avvio. Se i dati sono mantenuti in memoria non vengono riportate le
+	 * statistiche dei pool, delle query preparate e dello schema.
+	 * 
+	 * @return le statistiche di utilizzo, identificate dal loro nome.
+	 */
+	public HashMap<String, Number> getMetrics() {
+		HashMap<String, Number> metrics = new LinkedHashMap<String, Number>();
+		if (memoryDatabase == null) {
+			metrics.put("pool.read.borrows", readPool.getBorrowCount());
+			metrics.put("pool.read.wait.avgMillis", readPool.getAverageWaitTime());
+			metrics.put("pool.read.wait.maxMillis", readPool.getMaxWaitTime());
+			metrics.put("pool.read.hold.avgMillis", readPool.getAverageHoldTime());
+			metrics.put("pool.read.hold.maxMillis", readPool.getMaxHoldTime());
+			metrics.put("pool.read.timeouts", readPool.getTimeoutCount());
+			metrics.put("pool.read.invalidated", readPool.getInvalidatedCount());
+			metrics.put("pool.read.connections.open", readPool.getOpenConnections());
+			metrics.put("pool.read.connections.active", readPool.getActiveConnections());
+			metrics.put("pool.read.connections.idle", readPool.getIdleConnections());
+			metrics.put("pool.read.connections.peakActive", readPool.getPeakActiveConnections());
+			metrics.put("pool.read.utilization", readPool.getUtilization());
+			metrics.put("pool.write.borrows", writerPool.getBorrowCount());
+			metrics.put("pool.write.wait.avgMillis", writerPool.getAverageWaitTime());
+			metrics.put("pool.write.wait.maxMillis", writerPool.getMaxWaitTime());
+			metrics.put("pool.write.hold.avgMillis", writerPool.getAverageHoldTime());
+			metrics.put("pool.write.hold.maxMillis", writerPool.getMaxHoldTime());
+			metrics.put("pool.write.timeouts", writerPool.getTimeoutCount());
+			metrics.put("pool.write.queued", writerPool.getQueueLength());
+			metrics.put("statements.cache.hits", readPool.getStatementHits() + writerPool.getStatementHits());
+			metrics.put("statements.cache.misses", readPool.getStatementMisses() + writerPool.getStatementMisses());
+			metrics.put("statements.open", readPool.getOpenStatements() + writerPool.getOpenStatements());
+		}
+		metrics.put("reservationIds.allocated", reservationIdAllocator.getAllocatedIds());
+		metrics.put("reservationIds.blocks", reservationIdAllocator.getReservedBlocks());
+		if (memoryDatabase != null) {
+			metrics.put("transactions.commits", memoryDatabase.getCommitCount());
+			metrics.put("transactions.rollbacks", memoryDatabase.getRollbackCount());
+		} else {
+			metrics.put("transactions.commits", readPool.getCommitCount() + writerPool.getCommitCount());
+			metrics.put("transactions.rollbacks", readPool.getRollbackCount() + writerPool.getRollbackCount());
+		}
+		long committedUnits = committedUnitsOfWork.get();
+		metrics.put("unitOfWork.committed", committedUnits);
+		metrics.put("unitOfWork.rolledBack", rolledBackUnitsOfWork.get());
+		metrics.put("unitOfWork.commitsPerUnit",
+				committedUnits == 0 ? 0.0 : (double) unitOfWorkCommits.get() / committedUnits);
+		if (reservationJournal != null) {
+			long groups = reservationJournal.getCommittedGroups();
+			long purchases = reservationJournal.getCommittedPurchases();
+			metrics.put("journal.groups", groups);
+			metrics.put("journal.purchases", purchases);
+			metrics.put("journal.failed", reservationJournal.getFailedPurchases());
+			metrics.put("journal.purchasesPerGroup", groups == 0 ? 0.0 : (double) purchases / groups);
+			metrics.put("journal.pending", reservationJournal.getPendingPurchases());
+		}
+		metrics.put("cache.movies.hits", movies.getHits());
+		metrics.put("cache.movies.misses", movies.getMisses());
+		metrics.put("cache.movies.size", movies.size());
+		metrics.put("cache.rooms.hits", rooms.getHits());
+		metrics.put("cache.rooms.misses", rooms.getMisses());
+		metrics.put("cache.rooms.size", rooms.size());
+		metrics.put("cache.names.size", names.size());
+		metrics.put("cache.layouts.size", RoomLayout.getNumberOfLayouts());
+		metrics.put("dao.calls", daoMetrics.getCalls());
+		metrics.put("dao.errors", daoMetrics.getErrors());
+		metrics.put("dao.slowCalls", daoMetrics.getSlowCalls());
+		if (snapshotPath != null) {
+			metrics.put("snapshot.loaded", snapshotLoaded ? 1 : 0);
+			metrics.put("snapshot.active", catalogSnapshot != null ? 1 : 0);
+			metrics.put("snapshot.hits", snapshotHits.get());
+			metrics.put("snapshot.patches", snapshotPatches.get());
+			metrics.put("snapshot.writes", snapshotWrites.get());
+		}
+		if (migrationRunner != null) {
+			metrics.put("schema.version", migrationRunner.getSchemaVersion());
+			metrics.put("schema.migrationsApplied", migrationRunner.getAppliedMigrations());
+		}
+		return metrics;
+	}
+
+	/**
+	 * Restituisce le statistiche per metodo delle chiamate alle interfacce verso
+	 * la persistenza e il registro delle query lente e fallite.
+	 * 
+	 * @return le statistiche delle interfacce verso la persistenza.
+	 */
+	public DaoMetrics getDaoMetrics() {
+		return daoMetrics;
+	}
+
+	/**
+	 * Chiude tutte le connessioni verso il meccanismo di persistenza dei dati,
+	 * dopo aver reso persistenti gli acquisti ancora presenti nel giornale e aver
+	 * aggiornato l'istantanea del catalogo se nel frattempo è stata scartata o
+	 * sono stati venduti dei posti.
+	 */
+	public void close() {
+		if (reservationJournal != null)
+			reservationJournal.close();
+		if (snapshotPath != null && (catalogSnapshot == null || snapshotPatches.get() > 0))
+			refreshCatalogSnapshot();
+		if (readPool != null)
+			readPool.close();
+		if (writerPool != null)
+			writerPool.close();
+	}
+
+}
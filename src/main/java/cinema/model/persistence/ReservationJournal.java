@@ -0,0 +1,306 @@
+package cinema.model.persistence;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.pool.ISession;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.coupon.util.CouponException;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Rende persistenti gli acquisti completati raggruppandone più di uno in
+ * un'unica transazione (group commit).
+ *
+ * <p>
+ * Gli acquisti vengono accodati nel giornale e un unico thread li estrae a
+ * gruppi: il primo acquisto di un gruppo attende al massimo
+ * {@code maxDelay} millisecondi che se ne aggiungano altri, fino a un massimo
+ * di {@code maxBatch} acquisti. Ogni gruppo viene reso persistente con una sola
+ * conferma (e quindi una sola sincronizzazione su disco) nella sessione di
+ * scrittura. Ciascun acquisto viene eseguito all'interno di un proprio punto di
+ * salvataggio: se fallisce (posti già occupati, anche da un acquisto dello
+ * stesso gruppo, o coupon già utilizzato) vengono annullate solamente le sue
+ * modifiche. Il future di un acquisto viene completato solamente dopo la
+ * conferma del suo gruppo, quindi un acquisto risulta concluso solamente
+ * quando è stato reso persistente.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class ReservationJournal {
+
+	/**
+	 * Millisecondi di attesa del thread del giornale tra un controllo e l'altro
+	 * della sua chiusura.
+	 */
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Acquisto accodato nel giornale.
+	 */
+	private static final class Purchase {
+
+		private final Reservation reservation;
+
+		private final CompletableFuture<Void> result;
+
+		/**
+		 * Eccezione che ha interrotto l'acquisto, o null se l'acquisto è stato
+		 * eseguito.
+		 */
+		private Exception error;
+
+		private Purchase(Reservation reservation) {
+			this.reservation = reservation;
+			this.result = new CompletableFuture<Void>();
+		}
+
+	}
+
+	/**
+	 * Facade controller di cui vengono usate le interfacce verso la persistenza e
+	 * la sessione di scrittura.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Numero massimo di acquisti resi persistenti in un'unica transazione.
+	 */
+	private final int maxBatch;
+
+	/**
+	 * Nanosecondi di attesa massimi per completare un gruppo.
+	 */
+	private final long maxDelay;
+
+	/**
+	 * Acquisti in attesa di essere resi persistenti.
+	 */
+	private final LinkedBlockingQueue<Purchase> queue;
+
+	/**
+	 * Thread che rende persistenti i gruppi di acquisti.
+	 */
+	private final Thread writer;
+
+	/**
+	 * Numero di gruppi confermati.
+	 */
+	private final AtomicLong committedGroups;
+
+	/**
+	 * Numero di acquisti resi persistenti.
+	 */
+	private final AtomicLong committedPurchases;
+
+	/**
+	 * Numero di acquisti non resi persistenti a causa di un errore.
+	 */
+	private final AtomicLong failedPurchases;
+
+	/**
+	 * Indica se il giornale è stato chiuso. Viene modificato, e controllato
+	 * prima di accodare un acquisto, solamente tenendo il lock di {@code queue},
+	 * in modo che nessun acquisto possa essere accodato dopo l'uscita del thread
+	 * del giornale.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Costruttore del giornale, che avvia il thread che rende persistenti gli
+	 * acquisti.
+	 *
+	 * @param persistenceFacade facade controller da cui viene creato il giornale.
+	 * @param maxBatch          numero massimo di acquisti per transazione.
+	 * @param maxDelay          millisecondi di attesa massimi per completare un
+	 *                          gruppo.
+	 */
+	ReservationJournal(PersistenceFacade persistenceFacade, int maxBatch, long maxDelay) {
+		this.persistenceFacade = persistenceFacade;
+		this.maxBatch = maxBatch;
+		this.maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+		this.queue = new LinkedBlockingQueue<Purchase>();
+		this.committedGroups = new AtomicLong();
+		this.committedPurchases = new AtomicLong();
+		this.failedPurchases = new AtomicLong();
+		this.closed = false;
+		this.writer = new Thread(this::run, "reservation-journal");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Accoda un acquisto completato.
+	 *
+	 * @param reservation prenotazione acquistata, i cui dati e posti occupati
+	 *                    (insieme all'eventuale coupon) vanno resi persistenti.
+	 * @return il future completato quando l'acquisto è stato reso persistente o
+	 *         con l'eccezione che lo ha impedito ({@code SeatAvailabilityException},
+	 *         {@code CouponException}, {@code RoomException} o
+	 *         {@code PersistenceException}).
+	 */
+	CompletableFuture<Void> submit(Reservation reservation) {
+		Purchase purchase = new Purchase(reservation);
+		synchronized (queue) {
+			if (!closed) {
+				queue.add(purchase);
+				return purchase.result;
+			}
+		}
+		purchase.result.completeExceptionally(new PersistenceException("Il giornale degli acquisti è stato chiuso."));
+		return purchase.result;
+	}
+
+	/**
+	 * Ritira un acquisto non ancora estratto dal thread del giornale, che non
+	 * verrà quindi reso persistente. Il suo future viene completato con una
+	 * {@code PersistenceException}.
+	 *
+	 * @param result future restituito da {@code submit(reservation)}.
+	 * @return true se l'acquisto è stato ritirato, false se è già stato estratto
+	 *         (e viene quindi reso persistente o rifiutato dal thread del
+	 *         giornale).
+	 */
+	boolean withdraw(CompletableFuture<Void> result) {
+		if (!queue.removeIf(purchase -> purchase.result == result))
+			return false;
+		failedPurchases.incrementAndGet();
+		result.completeExceptionally(new PersistenceException("L'acquisto è stato ritirato dal giornale."));
+		return true;
+	}
+
+	/**
+	 * Estrae e rende persistenti i gruppi di acquisti fino alla chiusura del
+	 * giornale.
+	 */
+	private void run() {
+		ArrayList<Purchase> group = new ArrayList<Purchase>(maxBatch);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				Purchase first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				group.add(first);
+				long deadline = System.nanoTime() + maxDelay;
+				while (group.size() < maxBatch) {
+					Purchase next = queue.poll();
+					if (next == null) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null)
+							break;
+					}
+					group.add(next);
+				}
+			} catch (InterruptedException e) {
+				// La chiusura del giornale viene controllata dal ciclo
+			}
+			if (!group.isEmpty())
+				commit(group);
+			group.clear();
+		}
+	}
+
+	/**
+	 * Rende persistente un gruppo di acquisti in un'unica transazione e ne
+	 * completa i future.
+	 *
+	 * @param group acquisti da rendere persistenti.
+	 */
+	private void commit(ArrayList<Purchase> group) {
+		int applied = 0;
+		try (ISession session = persistenceFacade.beginWrite()) {
+			session.setAutoCommit(false);
+			for (Purchase purchase : group) {
+				Savepoint savepoint = session.setSavepoint();
+				try {
+					apply(purchase.reservation);
+					session.releaseSavepoint(savepoint);
+					applied++;
+				} catch (SeatAvailabilityException | CouponException | RoomException | PersistenceException e) {
+					session.rollback(savepoint);
+					purchase.error = e;
+				} catch (SQLException | RuntimeException e) {
+					session.rollback(savepoint);
+					purchase.error = new PersistenceException("La richiesta al database non è andata a buon fine");
+				}
+			}
+			session.commit();
+		} catch (SQLException | RuntimeException e) {
+			// La transazione viene annullata dal pool alla restituzione della
+			// connessione, quindi nessun acquisto del gruppo è stato reso persistente
+			for (Purchase purchase : group) {
+				if (purchase.error == null)
+					purchase.error = new PersistenceException("La richiesta al database non è andata a buon fine");
+			}
+			applied = 0;
+		}
+		if (applied > 0) {
+			committedGroups.incrementAndGet();
+			committedPurchases.addAndGet(applied);
+		}
+		failedPurchases.addAndGet(group.size() - applied);
+		for (Purchase purchase : group) {
+			if (purchase.error == null) {
+				persistenceFacade.occupySnapshotSeats(purchase.reservation);
+				purchase.result.complete(null);
+			} else {
+				purchase.result.completeExceptionally(purchase.error);
+			}
+		}
+	}
+
+	/**
+	 * Esegue le modifiche di un acquisto nella transazione in corso.
+	 *
+	 * @param reservation prenotazione acquistata.
+	 */
+	private void apply(Reservation reservation) throws SQLException, PersistenceException, RoomException,
+			SeatAvailabilityException, CouponException {
+		if (reservation.getCoupon() != null) {
+			String promocode = reservation.getCoupon().getCode();
+			if (!persistenceFacade.iCouponDao.setCouponUsed(promocode))
+				throw new CouponException("Il coupon " + promocode + " non esiste o è già stato utilizzato.");
+		}
+		persistenceFacade.iReservationDao.setReservationFields(reservation);
+	}
+
+	/**
+	 * Chiude il giornale: gli acquisti già accodati vengono resi persistenti,
+	 * mentre quelli accodati successivamente vengono rifiutati.
+	 */
+	void close() {
+		synchronized (queue) {
+			closed = true;
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public long getCommittedGroups() {
+		return committedGroups.get();
+	}
+
+	public long getCommittedPurchases() {
+		return committedPurchases.get();
+	}
+
+	public long getFailedPurchases() {
+		return failedPurchases.get();
+	}
+
+	public int getPendingPurchases() {
+		return queue.size();
+	}
+
+}
@@ -0,0 +1,164 @@
+package cinema.model.persistence;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.pool.ISession;
+import cinema.model.persistence.util.PersistenceException;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.coupon.util.CouponException;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Insieme di operazioni sul meccanismo di persistenza dei dati eseguite
+ * all'interno di un'unica transazione.
+ *
+ * <p>
+ * Viene ottenuta tramite {@code PersistenceFacade.beginUnitOfWork()} e va usata
+ * in un blocco try-with-resources: le operazioni diventano persistenti tutte
+ * insieme con {@code commit()}, mentre se l'unità di lavoro viene chiusa senza
+ * essere stata confermata (ad esempio a causa di un'eccezione) nessuna di esse
+ * viene resa persistente.
+ *
+ * <p>
+ * La transazione è legata alla sessione di scrittura aperta dal thread che ha
+ * creato l'unità di lavoro, quindi l'unità di lavoro deve essere usata
+ * solamente da quel thread.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class UnitOfWork implements AutoCloseable {
+
+	/**
+	 * Facade controller da cui è stata creata l'unità di lavoro.
+	 */
+	private final PersistenceFacade persistenceFacade;
+
+	/**
+	 * Sessione di scrittura su cui è in corso la transazione.
+	 */
+	private final ISession session;
+
+	/**
+	 * Numero di transazioni confermate nella sessione all'inizio dell'unità di
+	 * lavoro.
+	 */
+	private final long initialCommitCount;
+
+	/**
+	 * Prenotazioni di cui sono stati occupati i posti, da occupare
+	 * nell'istantanea del catalogo dopo la conferma.
+	 */
+	private final ArrayList<Reservation> reservations;
+
+	/**
+	 * Indica se l'unità di lavoro è stata confermata.
+	 */
+	private boolean committed;
+
+	/**
+	 * Indica se l'unità di lavoro è stata chiusa.
+	 */
+	private boolean closed;
+
+	/**
+	 * Costruttore dell'unità di lavoro, che inizia la transazione nella
+	 * sessione.
+	 *
+	 * @param persistenceFacade facade controller da cui viene creata l'unità di
+	 *                          lavoro.
+	 * @param session           sessione di scrittura su cui eseguire la
+	 *                          transazione.
+	 * @throws SQLException se non è possibile iniziare la transazione.
+	 */
+	UnitOfWork(PersistenceFacade persistenceFacade, ISession session) throws SQLException {
+		this.persistenceFacade = persistenceFacade;
+		this.session = session;
+		this.initialCommitCount = session.getCommitCount();
+		this.reservations = new ArrayList<Reservation>();
+		this.committed = false;
+		this.closed = false;
+		session.setAutoCommit(false);
+	}
+
+	/**
+	 * Segna come utilizzato il coupon identificato da {@code promocode}.
+	 *
+	 * @param promocode codice promozionale del coupon utilizzato.
+	 * @throws PersistenceException se la richiesta al meccanismo di persistenza dei
+	 *                              dati fallisce.
+	 * @throws CouponException      se il coupon non esiste o è già stato
+	 *                              utilizzato (eventualmente da un acquisto
+	 *                              concorrente).
+	 */
+	public void setCouponUsed(String promocode) throws PersistenceException, CouponException {
+		try {
+			if (!persistenceFacade.iCouponDao.setCouponUsed(promocode))
+				throw new CouponException("Il coupon " + promocode + " non esiste o è già stato utilizzato.");
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Rende persistenti le informazioni di una prenotazione e i relativi posti
+	 * occupati.
+	 *
+	 * @param reservation prenotazione di cui si vogliono rendere persistenti le
+	 *                    informazioni.
+	 * @throws PersistenceException      se la richiesta al meccanismo di
+	 *                                   persistenza dei dati fallisce.
+	 * @throws RoomException             se la stanza referenziata nella
+	 *                                   prenotazione non è valida.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   risultano già occupati.
+	 */
+	public void setReservationFields(Reservation reservation)
+			throws PersistenceException, RoomException, SeatAvailabilityException {
+		try {
+			persistenceFacade.iReservationDao.setReservationFields(reservation);
+			reservations.add(reservation);
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+	}
+
+	/**
+	 * Rende persistenti tutte le operazioni eseguite nell'unità di lavoro.
+	 *
+	 * @throws PersistenceException se la transazione non può essere confermata.
+	 */
+	public void commit() throws PersistenceException {
+		try {
+			session.commit();
+			committed = true;
+		} catch (SQLException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine");
+		}
+		for (Reservation reservation : reservations)
+			persistenceFacade.occupySnapshotSeats(reservation);
+	}
+
+	/**
+	 * Termina l'unità di lavoro, annullando le operazioni eseguite se questa non
+	 * è stata confermata, e chiude la sessione di scrittura.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			if (!committed)
+				session.rollback();
+			session.setAutoCommit(true);
+		} catch (SQLException e) {
+			// La sessione viene comunque ripristinata al momento della chiusura
+		}
+		persistenceFacade.recordUnitOfWork(committed, session.getCommitCount() - initialCommitCount);
+		session.close();
+	}
+
+}
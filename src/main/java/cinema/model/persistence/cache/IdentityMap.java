@@ -0,0 +1,137 @@
+package cinema.model.persistence.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mappa delle identità degli oggetti caricati dal meccanismo di persistenza dei
+ * dati.
+ *
+ * <p>
+ * Garantisce che ad ogni identificativo corrisponda un'unica istanza in
+ * memoria, condivisa da tutti gli oggetti che la referenziano, in modo da non
+ * dover accedere nuovamente al meccanismo di persistenza per recuperarla. La
+ * mappa non si accorge delle modifiche fatte sul meccanismo di persistenza:
+ * quando un oggetto viene modificato va invalidato esplicitamente con
+ * {@code invalidate(key)} o {@code invalidateAll()}.
+ *
+ * <p>
+ * La mappa può essere usata contemporaneamente da più thread.
+ *
+ * @param <K> tipo degli identificativi degli oggetti.
+ * @param <V> tipo degli oggetti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class IdentityMap<K, V> {
+
+	/**
+	 * Oggetti presenti nella mappa, identificati dal loro identificativo.
+	 */
+	private final ConcurrentHashMap<K, V> entries;
+
+	/**
+	 * Numero di invalidazioni effettuate, usato per non inserire nella mappa
+	 * oggetti caricati prima di un'invalidazione.
+	 */
+	private final AtomicLong version;
+
+	/**
+	 * Numero di richieste soddisfatte dalla mappa.
+	 */
+	private final AtomicLong hits;
+
+	/**
+	 * Numero di richieste per cui l'oggetto non era presente nella mappa.
+	 */
+	private final AtomicLong misses;
+
+	/**
+	 * Costruttore della mappa (vuota).
+	 */
+	public IdentityMap() {
+		this.entries = new ConcurrentHashMap<K, V>();
+		this.version = new AtomicLong();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Restituisce l'oggetto identificato da {@code key}, se presente nella mappa.
+	 * Ogni chiamata viene conteggiata come successo o fallimento della mappa.
+	 *
+	 * @param key identificativo dell'oggetto.
+	 * @return l'oggetto identificato da {@code key} o null se non è presente.
+	 */
+	public V get(K key) {
+		V value = entries.get(key);
+		if (value != null)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+		return value;
+	}
+
+	/**
+	 * Restituisce la versione corrente della mappa, da leggere prima di caricare
+	 * un oggetto dal meccanismo di persistenza e da passare a
+	 * {@code put(key, value, version)}.
+	 *
+	 * @return la versione corrente della mappa.
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Inserisce nella mappa un oggetto appena caricato dal meccanismo di
+	 * persistenza, a meno che nel frattempo un altro thread non ne abbia già
+	 * inserito uno con lo stesso identificativo (nel qual caso viene restituito
+	 * quest'ultimo) o la mappa non sia stata invalidata.
+	 *
+	 * @param key     identificativo dell'oggetto.
+	 * @param value   oggetto caricato.
+	 * @param version versione della mappa letta prima del caricamento.
+	 * @return l'istanza dell'oggetto da utilizzare.
+	 */
+	public V put(K key, V value, long version) {
+		V existing = entries.putIfAbsent(key, value);
+		if (existing != null)
+			return existing;
+		if (this.version.get() != version)
+			entries.remove(key, value);
+		return value;
+	}
+
+	/**
+	 * Rimuove dalla mappa l'oggetto identificato da {@code key}.
+	 *
+	 * @param key identificativo dell'oggetto da rimuovere.
+	 */
+	public void invalidate(K key) {
+		version.incrementAndGet();
+		entries.remove(key);
+	}
+
+	/**
+	 * Rimuove tutti gli oggetti dalla mappa.
+	 */
+	public void invalidateAll() {
+		version.incrementAndGet();
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+}
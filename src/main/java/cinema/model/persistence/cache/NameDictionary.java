@@ -0,0 +1,61 @@
+package cinema.model.persistence.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dizionario dei nomi letti dal meccanismo di persistenza dei dati (generi,
+ * registi e attori dei film).
+ *
+ * <p>
+ * Ogni nome distinto viene mantenuto in memoria in un'unica istanza, condivisa
+ * da tutti gli oggetti che lo contengono: un genere come "Drammatico" è
+ * presente una sola volta anche se appartiene a molti film. I nomi non cambiano
+ * una volta letti, quindi il dizionario non deve essere invalidato; la sua
+ * dimensione è limitata dal numero di nomi distinti presenti sul meccanismo di
+ * persistenza.
+ *
+ * <p>
+ * Il dizionario può essere usato contemporaneamente da più thread.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class NameDictionary {
+
+	/**
+	 * Istanza condivisa di ogni nome, identificata dal nome stesso.
+	 */
+	private final ConcurrentHashMap<String, String> names;
+
+	/**
+	 * Costruttore del dizionario (vuoto).
+	 */
+	public NameDictionary() {
+		this.names = new ConcurrentHashMap<String, String>();
+	}
+
+	/**
+	 * Restituisce l'istanza condivisa di {@code name}, che diventa {@code name}
+	 * stesso se il nome non era ancora presente nel dizionario.
+	 *
+	 * @param name nome letto dal meccanismo di persistenza.
+	 * @return l'istanza condivisa uguale a {@code name}.
+	 */
+	public String intern(String name) {
+		String interned = names.get(name);
+		if (interned != null)
+			return interned;
+		interned = names.putIfAbsent(name, name);
+		return interned != null ? interned : name;
+	}
+
+	/**
+	 * Restituisce il numero di nomi distinti presenti nel dizionario.
+	 *
+	 * @return il numero di nomi presenti.
+	 */
+	public int size() {
+		return names.size();
+	}
+
+}
@@ -0,0 +1,34 @@
+package cinema.model.persistence.codec;
+
+/**
+ * Convertitori condivisi delle colonne del database relazionale.
+ *
+ * <p>
+ * I convertitori sono privi di stato e possono essere usati
+ * contemporaneamente da più thread.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public final class ColumnCodecs {
+
+	/**
+	 * Convertitore di data e ora ({@code Projection.datetime}).
+	 */
+	public static final EpochDateTimeCodec DATE_TIME = new EpochDateTimeCodec();
+
+	/**
+	 * Convertitore delle date ({@code Discount.date} e {@code Reservation.date}).
+	 */
+	public static final EpochDateCodec DATE = new EpochDateCodec();
+
+	/**
+	 * Convertitore dell'occupazione dei posti delle proiezioni
+	 * ({@code SeatMap.occupancy}).
+	 */
+	public static final SeatBitmapCodec SEAT_BITMAP = new SeatBitmapCodec();
+
+	private ColumnCodecs() {
+	}
+
+}
@@ -0,0 +1,82 @@
+package cinema.model.persistence.codec;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Salva una data come numero intero di secondi trascorsi dal 1 gennaio 1970
+ * fino alla mezzanotte della data, con la stessa convenzione di
+ * {@code EpochDateTimeCodec}: una data e l'inizio della stessa giornata
+ * corrispondono allo stesso valore.
+ *
+ * <p>
+ * Vengono letti anche i valori testuali nel formato {@code yyyy-MM-dd} salvati
+ * prima della migrazione alla rappresentazione numerica.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class EpochDateCodec implements IColumnCodec<LocalDate> {
+
+	/**
+	 * Formato testuale con cui le date erano salvate prima della migrazione.
+	 */
+	private static final DateTimeFormatter LEGACY_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+	/**
+	 * Secondi contenuti in un giorno.
+	 */
+	private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+	/**
+	 * Restituisce i secondi corrispondenti alla mezzanotte di {@code date}, ovvero
+	 * il valore salvato sul database.
+	 *
+	 * @param date data da convertire.
+	 * @return i secondi trascorsi dal 1 gennaio 1970.
+	 */
+	public long encode(LocalDate date) {
+		return date.toEpochSecond(LocalTime.MIDNIGHT, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Restituisce la data corrispondente ai secondi salvati sul database.
+	 *
+	 * @param epochSecond secondi trascorsi dal 1 gennaio 1970.
+	 * @return la data che contiene l'istante indicato.
+	 */
+	public LocalDate decode(long epochSecond) {
+		return LocalDate.ofEpochDay(Math.floorDiv(epochSecond, SECONDS_PER_DAY));
+	}
+
+	@Override
+	public LocalDate read(ResultSet result, int column) throws SQLException {
+		Object value = result.getObject(column);
+		if (value == null)
+			return null;
+		if (value instanceof Number)
+			return decode(((Number) value).longValue());
+		try {
+			return LocalDate.parse(value.toString(), LEGACY_FORMAT);
+		} catch (DateTimeParseException e) {
+			throw new SQLDataException("Il valore " + value + " non è una data valida.", e);
+		}
+	}
+
+	@Override
+	public void bind(PreparedStatement pstatement, int parameter, LocalDate value) throws SQLException {
+		if (value == null)
+			pstatement.setNull(parameter, Types.INTEGER);
+		else
+			pstatement.setLong(parameter, encode(value));
+	}
+
+}
@@ -0,0 +1,79 @@
+package cinema.model.persistence.codec;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Salva data e ora come numero intero di secondi trascorsi dal 1 gennaio 1970.
+ *
+ * <p>
+ * Data e ora sono quelle locali del cinema e vengono convertite senza fuso
+ * orario (come se fossero in UTC), quindi lo stesso valore viene riletto
+ * identico anche al cambio dell'ora legale. Il confronto tra due valori sul
+ * database è un confronto tra interi, equivalente a quello cronologico.
+ *
+ * <p>
+ * Vengono letti anche i valori testuali nel formato {@code yyyy-MM-dd HH:mm:ss}
+ * salvati prima della migrazione alla rappresentazione numerica.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class EpochDateTimeCodec implements IColumnCodec<LocalDateTime> {
+
+	/**
+	 * Formato testuale con cui data e ora erano salvate prima della migrazione.
+	 */
+	private static final DateTimeFormatter LEGACY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * Restituisce i secondi corrispondenti a {@code dateTime}, ovvero il valore
+	 * salvato sul database.
+	 *
+	 * @param dateTime data e ora da convertire.
+	 * @return i secondi trascorsi dal 1 gennaio 1970.
+	 */
+	public long encode(LocalDateTime dateTime) {
+		return dateTime.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	/**
+	 * Restituisce la data e l'ora corrispondenti ai secondi salvati sul database.
+	 *
+	 * @param epochSecond secondi trascorsi dal 1 gennaio 1970.
+	 * @return la data e l'ora corrispondenti.
+	 */
+	public LocalDateTime decode(long epochSecond) {
+		return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+	}
+
+	@Override
+	public LocalDateTime read(ResultSet result, int column) throws SQLException {
+		Object value = result.getObject(column);
+		if (value == null)
+			return null;
+		if (value instanceof Number)
+			return decode(((Number) value).longValue());
+		try {
+			return LocalDateTime.parse(value.toString(), LEGACY_FORMAT);
+		} catch (DateTimeParseException e) {
+			throw new SQLDataException("Il valore " + value + " non è una data e ora valida.", e);
+		}
+	}
+
+	@Override
+	public void bind(PreparedStatement pstatement, int parameter, LocalDateTime value) throws SQLException {
+		if (value == null)
+			pstatement.setNull(parameter, Types.INTEGER);
+		else
+			pstatement.setLong(parameter, encode(value));
+	}
+
+}
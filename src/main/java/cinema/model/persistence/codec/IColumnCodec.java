@@ -0,0 +1,44 @@
+package cinema.model.persistence.codec;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Converte i valori di un tipo Java nella rappresentazione con cui sono salvati
+ * in una colonna del database relazionale e viceversa.
+ *
+ * <p>
+ * Il valore {@code null} corrisponde al valore {@code NULL} della colonna.
+ *
+ * @param <T> tipo Java dei valori della colonna.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface IColumnCodec<T> {
+
+	/**
+	 * Legge il valore della colonna {@code column} della riga corrente di
+	 * {@code result}.
+	 *
+	 * @param result risultato posizionato sulla riga da leggere.
+	 * @param column indice della colonna (a partire da 1).
+	 * @return il valore letto, o null se la colonna contiene {@code NULL}.
+	 * @throws SQLException se il valore non può essere letto o non è nel formato
+	 *                      atteso.
+	 */
+	public T read(ResultSet result, int column) throws SQLException;
+
+	/**
+	 * Assegna {@code value} al parametro {@code parameter} di
+	 * {@code pstatement}.
+	 *
+	 * @param pstatement query da parametrizzare.
+	 * @param parameter  indice del parametro (a partire da 1).
+	 * @param value      valore da assegnare, eventualmente null.
+	 * @throws SQLException se il parametro non può essere assegnato.
+	 */
+	public void bind(PreparedStatement pstatement, int parameter, T value) throws SQLException;
+
+}
@@ -0,0 +1,55 @@
+package cinema.model.persistence.codec;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.BitSet;
+
+/**
+ * Salva l'occupazione dei posti di una proiezione come sequenza di bit, con un
+ * bit per ogni posto della sala (1 se il posto è occupato).
+ *
+ * <p>
+ * Il posto nella fila {@code row} e nella colonna {@code column} corrisponde al
+ * bit {@code row * columns + column}, dove {@code columns} è il numero di
+ * colonne della sala (si veda {@code index(row, column, columns)}). Il bit
+ * {@code i} si trova nel byte {@code i / 8}, in posizione {@code i % 8} a
+ * partire dal bit meno significativo, come in {@code BitSet.valueOf(bytes)}.
+ * I byte finali privi di posti occupati possono essere omessi.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatBitmapCodec implements IColumnCodec<BitSet> {
+
+	/**
+	 * Restituisce la posizione del bit corrispondente a un posto.
+	 *
+	 * @param row     fila del posto.
+	 * @param column  colonna del posto.
+	 * @param columns numero di colonne della sala.
+	 * @return la posizione del bit del posto.
+	 */
+	public static int index(int row, int column, int columns) {
+		return row * columns + column;
+	}
+
+	@Override
+	public BitSet read(ResultSet result, int column) throws SQLException {
+		byte[] bytes = result.getBytes(column);
+		if (bytes == null)
+			// Un BLOB vuoto viene restituito come null dal driver
+			return result.wasNull() ? null : new BitSet();
+		return BitSet.valueOf(bytes);
+	}
+
+	@Override
+	public void bind(PreparedStatement pstatement, int parameter, BitSet value) throws SQLException {
+		if (value == null)
+			pstatement.setNull(parameter, Types.BLOB);
+		else
+			pstatement.setBytes(parameter, value.toByteArray());
+	}
+
+}
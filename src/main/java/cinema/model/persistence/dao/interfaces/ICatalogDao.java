@@ -0,0 +1,25 @@
+package cinema.model.persistence.dao.interfaces;
+
+import java.sql.SQLException;
+
+import cinema.model.persistence.snapshot.CatalogVersion;
+
+/**
+ * Contiene i metodi necessari per conoscere la versione dei dati del catalogo
+ * (film, sale e proiezioni) e dell'occupazione dei posti.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface ICatalogDao {
+
+	/**
+	 * Restituisce la versione corrente del catalogo e dell'occupazione dei posti.
+	 * 
+	 * @return la versione corrente.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public CatalogVersion getCatalogVersion() throws SQLException;
+
+}
@@ -25,6 +25,19 @@ public interface ICouponDao {
 	 */
 	public ArrayList<Coupon> getAllCoupons() throws SQLException, CouponException;
 
+	/**
+	 * Apre un cursore che scorre tutti i coupon mantenuti dal meccanismo di
+	 * persistenza, leggendoli man mano che vengono richiesti. I coupon non validi
+	 * interrompono la lettura con un errore.
+	 * 
+	 * @param fetchSize numero di coupon da leggere dal meccanismo di persistenza
+	 *                  per volta.
+	 * @return il cursore sui coupon, da chiudere al termine dell'utilizzo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public ICursor<Coupon> openAllCoupons(int fetchSize) throws SQLException;
+
 	/**
 	 * Restituisce un coupon sulla base del suo codice promozionale.
 	 * 
@@ -42,9 +55,11 @@ public interface ICouponDao {
 	 * Imposta un coupon come usato attraverso il meccanismo di persistenza.
 	 * 
 	 * @param promoCode codice promozionale del coupon da segnalare come utilizzato.
+	 * @return true se il coupon è stato segnato come utilizzato, false se non
+	 *         esiste o era già stato utilizzato.
 	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
 	 *                      meccanismo di persistenza.
 	 */
-	public void setCouponUsed(String promoCode) throws SQLException;
+	public boolean setCouponUsed(String promoCode) throws SQLException;
 
 }
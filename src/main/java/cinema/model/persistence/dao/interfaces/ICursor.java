@@ -0,0 +1,46 @@
+package cinema.model.persistence.dao.interfaces;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Cursore che scorre gli elementi restituiti dal meccanismo di persistenza man
+ * mano che vengono letti, senza mantenerli tutti in memoria.
+ *
+ * <p>
+ * Il cursore mantiene occupate le risorse del meccanismo di persistenza (ad
+ * esempio la connessione al database) fino a quando non viene chiuso, quindi va
+ * usato in un blocco try-with-resources dallo stesso thread che lo ha aperto.
+ * Il cursore si chiude automaticamente anche quando tutti gli elementi sono
+ * stati letti. Gli errori del meccanismo di persistenza durante la lettura
+ * vengono segnalati con {@code UncheckedPersistenceException}.
+ *
+ * @param <T> tipo degli elementi restituiti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface ICursor<T> extends Iterator<T>, AutoCloseable {
+
+	/**
+	 * Rilascia le risorse del meccanismo di persistenza occupate dal cursore.
+	 */
+	@Override
+	public void close();
+
+	/**
+	 * Restituisce gli elementi rimanenti del cursore sotto forma di stream
+	 * sequenziale, la cui chiusura chiude anche il cursore.
+	 *
+	 * @return lo stream degli elementi del cursore.
+	 */
+	public default Stream<T> stream() {
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+}
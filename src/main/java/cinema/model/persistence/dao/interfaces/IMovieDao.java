@@ -31,4 +31,27 @@ public interface IMovieDao {
 	 */
 	public ArrayList<Movie> getAllMovies() throws SQLException;
 
+	/**
+	 * Restituisce i film che appartengono al genere {@code genre}.
+	 * 
+	 * @param genre nome del genere.
+	 * @return i film del genere, in ordine di identificativo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public ArrayList<Movie> getMoviesByGenre(String genre) throws SQLException;
+
+	/**
+	 * Apre un cursore che scorre tutti i film mantenuti dal meccanismo di
+	 * persistenza, leggendoli man mano che vengono richiesti.
+	 * 
+	 * @param fetchSize numero di film da leggere dal meccanismo di persistenza
+	 *                  per volta.
+	 * @return il cursore sui film, in ordine di identificativo, da chiudere al
+	 *         termine dell'utilizzo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public ICursor<Movie> openAllMovies(int fetchSize) throws SQLException;
+
 }
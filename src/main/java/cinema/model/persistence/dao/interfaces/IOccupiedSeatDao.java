@@ -5,6 +5,7 @@ import java.sql.SQLException;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.projection.Projection;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Contiene i metodi necessari per mantenere la persistenza dei dati riguardanti
@@ -31,10 +32,15 @@ public interface IOccupiedSeatDao {
 	 * @param reservation prenotazione di cui si vuole occupare i posti.
 	 * @throws SQLException  se vengono riscontrati errori nell'interazione col
 	 *                       meccanismo di persistenza.
-	 * @throws RoomException se vengono riscontrati errori nell'identificazione dei
-	 *                       posti all'interno della sala.
+	 * @throws RoomException             se vengono riscontrati errori
+	 *                                   nell'identificazione dei posti all'interno
+	 *                                   della sala.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   risultano già occupati: in questo caso
+	 *                                   nessun posto viene reso persistente.
 	 */
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws SQLException, RoomException;
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws SQLException, RoomException, SeatAvailabilityException;
 
 	/**
 	 * Controlla se il posto della proiezione {@code projectionId} identificato
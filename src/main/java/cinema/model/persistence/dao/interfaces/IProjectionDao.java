@@ -1,6 +1,7 @@
 package cinema.model.persistence.dao.interfaces;
 
 import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 
 import cinema.model.cinema.util.RoomException;
@@ -63,6 +64,61 @@ public interface IProjectionDao {
 	 */
 	public ArrayList<Projection> getAllProjections() throws SQLException, PersistenceException;
 
+	/**
+	 * Apre un cursore che scorre tutte le proiezioni gestite dal cinema,
+	 * leggendole (insieme ai relativi posti occupati) man mano che vengono
+	 * richieste.
+	 * 
+	 * @param fetchSize numero di proiezioni da leggere dal meccanismo di
+	 *                  persistenza per volta.
+	 * @return il cursore sulle proiezioni, in ordine di identificativo, da
+	 *         chiudere al termine dell'utilizzo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public ICursor<Projection> openAllProjections(int fetchSize) throws SQLException;
+
+	/**
+	 * Restituisce le proiezioni che si svolgono tra {@code from} (incluso) e
+	 * {@code to} (escluso) attraverso il meccanismo di persistenza.
+	 * 
+	 * @param from inizio dell'intervallo temporale.
+	 * @param to   fine dell'intervallo temporale.
+	 * @return le proiezioni comprese nell'intervallo, in ordine cronologico.
+	 * @throws SQLException         se vengono riscontrati errori nell'interazione
+	 *                              con il meccanismo di persistenza.
+	 * @throws PersistenceException se vengono riscontrati errori nella gestione
+	 *                              della persistenza.
+	 */
+	public ArrayList<Projection> getProjectionsBetween(LocalDateTime from, LocalDateTime to)
+			throws SQLException, PersistenceException;
+
+	/**
+	 * Restituisce le proiezioni del film identificato da {@code movieId} che si
+	 * svolgono dopo {@code now} attraverso il meccanismo di persistenza.
+	 * 
+	 * @param movieId identificativo del film.
+	 * @param now     istante dopo il quale devono svolgersi le proiezioni.
+	 * @return le proiezioni future del film, in ordine cronologico.
+	 * @throws SQLException         se vengono riscontrati errori nell'interazione
+	 *                              con il meccanismo di persistenza.
+	 * @throws PersistenceException se vengono riscontrati errori nella gestione
+	 *                              della persistenza.
+	 */
+	public ArrayList<Projection> getUpcomingProjectionsByMovie(int movieId, LocalDateTime now)
+			throws SQLException, PersistenceException;
+
+	/**
+	 * Restituisce gli identificativi dei film che hanno almeno una proiezione
+	 * dopo {@code now} attraverso il meccanismo di persistenza.
+	 * 
+	 * @param now istante dopo il quale devono svolgersi le proiezioni.
+	 * @return gli identificativi dei film in programmazione.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public ArrayList<Integer> getUpcomingMovieIds(LocalDateTime now) throws SQLException;
+
 	/**
 	 * Elimina dal meccanismo di persistenza una proiezione identificata da
 	 * {@code id}.
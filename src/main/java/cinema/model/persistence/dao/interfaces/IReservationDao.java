@@ -5,6 +5,7 @@ import java.sql.SQLException;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Contiene i metodi necessari per mantenere la persistenza dei dati riguardanti
@@ -46,10 +47,16 @@ public interface IReservationDao {
 	 * @throws PersistenceException se i dati riguardanti il film o la proiezione
 	 *                              alla quale si riferisce la prenotazione non sono
 	 *                              validi.
-	 * @throws RoomException        se il numero della sala della proiezione a cui
-	 *                              si riferisce la prenotazione non è valida.
+	 * @throws RoomException             se il numero della sala della proiezione
+	 *                                   a cui si riferisce la prenotazione non è
+	 *                                   valida.
+	 * @throws SeatAvailabilityException se uno o più posti della prenotazione
+	 *                                   risultano già occupati: in questo caso
+	 *                                   la prenotazione non viene resa
+	 *                                   persistente.
 	 */
-	public void setReservationFields(Reservation reservation) throws SQLException, PersistenceException, RoomException;
+	public void setReservationFields(Reservation reservation)
+			throws SQLException, PersistenceException, RoomException, SeatAvailabilityException;
 
 	/**
 	 * Restituisce l'identificativo dell'ultima prenotazione effettuata e resa
@@ -61,6 +68,22 @@ public interface IReservationDao {
 	 */
 	public long getLastReservationId() throws SQLException;
 
+	/**
+	 * Riserva un blocco di identificativi consecutivi per nuove prenotazioni.
+	 * 
+	 * <p>
+	 * Gli identificativi del blocco non vengono più restituiti da chiamate
+	 * successive, anche se effettuate da altri processi che condividono lo stesso
+	 * meccanismo di persistenza, e sono maggiori di quelli di tutte le
+	 * prenotazioni già memorizzate.
+	 * 
+	 * @param blockSize numero di identificativi da riservare.
+	 * @return il primo identificativo del blocco riservato.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione con il
+	 *                      meccanismo di persistenza.
+	 */
+	public long reserveReservationIds(int blockSize) throws SQLException;
+
 	/**
 	 * Rimuove una prenotazione dal meccanismo di persistenza dei dati quando non va
 	 * a buon fine il pagamento di questa.
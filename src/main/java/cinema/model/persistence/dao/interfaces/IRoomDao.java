@@ -39,4 +39,18 @@ public interface IRoomDao {
 	 */
 	public ArrayList<Room> getAllRooms() throws SQLException, RoomException;
 
+	/**
+	 * Apre un cursore che scorre tutte le sale mantenute dal meccanismo di
+	 * persistenza, leggendole man mano che vengono richieste. Le sale con
+	 * dimensioni non valide interrompono la lettura con un errore.
+	 * 
+	 * @param fetchSize numero di sale da leggere dal meccanismo di persistenza
+	 *                  per volta.
+	 * @return il cursore sulle sale, in ordine di identificativo, da chiudere al
+	 *         termine dell'utilizzo.
+	 * @throws SQLException se vengono riscontrati errori nell'interazione col
+	 *                      meccanismo di persistenza.
+	 */
+	public ICursor<Room> openAllRooms(int fetchSize) throws SQLException;
+
 }
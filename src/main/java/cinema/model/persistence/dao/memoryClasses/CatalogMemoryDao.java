@@ -0,0 +1,34 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import cinema.model.persistence.dao.interfaces.ICatalogDao;
+import cinema.model.persistence.snapshot.CatalogVersion;
+
+/**
+ * Implementa in memoria la lettura della versione del catalogo.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CatalogMemoryDao implements ICatalogDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public CatalogMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public CatalogVersion getCatalogVersion() {
+		return database.getCatalogVersion();
+	}
+
+}
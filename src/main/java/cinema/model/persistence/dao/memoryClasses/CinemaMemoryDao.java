@@ -0,0 +1,77 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import cinema.model.persistence.dao.interfaces.ICinemaDao;
+
+/**
+ * Implementa in memoria la persistenza delle informazioni relative al cinema e
+ * al gestore.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CinemaMemoryDao implements ICinemaDao {
+
+	/**
+	 * Chiavi delle informazioni di un cinema, le stesse restituite dal database
+	 * relazionale.
+	 */
+	static final String[] INFO_KEYS = { "name", "city", "country", "zipCode", "address", "email", "mailPassword",
+			"adminPassword", "logoURL", "discountStrategy", "seatHoldSeconds" };
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public CinemaMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public HashMap<String, String> getAllCinemaInfo(int cinemaId) throws SQLException {
+		Map<String, String> info = database.cinemas.get(cinemaId);
+		if (info == null)
+			throw new SQLException("Il cinema " + cinemaId + " non esiste.");
+		return new HashMap<String, String>(info);
+	}
+
+	@Override
+	public void setPassword(int cinemaId, String newPassword) {
+		setInfo(cinemaId, "adminPassword", newPassword);
+	}
+
+	@Override
+	public void setDiscountStrategy(int cinemaId, String discountStrategyName) {
+		setInfo(cinemaId, "discountStrategy", discountStrategyName);
+	}
+
+	/**
+	 * Modifica un'informazione del cinema all'interno di una sessione di
+	 * scrittura, sostituendo le informazioni con una copia aggiornata.
+	 * 
+	 * @param cinemaId identificativo del cinema.
+	 * @param key      chiave dell'informazione.
+	 * @param value    nuovo valore dell'informazione.
+	 */
+	private void setInfo(int cinemaId, String key, String value) {
+		database.write(() -> {
+			Map<String, String> info = database.cinemas.get(cinemaId);
+			if (info == null)
+				return null;
+			HashMap<String, String> updated = new HashMap<String, String>(info);
+			updated.put(key, value);
+			return database.write(database.cinemas, cinemaId, updated);
+		});
+	}
+
+}
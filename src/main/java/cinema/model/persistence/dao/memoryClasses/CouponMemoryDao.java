@@ -0,0 +1,76 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import cinema.model.persistence.dao.interfaces.ICouponDao;
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase.CouponRow;
+import cinema.model.reservation.discount.coupon.Coupon;
+import cinema.model.reservation.discount.coupon.util.CouponException;
+
+/**
+ * Implementa in memoria la persistenza dei dati relativi ai coupon.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CouponMemoryDao implements ICouponDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public CouponMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public ArrayList<Coupon> getAllCoupons() throws CouponException {
+		ArrayList<Coupon> coupons = new ArrayList<Coupon>();
+		for (CouponRow row : database.coupons.values())
+			coupons.add(new Coupon(row.promocode, row.amount, row.used));
+		return coupons;
+	}
+
+	@Override
+	public ICursor<Coupon> openAllCoupons(int fetchSize) throws SQLException {
+		try {
+			return new IteratorCursor<Coupon>(getAllCoupons().iterator());
+		} catch (CouponException e) {
+			throw new SQLDataException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Coupon getCoupon(String promocode) throws SQLException, CouponException {
+		CouponRow row = database.coupons.get(promocode);
+		if (row == null)
+			throw new SQLException("Il coupon " + promocode + " non esiste.");
+		return new Coupon(row.promocode, row.amount, row.used);
+	}
+
+	/**
+	 * Segna come utilizzato il coupon all'interno di una sessione di scrittura,
+	 * solamente se non era già stato utilizzato.
+	 */
+	@Override
+	public boolean setCouponUsed(String promocode) {
+		return database.write(() -> {
+			CouponRow row = database.coupons.get(promocode);
+			if (row == null || row.used)
+				return false;
+			database.write(database.coupons, promocode, new CouponRow(promocode, row.amount, true));
+			return true;
+		});
+	}
+
+}
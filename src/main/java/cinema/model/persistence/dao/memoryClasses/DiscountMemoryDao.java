@@ -0,0 +1,76 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLException;
+
+import cinema.model.persistence.dao.interfaces.IDiscountDao;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase.DiscountRow;
+import cinema.model.reservation.discount.types.DiscountAge;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.reservation.discount.types.DiscountNumberSpectators;
+
+/**
+ * Implementa in memoria la persistenza dei dati relativi alle strategie di
+ * sconto.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class DiscountMemoryDao implements IDiscountDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public DiscountMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Restituisce gli sconti per data, identificati dal primo sconto di tipo
+	 * {@code DAY}.
+	 */
+	@Override
+	public DiscountDay getAllDayDiscounts() throws SQLException {
+		DiscountDay discounts = new DiscountDay(first("DAY").id);
+		for (DiscountRow row : database.discounts) {
+			if (row.type.equals("DAY"))
+				discounts.addDayDiscount(row.date, row.percentage);
+		}
+		return discounts;
+	}
+
+	@Override
+	public DiscountAge getAgeDiscounts() throws SQLException {
+		DiscountRow row = first("AGE");
+		return new DiscountAge(row.minAge, row.maxAge, row.percentage, row.id);
+	}
+
+	@Override
+	public DiscountNumberSpectators getGroupDiscounts() throws SQLException {
+		DiscountRow row = first("NUMBER");
+		return new DiscountNumberSpectators(row.numberPeople, row.percentage, row.id);
+	}
+
+	/**
+	 * Restituisce il primo sconto del tipo {@code type}.
+	 * 
+	 * @param type tipo di sconto.
+	 * @return il primo sconto del tipo indicato.
+	 * @throws SQLException se non esistono sconti del tipo indicato.
+	 */
+	private DiscountRow first(String type) throws SQLException {
+		for (DiscountRow row : database.discounts) {
+			if (row.type.equals(type))
+				return row;
+		}
+		throw new SQLException("Non esistono sconti di tipo " + type + ".");
+	}
+
+}
@@ -0,0 +1,692 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.cache.NameDictionary;
+import cinema.model.persistence.codec.ColumnCodecs;
+import cinema.model.persistence.codec.SeatBitmapCodec;
+import cinema.model.persistence.pool.ISession;
+import cinema.model.persistence.snapshot.CatalogVersion;
+
+/**
+ * Mantiene in memoria i dati gestiti dall'applicazione, in alternativa al
+ * database relazionale, per le interfacce verso la persistenza
+ * {@code *MemoryDao}.
+ *
+ * <p>
+ * Ogni tabella del database relazionale corrisponde a una mappa concorrente,
+ * quindi le letture non richiedono sincronizzazione. Le righe non vengono mai
+ * modificate: ogni scrittura sostituisce la riga con una nuova, in modo che una
+ * lettura concorrente veda sempre una riga completa. Le scritture vengono
+ * eseguite da un thread alla volta, all'interno di una sessione ottenuta da
+ * {@code beginWrite()} (equivalente alla connessione di scrittura del database
+ * relazionale). Durante una transazione esplicita della sessione ogni
+ * scrittura registra l'operazione che la annulla, così che la transazione (o
+ * la parte successiva a un punto di salvataggio) possa essere annullata. A
+ * differenza del database relazionale, le letture possono vedere le scritture
+ * di una transazione non ancora confermata.
+ *
+ * <p>
+ * Il contenuto iniziale può essere letto da uno script SQL con le stesse
+ * istruzioni {@code INSERT} di {@code persistence/dbSchema.sql} tramite
+ * {@code load(script)}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class InMemoryDatabase {
+
+	/**
+	 * Formato testuale di data e ora delle proiezioni nello script iniziale.
+	 */
+	private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/**
+	 * Film, identificati dal loro identificativo.
+	 */
+	final ConcurrentSkipListMap<Integer, Movie> movies;
+
+	/**
+	 * Sale, identificate dal loro numero.
+	 */
+	final ConcurrentSkipListMap<Integer, Room> rooms;
+
+	/**
+	 * Proiezioni, identificate dal loro identificativo.
+	 */
+	final ConcurrentSkipListMap<Integer, ProjectionRow> projections;
+
+	/**
+	 * Occupazione dei posti di ogni proiezione, identificata dalla proiezione. Il
+	 * posto nella fila {@code row} e nella colonna {@code column} corrisponde al
+	 * bit {@code SeatBitmapCodec.index(row, column, columns)}.
+	 */
+	final ConcurrentHashMap<Integer, BitSet> seatMaps;
+
+	/**
+	 * Prenotazioni, identificate dal loro identificativo.
+	 */
+	final ConcurrentSkipListMap<Long, ReservationRow> reservations;
+
+	/**
+	 * Coupon, identificati dal loro codice.
+	 */
+	final ConcurrentSkipListMap<String, CouponRow> coupons;
+
+	/**
+	 * Sconti, nell'ordine di inserimento.
+	 */
+	final CopyOnWriteArrayList<DiscountRow> discounts;
+
+	/**
+	 * Informazioni dei cinema, identificate dal cinema.
+	 */
+	final ConcurrentHashMap<Integer, Map<String, String>> cinemas;
+
+	/**
+	 * Primo identificativo non ancora riservato della sequenza delle
+	 * prenotazioni.
+	 */
+	private long reservationSequence;
+
+	/**
+	 * Lock ottenuto dalle sessioni di scrittura, assegnato in ordine di arrivo.
+	 */
+	private final ReentrantLock writeLock;
+
+	/**
+	 * Operazioni che annullano le scritture della transazione in corso,
+	 * nell'ordine in cui sono state eseguite le scritture.
+	 */
+	private final ArrayList<Runnable> undoLog;
+
+	/**
+	 * Indica se è in corso una transazione esplicita.
+	 */
+	private boolean inTransaction;
+
+	/**
+	 * Numero di transazioni confermate.
+	 */
+	private final AtomicLong commitCount;
+
+	/**
+	 * Numero di transazioni annullate.
+	 */
+	private final AtomicLong rollbackCount;
+
+	/**
+	 * Numero di scritture sulle tabelle dei film, delle sale e delle proiezioni.
+	 */
+	private final AtomicLong catalogVersion;
+
+	/**
+	 * Numero di scritture sull'occupazione dei posti.
+	 */
+	private final AtomicLong occupancyVersion;
+
+	/**
+	 * Costruttore di un database in memoria vuoto.
+	 */
+	public InMemoryDatabase() {
+		this.movies = new ConcurrentSkipListMap<Integer, Movie>();
+		this.rooms = new ConcurrentSkipListMap<Integer, Room>();
+		this.projections = new ConcurrentSkipListMap<Integer, ProjectionRow>();
+		this.seatMaps = new ConcurrentHashMap<Integer, BitSet>();
+		this.reservations = new ConcurrentSkipListMap<Long, ReservationRow>();
+		this.coupons = new ConcurrentSkipListMap<String, CouponRow>();
+		this.discounts = new CopyOnWriteArrayList<DiscountRow>();
+		this.cinemas = new ConcurrentHashMap<Integer, Map<String, String>>();
+		this.reservationSequence = 1;
+		this.writeLock = new ReentrantLock(true);
+		this.undoLog = new ArrayList<Runnable>();
+		this.inTransaction = false;
+		this.commitCount = new AtomicLong();
+		this.rollbackCount = new AtomicLong();
+		this.catalogVersion = new AtomicLong();
+		this.occupancyVersion = new AtomicLong();
+	}
+
+	/**
+	 * Crea un database in memoria con i dati inseriti dallo script SQL
+	 * {@code script}. Dello script vengono eseguite solamente le istruzioni
+	 * {@code INSERT} sulle tabelle {@code Movie}, {@code Room},
+	 * {@code Projection}, {@code Coupon}, {@code Discount}, {@code Reservation},
+	 * {@code OccupiedSeat} e {@code Cinema}; le altre istruzioni vengono
+	 * ignorate.
+	 *
+	 * @param script percorso dello script SQL.
+	 * @return il database in memoria.
+	 * @throws SQLException se lo script non può essere letto o contiene valori
+	 *                      non validi.
+	 */
+	public static InMemoryDatabase load(Path script) throws SQLException {
+		String text;
+		try {
+			text = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new SQLException("Impossibile leggere lo script " + script + ": " + e.getMessage(), e);
+		}
+		InMemoryDatabase database = new InMemoryDatabase();
+		NameDictionary names = new NameDictionary();
+		ArrayList<SeedScript.Insert> occupiedSeats = new ArrayList<SeedScript.Insert>();
+		for (SeedScript.Insert insert : SeedScript.parse(text)) {
+			if (insert.getTable().equalsIgnoreCase("OccupiedSeat"))
+				occupiedSeats.add(insert);
+			else
+				database.seed(insert, names);
+		}
+		// I posti occupati vengono inseriti per ultimi, quando sono note le sale
+		// di tutte le proiezioni
+		for (SeedScript.Insert insert : occupiedSeats)
+			database.seedOccupiedSeat(insert);
+		return database;
+	}
+
+	/**
+	 * Inserisce la riga di un'istruzione {@code INSERT} dello script iniziale.
+	 *
+	 * @param insert istruzione da eseguire.
+	 * @param names  dizionario con cui condividere i nomi associati ai film.
+	 * @throws SQLException se la riga contiene valori non validi.
+	 */
+	private void seed(SeedScript.Insert insert, NameDictionary names) throws SQLException {
+		switch (insert.getTable().toLowerCase()) {
+		case "movie":
+			int movieId = insert.getInt("id");
+			movies.put(movieId,
+					new Movie(movieId, insert.getString("title"), insert.getString("description"),
+							splitNames(insert.getString("genres"), names),
+							splitNames(insert.getString("directors"), names),
+							splitNames(insert.getString("cast"), names), insert.getInt("rating"),
+							insert.getInt("duration"), insert.getString("imageurl"), insert.getString("trailerurl")));
+			break;
+		case "room":
+			int roomId = insert.getInt("id");
+			try {
+				rooms.put(roomId, new Room(roomId, insert.getInt("rows"), insert.getInt("columns")));
+			} catch (RoomException e) {
+				throw new SQLDataException(e.getMessage(), e);
+			}
+			break;
+		case "projection":
+			int projectionId = insert.getInt("id");
+			projections.put(projectionId, new ProjectionRow(projectionId, toDateTime(insert.get("datetime")),
+					insert.getDouble("price"), insert.getInt("movie"), insert.getInt("room")));
+			break;
+		case "coupon":
+			String promocode = insert.getString("promocode");
+			coupons.put(promocode,
+					new CouponRow(promocode, insert.getDouble("amount"), insert.getInt("used") == 1));
+			break;
+		case "discount":
+			int discountId = insert.has("id") ? insert.getInt("id") : discounts.size() + 1;
+			discounts.add(new DiscountRow(discountId, insert.getString("type"), insert.getDouble("percentage"),
+					insert.getInt("minage"), insert.getInt("maxage"),
+					insert.get("date") == null ? null : toDate(insert.get("date")), insert.getInt("numberpeople")));
+			break;
+		case "reservation":
+			long reservationId = insert.getLong("id");
+			reservations.put(reservationId, new ReservationRow(reservationId,
+					insert.get("date") == null ? null : toDate(insert.get("date")), insert.getInt("projection"),
+					insert.getString("name"), insert.getString("surname"), insert.getString("email"),
+					insert.getString("paymentcardowner"), insert.getString("paymentcard"),
+					insert.getString("coupon"), insert.getInt("discount"),
+					insert.getInt("numberpeopleunderage"), insert.getInt("numberpeopleoverage")));
+			break;
+		case "cinema":
+			HashMap<String, String> info = new HashMap<String, String>();
+			for (String key : CinemaMemoryDao.INFO_KEYS)
+				info.put(key, insert.getString(key));
+			cinemas.put(insert.getInt("id"), info);
+			break;
+		default:
+			// Le altre tabelle (sequenze, versione dello schema) non hanno un
+			// corrispondente in memoria
+		}
+	}
+
+	/**
+	 * Occupa il posto inserito da un'istruzione {@code INSERT} sulla tabella
+	 * {@code OccupiedSeat} dello script iniziale.
+	 *
+	 * @param insert istruzione da eseguire.
+	 * @throws SQLException se la proiezione o la sua sala non esistono.
+	 */
+	private void seedOccupiedSeat(SeedScript.Insert insert) throws SQLException {
+		int projectionId = insert.getInt("projection");
+		ProjectionRow projection = projections.get(projectionId);
+		Room room = projection == null ? null : rooms.get(projection.room);
+		if (room == null)
+			throw new SQLDataException("La proiezione " + projectionId + " del posto occupato non esiste.");
+		seatMaps.computeIfAbsent(projectionId, id -> new BitSet())
+				.set(SeatBitmapCodec.index(insert.getInt("row"), insert.getInt("column"), room.getNumberOfCols()));
+	}
+
+	/**
+	 * Scompone una lista di nomi separati da virgole, eliminando gli spazi
+	 * attorno ai nomi e gli elementi vuoti.
+	 *
+	 * @param list  lista di nomi.
+	 * @param names dizionario con cui condividere i nomi.
+	 * @return i nomi della lista.
+	 */
+	private static ArrayList<String> splitNames(String list, NameDictionary names) {
+		ArrayList<String> split = new ArrayList<String>();
+		if (list == null)
+			return split;
+		for (String name : list.split(",")) {
+			if (!name.isBlank())
+				split.add(names.intern(name.strip()));
+		}
+		return split;
+	}
+
+	/**
+	 * Converte in data e ora un valore dello script, testuale o in secondi.
+	 */
+	private static LocalDateTime toDateTime(Object value) throws SQLException {
+		if (value instanceof Number)
+			return ColumnCodecs.DATE_TIME.decode(((Number) value).longValue());
+		try {
+			return LocalDateTime.parse(String.valueOf(value), DATE_TIME_FORMAT);
+		} catch (DateTimeParseException e) {
+			throw new SQLDataException("Il valore " + value + " non è una data e ora valida.", e);
+		}
+	}
+
+	/**
+	 * Converte in data un valore dello script, testuale o in secondi.
+	 */
+	private static LocalDate toDate(Object value) throws SQLException {
+		if (value instanceof Number)
+			return ColumnCodecs.DATE.decode(((Number) value).longValue());
+		try {
+			return LocalDate.parse(String.valueOf(value));
+		} catch (DateTimeParseException e) {
+			throw new SQLDataException("Il valore " + value + " non è una data valida.", e);
+		}
+	}
+
+	/**
+	 * Apre una sessione di scrittura, attendendo che le sessioni aperte da altri
+	 * thread vengano chiuse. All'interno dello stesso thread le sessioni sono
+	 * rientranti: quelle annidate condividono la transazione della più esterna.
+	 *
+	 * @return la sessione, da chiudere al termine dell'utilizzo.
+	 */
+	public ISession beginWrite() {
+		writeLock.lock();
+		return new MemorySession();
+	}
+
+	/**
+	 * Operazione di scrittura eseguita da {@code write(operation)}.
+	 *
+	 * @param <T> tipo del risultato.
+	 * @param <E> tipo dell'eccezione sollevata dall'operazione.
+	 */
+	@FunctionalInterface
+	interface WriteOperation<T, E extends Exception> {
+
+		T run() throws E;
+
+	}
+
+	/**
+	 * Esegue {@code operation} all'interno di una sessione di scrittura, aperta
+	 * con {@code beginWrite()} e chiusa al termine dell'operazione.
+	 *
+	 * @param <T>       tipo del risultato.
+	 * @param <E>       tipo dell'eccezione sollevata dall'operazione.
+	 * @param operation operazione da eseguire.
+	 * @return il risultato dell'operazione.
+	 * @throws E se l'operazione solleva un'eccezione.
+	 */
+	<T, E extends Exception> T write(WriteOperation<T, E> operation) throws E {
+		ISession session = beginWrite();
+		try {
+			return operation.run();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Scrive la riga {@code value} con chiave {@code key} nella tabella
+	 * {@code table}, registrando l'operazione che la annulla se è in corso una
+	 * transazione. Va chiamato all'interno di una sessione di scrittura.
+	 *
+	 * @param <K>   tipo della chiave.
+	 * @param <V>   tipo della riga.
+	 * @param table tabella da modificare.
+	 * @param key   chiave della riga.
+	 * @param value nuova riga o null per eliminare la riga.
+	 * @return la riga sostituita o eliminata, o null se non esisteva.
+	 */
+	<K, V> V write(ConcurrentMap<K, V> table, K key, V value) {
+		if (!writeLock.isHeldByCurrentThread())
+			throw new IllegalStateException("Scrittura al di fuori di una sessione di scrittura.");
+		V previous = value == null ? table.remove(key) : table.put(key, value);
+		if (table == seatMaps)
+			occupancyVersion.incrementAndGet();
+		else if (table == movies || table == rooms || table == projections)
+			catalogVersion.incrementAndGet();
+		if (inTransaction) {
+			undoLog.add(() -> {
+				if (previous == null)
+					table.remove(key);
+				else
+					table.put(key, previous);
+			});
+		}
+		return previous;
+	}
+
+	/**
+	 * Riserva un blocco di identificativi consecutivi dalla sequenza delle
+	 * prenotazioni. Va chiamato all'interno di una sessione di scrittura.
+	 *
+	 * @param blockSize numero di identificativi da riservare.
+	 * @return il primo identificativo del blocco riservato.
+	 */
+	long reserveReservationIds(int blockSize) {
+		if (!writeLock.isHeldByCurrentThread())
+			throw new IllegalStateException("Scrittura al di fuori di una sessione di scrittura.");
+		long previous = reservationSequence;
+		long first = reservations.isEmpty() ? previous : Math.max(previous, reservations.lastKey() + 1);
+		reservationSequence = first + blockSize;
+		if (inTransaction)
+			undoLog.add(() -> reservationSequence = previous);
+		return first;
+	}
+
+	/**
+	 * Annulla le scritture registrate dopo le prime {@code mark}.
+	 *
+	 * @param mark numero di scritture da mantenere.
+	 */
+	private void undo(int mark) {
+		for (int i = undoLog.size() - 1; i >= mark; i--)
+			undoLog.remove(i).run();
+	}
+
+	public long getCommitCount() {
+		return commitCount.get();
+	}
+
+	public long getRollbackCount() {
+		return rollbackCount.get();
+	}
+
+	/**
+	 * Restituisce la versione del catalogo e dell'occupazione dei posti. I
+	 * contatori ripartono da zero a ogni creazione del database in memoria.
+	 *
+	 * @return la versione corrente.
+	 */
+	public CatalogVersion getCatalogVersion() {
+		return new CatalogVersion(catalogVersion.get(), occupancyVersion.get());
+	}
+
+	/**
+	 * Sessione di scrittura sul database in memoria, che mantiene il lock di
+	 * scrittura fino alla sua chiusura.
+	 */
+	private final class MemorySession implements ISession {
+
+		/**
+		 * Indica se la sessione è stata chiusa.
+		 */
+		private boolean closed;
+
+		@Override
+		public boolean getAutoCommit() {
+			return !inTransaction;
+		}
+
+		@Override
+		public void setAutoCommit(boolean autoCommit) {
+			if (autoCommit)
+				undoLog.clear();
+			inTransaction = !autoCommit;
+		}
+
+		/**
+		 * Conferma le scritture della transazione in corso e la termina: le
+		 * scritture successive vengono confermate immediatamente, finché non viene
+		 * iniziata una nuova transazione con {@code setAutoCommit(false)}.
+		 */
+		@Override
+		public void commit() {
+			undoLog.clear();
+			inTransaction = false;
+			commitCount.incrementAndGet();
+		}
+
+		@Override
+		public void rollback() {
+			undo(0);
+			rollbackCount.incrementAndGet();
+		}
+
+		@Override
+		public Savepoint setSavepoint() throws SQLException {
+			if (!inTransaction)
+				throw new SQLException("Nessuna transazione in corso.");
+			return new MemorySavepoint(undoLog.size());
+		}
+
+		@Override
+		public void rollback(Savepoint savepoint) throws SQLException {
+			int mark = savepoint.getSavepointId();
+			if (mark > undoLog.size())
+				throw new SQLException("Il punto di salvataggio " + mark + " non è valido.");
+			undo(mark);
+		}
+
+		@Override
+		public void releaseSavepoint(Savepoint savepoint) {
+			// Le scritture successive al punto di salvataggio restano nella
+			// transazione in corso
+		}
+
+		@Override
+		public long getCommitCount() {
+			return commitCount.get();
+		}
+
+		@Override
+		public void close() {
+			if (closed)
+				return;
+			closed = true;
+			// Viene annullata solamente una transazione non ancora confermata
+			if (writeLock.getHoldCount() == 1 && inTransaction) {
+				rollback();
+				inTransaction = false;
+			}
+			writeLock.unlock();
+		}
+
+	}
+
+	/**
+	 * Punto di salvataggio di una transazione sul database in memoria,
+	 * corrispondente al numero di scritture registrate al momento della sua
+	 * creazione.
+	 */
+	private static final class MemorySavepoint implements Savepoint {
+
+		private final int mark;
+
+		private MemorySavepoint(int mark) {
+			this.mark = mark;
+		}
+
+		@Override
+		public int getSavepointId() {
+			return mark;
+		}
+
+		@Override
+		public String getSavepointName() throws SQLException {
+			throw new SQLException("Il punto di salvataggio non ha un nome.");
+		}
+
+	}
+
+	/**
+	 * Riga della tabella delle proiezioni.
+	 */
+	static final class ProjectionRow {
+
+		final int id;
+
+		final LocalDateTime dateTime;
+
+		final double price;
+
+		final int movie;
+
+		final int room;
+
+		ProjectionRow(int id, LocalDateTime dateTime, double price, int movie, int room) {
+			this.id = id;
+			this.dateTime = dateTime;
+			this.price = price;
+			this.movie = movie;
+			this.room = room;
+		}
+
+	}
+
+	/**
+	 * Riga della tabella delle prenotazioni.
+	 */
+	static final class ReservationRow {
+
+		final long id;
+
+		final LocalDate date;
+
+		final int projection;
+
+		final String name;
+
+		final String surname;
+
+		final String email;
+
+		final String paymentCardOwner;
+
+		final String paymentCard;
+
+		final String coupon;
+
+		final int discount;
+
+		final int numberPeopleUnderAge;
+
+		final int numberPeopleOverAge;
+
+		ReservationRow(long id) {
+			this(id, null, 0, null, null, null, null, null, null, 0, 0, 0);
+		}
+
+		ReservationRow(long id, LocalDate date, int projection, String name, String surname, String email,
+				String paymentCardOwner, String paymentCard, String coupon, int discount, int numberPeopleUnderAge,
+				int numberPeopleOverAge) {
+			this.id = id;
+			this.date = date;
+			this.projection = projection;
+			this.name = name;
+			this.surname = surname;
+			this.email = email;
+			this.paymentCardOwner = paymentCardOwner;
+			this.paymentCard = paymentCard;
+			this.coupon = coupon;
+			this.discount = discount;
+			this.numberPeopleUnderAge = numberPeopleUnderAge;
+			this.numberPeopleOverAge = numberPeopleOverAge;
+		}
+
+	}
+
+	/**
+	 * Riga della tabella dei coupon.
+	 */
+	static final class CouponRow {
+
+		final String promocode;
+
+		final double amount;
+
+		final boolean used;
+
+		CouponRow(String promocode, double amount, boolean used) {
+			this.promocode = promocode;
+			this.amount = amount;
+			this.used = used;
+		}
+
+	}
+
+	/**
+	 * Riga della tabella degli sconti: a seconda del tipo ({@code AGE},
+	 * {@code DAY} o {@code NUMBER}) sono significativi le età, la data o il
+	 * numero di spettatori.
+	 */
+	static final class DiscountRow {
+
+		final int id;
+
+		final String type;
+
+		final double percentage;
+
+		final int minAge;
+
+		final int maxAge;
+
+		final LocalDate date;
+
+		final int numberPeople;
+
+		DiscountRow(int id, String type, double percentage, int minAge, int maxAge, LocalDate date,
+				int numberPeople) {
+			this.id = id;
+			this.type = type;
+			this.percentage = percentage;
+			this.minAge = minAge;
+			this.maxAge = maxAge;
+			this.date = date;
+			this.numberPeople = numberPeople;
+		}
+
+	}
+
+}
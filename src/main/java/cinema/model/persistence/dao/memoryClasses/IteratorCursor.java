@@ -0,0 +1,42 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.util.Iterator;
+
+import cinema.model.persistence.dao.interfaces.ICursor;
+
+/**
+ * Cursore sugli elementi di un iteratore, usato dalle interfacce verso la
+ * persistenza in memoria. Il cursore non mantiene risorse, quindi la sua
+ * chiusura non ha effetto.
+ *
+ * @param <T> tipo degli elementi restituiti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class IteratorCursor<T> implements ICursor<T> {
+
+	/**
+	 * Iteratore sugli elementi da restituire.
+	 */
+	private final Iterator<T> iterator;
+
+	IteratorCursor(Iterator<T> iterator) {
+		this.iterator = iterator;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	@Override
+	public T next() {
+		return iterator.next();
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
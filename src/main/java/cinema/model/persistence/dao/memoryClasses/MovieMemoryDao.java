@@ -0,0 +1,61 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.util.ArrayList;
+
+import cinema.model.Movie;
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.dao.interfaces.IMovieDao;
+
+/**
+ * Implementa in memoria la persistenza dei dati dei film gestiti
+ * dall'applicazione.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class MovieMemoryDao implements IMovieDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public MovieMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public Movie getMovie(int id) {
+		return database.movies.get(id);
+	}
+
+	@Override
+	public ArrayList<Movie> getAllMovies() {
+		return new ArrayList<Movie>(database.movies.values());
+	}
+
+	/**
+	 * Restituisce i film del genere {@code genre}, in ordine di identificativo.
+	 */
+	@Override
+	public ArrayList<Movie> getMoviesByGenre(String genre) {
+		ArrayList<Movie> found = new ArrayList<Movie>();
+		for (Movie movie : database.movies.values()) {
+			if (movie.getGenres().contains(genre))
+				found.add(movie);
+		}
+		return found;
+	}
+
+	@Override
+	public ICursor<Movie> openAllMovies(int fetchSize) {
+		return new IteratorCursor<Movie>(database.movies.values().iterator());
+	}
+
+}
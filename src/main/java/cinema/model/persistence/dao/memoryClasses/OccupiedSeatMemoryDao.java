@@ -0,0 +1,87 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
+import cinema.model.persistence.codec.SeatBitmapCodec;
+import cinema.model.persistence.dao.interfaces.IOccupiedSeatDao;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase.ProjectionRow;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Implementa in memoria la persistenza dei dati relativi ai posti occupati per
+ * le varie proiezioni gestite dall'applicazione.
+ * 
+ * <p>
+ * L'occupazione dei posti di ogni proiezione è una sequenza di bit che non
+ * viene mai modificata: l'occupazione di nuovi posti la sostituisce con una
+ * copia aggiornata.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class OccupiedSeatMemoryDao implements IOccupiedSeatDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public OccupiedSeatMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public void setOccupiedSeats(Projection projection) {
+		BitSet occupancy = database.seatMaps.get(projection.getId());
+		if (occupancy != null)
+			projection.occupySeats(occupancy);
+	}
+
+	@Override
+	public boolean getSeatOccupationStatus(int projectionId, int row, int column) {
+		BitSet occupancy = database.seatMaps.get(projectionId);
+		ProjectionRow projection = database.projections.get(projectionId);
+		Room room = projection == null ? null : database.rooms.get(projection.room);
+		if (occupancy == null || room == null)
+			return true;
+		return !occupancy.get(SeatBitmapCodec.index(row, column, room.getNumberOfCols()));
+	}
+
+	/**
+	 * Occupa i posti della prenotazione all'interno di una sessione di
+	 * scrittura. Se anche uno solo dei posti risulta già occupato non viene
+	 * occupato nessun posto e vengono riportati i posti in conflitto.
+	 */
+	@Override
+	public void putOccupiedSeatsFromReservation(Reservation reservation) throws SeatAvailabilityException {
+		int projectionId = reservation.getProjection().getId();
+		int columns = reservation.getProjection().getRoom().getNumberOfCols();
+		database.write(() -> {
+			BitSet current = database.seatMaps.get(projectionId);
+			BitSet occupancy = current == null ? new BitSet() : (BitSet) current.clone();
+			ArrayList<String> conflicts = new ArrayList<String>();
+			for (int seatId : reservation.getSeatIds()) {
+				int index = SeatBitmapCodec.index(SeatId.row(seatId), SeatId.col(seatId), columns);
+				if (current != null && current.get(index))
+					conflicts.add(SeatId.toString(seatId));
+				occupancy.set(index);
+			}
+			if (!conflicts.isEmpty())
+				throw new SeatAvailabilityException(
+						"I posti " + String.join(", ", conflicts) + " sono già stati occupati.", conflicts);
+			return database.write(database.seatMaps, projectionId, occupancy);
+		});
+	}
+
+}
@@ -0,0 +1,180 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.Predicate;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.dao.interfaces.IProjectionDao;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase.ProjectionRow;
+import cinema.model.persistence.util.UncheckedPersistenceException;
+import cinema.model.projection.Projection;
+
+/**
+ * Implementa in memoria la persistenza dei dati delle proiezioni gestite
+ * dall'applicazione.
+ * 
+ * <p>
+ * Come per il database relazionale, ogni richiesta costruisce nuove
+ * proiezioni con l'occupazione dei posti corrente, mentre i film e le sale
+ * sono condivisi. Una proiezione il cui film o la cui sala non esistono
+ * provoca un errore.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionMemoryDao implements IProjectionDao {
+
+	/**
+	 * Ordine cronologico delle proiezioni, a parità di data e ora in ordine di
+	 * identificativo.
+	 */
+	private static final Comparator<Projection> CHRONOLOGICAL = Comparator.comparing(Projection::getDateTime)
+			.thenComparingInt(Projection::getId);
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public ProjectionMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public Projection getProjection(int id) throws SQLException {
+		ProjectionRow row = database.projections.get(id);
+		return row == null ? null : build(row);
+	}
+
+	@Override
+	public ArrayList<Projection> getAllProjectionsByMovieId(int movieId) throws SQLException {
+		return select(row -> row.movie == movieId);
+	}
+
+	@Override
+	public ArrayList<Projection> getAllProjections() throws SQLException {
+		return select(row -> true);
+	}
+
+	@Override
+	public ICursor<Projection> openAllProjections(int fetchSize) {
+		Iterator<ProjectionRow> rows = database.projections.values().iterator();
+		return new IteratorCursor<Projection>(new Iterator<Projection>() {
+
+			@Override
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			@Override
+			public Projection next() {
+				try {
+					return build(rows.next());
+				} catch (SQLException e) {
+					throw new UncheckedPersistenceException("La lettura delle proiezioni non è andata a buon fine.", e);
+				}
+			}
+
+		});
+	}
+
+	@Override
+	public ArrayList<Projection> getProjectionsBetween(LocalDateTime from, LocalDateTime to) throws SQLException {
+		ArrayList<Projection> projections = select(
+				row -> !row.dateTime.isBefore(from) && row.dateTime.isBefore(to));
+		projections.sort(CHRONOLOGICAL);
+		return projections;
+	}
+
+	@Override
+	public ArrayList<Projection> getUpcomingProjectionsByMovie(int movieId, LocalDateTime now)
+			throws SQLException {
+		ArrayList<Projection> projections = select(row -> row.movie == movieId && row.dateTime.isAfter(now));
+		projections.sort(CHRONOLOGICAL);
+		return projections;
+	}
+
+	/**
+	 * Restituisce i film con almeno una proiezione successiva a {@code now}, in
+	 * ordine di identificativo della loro prima proiezione.
+	 */
+	@Override
+	public ArrayList<Integer> getUpcomingMovieIds(LocalDateTime now) {
+		LinkedHashSet<Integer> movieIds = new LinkedHashSet<Integer>();
+		for (ProjectionRow row : database.projections.values()) {
+			if (row.dateTime.isAfter(now) && database.movies.containsKey(row.movie))
+				movieIds.add(row.movie);
+		}
+		return new ArrayList<Integer>(movieIds);
+	}
+
+	@Override
+	public void removeProjection(int id) {
+		database.write(() -> database.write(database.projections, id, null));
+	}
+
+	@Override
+	public void putProjection(Projection newProjection) throws SQLException {
+		database.write(() -> {
+			if (database.projections.containsKey(newProjection.getId()))
+				throw new SQLException("La proiezione " + newProjection.getId() + " esiste già.");
+			return database.write(database.projections, newProjection.getId(),
+					new ProjectionRow(newProjection.getId(), newProjection.getDateTime(), newProjection.getPrice(),
+							newProjection.getMovie().getId(), newProjection.getRoom().getNumber()));
+		});
+	}
+
+	/**
+	 * Restituisce le proiezioni che soddisfano {@code filter}, in ordine di
+	 * identificativo.
+	 * 
+	 * @param filter condizione sulle righe delle proiezioni.
+	 * @return le proiezioni trovate.
+	 * @throws SQLException se il film o la sala di una proiezione non esistono.
+	 */
+	private ArrayList<Projection> select(Predicate<ProjectionRow> filter) throws SQLException {
+		ArrayList<Projection> projections = new ArrayList<Projection>();
+		for (ProjectionRow row : database.projections.values()) {
+			if (filter.test(row))
+				projections.add(build(row));
+		}
+		return projections;
+	}
+
+	/**
+	 * Costruisce la proiezione corrispondente a una riga, occupandone i posti.
+	 * 
+	 * @param row riga della proiezione.
+	 * @return la proiezione.
+	 * @throws SQLDataException se il film o la sala non esistono.
+	 */
+	private Projection build(ProjectionRow row) throws SQLDataException {
+		Movie movie = database.movies.get(row.movie);
+		Room room = database.rooms.get(row.room);
+		if (movie == null)
+			throw new SQLDataException("Il film della proiezione " + row.id + " non esiste.");
+		if (room == null)
+			throw new SQLDataException("La sala della proiezione " + row.id + " non esiste.");
+		Projection projection = new Projection(row.id, movie, row.dateTime, row.price, room);
+		BitSet occupancy = database.seatMaps.get(row.id);
+		if (occupancy != null)
+			projection.occupySeats(occupancy);
+		return projection;
+	}
+
+}
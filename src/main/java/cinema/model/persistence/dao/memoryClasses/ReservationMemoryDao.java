@@ -0,0 +1,87 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLException;
+
+import cinema.model.persistence.dao.interfaces.IReservationDao;
+import cinema.model.persistence.dao.memoryClasses.InMemoryDatabase.ReservationRow;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
+
+/**
+ * Implementa in memoria la persistenza delle informazioni sulle prenotazioni
+ * gestite dall'applicazione.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ReservationMemoryDao implements IReservationDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public ReservationMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Salva i dati della prenotazione e ne occupa i posti all'interno della stessa
+	 * sessione di scrittura. I posti vengono occupati per primi, in modo che un
+	 * conflitto lasci la prenotazione invariata.
+	 */
+	@Override
+	public void setReservationFields(Reservation reservation) throws SeatAvailabilityException {
+		database.write(() -> {
+			new OccupiedSeatMemoryDao(database).putOccupiedSeatsFromReservation(reservation);
+			if (database.reservations.containsKey(reservation.getProgressive())) {
+				database.write(database.reservations, reservation.getProgressive(),
+						new ReservationRow(reservation.getProgressive(), reservation.getDate(),
+								reservation.getProjection().getId(), reservation.getPurchaser().getName(),
+								reservation.getPurchaser().getSurname(), reservation.getPurchaser().getEmail(),
+								reservation.getPaymentCard().getOwner(), reservation.getPaymentCard().getNumber(),
+								reservation.getCoupon() == null ? null : reservation.getCoupon().getCode(),
+								reservation.getDiscountId(), reservation.getNumberPeopleUntilMinAge(),
+								reservation.getNumberPeopleOverMaxAge()));
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void putEmptyReservation(Reservation newReservation) throws SQLException {
+		database.write(() -> {
+			if (database.reservations.containsKey(newReservation.getProgressive()))
+				throw new SQLException("La prenotazione " + newReservation.getProgressive() + " esiste già.");
+			return database.write(database.reservations, newReservation.getProgressive(),
+					new ReservationRow(newReservation.getProgressive()));
+		});
+	}
+
+	@Override
+	public long getLastReservationId() {
+		return database.reservations.isEmpty() ? 0 : database.reservations.lastKey();
+	}
+
+	/**
+	 * Riserva un blocco di identificativi dalla sequenza delle prenotazioni. Come
+	 * per il database relazionale, il blocco parte dall'identificativo successivo
+	 * alla prenotazione più recente se questa supera il valore della sequenza.
+	 */
+	@Override
+	public long reserveReservationIds(int blockSize) {
+		return database.write(() -> database.reserveReservationIds(blockSize));
+	}
+
+	@Override
+	public void deleteReservation(long reservationId) {
+		database.write(() -> database.write(database.reservations, reservationId, null));
+	}
+
+}
@@ -0,0 +1,51 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+import cinema.model.cinema.Room;
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.dao.interfaces.IRoomDao;
+
+/**
+ * Implementa in memoria la persistenza dei dati delle sale del cinema.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class RoomMemoryDao implements IRoomDao {
+
+	/**
+	 * Database in memoria.
+	 */
+	private InMemoryDatabase database;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database in memoria.
+	 * 
+	 * @param database database in memoria che implementa la persistenza delle
+	 *                 informazioni.
+	 */
+	public RoomMemoryDao(InMemoryDatabase database) {
+		this.database = database;
+	}
+
+	@Override
+	public Room getRoom(int id) throws SQLException {
+		Room room = database.rooms.get(id);
+		if (room == null)
+			throw new SQLException("La sala " + id + " non esiste.");
+		return room;
+	}
+
+	@Override
+	public ArrayList<Room> getAllRooms() {
+		return new ArrayList<Room>(database.rooms.values());
+	}
+
+	@Override
+	public ICursor<Room> openAllRooms(int fetchSize) {
+		return new IteratorCursor<Room>(database.rooms.values().iterator());
+	}
+
+}
@@ -0,0 +1,222 @@
+package cinema.model.persistence.dao.memoryClasses;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Legge le istruzioni {@code INSERT} di uno script SQL con cui popolare un
+ * {@code InMemoryDatabase}.
+ *
+ * <p>
+ * Vengono riconosciute le istruzioni nella forma
+ * {@code INSERT INTO Tabella (colonna, ...) VALUES (valore, ...);} con valori
+ * numerici, testuali (tra virgolette doppie o singole, raddoppiate al loro
+ * interno) o {@code NULL}, come quelle di {@code persistence/dbSchema.sql}. I
+ * commenti introdotti da {@code --} e tutte le altre istruzioni vengono
+ * ignorati.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class SeedScript {
+
+	/**
+	 * Forma di un'istruzione di inserimento, senza il punto e virgola finale.
+	 */
+	private static final Pattern INSERT = Pattern.compile(
+			"INSERT\\s+INTO\\s+(\\w+)\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\((.*)\\)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	/**
+	 * Riga inserita da un'istruzione dello script.
+	 */
+	static final class Insert {
+
+		private final String table;
+
+		/**
+		 * Valori della riga, identificati dal nome della colonna in minuscolo.
+		 */
+		private final HashMap<String, Object> values;
+
+		private Insert(String table, HashMap<String, Object> values) {
+			this.table = table;
+			this.values = values;
+		}
+
+		String getTable() {
+			return table;
+		}
+
+		boolean has(String column) {
+			return values.get(column.toLowerCase()) != null;
+		}
+
+		Object get(String column) {
+			return values.get(column.toLowerCase());
+		}
+
+		/**
+		 * Restituisce il valore testuale della colonna {@code column}.
+		 *
+		 * @return il valore o null se la colonna è assente o vale {@code NULL}.
+		 */
+		String getString(String column) {
+			Object value = get(column);
+			return value == null ? null : value.toString();
+		}
+
+		/**
+		 * Restituisce il valore numerico della colonna {@code column}.
+		 *
+		 * @return il valore o 0 se la colonna è assente o vale {@code NULL}.
+		 * @throws SQLException se il valore non è numerico.
+		 */
+		long getLong(String column) throws SQLException {
+			Object value = get(column);
+			if (value == null)
+				return 0;
+			if (!(value instanceof Number))
+				throw new SQLDataException("Il valore " + value + " della colonna " + column + " non è numerico.");
+			return ((Number) value).longValue();
+		}
+
+		int getInt(String column) throws SQLException {
+			return (int) getLong(column);
+		}
+
+		double getDouble(String column) throws SQLException {
+			Object value = get(column);
+			if (value == null)
+				return 0.0;
+			if (!(value instanceof Number))
+				throw new SQLDataException("Il valore " + value + " della colonna " + column + " non è numerico.");
+			return ((Number) value).doubleValue();
+		}
+
+	}
+
+	private SeedScript() {
+	}
+
+	/**
+	 * Restituisce le righe inserite dallo script, nell'ordine delle istruzioni.
+	 *
+	 * @param script testo dello script SQL.
+	 * @return le righe inserite.
+	 * @throws SQLException se un'istruzione di inserimento non è valida.
+	 */
+	static ArrayList<Insert> parse(String script) throws SQLException {
+		ArrayList<Insert> inserts = new ArrayList<Insert>();
+		for (String statement : splitStatements(script)) {
+			Matcher matcher = INSERT.matcher(statement);
+			if (!matcher.matches())
+				continue;
+			String[] columns = matcher.group(2).split(",");
+			ArrayList<Object> values = parseValues(matcher.group(3));
+			if (columns.length != values.size())
+				throw new SQLDataException("Numero di valori non valido nell'istruzione: " + statement);
+			HashMap<String, Object> row = new HashMap<String, Object>();
+			for (int i = 0; i < columns.length; i++)
+				row.put(columns[i].strip().toLowerCase(), values.get(i));
+			inserts.add(new Insert(matcher.group(1), row));
+		}
+		return inserts;
+	}
+
+	/**
+	 * Divide lo script nelle sue istruzioni, eliminando i commenti.
+	 *
+	 * @param script testo dello script SQL.
+	 * @return le istruzioni dello script, senza il punto e virgola finale.
+	 */
+	private static ArrayList<String> splitStatements(String script) {
+		ArrayList<String> statements = new ArrayList<String>();
+		StringBuilder statement = new StringBuilder();
+		char quote = 0;
+		for (int i = 0; i < script.length(); i++) {
+			char c = script.charAt(i);
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '-' && i + 1 < script.length() && script.charAt(i + 1) == '-') {
+				while (i < script.length() && script.charAt(i) != '\n')
+					i++;
+				statement.append('\n');
+				continue;
+			} else if (c == ';') {
+				statements.add(statement.toString().strip());
+				statement.setLength(0);
+				continue;
+			}
+			statement.append(c);
+		}
+		if (!statement.toString().isBlank())
+			statements.add(statement.toString().strip());
+		return statements;
+	}
+
+	/**
+	 * Legge l'elenco dei valori di un'istruzione di inserimento.
+	 *
+	 * @param list valori separati da virgole.
+	 * @return i valori letti: {@code String}, {@code Long}, {@code Double} o null.
+	 * @throws SQLException se un valore non è valido.
+	 */
+	private static ArrayList<Object> parseValues(String list) throws SQLException {
+		ArrayList<Object> values = new ArrayList<Object>();
+		int i = 0;
+		while (i < list.length()) {
+			char c = list.charAt(i);
+			if (Character.isWhitespace(c) || c == ',') {
+				i++;
+			} else if (c == '"' || c == '\'') {
+				StringBuilder text = new StringBuilder();
+				i++;
+				while (true) {
+					if (i >= list.length())
+						throw new SQLDataException("Testo non terminato nei valori: " + list);
+					char d = list.charAt(i++);
+					if (d == c) {
+						if (i < list.length() && list.charAt(i) == c) {
+							text.append(c);
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						text.append(d);
+					}
+				}
+				values.add(text.toString());
+			} else {
+				int end = list.indexOf(',', i);
+				if (end < 0)
+					end = list.length();
+				String token = list.substring(i, end).strip();
+				i = end;
+				if (token.equalsIgnoreCase("NULL"))
+					values.add(null);
+				else
+					values.add(parseNumber(token));
+			}
+		}
+		return values;
+	}
+
+	private static Number parseNumber(String token) throws SQLException {
+		try {
+			if (token.contains(".") || token.contains("e") || token.contains("E"))
+				return Double.valueOf(token);
+			return Long.valueOf(token);
+		} catch (NumberFormatException e) {
+			throw new SQLDataException("Il valore " + token + " non è valido.", e);
+		}
+	}
+
+}
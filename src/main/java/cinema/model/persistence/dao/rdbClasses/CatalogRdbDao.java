@@ -0,0 +1,48 @@
+package cinema.model.persistence.dao.rdbClasses;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import cinema.model.persistence.dao.interfaces.ICatalogDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
+import cinema.model.persistence.snapshot.CatalogVersion;
+
+/**
+ * Si interfaccia con un database relazionale per leggere la versione del
+ * catalogo, mantenuta dai trigger della tabella {@code CatalogVersion}.
+ * 
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CatalogRdbDao implements ICatalogDao {
+
+	/**
+	 * Pool di connessioni al database.
+	 */
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale.
+	 * 
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       implementa la persistenza delle informazioni.
+	 */
+	public CatalogRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
+
+	@Override
+	public CatalogVersion getCatalogVersion() throws SQLException {
+		String sql = "SELECT catalog, occupancy FROM CatalogVersion WHERE id = 1;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql);
+				ResultSet result = pstatement.executeQuery()) {
+			if (!result.next())
+				throw new SQLException("La versione del catalogo non è disponibile.");
+			return new CatalogVersion(result.getLong(1), result.getLong(2));
+		}
+	}
+
+}
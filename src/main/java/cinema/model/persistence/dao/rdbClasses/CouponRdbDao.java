@@ -1,12 +1,15 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 
 import cinema.model.persistence.dao.interfaces.ICouponDao;
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 import cinema.model.reservation.discount.coupon.Coupon;
 import cinema.model.reservation.discount.coupon.util.CouponException;
 
@@ -20,18 +23,18 @@ import cinema.model.reservation.discount.coupon.util.CouponException;
 public class CouponRdbDao implements ICouponDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public CouponRdbDao(Connection connection) {
-		this.connection = connection;
+	public CouponRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -41,14 +44,33 @@ public class CouponRdbDao implements ICouponDao {
 	@Override
 	public ArrayList<Coupon> getAllCoupons() throws SQLException, CouponException {
 		String sql = "SELECT * FROM Coupon;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Coupon> coupons = new ArrayList<Coupon>();
-		while (result.next()) {
-			coupons.add(
-					new Coupon(result.getString("promocode"), result.getDouble("amount"), result.getBoolean("used")));
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				ArrayList<Coupon> coupons = new ArrayList<Coupon>();
+				while (result.next()) {
+					coupons.add(
+							new Coupon(result.getString("promocode"), result.getDouble("amount"), result.getBoolean("used")));
+				}
+				return coupons;
+			}
 		}
-		return coupons;
+	}
+
+	/**
+	 * Esegue la query per scorrere tutti i coupon presenti sul database
+	 * relazionale tramite un cursore.
+	 */
+	@Override
+	public ICursor<Coupon> openAllCoupons(int fetchSize) throws SQLException {
+		String sql = "SELECT promocode, amount, used FROM Coupon;";
+		return ResultSetCursor.open(connectionPool, sql, fetchSize, result -> {
+			try {
+				return new Coupon(result.getString(1), result.getDouble(2), result.getBoolean(3));
+			} catch (CouponException e) {
+				throw new SQLDataException(e.getMessage(), e);
+			}
+		});
 	}
 
 	/**
@@ -58,23 +80,33 @@ public class CouponRdbDao implements ICouponDao {
 	@Override
 	public Coupon getCoupon(String promocode) throws SQLException, CouponException {
 		String sql = "SELECT * FROM Coupon WHERE promocode = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, promocode);
-		ResultSet result = pstatement.executeQuery();
-		Coupon coupon = new Coupon(promocode, result.getDouble("amount"), result.getBoolean("used"));
-		return coupon;
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setString(1, promocode);
+			try (ResultSet result = pstatement.executeQuery()) {
+				Coupon coupon = new Coupon(promocode, result.getDouble("amount"), result.getBoolean("used"));
+				return coupon;
+			}
+		}
 	}
 
 	/**
 	 * Esegue la query al database relazionale per rendere persistente la proprietà
 	 * del coupon identificato da {@code promocode} di essere stato usato.
+	 * 
+	 * <p>
+	 * L'aggiornamento è condizionato al fatto che il coupon non sia già stato
+	 * usato, in modo che due acquisti concorrenti non possano utilizzare lo
+	 * stesso coupon.
 	 */
 	@Override
-	public void setCouponUsed(String promocode) throws SQLException {
-		String sql = "UPDATE Coupon SET used = 1 WHERE promocode = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, promocode);
-		pstatement.executeUpdate();
+	public boolean setCouponUsed(String promocode) throws SQLException {
+		String sql = "UPDATE Coupon SET used = 1 WHERE promocode = ? AND used = 0;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setString(1, promocode);
+			return pstatement.executeUpdate() == 1;
+		}
 	}
 
 }
\ No newline at end of file
@@ -1,13 +1,13 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 
+import cinema.model.persistence.codec.ColumnCodecs;
 import cinema.model.persistence.dao.interfaces.IDiscountDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 import cinema.model.reservation.discount.types.DiscountAge;
 import cinema.model.reservation.discount.types.DiscountDay;
 import cinema.model.reservation.discount.types.DiscountNumberSpectators;
@@ -22,18 +22,18 @@ import cinema.model.reservation.discount.types.DiscountNumberSpectators;
 public class DiscountRdbDao implements IDiscountDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public DiscountRdbDao(Connection connection) {
-		this.connection = connection;
+	public DiscountRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
@@ -42,16 +42,17 @@ public class DiscountRdbDao implements IDiscountDao {
 	 */
 	@Override
 	public DiscountDay getAllDayDiscounts() throws SQLException {
-		String sql = "SELECT * FROM Discount WHERE type = \"DAY\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		DiscountDay discounts = new DiscountDay(result.getInt("id"));
-		while (result.next()) {
-			discounts.addDayDiscount(
-					LocalDate.parse(result.getString("date"), DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-					result.getDouble("percentage"));
+		String sql = "SELECT id, date, percentage FROM Discount WHERE type = \"DAY\";";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				DiscountDay discounts = new DiscountDay(result.getInt(1));
+				while (result.next()) {
+					discounts.addDayDiscount(ColumnCodecs.DATE.read(result, 2), result.getDouble(3));
+				}
+				return discounts;
+			}
 		}
-		return discounts;
 	}
 
 	/**
@@ -61,10 +62,13 @@ public class DiscountRdbDao implements IDiscountDao {
 	@Override
 	public DiscountAge getAgeDiscounts() throws SQLException {
 		String sql = "SELECT * FROM Discount WHERE type = \"AGE\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		return new DiscountAge(result.getInt("minage"), result.getInt("maxage"), result.getDouble("percentage"),
-				result.getInt("id"));
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				return new DiscountAge(result.getInt("minage"), result.getInt("maxage"), result.getDouble("percentage"),
+						result.getInt("id"));
+			}
+		}
 	}
 
 	/**
@@ -74,10 +78,13 @@ public class DiscountRdbDao implements IDiscountDao {
 	@Override
 	public DiscountNumberSpectators getGroupDiscounts() throws SQLException {
 		String sql = "SELECT * FROM Discount WHERE type = \"NUMBER\";";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		return new DiscountNumberSpectators(result.getInt("numberpeople"), result.getDouble("percentage"),
-				result.getInt("id"));
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				return new DiscountNumberSpectators(result.getInt("numberpeople"), result.getDouble("percentage"),
+						result.getInt("id"));
+			}
+		}
 	}
 
 }
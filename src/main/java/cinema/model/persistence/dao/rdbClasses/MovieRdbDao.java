@@ -1,14 +1,21 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
 
 import cinema.model.Movie;
+import cinema.model.persistence.cache.IdentityMap;
+import cinema.model.persistence.cache.NameDictionary;
+import cinema.model.persistence.dao.interfaces.ICursor;
 import cinema.model.persistence.dao.interfaces.IMovieDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 
 /**
  * Si interfaccia con un database relazionale per implementare la persistenza
@@ -20,59 +27,266 @@ import cinema.model.persistence.dao.interfaces.IMovieDao;
 public class MovieRdbDao implements IMovieDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Colonne della tabella dei film, nell'ordine in cui vengono lette da
+	 * {@code readMovie(result)}.
+	 */
+	private static final String MOVIE_COLUMNS = "id, title, description, rating, duration, imageurl, trailerurl";
+
+	/**
+	 * Query che recupera i nomi associati ai film: per ogni nome vengono
+	 * restituiti il film, il tipo di associazione ({@code GENRE},
+	 * {@code DIRECTOR} o {@code CAST}) e il nome.
+	 */
+	private static final String CREDIT_QUERY = "SELECT movie, kind, name FROM MovieCredit";
+
+	/**
+	 * Tipo di associazione dei generi del film nella vista {@code MovieCredit}.
+	 */
+	private static final int GENRE = 0;
+
+	/**
+	 * Tipo di associazione dei registi del film nella vista {@code MovieCredit}.
+	 */
+	private static final int DIRECTOR = 1;
+
+	/**
+	 * Tipo di associazione degli attori del film nella vista {@code MovieCredit}.
+	 */
+	private static final int CAST = 2;
+
+	/**
+	 * Film già caricati dal database, identificati dal loro identificativo.
+	 */
+	private IdentityMap<Integer, Movie> movies;
+
+	/**
+	 * Dizionario che condivide i generi, i registi e gli attori tra i film.
+	 */
+	private NameDictionary names;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public MovieRdbDao(Connection connection) {
-		this.connection = connection;
+	public MovieRdbDao(ConnectionPool connectionPool) {
+		this(connectionPool, new IdentityMap<Integer, Movie>(), new NameDictionary());
+	}
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale che condivide
+	 * i film già caricati tramite la mappa {@code movies} e i nomi letti tramite
+	 * il dizionario {@code names}.
+	 * 
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
+	 * @param movies         mappa delle identità dei film.
+	 * @param names          dizionario dei nomi associati ai film.
+	 */
+	public MovieRdbDao(ConnectionPool connectionPool, IdentityMap<Integer, Movie> movies, NameDictionary names) {
+		this.connectionPool = connectionPool;
+		this.movies = movies;
+		this.names = names;
 	}
 
 	/**
 	 * Esegue la query sul database relazionale per recuperare le informazioni sul
-	 * film identificato da {@code id}.
+	 * film identificato da {@code id}, se non è già stato caricato in
+	 * precedenza.
 	 */
 	@Override
 	public Movie getMovie(int id) throws SQLException {
-		String sql = "SELECT * FROM Movie WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<String> genres = new ArrayList<String>(Arrays.asList(result.getString("genres").split(",")));
-		ArrayList<String> cast = new ArrayList<String>(Arrays.asList(result.getString("cast").split(",")));
-		ArrayList<String> directors = new ArrayList<String>(Arrays.asList(result.getString("directors").split(",")));
-		Movie movie = new Movie(id, result.getString("title"), result.getString("description"), genres, directors, cast,
-				result.getInt("rating"), result.getInt("duration"), result.getString("imageurl"),
-				result.getString("trailerurl"));
-		return movie;
+		return getMovies(Collections.singleton(id)).get(id);
 	}
 
 	/**
 	 * Esegue la query per recuperare tutti i film presenti sul database
-	 * relazionale.
+	 * relazionale. I film già caricati in precedenza non vengono costruiti
+	 * nuovamente.
 	 */
 	@Override
 	public ArrayList<Movie> getAllMovies() throws SQLException {
-		String sql = "SELECT * FROM Movie;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Movie> movies = new ArrayList<Movie>();
-		while (result.next()) {
-			ArrayList<String> genres = new ArrayList<String>(Arrays.asList(result.getString("genres").split(",")));
-			ArrayList<String> cast = new ArrayList<String>(Arrays.asList(result.getString("cast").split(",")));
-			ArrayList<String> directors = new ArrayList<String>(
-					Arrays.asList(result.getString("directors").split(",")));
-			movies.add(new Movie(result.getInt("id"), result.getString("title"), result.getString("description"),
-					genres, directors, cast, result.getInt("rating"), result.getInt("duration"),
-					result.getString("imageurl"), result.getString("trailerurl")));
+		String sql = "SELECT " + MOVIE_COLUMNS + " FROM Movie;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			return loadMovies(connection, pstatement);
+		}
+	}
+
+	/**
+	 * Esegue la query per recuperare i film del genere {@code genre} presenti sul
+	 * database relazionale, in ordine di identificativo. Il genere viene cercato
+	 * tramite gli indici delle tabelle dei generi.
+	 */
+	@Override
+	public ArrayList<Movie> getMoviesByGenre(String genre) throws SQLException {
+		String sql = "SELECT " + MOVIE_COLUMNS
+				+ " FROM Movie WHERE id IN (SELECT mg.movie FROM MovieGenre mg JOIN Genre g ON g.id = mg.genre WHERE g.name = ?) ORDER BY id;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setString(1, genre);
+			return loadMovies(connection, pstatement);
+		}
+	}
+
+	/**
+	 * Restituisce i film identificati da {@code ids}, recuperando con un'unica
+	 * query quelli che non sono già stati caricati in precedenza.
+	 * 
+	 * @param ids identificativi dei film da recuperare.
+	 * @return i film trovati, identificati dal loro identificativo.
+	 * @throws SQLException se occorrono errori nell'esecuzione della query.
+	 */
+	HashMap<Integer, Movie> getMovies(Set<Integer> ids) throws SQLException {
+		HashMap<Integer, Movie> found = new HashMap<Integer, Movie>();
+		ArrayList<Integer> missing = new ArrayList<Integer>();
+		for (int id : ids) {
+			Movie movie = movies.get(id);
+			if (movie != null)
+				found.put(id, movie);
+			else
+				missing.add(id);
+		}
+		if (missing.isEmpty())
+			return found;
+		long version = movies.getVersion();
+		String sql = "SELECT " + MOVIE_COLUMNS + " FROM Movie WHERE id IN (" + String.join(", ", Collections.nCopies(missing.size(), "?"))
+				+ ");";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < missing.size(); i++)
+				pstatement.setInt(i + 1, missing.get(i));
+			HashMap<Integer, Movie> loaded = new HashMap<Integer, Movie>();
+			try (ResultSet result = pstatement.executeQuery()) {
+				while (result.next()) {
+					Movie movie = readMovie(result);
+					loaded.put(movie.getId(), movie);
+				}
+			}
+			readCredits(connection, loaded);
+			for (Movie movie : loaded.values())
+				found.put(movie.getId(), movies.put(movie.getId(), movie, version));
 		}
-		return movies;
+		return found;
+	}
+
+	/**
+	 * Esegue la query per scorrere tutti i film presenti sul database relazionale
+	 * tramite un cursore. I film già caricati in precedenza non vengono costruiti
+	 * nuovamente, mentre quelli letti dal cursore non vengono mantenuti in
+	 * memoria. I nomi associati a ogni film letto vengono recuperati sulla stessa
+	 * connessione del cursore.
+	 */
+	@Override
+	public ICursor<Movie> openAllMovies(int fetchSize) throws SQLException {
+		String sql = "SELECT " + MOVIE_COLUMNS + " FROM Movie ORDER BY id;";
+		return ResultSetCursor.open(connectionPool, sql, fetchSize, result -> {
+			Movie movie = movies.get(result.getInt(1));
+			if (movie != null)
+				return movie;
+			movie = readMovie(result);
+			try (PooledConnection connection = connectionPool.borrow()) {
+				readCredits(connection, new HashMap<Integer, Movie>(Collections.singletonMap(movie.getId(), movie)));
+			}
+			return movie;
+		});
+	}
+
+	/**
+	 * Esegue una query che seleziona {@code MOVIE_COLUMNS} e restituisce i film
+	 * letti, nell'ordine delle righe. I film già caricati in precedenza non
+	 * vengono costruiti nuovamente, mentre gli altri vengono completati con
+	 * un'unica query sui nomi associati e aggiunti alla mappa delle identità.
+	 * 
+	 * @param connection connessione su cui è stata preparata la query.
+	 * @param pstatement query già parametrizzata.
+	 * @return i film letti.
+	 * @throws SQLException se occorrono errori nell'esecuzione delle query.
+	 */
+	private ArrayList<Movie> loadMovies(PooledConnection connection, PreparedStatement pstatement)
+			throws SQLException {
+		long version = movies.getVersion();
+		ArrayList<Movie> found = new ArrayList<Movie>();
+		HashMap<Integer, Movie> loaded = new HashMap<Integer, Movie>();
+		try (ResultSet result = pstatement.executeQuery()) {
+			while (result.next()) {
+				Movie movie = movies.get(result.getInt(1));
+				if (movie == null) {
+					movie = readMovie(result);
+					loaded.put(movie.getId(), movie);
+				}
+				found.add(movie);
+			}
+		}
+		if (loaded.isEmpty())
+			return found;
+		readCredits(connection, loaded);
+		found.replaceAll(movie -> loaded.get(movie.getId()) == movie ? movies.put(movie.getId(), movie, version) : movie);
+		return found;
+	}
+
+	/**
+	 * Aggiunge ai film {@code loaded}, appena letti da {@code readMovie(result)},
+	 * i generi, i registi e gli attori, recuperandoli con un'unica query. I nomi
+	 * vengono condivisi tramite il dizionario dei nomi.
+	 * 
+	 * @param connection connessione al database.
+	 * @param loaded     film da completare, identificati dal loro
+	 *                   identificativo.
+	 * @throws SQLException se occorrono errori nell'esecuzione della query.
+	 */
+	private void readCredits(PooledConnection connection, HashMap<Integer, Movie> loaded) throws SQLException {
+		String sql = CREDIT_QUERY + " WHERE movie IN (" + String.join(", ", Collections.nCopies(loaded.size(), "?"))
+				+ ") ORDER BY movie, kind, position;";
+		try (PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			int parameter = 1;
+			for (int id : loaded.keySet())
+				pstatement.setInt(parameter++, id);
+			try (ResultSet result = pstatement.executeQuery()) {
+				while (result.next()) {
+					Movie movie = loaded.get(result.getInt(1));
+					String name = names.intern(result.getString(3));
+					switch (result.getInt(2)) {
+					case GENRE:
+						movie.getGenres().add(name);
+						break;
+					case DIRECTOR:
+						movie.getDirectors().add(name);
+						break;
+					case CAST:
+						movie.getCast().add(name);
+						break;
+					default:
+						throw new SQLDataException("Tipo di associazione " + result.getInt(2) + " non valido.");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Costruisce il film corrispondente alla riga corrente di {@code result}, con
+	 * generi, registi e attori ancora vuoti (si veda
+	 * {@code readCredits(connection, loaded)}).
+	 * 
+	 * <p>
+	 * Le colonne vengono lette per posizione, quindi la riga deve provenire da una
+	 * query che seleziona {@code MOVIE_COLUMNS}.
+	 * 
+	 * @param result risultato di una query posizionato sulla riga del film.
+	 * @return il film letto dalla riga corrente.
+	 * @throws SQLException se la riga non contiene le informazioni del film.
+	 */
+	private static Movie readMovie(ResultSet result) throws SQLException {
+		return new Movie(result.getInt(1), result.getString(2), result.getString(3), new ArrayList<String>(),
+				new ArrayList<String>(), new ArrayList<String>(), result.getInt(4), result.getInt(5),
+				result.getString(6), result.getString(7));
 	}
 
 }
@@ -1,66 +1,76 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.BitSet;
 
-import cinema.model.cinema.PhysicalSeat;
-import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.codec.ColumnCodecs;
+import cinema.model.persistence.codec.SeatBitmapCodec;
 import cinema.model.persistence.dao.interfaces.IOccupiedSeatDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 import cinema.model.projection.Projection;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Si interfaccia con un database relazionale per implementare la persistenza
  * dei dati relativi ai posti occupati per le varie proiezioni gestite
  * dall'applicazione.
  * 
+ * <p>
+ * La tabella {@code OccupiedSeat} è quella di riferimento: indica la
+ * prenotazione a cui appartiene ogni posto occupato e la sua chiave primaria
+ * impedisce di occupare due volte lo stesso posto. L'occupazione dei posti di
+ * ogni proiezione è inoltre salvata come sequenza di bit in un'unica riga della
+ * tabella {@code SeatMap}, aggiornata nella stessa transazione, da cui viene
+ * letta senza dover scorrere i singoli posti.
+ * 
  * @author Screaming Hairy Armadillo Team
  *
  */
 public class OccupiedSeatRdbDao implements IOccupiedSeatDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public OccupiedSeatRdbDao(Connection connection) {
-		this.connection = connection;
+	public OccupiedSeatRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
 	 * Esegeue la query sul database relazionale per ottenere le informazioni sui
 	 * posti occupati in una proiezione e occuparli per sincronizzare i dati locali
 	 * con il database.
+	 * 
+	 * <p>
+	 * L'occupazione dei posti viene letta con un'unica riga della tabella
+	 * {@code SeatMap} e copiata in blocco nella proiezione.
 	 */
 	@Override
 	public void setOccupiedSeats(Projection projection) throws SQLException {
-		String sql = "SELECT * FROM OccupiedSeat WHERE projection = ?";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, projection.getId());
-		ResultSet result = pstatement.executeQuery();
-		while (result.next()) {
-			int row = result.getInt("row");
-			int column = result.getInt("column");
-			try {
-				projection.takeSeat(row, column);
-			} catch (RoomException e) {
-				// Trattando dati sul database non si entra mai in questo catch essendo che non
-				// si scatena
-				// mai l'eccezione siccome i dati sono validi se sono nel database
-				System.out.println(e.getMessage());
+		String sql = "SELECT occupancy FROM SeatMap WHERE projection = ?;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, projection.getId());
+			try (ResultSet result = pstatement.executeQuery()) {
+				if (result.next())
+					projection.occupySeats(ColumnCodecs.SEAT_BITMAP.read(result, 1));
 			}
 		}
-
 	}
 
 	/**
@@ -69,36 +79,160 @@ public class OccupiedSeatRdbDao implements IOccupiedSeatDao {
 	 */
 	@Override
 	public boolean getSeatOccupationStatus(int projectionId, int row, int column) throws SQLException {
-		String sql = "SELECT * FROM OccupiedSeat WHERE projection = ? AND row = ? AND column = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, projectionId);
-		pstatement.setInt(2, row);
-		pstatement.setInt(3, column);
-		ResultSet result = pstatement.executeQuery();
-		if (result.next())
-			return false;
-		return true;
+		String sql = "SELECT s.occupancy, r.columns FROM SeatMap s JOIN Projection p ON p.id = s.projection "
+				+ "JOIN Room r ON r.id = p.room WHERE s.projection = ?;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, projectionId);
+			try (ResultSet result = pstatement.executeQuery()) {
+				if (!result.next())
+					return true;
+				BitSet occupancy = ColumnCodecs.SEAT_BITMAP.read(result, 1);
+				return !occupancy.get(SeatBitmapCodec.index(row, column, result.getInt(2)));
+			}
+		}
 	}
 
 	/**
 	 * Esegue la query sul database relazionale che implementa le persistenza
 	 * dell'occupazione dei posti di una prenotazione il cui pagamento è andato a
 	 * buon fine.
+	 * 
+	 * <p>
+	 * All'interno di una sola transazione (o di quella già in corso sulla
+	 * connessione, se presente) vengono inseriti in blocco i posti appartenenti
+	 * alla prenotazione e viene aggiornata l'occupazione della proiezione nella
+	 * tabella {@code SeatMap}. L'inserimento in {@code OccupiedSeat} ottiene
+	 * l'accesso esclusivo al database, quindi l'occupazione non può essere
+	 * modificata da altri tra la sua lettura e la sua scrittura. Se anche uno solo
+	 * dei posti risulta già occupato non viene salvato nessun posto e vengono
+	 * riportati i posti in conflitto.
 	 */
 	@Override
-	public void putOccupiedSeatsFromReservation(Reservation reservation) throws SQLException, RoomException {
-		for (PhysicalSeat ps : reservation.getSeats()) {
-			String coordinates = reservation.getProjection().getSeatCoordinates(ps);
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			String sql = "INSERT INTO OccupiedSeat(projection, row, column, reservation) VALUES(?, ?, ?, ?);";
-			PreparedStatement pstatement = connection.prepareStatement(sql);
-			pstatement.setInt(1, reservation.getProjection().getId());
-			pstatement.setInt(2, row);
-			pstatement.setInt(3, col);
-			pstatement.setLong(4, reservation.getProgressive());
+	public void putOccupiedSeatsFromReservation(Reservation reservation)
+			throws SQLException, RoomException, SeatAvailabilityException {
+		String sql = "INSERT INTO OccupiedSeat(projection, row, column, reservation) VALUES(?, ?, ?, ?);";
+		int projectionId = reservation.getProjection().getId();
+		int columns = reservation.getProjection().getRoom().getNumberOfCols();
+		int[] seatIds = reservation.getSeatIds();
+		try (PooledConnection connection = connectionPool.borrow()) {
+			boolean ownTransaction = connection.getAutoCommit();
+			boolean committed = false;
+			if (ownTransaction)
+				connection.setAutoCommit(false);
+			try {
+				Savepoint savepoint = connection.setSavepoint();
+				// L'inserimento dei posti viene eseguito per primo, in modo da ottenere
+				// l'accesso esclusivo al database prima di leggere l'occupazione
+				try (PreparedStatement pstatement = connection.prepareStatement(sql)) {
+					for (int seatId : seatIds) {
+						pstatement.setInt(1, projectionId);
+						pstatement.setInt(2, SeatId.row(seatId));
+						pstatement.setInt(3, SeatId.col(seatId));
+						pstatement.setLong(4, reservation.getProgressive());
+						pstatement.addBatch();
+					}
+					pstatement.executeBatch();
+				} catch (SQLException e) {
+					connection.rollback(savepoint);
+					ArrayList<String> conflicts = getConflictingSeats(readOccupancy(connection, projectionId), columns,
+							seatIds);
+					if (conflicts.isEmpty())
+						throw e;
+					throw new SeatAvailabilityException(
+							"I posti " + String.join(", ", conflicts) + " sono già stati occupati.", conflicts);
+				}
+				try {
+					claimSeats(connection, projectionId, columns, seatIds);
+					connection.releaseSavepoint(savepoint);
+				} catch (SQLException | SeatAvailabilityException e) {
+					connection.rollback(savepoint);
+					throw e;
+				}
+				if (ownTransaction) {
+					connection.commit();
+					committed = true;
+				}
+			} finally {
+				if (ownTransaction) {
+					if (!committed)
+						connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Occupa i posti {@code seats} nell'occupazione della proiezione
+	 * {@code projectionId} salvata in {@code SeatMap}, creando la riga se non
+	 * esiste. Va eseguito nella transazione che ha già inserito i posti in
+	 * {@code OccupiedSeat}.
+	 * 
+	 * @param connection   connessione su cui eseguire le query.
+	 * @param projectionId identificativo della proiezione.
+	 * @param columns      numero di colonne della sala della proiezione.
+	 * @param seats        identificativi ({@code SeatId}) dei posti da occupare.
+	 * @throws SQLException               se occorrono errori nell'esecuzione
+	 *                                    delle query.
+	 * @throws SeatAvailabilityException se alcuni dei posti risultano già
+	 *                                    occupati in {@code SeatMap}.
+	 */
+	private void claimSeats(PooledConnection connection, int projectionId, int columns, int[] seats)
+			throws SQLException, SeatAvailabilityException {
+		String sql = "INSERT INTO SeatMap(projection, occupancy, version) VALUES(?, ?, 1) "
+				+ "ON CONFLICT(projection) DO UPDATE SET occupancy = excluded.occupancy, version = version + 1;";
+		BitSet occupancy = readOccupancy(connection, projectionId);
+		ArrayList<String> conflicts = getConflictingSeats(occupancy, columns, seats);
+		if (!conflicts.isEmpty())
+			throw new SeatAvailabilityException(
+					"I posti " + String.join(", ", conflicts) + " sono già stati occupati.", conflicts);
+		for (int seatId : seats)
+			occupancy.set(SeatBitmapCodec.index(SeatId.row(seatId), SeatId.col(seatId), columns));
+		try (PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, projectionId);
+			ColumnCodecs.SEAT_BITMAP.bind(pstatement, 2, occupancy);
 			pstatement.executeUpdate();
 		}
 	}
 
+	/**
+	 * Legge l'occupazione dei posti della proiezione {@code projectionId}.
+	 * 
+	 * @param connection   connessione su cui eseguire la query.
+	 * @param projectionId identificativo della proiezione.
+	 * @return l'occupazione letta, vuota se la proiezione non ha ancora una riga in
+	 *         {@code SeatMap}.
+	 * @throws SQLException se occorrono errori nell'esecuzione della query.
+	 */
+	private BitSet readOccupancy(PooledConnection connection, int projectionId) throws SQLException {
+		String sql = "SELECT occupancy FROM SeatMap WHERE projection = ?;";
+		try (PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, projectionId);
+			try (ResultSet result = pstatement.executeQuery()) {
+				if (!result.next())
+					return new BitSet();
+				return ColumnCodecs.SEAT_BITMAP.read(result, 1);
+			}
+		}
+	}
+
+	/**
+	 * Restituisce, tra i posti indicati, quelli che risultano già occupati in
+	 * {@code occupancy}.
+	 * 
+	 * @param occupancy occupazione dei posti della proiezione.
+	 * @param columns   numero di colonne della sala della proiezione.
+	 * @param seats     identificativi ({@code SeatId}) dei posti da controllare.
+	 * @return le coordinate (ad esempio "B7") dei posti già occupati.
+	 */
+	private static ArrayList<String> getConflictingSeats(BitSet occupancy, int columns, int[] seats) {
+		ArrayList<String> conflicts = new ArrayList<String>();
+		for (int seatId : seats) {
+			if (occupancy.get(SeatBitmapCodec.index(SeatId.row(seatId), SeatId.col(seatId), columns)))
+				conflicts.add(SeatId.toString(seatId));
+		}
+		return conflicts;
+	}
+
 }
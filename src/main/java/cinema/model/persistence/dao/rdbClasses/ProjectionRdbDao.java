@@ -1,17 +1,24 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import cinema.model.Movie;
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.codec.ColumnCodecs;
+import cinema.model.persistence.dao.interfaces.ICursor;
 import cinema.model.persistence.dao.interfaces.IProjectionDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
 
@@ -25,18 +32,50 @@ import cinema.model.projection.Projection;
 public class ProjectionRdbDao implements IProjectionDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Interfaccia da cui vengono recuperati i film proiettati.
+	 */
+	private MovieRdbDao movieDao;
+
+	/**
+	 * Interfaccia da cui vengono recuperate le sale delle proiezioni.
+	 */
+	private RoomRdbDao roomDao;
+
+	/**
+	 * Query che recupera le proiezioni insieme agli identificativi del film
+	 * proiettato e della sala in cui si svolgono e all'occupazione dei posti.
+	 */
+	private static final String PROJECTION_QUERY = "SELECT p.id, p.datetime, p.price, p.movie, p.room, s.occupancy FROM Projection p LEFT JOIN SeatMap s ON s.projection = p.id";
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public ProjectionRdbDao(Connection connection) {
-		this.connection = connection;
+	public ProjectionRdbDao(ConnectionPool connectionPool) {
+		this(connectionPool, new MovieRdbDao(connectionPool), new RoomRdbDao(connectionPool));
+	}
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale che recupera i
+	 * film e le sale delle proiezioni tramite {@code movieDao} e {@code roomDao},
+	 * condividendone le istanze già caricate.
+	 * 
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
+	 * @param movieDao       interfaccia da cui recuperare i film.
+	 * @param roomDao        interfaccia da cui recuperare le sale.
+	 */
+	public ProjectionRdbDao(ConnectionPool connectionPool, MovieRdbDao movieDao, RoomRdbDao roomDao) {
+		this.connectionPool = connectionPool;
+		this.movieDao = movieDao;
+		this.roomDao = roomDao;
 	}
 
 	/**
@@ -47,17 +86,13 @@ public class ProjectionRdbDao implements IProjectionDao {
 	 */
 	@Override
 	public Projection getProjection(int id) throws SQLException, PersistenceException, RoomException {
-		String sql = "SELECT * FROM Projection WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		Movie movie = new MovieRdbDao(connection).getMovie(result.getInt("movie"));
-		Room room = new RoomRdbDao(connection).getRoom(result.getInt("room"));
-		Projection projection = new Projection(id, movie,
-				LocalDateTime.parse(result.getString("datetime"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-				result.getDouble("price"), room);
-		new OccupiedSeatRdbDao(connection).setOccupiedSeats(projection);
-		return projection;
+		String sql = PROJECTION_QUERY + " WHERE p.id = ?;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, id);
+			ArrayList<Projection> projections = loadProjections(pstatement);
+			return projections.isEmpty() ? null : projections.get(0);
+		}
 	}
 
 	/**
@@ -69,20 +104,12 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public ArrayList<Projection> getAllProjectionsByMovieId(int movieId)
 			throws SQLException, PersistenceException, RoomException {
-		String sql = "SELECT * FROM Projection WHERE movie = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, movieId);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Projection> projections = new ArrayList<Projection>();
-		while (result.next()) {
-			Movie movie = new MovieRdbDao(connection).getMovie(result.getInt("movie"));
-			Room room = new RoomRdbDao(connection).getRoom(result.getInt("room"));
-			Projection projection = new Projection(movieId, movie, LocalDateTime.parse(result.getString("datetime"),
-					DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")), result.getDouble("price"), room);
-			new OccupiedSeatRdbDao(connection).setOccupiedSeats(projection);
-			projections.add(projection);
+		String sql = PROJECTION_QUERY + " WHERE p.movie = ? ORDER BY p.id;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, movieId);
+			return loadProjections(pstatement);
 		}
-		return projections;
 	}
 
 	/**
@@ -91,28 +118,106 @@ public class ProjectionRdbDao implements IProjectionDao {
 	 */
 	@Override
 	public ArrayList<Projection> getAllProjections() throws SQLException, PersistenceException {
-		String sql = "SELECT * FROM Projection;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Projection> projections = new ArrayList<Projection>();
-		MovieRdbDao moviePersistence = new MovieRdbDao(connection);
-		RoomRdbDao roomPersistence = new RoomRdbDao(connection);
-		OccupiedSeatRdbDao seatPersistence = new OccupiedSeatRdbDao(connection);
-		while (result.next()) {
-			Movie movie = moviePersistence.getMovie(result.getInt("movie"));
-			Room room = null;
+		String sql = PROJECTION_QUERY + " ORDER BY p.id;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			return loadProjections(pstatement);
+		} catch (RoomException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per scorrere tutte le proiezioni
+	 * tramite un cursore.
+	 * 
+	 * <p>
+	 * Ogni riga contiene anche l'occupazione dei posti della proiezione, quindi in
+	 * memoria viene mantenuta solamente la proiezione corrente (oltre ai film e
+	 * alle sale condivisi). Come in {@code getAllProjections}, una proiezione il
+	 * cui film o la cui sala non esistono interrompe la lettura con un errore.
+	 */
+	@Override
+	public ICursor<Projection> openAllProjections(int fetchSize) throws SQLException {
+		String sql = PROJECTION_QUERY + " ORDER BY p.id;";
+		return ResultSetCursor.open(connectionPool, sql, fetchSize, result -> {
+			int movieId = result.getInt(4);
+			int roomId = result.getInt(5);
+			Movie movie = movieDao.getMovies(Collections.singleton(movieId)).get(movieId);
+			Room room;
 			try {
-				room = roomPersistence.getRoom(result.getInt("room"));
-			} catch (SQLException | RoomException e) {
-				throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+				room = roomDao.getRooms(Collections.singleton(roomId)).get(roomId);
+			} catch (RoomException e) {
+				throw new SQLDataException(e.getMessage(), e);
+			}
+			checkReferences(result.getInt(1), movie, room);
+			Projection projection = new Projection(result.getInt(1), movie, ColumnCodecs.DATE_TIME.read(result, 2),
+					result.getDouble(3), room);
+			BitSet occupancy = ColumnCodecs.SEAT_BITMAP.read(result, 6);
+			if (occupancy != null)
+				projection.occupySeats(occupancy);
+			return projection;
+		});
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare le proiezioni che si
+	 * svolgono tra {@code from} (incluso) e {@code to} (escluso), in ordine
+	 * cronologico. Il filtro viene valutato dal database sull'indice della data
+	 * delle proiezioni.
+	 */
+	@Override
+	public ArrayList<Projection> getProjectionsBetween(LocalDateTime from, LocalDateTime to)
+			throws SQLException, PersistenceException {
+		String sql = PROJECTION_QUERY + " WHERE p.datetime >= ? AND p.datetime < ? ORDER BY p.datetime, p.id;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			ColumnCodecs.DATE_TIME.bind(pstatement, 1, from);
+			ColumnCodecs.DATE_TIME.bind(pstatement, 2, to);
+			return loadProjections(pstatement);
+		} catch (RoomException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare le proiezioni del
+	 * film identificato da {@code movieId} successive a {@code now}, in ordine
+	 * cronologico.
+	 */
+	@Override
+	public ArrayList<Projection> getUpcomingProjectionsByMovie(int movieId, LocalDateTime now)
+			throws SQLException, PersistenceException {
+		String sql = PROJECTION_QUERY + " WHERE p.movie = ? AND p.datetime > ? ORDER BY p.datetime, p.id;";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, movieId);
+			ColumnCodecs.DATE_TIME.bind(pstatement, 2, now);
+			return loadProjections(pstatement);
+		} catch (RoomException e) {
+			throw new PersistenceException("La richiesta al database non è andata a buon fine.");
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per recuperare gli identificativi
+	 * dei film che hanno almeno una proiezione successiva a {@code now}, nell'ordine
+	 * della loro prima proiezione registrata.
+	 */
+	@Override
+	public ArrayList<Integer> getUpcomingMovieIds(LocalDateTime now) throws SQLException {
+		String sql = "SELECT p.movie FROM Projection p JOIN Movie m ON p.movie = m.id WHERE p.datetime > ? GROUP BY p.movie ORDER BY MIN(p.id);";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			ColumnCodecs.DATE_TIME.bind(pstatement, 1, now);
+			try (ResultSet result = pstatement.executeQuery()) {
+				ArrayList<Integer> movieIds = new ArrayList<Integer>();
+				while (result.next()) {
+					movieIds.add(result.getInt("movie"));
+				}
+				return movieIds;
 			}
-			Projection projection = new Projection(result.getInt("id"), movie, LocalDateTime
-					.parse(result.getString("datetime"), DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")),
-					result.getDouble("price"), room);
-			seatPersistence.setOccupiedSeats(projection);
-			projections.add(projection);
 		}
-		return projections;
 	}
 
 	/**
@@ -122,9 +227,11 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public void removeProjection(int id) throws SQLException {
 		String sql = "DELETE FROM Projection WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, id);
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -135,13 +242,81 @@ public class ProjectionRdbDao implements IProjectionDao {
 	@Override
 	public void putProjection(Projection newProjection) throws SQLException {
 		String sql = "INSERT INTO Projection(id, datetime, price, movie, room) VALUES(?, ?, ?, ?, ?);";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, newProjection.getId());
-		pstatement.setString(2, newProjection.getDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-		pstatement.setDouble(3, newProjection.getPrice());
-		pstatement.setInt(4, newProjection.getMovie().getId());
-		pstatement.setInt(5, newProjection.getRoom().getNumber());
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, newProjection.getId());
+			ColumnCodecs.DATE_TIME.bind(pstatement, 2, newProjection.getDateTime());
+			pstatement.setDouble(3, newProjection.getPrice());
+			pstatement.setInt(4, newProjection.getMovie().getId());
+			pstatement.setInt(5, newProjection.getRoom().getNumber());
+			pstatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Costruisce le proiezioni restituite da {@code pstatement} e ne occupa i
+	 * posti.
+	 * 
+	 * <p>
+	 * Le proiezioni e l'occupazione dei loro posti vengono recuperate con una sola
+	 * query, mentre film e sale vengono recuperati tramite le rispettive
+	 * interfacce (con al più una query ciascuno per quelli non ancora caricati).
+	 * Tutte le proiezioni condividono la stessa istanza di un film o di una sala.
+	 * 
+	 * @param pstatement query già parametrizzata basata su
+	 *                   {@code PROJECTION_QUERY}.
+	 * @return le proiezioni nell'ordine restituito da {@code pstatement}.
+	 * @throws SQLException  se occorrono errori nell'esecuzione delle query o se
+	 *                       il film o la sala di una proiezione non esistono.
+	 * @throws RoomException se le dimensioni di una sala non sono valide.
+	 */
+	private ArrayList<Projection> loadProjections(PreparedStatement pstatement) throws SQLException, RoomException {
+		ArrayList<int[]> rows = new ArrayList<int[]>();
+		ArrayList<LocalDateTime> dateTimes = new ArrayList<LocalDateTime>();
+		ArrayList<Double> prices = new ArrayList<Double>();
+		ArrayList<BitSet> occupancies = new ArrayList<BitSet>();
+		HashSet<Integer> movieIds = new HashSet<Integer>();
+		HashSet<Integer> roomIds = new HashSet<Integer>();
+		try (ResultSet result = pstatement.executeQuery()) {
+			while (result.next()) {
+				int[] row = { result.getInt(1), result.getInt(4), result.getInt(5) };
+				rows.add(row);
+				dateTimes.add(ColumnCodecs.DATE_TIME.read(result, 2));
+				prices.add(result.getDouble(3));
+				occupancies.add(ColumnCodecs.SEAT_BITMAP.read(result, 6));
+				movieIds.add(row[1]);
+				roomIds.add(row[2]);
+			}
+		}
+		HashMap<Integer, Movie> movies = movieDao.getMovies(movieIds);
+		HashMap<Integer, Room> rooms = roomDao.getRooms(roomIds);
+		ArrayList<Projection> projections = new ArrayList<Projection>();
+		for (int i = 0; i < rows.size(); i++) {
+			int[] row = rows.get(i);
+			Movie movie = movies.get(row[1]);
+			Room room = rooms.get(row[2]);
+			checkReferences(row[0], movie, room);
+			Projection projection = new Projection(row[0], movie, dateTimes.get(i), prices.get(i), room);
+			if (occupancies.get(i) != null)
+				projection.occupySeats(occupancies.get(i));
+			projections.add(projection);
+		}
+		return projections;
+	}
+
+	/**
+	 * Verifica che il film e la sala di una proiezione esistano.
+	 * 
+	 * @param projectionId identificativo della proiezione.
+	 * @param movie        film della proiezione, o null se non esiste.
+	 * @param room         sala della proiezione, o null se non esiste.
+	 * @throws SQLDataException se il film o la sala non esistono.
+	 */
+	private static void checkReferences(int projectionId, Movie movie, Room room) throws SQLDataException {
+		if (movie == null)
+			throw new SQLDataException("Il film della proiezione " + projectionId + " non esiste.");
+		if (room == null)
+			throw new SQLDataException("La sala della proiezione " + projectionId + " non esiste.");
 	}
 
 }
@@ -1,13 +1,17 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.codec.ColumnCodecs;
 import cinema.model.persistence.dao.interfaces.IReservationDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.reservation.Reservation;
+import cinema.model.reservation.util.SeatAvailabilityException;
 
 /**
  * Si interfaccia con un database relazionale per implementare la persistenza
@@ -19,44 +23,66 @@ import cinema.model.reservation.Reservation;
 public class ReservationRdbDao implements IReservationDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public ReservationRdbDao(Connection connection) {
-		this.connection = connection;
+	public ReservationRdbDao(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
 	}
 
 	/**
 	 * Esegue la query sul database relazionale per implementare la persistenza
 	 * delle informazioni di una prenotazinoe una volta che il relativo pagamento è
 	 * andato a buon fine.
+	 * 
+	 * <p>
+	 * I dati della prenotazione e i posti occupati vengono resi persistenti
+	 * all'interno della stessa transazione.
 	 */
 	@Override
-	public void setReservationFields(Reservation reservation) throws SQLException, PersistenceException, RoomException {
+	public void setReservationFields(Reservation reservation)
+			throws SQLException, PersistenceException, RoomException, SeatAvailabilityException {
 		String sql = "UPDATE Reservation SET date = ?, projection = ?, name = ?, surname = ?, email = ?, paymentcardowner = ?, paymentcard = ?, coupon = ?, discount = ?, numberpeopleunderage = ?, numberpeopleoverage = ? WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setString(1, reservation.getDate().toString());
-		pstatement.setLong(2, reservation.getProjection().getId());
-		pstatement.setString(3, reservation.getPurchaser().getName());
-		pstatement.setString(4, reservation.getPurchaser().getSurname());
-		pstatement.setString(5, reservation.getPurchaser().getEmail());
-		pstatement.setString(6, reservation.getPaymentCard().getOwner());
-		pstatement.setString(7, reservation.getPaymentCard().getNumber());
-		if (reservation.getCoupon() != null)
-			pstatement.setString(8, reservation.getCoupon().getCode());
-		pstatement.setInt(9, reservation.getDiscountId());
-		pstatement.setInt(10, reservation.getNumberPeopleUntilMinAge());
-		pstatement.setLong(11, reservation.getNumberPeopleOverMaxAge());
-		pstatement.setLong(12, reservation.getProgressive());
-		pstatement.executeUpdate();
-		new OccupiedSeatRdbDao(connection).putOccupiedSeatsFromReservation(reservation);
+		try (PooledConnection connection = connectionPool.borrow()) {
+			boolean ownTransaction = connection.getAutoCommit();
+			boolean committed = false;
+			if (ownTransaction)
+				connection.setAutoCommit(false);
+			try (PreparedStatement pstatement = connection.prepareStatement(sql)) {
+				ColumnCodecs.DATE.bind(pstatement, 1, reservation.getDate());
+				pstatement.setLong(2, reservation.getProjection().getId());
+				pstatement.setString(3, reservation.getPurchaser().getName());
+				pstatement.setString(4, reservation.getPurchaser().getSurname());
+				pstatement.setString(5, reservation.getPurchaser().getEmail());
+				pstatement.setString(6, reservation.getPaymentCard().getOwner());
+				pstatement.setString(7, reservation.getPaymentCard().getNumber());
+				if (reservation.getCoupon() != null)
+					pstatement.setString(8, reservation.getCoupon().getCode());
+				pstatement.setInt(9, reservation.getDiscountId());
+				pstatement.setInt(10, reservation.getNumberPeopleUntilMinAge());
+				pstatement.setLong(11, reservation.getNumberPeopleOverMaxAge());
+				pstatement.setLong(12, reservation.getProgressive());
+				pstatement.executeUpdate();
+				new OccupiedSeatRdbDao(connectionPool).putOccupiedSeatsFromReservation(reservation);
+				if (ownTransaction) {
+					connection.commit();
+					committed = true;
+				}
+			} finally {
+				if (ownTransaction) {
+					if (!committed)
+						connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			}
+		}
 	}
 
 	/**
@@ -66,9 +92,11 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public void putEmptyReservation(Reservation newReservation) throws SQLException {
 		String sql = "INSERT INTO Reservation(id) VALUES(?);";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setLong(1, newReservation.getProgressive());
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setLong(1, newReservation.getProgressive());
+			pstatement.executeUpdate();
+		}
 	}
 
 	/**
@@ -78,8 +106,61 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public long getLastReservationId() throws SQLException {
 		String sql = "SELECT MAX(id) AS maxid FROM Reservation;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		return pstatement.executeQuery().getLong("maxid");
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				return result.getLong("maxid");
+			}
+		}
+	}
+
+	/**
+	 * Esegue la query sul database relazionale per riservare un blocco di
+	 * identificativi dalla sequenza delle prenotazioni.
+	 * 
+	 * <p>
+	 * La sequenza viene avanzata all'interno di una transazione, quindi processi
+	 * diversi che condividono lo stesso database ottengono blocchi disgiunti. Se
+	 * sono presenti prenotazioni con identificativi successivi al valore della
+	 * sequenza (ad esempio inserite senza passare dalla sequenza) il blocco parte
+	 * dall'identificativo successivo al massimo.
+	 */
+	@Override
+	public long reserveReservationIds(int blockSize) throws SQLException {
+		String initSql = "INSERT OR IGNORE INTO Sequence(name, nextvalue) VALUES('Reservation', 1);";
+		String updateSql = "UPDATE Sequence SET nextvalue = MAX(nextvalue, (SELECT IFNULL(MAX(id), 0) + 1 FROM Reservation)) + ? WHERE name = 'Reservation';";
+		String selectSql = "SELECT nextvalue FROM Sequence WHERE name = 'Reservation';";
+		try (PooledConnection connection = connectionPool.borrow()) {
+			boolean ownTransaction = connection.getAutoCommit();
+			boolean committed = false;
+			if (ownTransaction)
+				connection.setAutoCommit(false);
+			try {
+				try (PreparedStatement pstatement = connection.prepareStatement(initSql)) {
+					pstatement.executeUpdate();
+				}
+				try (PreparedStatement pstatement = connection.prepareStatement(updateSql)) {
+					pstatement.setInt(1, blockSize);
+					pstatement.executeUpdate();
+				}
+				long first;
+				try (PreparedStatement pstatement = connection.prepareStatement(selectSql);
+						ResultSet result = pstatement.executeQuery()) {
+					first = result.getLong("nextvalue") - blockSize;
+				}
+				if (ownTransaction) {
+					connection.commit();
+					committed = true;
+				}
+				return first;
+			} finally {
+				if (ownTransaction) {
+					if (!committed)
+						connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			}
+		}
 	}
 
 	/**
@@ -90,9 +171,11 @@ public class ReservationRdbDao implements IReservationDao {
 	@Override
 	public void deleteReservation(long reservationId) throws SQLException {
 		String sql = "DELETE FROM Reservation WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setLong(1, reservationId);
-		pstatement.executeUpdate();
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setLong(1, reservationId);
+			pstatement.executeUpdate();
+		}
 	}
 
 }
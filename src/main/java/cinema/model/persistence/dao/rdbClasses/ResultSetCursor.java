@@ -0,0 +1,201 @@
+package cinema.model.persistence.dao.rdbClasses;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+
+import cinema.model.persistence.dao.interfaces.ICursor;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
+import cinema.model.persistence.util.UncheckedPersistenceException;
+
+/**
+ * Cursore basato su un {@code ResultSet} aperto, che costruisce gli elementi
+ * una riga alla volta.
+ *
+ * <p>
+ * Il cursore mantiene in prestito la connessione su cui è stata eseguita la
+ * query e la restituisce al pool quando viene chiuso.
+ *
+ * @param <T> tipo degli elementi restituiti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class ResultSetCursor<T> implements ICursor<T> {
+
+	/**
+	 * Costruisce un elemento a partire dalla riga corrente di un
+	 * {@code ResultSet}.
+	 *
+	 * @param <T> tipo degli elementi costruiti.
+	 */
+	interface RowMapper<T> {
+
+		/**
+		 * Costruisce l'elemento corrispondente alla riga corrente.
+		 *
+		 * @param result risultato posizionato sulla riga da leggere.
+		 * @return l'elemento costruito o null se la riga va ignorata.
+		 * @throws SQLException se la riga non può essere letta.
+		 */
+		T map(ResultSet result) throws SQLException;
+
+	}
+
+	/**
+	 * Connessione presa in prestito su cui è aperto il cursore.
+	 */
+	private final PooledConnection connection;
+
+	/**
+	 * Query eseguita.
+	 */
+	private final PreparedStatement statement;
+
+	/**
+	 * Risultato della query.
+	 */
+	private final ResultSet result;
+
+	/**
+	 * Costruttore degli elementi a partire dalle righe.
+	 */
+	private final RowMapper<T> mapper;
+
+	/**
+	 * Ulteriori risorse da chiudere insieme al cursore.
+	 */
+	private final AutoCloseable[] resources;
+
+	/**
+	 * Prossimo elemento da restituire, già letto dal risultato.
+	 */
+	private T next;
+
+	/**
+	 * Indica se il cursore è stato chiuso.
+	 */
+	private boolean closed;
+
+	/**
+	 * Costruttore del cursore, che esegue la query {@code statement} (già
+	 * parametrizzata).
+	 *
+	 * <p>
+	 * Se la query fallisce la connessione, la query e le risorse aggiuntive
+	 * vengono chiuse prima di lanciare l'eccezione.
+	 *
+	 * @param connection connessione presa in prestito su cui è preparata la
+	 *                   query; il cursore ne diventa responsabile.
+	 * @param statement  query da eseguire.
+	 * @param fetchSize  numero di righe da leggere dal database per volta.
+	 * @param mapper     costruttore degli elementi a partire dalle righe.
+	 * @param resources  ulteriori risorse, già aperte, da chiudere insieme al
+	 *                   cursore (prima della query e della connessione).
+	 * @throws SQLException se la query non può essere eseguita.
+	 */
+	ResultSetCursor(PooledConnection connection, PreparedStatement statement, int fetchSize, RowMapper<T> mapper,
+			AutoCloseable... resources) throws SQLException {
+		this.connection = connection;
+		this.statement = statement;
+		this.mapper = mapper;
+		this.resources = resources;
+		this.closed = false;
+		try {
+			statement.setFetchSize(fetchSize);
+			this.result = statement.executeQuery();
+		} catch (SQLException e) {
+			closeResources(null);
+			throw e;
+		}
+	}
+
+	/**
+	 * Apre un cursore sulla query non parametrica {@code sql}, eseguita su una
+	 * connessione presa in prestito da {@code connectionPool}.
+	 *
+	 * @param <T>            tipo degli elementi restituiti.
+	 * @param connectionPool pool da cui prendere in prestito la connessione.
+	 * @param sql            testo della query.
+	 * @param fetchSize      numero di righe da leggere dal database per volta.
+	 * @param mapper         costruttore degli elementi a partire dalle righe.
+	 * @return il cursore aperto.
+	 * @throws SQLException se la query non può essere eseguita.
+	 */
+	static <T> ResultSetCursor<T> open(ConnectionPool connectionPool, String sql, int fetchSize,
+			RowMapper<T> mapper) throws SQLException {
+		PooledConnection connection = connectionPool.borrow();
+		PreparedStatement statement;
+		try {
+			statement = connection.prepareStatement(sql);
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		return new ResultSetCursor<T>(connection, statement, fetchSize, mapper);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null && !closed) {
+			try {
+				if (result.next()) {
+					next = mapper.map(result);
+				} else {
+					close();
+				}
+			} catch (SQLException e) {
+				close();
+				throw new UncheckedPersistenceException("La lettura dal database non è andata a buon fine.", e);
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		T element = next;
+		next = null;
+		return element;
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		closeResources(result);
+	}
+
+	/**
+	 * Chiude il risultato (se presente), le risorse aggiuntive e la query e
+	 * restituisce la connessione al pool, ignorando eventuali errori.
+	 */
+	private void closeResources(ResultSet result) {
+		if (result != null) {
+			try {
+				result.close();
+			} catch (SQLException e) {
+				// Il risultato viene comunque chiuso insieme alla query
+			}
+		}
+		for (AutoCloseable resource : resources) {
+			try {
+				resource.close();
+			} catch (Exception e) {
+				// Le risorse rimanenti vanno comunque chiuse
+			}
+		}
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// La connessione va comunque restituita al pool
+		}
+		connection.close();
+	}
+
+}
@@ -1,14 +1,21 @@
 package cinema.model.persistence.dao.rdbClasses;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
 
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.cache.IdentityMap;
+import cinema.model.persistence.dao.interfaces.ICursor;
 import cinema.model.persistence.dao.interfaces.IRoomDao;
+import cinema.model.persistence.pool.ConnectionPool;
+import cinema.model.persistence.pool.PooledConnection;
 
 /**
  * Si interfaccia con un database relazionale per implementare la persistenza
@@ -20,48 +27,143 @@ import cinema.model.persistence.dao.interfaces.IRoomDao;
 public class RoomRdbDao implements IRoomDao {
 
 	/**
-	 * Connessione al database.
+	 * Pool di connessioni al database.
 	 */
-	private Connection connection;
+	private ConnectionPool connectionPool;
+
+	/**
+	 * Sale già caricate dal database, identificate dal loro identificativo.
+	 */
+	private IdentityMap<Integer, Room> rooms;
 
 	/**
 	 * Costruttore dell'interfaccia verso il database relazionale.
 	 * 
-	 * @param connection connessione al database relazionale che impelemta la
-	 *                   persistenza delle informazioni.
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
 	 */
-	public RoomRdbDao(Connection connection) {
-		this.connection = connection;
+	public RoomRdbDao(ConnectionPool connectionPool) {
+		this(connectionPool, new IdentityMap<Integer, Room>());
+	}
+
+	/**
+	 * Costruttore dell'interfaccia verso il database relazionale che condivide
+	 * le sale già caricate tramite la mappa {@code rooms}.
+	 * 
+	 * @param connectionPool pool di connessioni al database relazionale che
+	 *                       impelemta la persistenza delle informazioni.
+	 * @param rooms          mappa delle identità delle sale.
+	 */
+	public RoomRdbDao(ConnectionPool connectionPool, IdentityMap<Integer, Room> rooms) {
+		this.connectionPool = connectionPool;
+		this.rooms = rooms;
 	}
 
 	/**
 	 * Esegue la query al database relazionale per recuperare le informazioni sulla
-	 * sala identificata da {@code id}.
+	 * sala identificata da {@code id}, se non è già stata caricata in precedenza.
 	 */
 	@Override
 	public Room getRoom(int id) throws SQLException, RoomException {
+		Room cached = rooms.get(id);
+		if (cached != null)
+			return cached;
+		long version = rooms.getVersion();
 		String sql = "SELECT * FROM Room WHERE id = ?;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		pstatement.setInt(1, id);
-		ResultSet result = pstatement.executeQuery();
-		Room room = new Room(id, result.getInt("rows"), result.getInt("columns"));
-		return room;
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			pstatement.setInt(1, id);
+			try (ResultSet result = pstatement.executeQuery()) {
+				Room room = new Room(id, result.getInt("rows"), result.getInt("columns"));
+				return rooms.put(id, room, version);
+			}
+		}
 	}
 
 	/**
 	 * Esegue la query per recuperare tutte le sale presenti sul database
-	 * relazionale.
+	 * relazionale. Le sale già caricate in precedenza non vengono costruite
+	 * nuovamente.
 	 */
 	@Override
 	public ArrayList<Room> getAllRooms() throws SQLException, RoomException {
+		long version = rooms.getVersion();
 		String sql = "SELECT * FROM Room;";
-		PreparedStatement pstatement = connection.prepareStatement(sql);
-		ResultSet result = pstatement.executeQuery();
-		ArrayList<Room> rooms = new ArrayList<Room>();
-		while (result.next()) {
-			rooms.add(new Room(result.getInt("id"), result.getInt("rows"), result.getInt("columns")));
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			try (ResultSet result = pstatement.executeQuery()) {
+				ArrayList<Room> allRooms = new ArrayList<Room>();
+				while (result.next()) {
+					int id = result.getInt("id");
+					Room room = rooms.get(id);
+					if (room == null)
+						room = rooms.put(id, new Room(id, result.getInt("rows"), result.getInt("columns")), version);
+					allRooms.add(room);
+				}
+				return allRooms;
+			}
+		}
+	}
+
+	/**
+	 * Esegue la query per scorrere tutte le sale presenti sul database relazionale
+	 * tramite un cursore. Le sale già caricate in precedenza non vengono costruite
+	 * nuovamente, mentre quelle lette dal cursore non vengono mantenute in
+	 * memoria.
+	 */
+	@Override
+	public ICursor<Room> openAllRooms(int fetchSize) throws SQLException {
+		String sql = "SELECT id, rows, columns FROM Room ORDER BY id;";
+		return ResultSetCursor.open(connectionPool, sql, fetchSize, result -> {
+			int id = result.getInt(1);
+			Room room = rooms.get(id);
+			if (room != null)
+				return room;
+			try {
+				return new Room(id, result.getInt(2), result.getInt(3));
+			} catch (RoomException e) {
+				throw new SQLDataException(e.getMessage(), e);
+			}
+		});
+	}
+
+	/**
+	 * Restituisce le sale identificate da {@code ids}, recuperando con un'unica
+	 * query quelle che non sono già state caricate in precedenza.
+	 * 
+	 * @param ids identificativi delle sale da recuperare.
+	 * @return le sale trovate, identificate dal loro identificativo.
+	 * @throws SQLException  se occorrono errori nell'esecuzione della query.
+	 * @throws RoomException se le dimensioni di una sala non sono valide.
+	 */
+	HashMap<Integer, Room> getRooms(Set<Integer> ids) throws SQLException, RoomException {
+		HashMap<Integer, Room> found = new HashMap<Integer, Room>();
+		ArrayList<Integer> missing = new ArrayList<Integer>();
+		for (int id : ids) {
+			Room room = rooms.get(id);
+			if (room != null)
+				found.put(id, room);
+			else
+				missing.add(id);
+		}
+		if (missing.isEmpty())
+			return found;
+		long version = rooms.getVersion();
+		String sql = "SELECT * FROM Room WHERE id IN (" + String.join(", ", Collections.nCopies(missing.size(), "?"))
+				+ ");";
+		try (PooledConnection connection = connectionPool.borrow();
+				PreparedStatement pstatement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < missing.size(); i++)
+				pstatement.setInt(i + 1, missing.get(i));
+			try (ResultSet result = pstatement.executeQuery()) {
+				while (result.next()) {
+					int id = result.getInt("id");
+					Room room = new Room(id, result.getInt("rows"), result.getInt("columns"));
+					found.put(id, rooms.put(id, room, version));
+				}
+			}
 		}
-		return rooms;
+		return found;
 	}
 
 }
@@ -0,0 +1,255 @@
+package cinema.model.persistence.metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Raccoglie le statistiche delle chiamate alle interfacce verso la persistenza
+ * strumentate con {@code InstrumentedDao} e il registro delle query lente e
+ * fallite.
+ *
+ * <p>
+ * Per ogni metodo vengono mantenute le statistiche descritte da
+ * {@code MethodStats}. Le chiamate che durano almeno
+ * {@code slowQueryThreshold} millisecondi e quelle concluse con un errore
+ * vengono riportate nel registro insieme alle query eseguite e ai relativi
+ * parametri, in modo che il motivo di un fallimento non vada perso quando
+ * l'errore viene riportato all'applicazione come {@code PersistenceException}.
+ * Il registro mantiene in memoria le ultime {@code LOG_CAPACITY} voci e, se
+ * indicato un file, vi aggiunge ogni nuova voce.
+ *
+ * <p>
+ * Le statistiche possono essere interrogate durante l'esecuzione tramite
+ * {@code getMethodStats()} e {@code getQueryLog()} o riportate in forma
+ * testuale tramite {@code dump(out)}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class DaoMetrics {
+
+	/**
+	 * Numero di voci del registro delle query mantenute in memoria.
+	 */
+	public static final int LOG_CAPACITY = 200;
+
+	/**
+	 * Statistiche dei metodi chiamati, identificate dal nome del metodo.
+	 */
+	private final ConcurrentHashMap<String, MethodStats> methods;
+
+	/**
+	 * Ultime voci del registro delle query lente e fallite.
+	 */
+	private final ArrayDeque<QueryLogEntry> queryLog;
+
+	/**
+	 * File a cui aggiungere le voci del registro, o null se il registro è
+	 * mantenuto solamente in memoria.
+	 */
+	private final Path logFile;
+
+	/**
+	 * Durata minima (in nanosecondi) di una chiamata lenta.
+	 */
+	private volatile long slowQueryThreshold;
+
+	/**
+	 * Numero di chiamate lente registrate.
+	 */
+	private final AtomicLong slowCalls;
+
+	/**
+	 * Costruttore delle statistiche.
+	 *
+	 * @param slowQueryThreshold durata minima in millisecondi di una chiamata
+	 *                           lenta.
+	 * @param logFile            file a cui aggiungere le voci del registro delle
+	 *                           query, o null.
+	 */
+	public DaoMetrics(long slowQueryThreshold, Path logFile) {
+		this.methods = new ConcurrentHashMap<String, MethodStats>();
+		this.queryLog = new ArrayDeque<QueryLogEntry>(LOG_CAPACITY);
+		this.logFile = logFile;
+		this.slowQueryThreshold = slowQueryThreshold * 1_000_000;
+		this.slowCalls = new AtomicLong();
+	}
+
+	/**
+	 * Restituisce le statistiche del metodo {@code name}, creandole se non
+	 * esistono.
+	 *
+	 * @param name nome del metodo, nella forma {@code Interfaccia.metodo}.
+	 * @return le statistiche del metodo.
+	 */
+	MethodStats stats(String name) {
+		return methods.computeIfAbsent(name, MethodStats::new);
+	}
+
+	/**
+	 * Registra il termine di una chiamata e, se è lenta o fallita, la riporta
+	 * nel registro delle query.
+	 *
+	 * @param stats     statistiche del metodo chiamato.
+	 * @param startedAt istante di inizio della chiamata.
+	 * @param elapsed   durata della chiamata in nanosecondi.
+	 * @param trace     query eseguite durante la chiamata.
+	 * @param error     eccezione che ha interrotto la chiamata, o null.
+	 */
+	void record(MethodStats stats, LocalDateTime startedAt, long elapsed, QueryTrace trace, Throwable error) {
+		stats.record(elapsed, error != null);
+		boolean slow = elapsed >= slowQueryThreshold;
+		if (slow)
+			slowCalls.incrementAndGet();
+		if (slow || error != null) {
+			log(new QueryLogEntry(startedAt, stats.getName(), elapsed / 1_000_000.0, trace.describe(),
+					error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage()));
+		}
+	}
+
+	/**
+	 * Aggiunge una voce al registro delle query, scartando la più vecchia se il
+	 * registro in memoria è pieno.
+	 *
+	 * @param entry voce da aggiungere.
+	 */
+	private synchronized void log(QueryLogEntry entry) {
+		if (queryLog.size() == LOG_CAPACITY)
+			queryLog.pollFirst();
+		queryLog.addLast(entry);
+		if (logFile != null) {
+			try {
+				Files.write(logFile, Collections.singletonList(entry.toString()), StandardCharsets.UTF_8,
+						StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				// Il registro resta comunque disponibile in memoria
+			}
+		}
+	}
+
+	/**
+	 * Restituisce le statistiche di tutti i metodi chiamati almeno una volta,
+	 * in ordine decrescente di tempo complessivo.
+	 *
+	 * @return le statistiche dei metodi.
+	 */
+	public List<MethodStats> getMethodStats() {
+		List<MethodStats> stats = new ArrayList<MethodStats>(methods.values());
+		stats.sort(Comparator.comparingDouble(MethodStats::getTotalTime).reversed());
+		return stats;
+	}
+
+	/**
+	 * Restituisce le statistiche del metodo {@code name}.
+	 *
+	 * @param name nome del metodo, nella forma {@code Interfaccia.metodo}.
+	 * @return le statistiche del metodo o null se non è mai stato chiamato.
+	 */
+	public MethodStats getMethodStats(String name) {
+		return methods.get(name);
+	}
+
+	/**
+	 * Restituisce le voci del registro delle query mantenute in memoria, dalla
+	 * più vecchia alla più recente.
+	 *
+	 * @return le voci del registro.
+	 */
+	public synchronized List<QueryLogEntry> getQueryLog() {
+		return new ArrayList<QueryLogEntry>(queryLog);
+	}
+
+	/**
+	 * Riporta in forma testuale le statistiche di tutti i metodi, con
+	 * l'istogramma delle latenze, seguite dal registro delle query.
+	 *
+	 * @param out stream su cui scrivere.
+	 */
+	public void dump(PrintStream out) {
+		out.printf(Locale.ROOT, "Chiamate alla persistenza (soglia query lente %.1f ms)%n",
+				getSlowQueryThreshold());
+		for (MethodStats stats : getMethodStats()) {
+			out.println(stats);
+			long[] histogram = stats.getHistogram();
+			StringBuilder line = new StringBuilder("    ");
+			for (int i = 0; i < histogram.length; i++) {
+				if (histogram[i] == 0)
+					continue;
+				if (i < MethodStats.BUCKET_BOUNDS.length)
+					line.append(String.format(Locale.ROOT, "<%s ms: %d  ", MethodStats.BUCKET_BOUNDS[i], histogram[i]));
+				else
+					line.append(String.format(Locale.ROOT, ">=%s ms: %d  ",
+							MethodStats.BUCKET_BOUNDS[MethodStats.BUCKET_BOUNDS.length - 1], histogram[i]));
+			}
+			out.println(line.toString().stripTrailing());
+		}
+		List<QueryLogEntry> entries = getQueryLog();
+		out.println("Registro delle query lente e fallite (" + entries.size() + " voci)");
+		for (QueryLogEntry entry : entries)
+			out.println(entry);
+	}
+
+	/**
+	 * Restituisce il numero complessivo di chiamate registrate.
+	 *
+	 * @return il numero di chiamate.
+	 */
+	public long getCalls() {
+		long calls = 0;
+		for (MethodStats stats : methods.values())
+			calls += stats.getCalls();
+		return calls;
+	}
+
+	/**
+	 * Restituisce il numero complessivo di chiamate concluse con un errore.
+	 *
+	 * @return il numero di chiamate fallite.
+	 */
+	public long getErrors() {
+		long errors = 0;
+		for (MethodStats stats : methods.values())
+			errors += stats.getErrors();
+		return errors;
+	}
+
+	public long getSlowCalls() {
+		return slowCalls.get();
+	}
+
+	/**
+	 * Restituisce la durata minima di una chiamata lenta.
+	 *
+	 * @return la soglia in millisecondi.
+	 */
+	public double getSlowQueryThreshold() {
+		return slowQueryThreshold / 1_000_000.0;
+	}
+
+	/**
+	 * Modifica la durata minima di una chiamata lenta.
+	 *
+	 * @param slowQueryThreshold nuova soglia in millisecondi.
+	 */
+	public void setSlowQueryThreshold(long slowQueryThreshold) {
+		this.slowQueryThreshold = slowQueryThreshold * 1_000_000;
+	}
+
+	public Path getLogFile() {
+		return logFile;
+	}
+
+}
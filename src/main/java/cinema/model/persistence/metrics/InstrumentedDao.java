@@ -0,0 +1,176 @@
+package cinema.model.persistence.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cinema.model.persistence.dao.interfaces.ICursor;
+
+/**
+ * Decora un'interfaccia verso la persistenza registrando in {@code DaoMetrics}
+ * la durata, gli elementi restituiti e gli errori di ogni chiamata.
+ *
+ * <p>
+ * Il decoratore è un proxy dell'interfaccia, quindi può essere applicato a
+ * qualsiasi interfaccia {@code I*Dao} senza doverne ripetere i metodi. Durante
+ * ogni chiamata viene aperta una {@code QueryTrace}, in modo che le chiamate
+ * lente o fallite possano essere riportate nel registro insieme alle query
+ * eseguite. Gli elementi restituiti sono quelli delle collezioni e dei cursori
+ * (contati man mano che vengono letti), mentre un singolo oggetto conta come un
+ * elemento; i valori booleani e numerici non vengono contati.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class InstrumentedDao implements InvocationHandler {
+
+	/**
+	 * Metodi che trattano dati riservati, i cui parametri non vengono riportati
+	 * nel registro delle query.
+	 */
+	private static final Set<String> SENSITIVE_METHODS = new HashSet<String>(
+			Arrays.asList("setPassword", "setReservationFields"));
+
+	/**
+	 * Interfaccia verso la persistenza decorata.
+	 */
+	private final Object dao;
+
+	/**
+	 * Nome semplice dell'interfaccia decorata.
+	 */
+	private final String interfaceName;
+
+	/**
+	 * Statistiche a cui vengono aggiunte le chiamate.
+	 */
+	private final DaoMetrics metrics;
+
+	/**
+	 * Statistiche di ciascun metodo dell'interfaccia, ottenute alla prima
+	 * chiamata.
+	 */
+	private final ConcurrentHashMap<Method, MethodStats> methodStats;
+
+	private InstrumentedDao(Object dao, String interfaceName, DaoMetrics metrics) {
+		this.dao = dao;
+		this.interfaceName = interfaceName;
+		this.metrics = metrics;
+		this.methodStats = new ConcurrentHashMap<Method, MethodStats>();
+	}
+
+	/**
+	 * Decora un'interfaccia verso la persistenza.
+	 *
+	 * @param <T>     tipo dell'interfaccia.
+	 * @param type    interfaccia da decorare.
+	 * @param dao     implementazione dell'interfaccia a cui inoltrare le
+	 *                chiamate.
+	 * @param metrics statistiche a cui aggiungere le chiamate.
+	 * @return l'interfaccia decorata.
+	 */
+	public static <T> T wrap(Class<T> type, T dao, DaoMetrics metrics) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InstrumentedDao(dao, type.getSimpleName(), metrics)));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class)
+			return forward(method, args);
+		MethodStats stats = methodStats.computeIfAbsent(method,
+				m -> metrics.stats(interfaceName + "." + m.getName()));
+		QueryTrace trace = QueryTrace.begin(SENSITIVE_METHODS.contains(method.getName()));
+		LocalDateTime startedAt = LocalDateTime.now();
+		long start = System.nanoTime();
+		Throwable error = null;
+		try {
+			Object result = forward(method, args);
+			if (result instanceof ICursor)
+				return new CountingCursor<Object>((ICursor<?>) result, stats);
+			stats.addRows(countRows(result));
+			return result;
+		} catch (Throwable e) {
+			error = e;
+			throw e;
+		} finally {
+			metrics.record(stats, startedAt, System.nanoTime() - start, trace, error);
+			trace.end();
+		}
+	}
+
+	/**
+	 * Inoltra una chiamata all'interfaccia decorata.
+	 *
+	 * @param method metodo chiamato sul proxy.
+	 * @param args   argomenti della chiamata.
+	 * @return il valore restituito dall'interfaccia decorata.
+	 * @throws Throwable l'eccezione lanciata dall'interfaccia decorata.
+	 */
+	private Object forward(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(dao, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Conta gli elementi restituiti da una chiamata.
+	 *
+	 * @param result valore restituito.
+	 * @return il numero di elementi restituiti.
+	 */
+	private static long countRows(Object result) {
+		if (result == null || result instanceof Boolean || result instanceof Number)
+			return 0;
+		if (result instanceof Collection)
+			return ((Collection<?>) result).size();
+		return 1;
+	}
+
+	/**
+	 * Cursore che conta gli elementi letti da un cursore restituito da
+	 * un'interfaccia decorata.
+	 *
+	 * @param <T> tipo degli elementi restituiti.
+	 */
+	private static final class CountingCursor<T> implements ICursor<T> {
+
+		private final ICursor<?> cursor;
+
+		private final MethodStats stats;
+
+		private CountingCursor(ICursor<?> cursor, MethodStats stats) {
+			this.cursor = cursor;
+			this.stats = stats;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor.hasNext();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			T element = (T) cursor.next();
+			stats.addRows(1);
+			return element;
+		}
+
+		@Override
+		public void close() {
+			cursor.close();
+		}
+
+	}
+
+}
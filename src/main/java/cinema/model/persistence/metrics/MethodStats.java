@@ -0,0 +1,208 @@
+package cinema.model.persistence.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistiche delle chiamate a un metodo di un'interfaccia verso la
+ * persistenza: numero di chiamate, errori, righe restituite e distribuzione
+ * delle latenze.
+ *
+ * <p>
+ * Le latenze vengono raccolte in un istogramma a intervalli fissi
+ * ({@code BUCKET_BOUNDS}), da cui vengono stimati i percentili. Tutti i
+ * contatori possono essere aggiornati contemporaneamente da più thread.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class MethodStats {
+
+	/**
+	 * Limiti superiori (esclusi, in millisecondi) degli intervalli
+	 * dell'istogramma delle latenze. L'ultimo intervallo raccoglie le chiamate
+	 * più lente dell'ultimo limite.
+	 */
+	public static final double[] BUCKET_BOUNDS = { 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000,
+			2500 };
+
+	/**
+	 * Limiti degli intervalli dell'istogramma in nanosecondi.
+	 */
+	private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+
+	static {
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+			BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS[i] * 1_000_000);
+	}
+
+	/**
+	 * Nome del metodo, nella forma {@code Interfaccia.metodo}.
+	 */
+	private final String name;
+
+	/**
+	 * Numero di chiamate concluse (con successo o con un errore).
+	 */
+	private final AtomicLong calls;
+
+	/**
+	 * Numero di chiamate concluse con un'eccezione.
+	 */
+	private final AtomicLong errors;
+
+	/**
+	 * Numero complessivo di elementi restituiti.
+	 */
+	private final AtomicLong rows;
+
+	/**
+	 * Tempo complessivo delle chiamate (in nanosecondi).
+	 */
+	private final AtomicLong totalTime;
+
+	/**
+	 * Tempo massimo registrato per una chiamata (in nanosecondi).
+	 */
+	private final AtomicLong maxTime;
+
+	/**
+	 * Numero di chiamate per ogni intervallo dell'istogramma.
+	 */
+	private final AtomicLongArray histogram;
+
+	/**
+	 * Costruttore delle statistiche di un metodo.
+	 *
+	 * @param name nome del metodo.
+	 */
+	MethodStats(String name) {
+		this.name = name;
+		this.calls = new AtomicLong();
+		this.errors = new AtomicLong();
+		this.rows = new AtomicLong();
+		this.totalTime = new AtomicLong();
+		this.maxTime = new AtomicLong();
+		this.histogram = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+	}
+
+	/**
+	 * Registra il termine di una chiamata.
+	 *
+	 * @param elapsed durata della chiamata in nanosecondi.
+	 * @param failed  true se la chiamata si è conclusa con un'eccezione.
+	 */
+	void record(long elapsed, boolean failed) {
+		calls.incrementAndGet();
+		if (failed)
+			errors.incrementAndGet();
+		totalTime.addAndGet(elapsed);
+		maxTime.accumulateAndGet(elapsed, Math::max);
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS_NANOS.length && elapsed >= BUCKET_BOUNDS_NANOS[bucket])
+			bucket++;
+		histogram.incrementAndGet(bucket);
+	}
+
+	/**
+	 * Registra gli elementi restituiti da una chiamata.
+	 *
+	 * @param count numero di elementi restituiti.
+	 */
+	void addRows(long count) {
+		rows.addAndGet(count);
+	}
+
+	/**
+	 * Stima il percentile {@code percentile} delle latenze, restituendo il
+	 * limite superiore dell'intervallo dell'istogramma che lo contiene.
+	 *
+	 * @param percentile percentile da stimare (tra 0 e 100).
+	 * @return il percentile stimato in millisecondi, o il tempo massimo
+	 *         registrato se cade nell'ultimo intervallo.
+	 */
+	public double getPercentile(double percentile) {
+		long[] counts = getHistogram();
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return 0.0;
+		long threshold = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			seen += counts[i];
+			if (seen >= threshold)
+				return BUCKET_BOUNDS[i];
+		}
+		return getMaxTime();
+	}
+
+	/**
+	 * Restituisce il numero di chiamate per ogni intervallo dell'istogramma
+	 * delle latenze.
+	 *
+	 * @return le chiamate per intervallo, nell'ordine di {@code BUCKET_BOUNDS}
+	 *         seguite da quelle oltre l'ultimo limite.
+	 */
+	public long[] getHistogram() {
+		long[] counts = new long[histogram.length()];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = histogram.get(i);
+		return counts;
+	}
+
+	/**
+	 * Restituisce il tempo medio delle chiamate.
+	 *
+	 * @return il tempo medio in millisecondi.
+	 */
+	public double getAverageTime() {
+		long count = calls.get();
+		return count == 0 ? 0.0 : totalTime.get() / (double) count / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il tempo massimo registrato per una chiamata.
+	 *
+	 * @return il tempo massimo in millisecondi.
+	 */
+	public double getMaxTime() {
+		return maxTime.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il tempo complessivo delle chiamate.
+	 *
+	 * @return il tempo complessivo in millisecondi.
+	 */
+	public double getTotalTime() {
+		return totalTime.get() / 1_000_000.0;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCalls() {
+		return calls.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+
+	public long getRows() {
+		return rows.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"%s: %d chiamate, %d errori, %d righe, media %.3f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.3f ms",
+				name, getCalls(), getErrors(), getRows(), getAverageTime(), getPercentile(50), getPercentile(95),
+				getPercentile(99), getMaxTime());
+	}
+
+}
@@ -0,0 +1,103 @@
+package cinema.model.persistence.metrics;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Voce del registro delle query lente e fallite: la chiamata a
+ * un'interfaccia verso la persistenza, la sua durata, le query eseguite con i
+ * relativi parametri e l'eventuale errore.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class QueryLogEntry {
+
+	/**
+	 * Formato dell'istante riportato nella forma testuale della voce.
+	 */
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+	/**
+	 * Istante di inizio della chiamata.
+	 */
+	private final LocalDateTime startedAt;
+
+	/**
+	 * Nome del metodo chiamato, nella forma {@code Interfaccia.metodo}.
+	 */
+	private final String method;
+
+	/**
+	 * Durata della chiamata in millisecondi.
+	 */
+	private final double elapsed;
+
+	/**
+	 * Query eseguite durante la chiamata, con i relativi parametri.
+	 */
+	private final List<String> statements;
+
+	/**
+	 * Descrizione dell'errore che ha interrotto la chiamata, o null se la
+	 * chiamata si è conclusa con successo.
+	 */
+	private final String error;
+
+	/**
+	 * Costruttore della voce del registro.
+	 *
+	 * @param startedAt  istante di inizio della chiamata.
+	 * @param method     nome del metodo chiamato.
+	 * @param elapsed    durata della chiamata in millisecondi.
+	 * @param statements query eseguite durante la chiamata.
+	 * @param error      descrizione dell'errore o null.
+	 */
+	QueryLogEntry(LocalDateTime startedAt, String method, double elapsed, List<String> statements, String error) {
+		this.startedAt = startedAt;
+		this.method = method;
+		this.elapsed = elapsed;
+		this.statements = Collections.unmodifiableList(statements);
+		this.error = error;
+	}
+
+	public LocalDateTime getStartedAt() {
+		return startedAt;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public double getElapsed() {
+		return elapsed;
+	}
+
+	public List<String> getStatements() {
+		return statements;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isFailed() {
+		return error != null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		text.append(startedAt.format(TIMESTAMP_FORMAT)).append(' ').append(method)
+				.append(String.format(Locale.ROOT, " %.3f ms", elapsed));
+		if (error != null)
+			text.append(" ERRORE ").append(error);
+		for (String statement : statements)
+			text.append(System.lineSeparator()).append("    ").append(statement);
+		return text.toString();
+	}
+
+}
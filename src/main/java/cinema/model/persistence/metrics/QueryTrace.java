@@ -0,0 +1,182 @@
+package cinema.model.persistence.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Elenco delle query eseguite dal thread corrente durante una chiamata a
+ * un'interfaccia verso la persistenza, con i relativi parametri.
+ *
+ * <p>
+ * La traccia viene aperta da {@code InstrumentedDao} all'inizio di ogni
+ * chiamata e alimentata dalle query preparate dal pool di connessioni. Le
+ * chiamate annidate condividono la traccia della chiamata più esterna. Per
+ * limitare la memoria occupata vengono mantenute al massimo
+ * {@code MAX_STATEMENTS} query; delle successive viene solamente contato il
+ * numero. I parametri vengono convertiti in testo solamente quando la traccia
+ * viene riportata nel registro delle query, e vengono omessi del tutto per le
+ * chiamate che trattano dati riservati (password e carte di pagamento).
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public final class QueryTrace {
+
+	/**
+	 * Numero massimo di query mantenute da una traccia.
+	 */
+	public static final int MAX_STATEMENTS = 20;
+
+	/**
+	 * Numero massimo di caratteri riportati per un parametro di tipo testo.
+	 */
+	private static final int MAX_PARAMETER_LENGTH = 64;
+
+	/**
+	 * Traccia aperta dal thread corrente (se presente).
+	 */
+	private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<QueryTrace>();
+
+	/**
+	 * Query eseguita, con i parametri che le erano associati.
+	 */
+	private static final class Statement {
+
+		private final String sql;
+
+		private final Object[] parameters;
+
+		private Statement(String sql, Object[] parameters) {
+			this.sql = sql;
+			this.parameters = parameters;
+		}
+
+	}
+
+	/**
+	 * Query registrate nella traccia.
+	 */
+	private final ArrayList<Statement> statements;
+
+	/**
+	 * Numero di query eseguite ma non registrate perché la traccia era piena.
+	 */
+	private int omitted;
+
+	/**
+	 * Numero di chiamate annidate che condividono la traccia.
+	 */
+	private int depth;
+
+	/**
+	 * Indica se i parametri delle query non devono essere riportati.
+	 */
+	private boolean masked;
+
+	private QueryTrace() {
+		this.statements = new ArrayList<Statement>();
+		this.omitted = 0;
+		this.depth = 0;
+		this.masked = false;
+	}
+
+	/**
+	 * Apre una traccia per il thread corrente o, se ne esiste già una, la
+	 * condivide con la chiamata annidata.
+	 *
+	 * @param masked true se la chiamata tratta dati riservati e i parametri
+	 *               delle sue query non devono essere riportati.
+	 * @return la traccia del thread corrente.
+	 */
+	static QueryTrace begin(boolean masked) {
+		QueryTrace trace = CURRENT.get();
+		if (trace == null) {
+			trace = new QueryTrace();
+			CURRENT.set(trace);
+		}
+		trace.depth++;
+		trace.masked |= masked;
+		return trace;
+	}
+
+	/**
+	 * Chiude la traccia per la chiamata corrente, rimuovendola dal thread al
+	 * termine della chiamata più esterna.
+	 */
+	void end() {
+		if (--depth == 0)
+			CURRENT.remove();
+	}
+
+	/**
+	 * Restituisce la traccia aperta dal thread corrente.
+	 *
+	 * @return la traccia del thread corrente o null se nessuna chiamata
+	 *         strumentata è in corso.
+	 */
+	public static QueryTrace current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Registra l'esecuzione di una query.
+	 *
+	 * @param sql        testo della query.
+	 * @param parameters parametri associati alla query, di cui viene
+	 *                   mantenuta una copia.
+	 */
+	public void record(String sql, Object[] parameters) {
+		if (statements.size() < MAX_STATEMENTS)
+			statements.add(new Statement(sql, parameters.clone()));
+		else
+			omitted++;
+	}
+
+	/**
+	 * Restituisce le query registrate, ciascuna seguita dai suoi parametri.
+	 *
+	 * @return le query registrate in forma testuale.
+	 */
+	List<String> describe() {
+		List<String> lines = new ArrayList<String>();
+		for (Statement statement : statements) {
+			StringBuilder line = new StringBuilder(statement.sql);
+			if (masked && statement.parameters.length > 0) {
+				line.append(" [" + statement.parameters.length + " parametri omessi]");
+			} else if (statement.parameters.length > 0) {
+				line.append(" [");
+				for (int i = 0; i < statement.parameters.length; i++) {
+					if (i > 0)
+						line.append(", ");
+					line.append(describe(statement.parameters[i]));
+				}
+				line.append(']');
+			}
+			lines.add(line.toString());
+		}
+		if (omitted > 0)
+			lines.add("... altre " + omitted + " query");
+		return lines;
+	}
+
+	/**
+	 * Converte in testo un parametro di una query.
+	 *
+	 * @param parameter parametro da convertire.
+	 * @return il parametro in forma testuale.
+	 */
+	private static String describe(Object parameter) {
+		if (parameter == null)
+			return "NULL";
+		if (parameter instanceof byte[])
+			return "<" + ((byte[]) parameter).length + " byte>";
+		if (parameter instanceof String) {
+			String text = (String) parameter;
+			if (text.length() > MAX_PARAMETER_LENGTH)
+				text = text.substring(0, MAX_PARAMETER_LENGTH) + "...";
+			return "'" + text + "'";
+		}
+		return parameter.toString();
+	}
+
+}
@@ -0,0 +1,140 @@
+package cinema.model.persistence.migration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Migrazione dello schema del database relazionale, letta da un file SQL il cui
+ * nome ha la forma {@code V<versione>__<descrizione>.sql} (ad esempio
+ * {@code V002__indici_accesso.sql}).
+ *
+ * <p>
+ * Il file può contenere più istruzioni, ciascuna terminata da un punto e
+ * virgola a fine riga. Le righe che iniziano con {@code --} sono commenti e
+ * vengono ignorate.
+ *
+ * <p>
+ * Le migrazioni che non possono essere espresse in SQL sono implementate da
+ * sottoclassi che ridefiniscono {@code apply(connection)} e vengono registrate
+ * in {@code MigrationRunner}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class Migration {
+
+	/**
+	 * Formato del nome dei file delle migrazioni.
+	 */
+	private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+	/**
+	 * Versione dello schema raggiunta applicando la migrazione.
+	 */
+	private final int version;
+
+	/**
+	 * Descrizione della migrazione.
+	 */
+	private final String description;
+
+	/**
+	 * Istruzioni SQL che compongono la migrazione, nell'ordine in cui vanno
+	 * eseguite.
+	 */
+	private final List<String> statements;
+
+	/**
+	 * Costruttore della migrazione.
+	 *
+	 * @param version     versione dello schema raggiunta applicando la
+	 *                    migrazione.
+	 * @param description descrizione della migrazione.
+	 * @param statements  istruzioni SQL della migrazione.
+	 */
+	public Migration(int version, String description, List<String> statements) {
+		this.version = version;
+		this.description = description;
+		this.statements = statements;
+	}
+
+	/**
+	 * Esegue le istruzioni della migrazione sulla connessione {@code connection},
+	 * all'interno della transazione aperta da {@code MigrationRunner}.
+	 *
+	 * @param connection connessione al database da aggiornare.
+	 * @throws SQLException se una delle istruzioni fallisce.
+	 */
+	protected void apply(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (String sql : statements)
+				statement.executeUpdate(sql);
+		}
+	}
+
+	/**
+	 * Indica se il file {@code file} è una migrazione.
+	 *
+	 * @param file percorso del file.
+	 * @return true se il nome del file rispetta il formato delle migrazioni.
+	 */
+	static boolean isMigration(Path file) {
+		return FILE_NAME.matcher(file.getFileName().toString()).matches();
+	}
+
+	/**
+	 * Legge la migrazione contenuta nel file {@code file}.
+	 *
+	 * @param file percorso del file della migrazione.
+	 * @return la migrazione letta.
+	 * @throws IOException se il file non può essere letto o il suo nome non
+	 *                     rispetta il formato delle migrazioni.
+	 */
+	static Migration read(Path file) throws IOException {
+		Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+		if (!matcher.matches())
+			throw new IOException("Il file " + file + " non è una migrazione.");
+		List<String> statements = new ArrayList<String>();
+		StringBuilder statement = new StringBuilder();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("--"))
+				continue;
+			statement.append(line).append('\n');
+			if (trimmed.endsWith(";")) {
+				statements.add(statement.toString());
+				statement.setLength(0);
+			}
+		}
+		if (statement.toString().trim().length() > 0)
+			throw new IOException("L'ultima istruzione della migrazione " + file + " non è terminata.");
+		return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), statements);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public List<String> getStatements() {
+		return statements;
+	}
+
+	@Override
+	public String toString() {
+		return "V" + version + " (" + description + ")";
+	}
+
+}
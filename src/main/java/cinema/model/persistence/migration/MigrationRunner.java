@@ -0,0 +1,237 @@
+package cinema.model.persistence.migration;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Aggiorna lo schema del database relazionale applicando in ordine le
+ * migrazioni contenute in una cartella.
+ *
+ * <p>
+ * Le versioni già applicate vengono registrate nella tabella
+ * {@code SchemaVersion}, quindi ogni migrazione viene applicata una sola volta
+ * e un database esistente viene aggiornato senza perdere i dati che contiene.
+ * Ogni migrazione viene applicata all'interno di una propria transazione
+ * insieme alla registrazione della sua versione. Le migrazioni sono solamente
+ * in avanti: una migrazione con versione inferiore a quella già raggiunta dal
+ * database non viene applicata e causa un errore. Al termine, se è stata
+ * applicata almeno una migrazione, vengono aggiornate le statistiche usate da
+ * SQLite per scegliere gli indici ({@code ANALYZE}).
+ *
+ * <p>
+ * Oltre alle migrazioni della cartella vengono applicate le migrazioni
+ * implementate in Java ({@code CODE_MIGRATIONS}), ordinate per versione
+ * insieme alle altre.
+ *
+ * <p>
+ * Più processi possono aggiornare contemporaneamente lo stesso database: una
+ * migrazione applicata nel frattempo da un altro processo viene saltata.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class MigrationRunner {
+
+	/**
+	 * Migrazioni implementate in Java, applicate insieme a quelle della
+	 * cartella.
+	 */
+	public static final List<Migration> CODE_MIGRATIONS = Collections
+			.unmodifiableList(Arrays.asList(new SeatMapMigration()));
+
+	/**
+	 * Cartella contenente i file delle migrazioni.
+	 */
+	private final Path directory;
+
+	/**
+	 * Migrazioni implementate in Java.
+	 */
+	private final List<Migration> codeMigrations;
+
+	/**
+	 * Numero di migrazioni applicate dall'ultima esecuzione di
+	 * {@code migrate(connection)}.
+	 */
+	private int appliedMigrations;
+
+	/**
+	 * Versione dello schema raggiunta dall'ultima esecuzione di
+	 * {@code migrate(connection)}.
+	 */
+	private int schemaVersion;
+
+	/**
+	 * Costruttore dell'esecutore delle migrazioni contenute nella cartella
+	 * {@code directory} e di quelle implementate in Java
+	 * ({@code CODE_MIGRATIONS}).
+	 *
+	 * @param directory cartella contenente i file delle migrazioni.
+	 */
+	public MigrationRunner(Path directory) {
+		this(directory, CODE_MIGRATIONS);
+	}
+
+	/**
+	 * Costruttore dell'esecutore delle migrazioni.
+	 *
+	 * @param directory      cartella contenente i file delle migrazioni.
+	 * @param codeMigrations migrazioni implementate in Java.
+	 */
+	public MigrationRunner(Path directory, List<Migration> codeMigrations) {
+		this.directory = directory;
+		this.codeMigrations = codeMigrations;
+		this.appliedMigrations = 0;
+		this.schemaVersion = 0;
+	}
+
+	/**
+	 * Legge le migrazioni contenute nella cartella e le unisce a quelle
+	 * implementate in Java, ordinandole per versione.
+	 *
+	 * @return le migrazioni ordinate per versione crescente.
+	 * @throws IOException se la cartella o uno dei file non possono essere letti
+	 *                     o se due migrazioni hanno la stessa versione.
+	 */
+	public List<Migration> loadMigrations() throws IOException {
+		if (!Files.isDirectory(directory))
+			throw new IOException("La cartella delle migrazioni " + directory + " non esiste.");
+		List<Migration> migrations = new ArrayList<Migration>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.sql")) {
+			for (Path file : files) {
+				if (Migration.isMigration(file))
+					migrations.add(Migration.read(file));
+			}
+		}
+		migrations.addAll(codeMigrations);
+		migrations.sort(Comparator.comparingInt(Migration::getVersion));
+		for (int i = 1; i < migrations.size(); i++) {
+			if (migrations.get(i).getVersion() == migrations.get(i - 1).getVersion())
+				throw new IOException("Esistono più migrazioni con versione " + migrations.get(i).getVersion() + ".");
+		}
+		return migrations;
+	}
+
+	/**
+	 * Applica al database le migrazioni non ancora applicate.
+	 *
+	 * @param connection connessione al database da aggiornare, in modalità di
+	 *                   conferma automatica.
+	 * @return il numero di migrazioni applicate.
+	 * @throws SQLException se una migrazione fallisce (le migrazioni precedenti
+	 *                      restano applicate) o non può essere applicata perché
+	 *                      precedente alla versione del database.
+	 * @throws IOException  se le migrazioni non possono essere lette.
+	 */
+	public int migrate(Connection connection) throws SQLException, IOException {
+		List<Migration> migrations = loadMigrations();
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate(
+					"CREATE TABLE IF NOT EXISTS SchemaVersion(version INTEGER PRIMARY KEY NOT NULL, description TEXT NOT NULL, appliedat TEXT NOT NULL);");
+		}
+		HashSet<Integer> applied = getAppliedVersions(connection);
+		int currentVersion = applied.stream().mapToInt(Integer::intValue).max().orElse(0);
+		appliedMigrations = 0;
+		for (Migration migration : migrations) {
+			if (applied.contains(migration.getVersion()))
+				continue;
+			if (migration.getVersion() < currentVersion)
+				throw new SQLException("La migrazione " + migration + " è precedente alla versione " + currentVersion
+						+ " del database e non può essere applicata.");
+			if (apply(connection, migration))
+				appliedMigrations++;
+			currentVersion = migration.getVersion();
+		}
+		if (appliedMigrations > 0) {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate("ANALYZE;");
+			}
+		}
+		schemaVersion = currentVersion;
+		return appliedMigrations;
+	}
+
+	/**
+	 * Applica una migrazione registrandone la versione all'interno della stessa
+	 * transazione.
+	 *
+	 * @param connection connessione al database da aggiornare.
+	 * @param migration  migrazione da applicare.
+	 * @return true se la migrazione è stata applicata, false se nel frattempo è
+	 *         stata applicata da un altro processo.
+	 * @throws SQLException se la migrazione fallisce.
+	 */
+	private boolean apply(Connection connection, Migration migration) throws SQLException {
+		String versionSql = "INSERT INTO SchemaVersion(version, description, appliedat) VALUES(?, ?, ?);";
+		connection.setAutoCommit(false);
+		boolean committed = false;
+		try {
+			// La registrazione della versione viene eseguita per prima, in modo da
+			// ottenere subito l'accesso esclusivo al database
+			try (PreparedStatement pstatement = connection.prepareStatement(versionSql)) {
+				pstatement.setInt(1, migration.getVersion());
+				pstatement.setString(2, migration.getDescription());
+				pstatement.setString(3, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+				pstatement.executeUpdate();
+			} catch (SQLException e) {
+				connection.rollback();
+				if (getAppliedVersions(connection).contains(migration.getVersion()))
+					return false;
+				throw e;
+			}
+			try {
+				migration.apply(connection);
+			} catch (SQLException e) {
+				throw new SQLException("La migrazione " + migration + " non è andata a buon fine: " + e.getMessage(), e);
+			}
+			connection.commit();
+			committed = true;
+			return true;
+		} finally {
+			if (!committed)
+				connection.rollback();
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Restituisce le versioni delle migrazioni già applicate al database.
+	 *
+	 * @param connection connessione al database.
+	 * @return le versioni applicate.
+	 * @throws SQLException se la tabella delle versioni non può essere letta.
+	 */
+	private HashSet<Integer> getAppliedVersions(Connection connection) throws SQLException {
+		HashSet<Integer> versions = new HashSet<Integer>();
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT version FROM SchemaVersion;")) {
+			while (result.next())
+				versions.add(result.getInt("version"));
+		}
+		return versions;
+	}
+
+	public int getAppliedMigrations() {
+		return appliedMigrations;
+	}
+
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+
+}
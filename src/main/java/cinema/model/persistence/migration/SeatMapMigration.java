@@ -0,0 +1,83 @@
+package cinema.model.persistence.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cinema.model.persistence.codec.ColumnCodecs;
+import cinema.model.persistence.codec.SeatBitmapCodec;
+
+/**
+ * Migrazione che crea la tabella {@code SeatMap}, in cui l'occupazione dei
+ * posti di ogni proiezione è salvata in un'unica riga come sequenza di bit
+ * (si veda {@code SeatBitmapCodec}), e la popola a partire dai posti presenti
+ * nella tabella {@code OccupiedSeat}.
+ *
+ * <p>
+ * La colonna {@code version} viene incrementata a ogni modifica
+ * dell'occupazione. La tabella {@code OccupiedSeat} resta invariata, continua a
+ * indicare la prenotazione a cui appartiene ogni posto occupato e resta quella
+ * di riferimento in caso di differenze.
+ *
+ * <p>
+ * La migrazione è implementata in Java perché SQLite non dispone di funzioni
+ * per costruire un BLOB a partire dai singoli byte.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatMapMigration extends Migration {
+
+	/**
+	 * Versione dello schema raggiunta applicando la migrazione.
+	 */
+	public static final int VERSION = 5;
+
+	/**
+	 * Costruttore della migrazione.
+	 */
+	public SeatMapMigration() {
+		super(VERSION, "mappa posti", Collections.emptyList());
+	}
+
+	@Override
+	protected void apply(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("CREATE TABLE SeatMap(projection INTEGER PRIMARY KEY NOT NULL, "
+					+ "occupancy BLOB NOT NULL, version INTEGER NOT NULL DEFAULT(0), "
+					+ "FOREIGN KEY(projection) REFERENCES Projection(id) ON UPDATE CASCADE ON DELETE CASCADE);");
+		}
+		Map<Integer, BitSet> occupancies = new LinkedHashMap<Integer, BitSet>();
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("SELECT id FROM Projection ORDER BY id;")) {
+			while (result.next())
+				occupancies.put(result.getInt(1), new BitSet());
+		}
+		// I posti fuori dalle dimensioni della sala non corrispondono a nessun bit
+		String seatSql = "SELECT s.projection, s.row, s.column, r.columns FROM OccupiedSeat s "
+				+ "JOIN Projection p ON p.id = s.projection JOIN Room r ON r.id = p.room "
+				+ "WHERE s.row >= 0 AND s.row < r.rows AND s.column >= 0 AND s.column < r.columns;";
+		try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(seatSql)) {
+			while (result.next()) {
+				occupancies.get(result.getInt(1))
+						.set(SeatBitmapCodec.index(result.getInt(2), result.getInt(3), result.getInt(4)));
+			}
+		}
+		String insertSql = "INSERT INTO SeatMap(projection, occupancy, version) VALUES(?, ?, 0);";
+		try (PreparedStatement pstatement = connection.prepareStatement(insertSql)) {
+			for (Map.Entry<Integer, BitSet> entry : occupancies.entrySet()) {
+				pstatement.setInt(1, entry.getKey());
+				ColumnCodecs.SEAT_BITMAP.bind(pstatement, 2, entry.getValue());
+				pstatement.addBatch();
+			}
+			pstatement.executeBatch();
+		}
+	}
+
+}
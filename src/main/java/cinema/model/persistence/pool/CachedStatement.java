@@ -0,0 +1,237 @@
+package cinema.model.persistence.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import cinema.model.persistence.metrics.QueryTrace;
+
+/**
+ * Query preparata mantenuta nella cache di una {@code PooledConnection}.
+ *
+ * <p>
+ * Le classi che accedono alla persistenza ricevono un proxy della query
+ * preparata: chiudendolo (tipicamente con un blocco try-with-resources) viene
+ * chiuso l'eventuale cursore ancora aperto e la query torna disponibile nella
+ * cache, pronta per essere riutilizzata senza doverla analizzare nuovamente.
+ * Le query che non fanno parte della cache (perché rimosse dalla cache o perché
+ * richieste mentre la copia in cache era già in uso) vengono invece chiuse
+ * definitivamente.
+ *
+ * <p>
+ * Il proxy tiene inoltre traccia dei parametri associati alla query, che
+ * vengono riportati insieme al testo della query nella {@code QueryTrace} del
+ * thread corrente (se presente) a ogni esecuzione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class CachedStatement implements InvocationHandler {
+
+	/**
+	 * Query preparata sulla connessione fisica.
+	 */
+	private final PreparedStatement statement;
+
+	/**
+	 * Testo della query.
+	 */
+	private final String sql;
+
+	/**
+	 * Parametri attualmente associati alla query, in ordine di indice.
+	 */
+	private Object[] parameters;
+
+	/**
+	 * Cache a cui appartiene la query.
+	 */
+	private final StatementCache cache;
+
+	/**
+	 * Proxy della query restituito alle classi che accedono alla persistenza.
+	 */
+	private final PreparedStatement proxy;
+
+	/**
+	 * Indica se la query fa parte della cache (e quindi se alla chiusura deve
+	 * essere mantenuta aperta).
+	 */
+	private boolean cached;
+
+	/**
+	 * Indica se la query è attualmente in uso.
+	 */
+	private boolean inUse;
+
+	/**
+	 * Ultimo cursore aperto dalla query.
+	 */
+	private ResultSet resultSet;
+
+	/**
+	 * Costruttore della query in cache.
+	 *
+	 * @param statement query preparata sulla connessione fisica.
+	 * @param sql       testo della query.
+	 * @param cache     cache a cui appartiene la query.
+	 * @param cached    true se la query fa parte della cache, false se deve
+	 *                  essere chiusa dopo l'uso.
+	 */
+	CachedStatement(PreparedStatement statement, String sql, StatementCache cache, boolean cached) {
+		this.statement = statement;
+		this.sql = sql;
+		this.parameters = new Object[0];
+		this.cache = cache;
+		this.cached = cached;
+		this.inUse = false;
+		this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, this);
+	}
+
+	/**
+	 * Intercetta le chiamate al proxy della query: la chiusura restituisce la
+	 * query alla cache, l'esecuzione di una query tiene traccia del cursore
+	 * aperto e dei parametri usati, tutte le altre chiamate vengono inoltrate
+	 * alla query fisica.
+	 */
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "close":
+			release();
+			return null;
+		case "isClosed":
+			return !inUse || statement.isClosed();
+		case "executeQuery":
+			trace();
+			closeResultSet();
+			resultSet = (ResultSet) forward(method, args);
+			return resultSet;
+		case "execute":
+		case "executeUpdate":
+		case "addBatch":
+			if (args == null)
+				trace();
+			return forward(method, args);
+		case "clearParameters":
+			parameters = new Object[0];
+			return forward(method, args);
+		default:
+			if (args != null && args.length >= 2 && args[0] instanceof Integer && method.getName().startsWith("set"))
+				bind((Integer) args[0], args[1]);
+			return forward(method, args);
+		}
+	}
+
+	/**
+	 * Segna la query come in uso e ne restituisce il proxy.
+	 *
+	 * @return il proxy della query.
+	 */
+	PreparedStatement lend() {
+		inUse = true;
+		parameters = new Object[0];
+		return proxy;
+	}
+
+	/**
+	 * Chiude definitivamente la query fisica.
+	 */
+	void closePhysically() {
+		try {
+			closeResultSet();
+			statement.close();
+		} catch (SQLException e) {
+			// La query viene scartata in ogni caso
+		}
+		cache.statementClosed();
+	}
+
+	/**
+	 * Rimuove la query dalla cache: se non è in uso viene chiusa subito,
+	 * altrimenti verrà chiusa al termine del suo utilizzo.
+	 */
+	void evict() {
+		cached = false;
+		if (!inUse)
+			closePhysically();
+	}
+
+	/**
+	 * Termina l'utilizzo della query chiudendo l'eventuale cursore aperto.
+	 *
+	 * @throws SQLException se occorrono errori nella chiusura del cursore.
+	 */
+	private void release() throws SQLException {
+		if (!inUse)
+			return;
+		inUse = false;
+		if (cached) {
+			closeResultSet();
+			statement.clearParameters();
+		} else {
+			closePhysically();
+		}
+	}
+
+	/**
+	 * Memorizza il valore associato a un parametro della query.
+	 *
+	 * @param index indice del parametro (a partire da 1).
+	 * @param value valore del parametro.
+	 */
+	private void bind(int index, Object value) {
+		if (index > parameters.length)
+			parameters = Arrays.copyOf(parameters, index);
+		parameters[index - 1] = value;
+	}
+
+	/**
+	 * Riporta l'esecuzione della query nella traccia del thread corrente, se
+	 * presente.
+	 */
+	private void trace() {
+		QueryTrace trace = QueryTrace.current();
+		if (trace != null)
+			trace.record(sql, parameters);
+	}
+
+	/**
+	 * Chiude l'ultimo cursore aperto dalla query, se presente.
+	 *
+	 * @throws SQLException se occorrono errori nella chiusura del cursore.
+	 */
+	private void closeResultSet() throws SQLException {
+		if (resultSet != null) {
+			resultSet.close();
+			resultSet = null;
+		}
+	}
+
+	/**
+	 * Inoltra una chiamata alla query fisica.
+	 *
+	 * @param method metodo chiamato sul proxy.
+	 * @param args   argomenti della chiamata.
+	 * @return il valore restituito dalla query fisica.
+	 * @throws Throwable l'eccezione lanciata dalla query fisica.
+	 */
+	private Object forward(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(statement, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	boolean isInUse() {
+		return inUse;
+	}
+
+}
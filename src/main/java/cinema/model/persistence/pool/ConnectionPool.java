@@ -0,0 +1,622 @@
+package cinema.model.persistence.pool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Insieme di connessioni al meccanismo di persistenza dei dati condivise tra i
+ * thread dell'applicazione.
+ *
+ * <p>
+ * Le classi che accedono alla persistenza prendono in prestito una connessione
+ * per ogni operazione tramite {@code borrow()} e la restituiscono chiudendo la
+ * {@code PooledConnection} ottenuta. Il pool apre inizialmente
+ * {@code minSize} connessioni e ne apre al massimo {@code maxSize}: se tutte le
+ * connessioni sono in uso il thread richiedente attende al massimo
+ * {@code borrowTimeout} millisecondi prima di ricevere un errore. Le connessioni
+ * inattive vengono validate prima di essere prestate e scartate se non più
+ * utilizzabili.
+ *
+ * <p>
+ * Un pool può essere creato di sola lettura, associandogli il pool da cui
+ * ottenere le connessioni di scrittura: le sue connessioni rifiutano qualsiasi
+ * modifica al database ({@code query_only}) e, se il thread corrente ha già in
+ * prestito una connessione di scrittura, {@code borrow()} restituisce
+ * quest'ultima. In questo modo le letture eseguite durante una scrittura
+ * vedono le modifiche non ancora confermate e partecipano alla stessa
+ * transazione.
+ *
+ * <p>
+ * Il pool tiene traccia del tempo di attesa dei thread, della durata dei
+ * prestiti e dell'utilizzo delle connessioni in modo da poterne valutare il
+ * dimensionamento.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ConnectionPool {
+
+	/**
+	 * Secondi di attesa massimi per la validazione di una connessione.
+	 */
+	private static final int VALIDATION_TIMEOUT = 1;
+
+	/**
+	 * Numero massimo di query preparate mantenute in cache per ogni connessione.
+	 */
+	public static final int STATEMENT_CACHE_SIZE = 64;
+
+	/**
+	 * URI del meccanismo di persistenza dei dati.
+	 */
+	private final String url;
+
+	/**
+	 * Profilo applicato a ogni connessione aperta dal pool.
+	 */
+	private final PersistenceProfile profile;
+
+	/**
+	 * Numero di connessioni aperte alla creazione del pool.
+	 */
+	private final int minSize;
+
+	/**
+	 * Numero massimo di connessioni aperte contemporaneamente dal pool.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Millisecondi di attesa massimi per ottenere una connessione.
+	 */
+	private final long borrowTimeout;
+
+	/**
+	 * Pool delle connessioni di scrittura, se il pool è di sola lettura
+	 * (altrimenti null).
+	 */
+	private final ConnectionPool writerPool;
+
+	/**
+	 * Connessioni aperte e attualmente non in uso (la testa contiene quella usata
+	 * più di recente).
+	 */
+	private final LinkedBlockingDeque<PooledConnection> idleConnections;
+
+	/**
+	 * Permessi di prestito (uno per ogni connessione che il pool può aprire).
+	 */
+	private final Semaphore permits;
+
+	/**
+	 * Connessione attualmente in prestito al thread corrente (se presente).
+	 */
+	private final ThreadLocal<PooledConnection> threadConnection;
+
+	/**
+	 * Numero di connessioni fisiche attualmente aperte.
+	 */
+	private final AtomicInteger openConnections;
+
+	/**
+	 * Numero di connessioni attualmente in prestito.
+	 */
+	private final AtomicInteger activeConnections;
+
+	/**
+	 * Numero massimo di connessioni in prestito contemporaneamente registrato.
+	 */
+	private final AtomicInteger peakActiveConnections;
+
+	/**
+	 * Numero di prestiti effettuati (esclusi quelli annidati).
+	 */
+	private final AtomicLong borrowCount;
+
+	/**
+	 * Tempo complessivo di attesa dei thread per ottenere una connessione (in
+	 * nanosecondi).
+	 */
+	private final AtomicLong totalWaitTime;
+
+	/**
+	 * Tempo massimo di attesa registrato per ottenere una connessione (in
+	 * nanosecondi).
+	 */
+	private final AtomicLong maxWaitTime;
+
+	/**
+	 * Numero di richieste di prestito non soddisfatte entro il tempo massimo.
+	 */
+	private final AtomicLong timeoutCount;
+
+	/**
+	 * Tempo complessivo durante il quale le connessioni sono rimaste in prestito
+	 * (in nanosecondi).
+	 */
+	private final AtomicLong totalHoldTime;
+
+	/**
+	 * Tempo massimo registrato di permanenza in prestito di una connessione (in
+	 * nanosecondi).
+	 */
+	private final AtomicLong maxHoldTime;
+
+	/**
+	 * Numero di connessioni scartate perché non più valide.
+	 */
+	private final AtomicLong invalidatedCount;
+
+	/**
+	 * Numero di query preparate trovate nella cache di una connessione.
+	 */
+	private final AtomicLong statementHits;
+
+	/**
+	 * Numero di query preparate che è stato necessario analizzare nuovamente.
+	 */
+	private final AtomicLong statementMisses;
+
+	/**
+	 * Numero di query preparate attualmente aperte su tutte le connessioni.
+	 */
+	private final AtomicInteger openStatements;
+
+	/**
+	 * Numero di transazioni esplicite confermate su tutte le connessioni.
+	 */
+	private final AtomicLong commitCount;
+
+	/**
+	 * Numero di transazioni esplicite annullate su tutte le connessioni.
+	 */
+	private final AtomicLong rollbackCount;
+
+	/**
+	 * Indica se il pool è stato chiuso.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Costruttore del pool di connessioni.
+	 *
+	 * <p>
+	 * Vengono aperte immediatamente {@code minSize} connessioni, a cui viene
+	 * applicato il profilo {@code PersistenceProfile.DURABLE}.
+	 *
+	 * @param url           URI del meccanismo di persistenza dei dati.
+	 * @param minSize       numero di connessioni aperte alla creazione del pool.
+	 * @param maxSize       numero massimo di connessioni aperte
+	 *                      contemporaneamente.
+	 * @param borrowTimeout millisecondi di attesa massimi per ottenere una
+	 *                      connessione.
+	 * @throws SQLException se le dimensioni del pool non sono valide o occorrono
+	 *                      degli errori nell'apertura delle connessioni.
+	 */
+	public ConnectionPool(String url, int minSize, int maxSize, long borrowTimeout) throws SQLException {
+		this(url, PersistenceProfile.DURABLE, minSize, maxSize, borrowTimeout);
+	}
+
+	/**
+	 * Costruttore del pool di connessioni che applica il profilo {@code profile}
+	 * a ogni connessione aperta.
+	 *
+	 * <p>
+	 * Vengono aperte immediatamente {@code minSize} connessioni.
+	 *
+	 * @param url           URI del meccanismo di persistenza dei dati.
+	 * @param profile       profilo da applicare alle connessioni.
+	 * @param minSize       numero di connessioni aperte alla creazione del pool.
+	 * @param maxSize       numero massimo di connessioni aperte
+	 *                      contemporaneamente.
+	 * @param borrowTimeout millisecondi di attesa massimi per ottenere una
+	 *                      connessione.
+	 * @throws SQLException se le dimensioni del pool non sono valide o occorrono
+	 *                      degli errori nell'apertura delle connessioni.
+	 */
+	public ConnectionPool(String url, PersistenceProfile profile, int minSize, int maxSize, long borrowTimeout)
+			throws SQLException {
+		this(url, profile, minSize, maxSize, borrowTimeout, null);
+	}
+
+	/**
+	 * Costruttore di un pool di connessioni di sola lettura, che applica il
+	 * profilo {@code profile} a ogni connessione aperta.
+	 *
+	 * <p>
+	 * Vengono aperte immediatamente {@code minSize} connessioni. Se
+	 * {@code writerPool} è null il pool non è di sola lettura.
+	 *
+	 * @param url           URI del meccanismo di persistenza dei dati.
+	 * @param profile       profilo da applicare alle connessioni.
+	 * @param minSize       numero di connessioni aperte alla creazione del pool.
+	 * @param maxSize       numero massimo di connessioni aperte
+	 *                      contemporaneamente.
+	 * @param borrowTimeout millisecondi di attesa massimi per ottenere una
+	 *                      connessione.
+	 * @param writerPool    pool delle connessioni di scrittura, a cui viene
+	 *                      ceduto il prestito se il thread corrente ne possiede
+	 *                      già una connessione.
+	 * @throws SQLException se le dimensioni del pool non sono valide o occorrono
+	 *                      degli errori nell'apertura delle connessioni.
+	 */
+	public ConnectionPool(String url, PersistenceProfile profile, int minSize, int maxSize, long borrowTimeout,
+			ConnectionPool writerPool) throws SQLException {
+		if (minSize < 0 || maxSize <= 0 || minSize > maxSize)
+			throw new SQLException("Le dimensioni del pool di connessioni non sono valide.");
+		this.url = url;
+		this.profile = profile;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.borrowTimeout = borrowTimeout;
+		this.writerPool = writerPool;
+		this.idleConnections = new LinkedBlockingDeque<PooledConnection>();
+		this.permits = new Semaphore(maxSize, true);
+		this.threadConnection = new ThreadLocal<PooledConnection>();
+		this.openConnections = new AtomicInteger();
+		this.activeConnections = new AtomicInteger();
+		this.peakActiveConnections = new AtomicInteger();
+		this.borrowCount = new AtomicLong();
+		this.totalWaitTime = new AtomicLong();
+		this.maxWaitTime = new AtomicLong();
+		this.timeoutCount = new AtomicLong();
+		this.totalHoldTime = new AtomicLong();
+		this.maxHoldTime = new AtomicLong();
+		this.invalidatedCount = new AtomicLong();
+		this.statementHits = new AtomicLong();
+		this.statementMisses = new AtomicLong();
+		this.openStatements = new AtomicInteger();
+		this.commitCount = new AtomicLong();
+		this.rollbackCount = new AtomicLong();
+		this.closed = false;
+		for (int i = 0; i < minSize; i++) {
+			idleConnections.addLast(openConnection());
+		}
+	}
+
+	/**
+	 * Prende in prestito una connessione dal pool.
+	 *
+	 * <p>
+	 * Se il thread corrente ha già una connessione in prestito (dal pool stesso
+	 * o, per un pool di sola lettura, dal pool di scrittura) viene restituita la
+	 * stessa connessione, altrimenti viene riutilizzata una connessione
+	 * inattiva (o ne viene aperta una nuova se il pool non ha raggiunto la
+	 * dimensione massima). La connessione va restituita chiamando
+	 * {@code close()}.
+	 *
+	 * @return la connessione presa in prestito.
+	 * @throws SQLException se non è possibile ottenere una connessione entro il
+	 *                      tempo massimo o se occorrono errori nell'apertura di
+	 *                      una nuova connessione.
+	 */
+	public PooledConnection borrow() throws SQLException {
+		PooledConnection pooled = writerPool == null ? null : writerPool.threadConnection.get();
+		if (pooled == null)
+			pooled = threadConnection.get();
+		if (pooled != null) {
+			pooled.acquire();
+			return pooled;
+		}
+		if (closed)
+			throw new SQLException("Il pool di connessioni è stato chiuso.");
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLTransientConnectionException(
+						"Nessuna connessione disponibile entro " + borrowTimeout + " ms.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Attesa di una connessione interrotta.");
+		}
+		long waitTime = System.nanoTime() - start;
+		try {
+			pooled = takeIdleConnection();
+			if (pooled == null)
+				pooled = openConnection();
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+		recordBorrow(waitTime);
+		pooled.acquire();
+		threadConnection.set(pooled);
+		return pooled;
+	}
+
+	/**
+	 * Restituisce al pool una connessione non più in uso da parte del thread
+	 * corrente.
+	 *
+	 * <p>
+	 * Eventuali transazioni lasciate aperte vengono annullate; se la connessione
+	 * non è più utilizzabile o il pool è stato chiuso la connessione viene chiusa
+	 * definitivamente.
+	 *
+	 * @param pooled connessione da restituire.
+	 */
+	void release(PooledConnection pooled) {
+		threadConnection.remove();
+		activeConnections.decrementAndGet();
+		long holdTime = System.nanoTime() - pooled.getBorrowedAt();
+		totalHoldTime.addAndGet(holdTime);
+		maxHoldTime.accumulateAndGet(holdTime, Math::max);
+		boolean reusable = !closed;
+		try {
+			Connection connection = pooled.getConnection();
+			if (connection.isClosed()) {
+				reusable = false;
+			} else if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		if (reusable) {
+			idleConnections.addFirst(pooled);
+		} else {
+			discard(pooled);
+		}
+		permits.release();
+	}
+
+	/**
+	 * Chiude il pool e tutte le connessioni inattive. Le connessioni ancora in
+	 * prestito vengono chiuse al momento della loro restituzione.
+	 */
+	public void close() {
+		closed = true;
+		PooledConnection pooled;
+		while ((pooled = idleConnections.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+	/**
+	 * Estrae una connessione valida tra quelle inattive, scartando quelle non più
+	 * utilizzabili.
+	 *
+	 * @return una connessione inattiva valida o null se non ce ne sono.
+	 */
+	private PooledConnection takeIdleConnection() {
+		PooledConnection pooled;
+		while ((pooled = idleConnections.pollFirst()) != null) {
+			if (pooled.isValid(VALIDATION_TIMEOUT))
+				return pooled;
+			invalidatedCount.incrementAndGet();
+			discard(pooled);
+		}
+		return null;
+	}
+
+	/**
+	 * Apre una nuova connessione fisica verso il meccanismo di persistenza e le
+	 * applica il profilo del pool.
+	 *
+	 * @return la nuova connessione gestita dal pool.
+	 * @throws SQLException se occorrono degli errori nell'apertura della
+	 *                      connessione.
+	 */
+	private PooledConnection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url);
+		try {
+			profile.apply(connection);
+			if (writerPool != null) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("PRAGMA query_only = ON;");
+				}
+			}
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		PooledConnection pooled = new PooledConnection(connection, this);
+		openConnections.incrementAndGet();
+		return pooled;
+	}
+
+	/**
+	 * Chiude definitivamente una connessione fisica.
+	 *
+	 * @param pooled connessione da chiudere.
+	 */
+	private void discard(PooledConnection pooled) {
+		pooled.closePhysically();
+		openConnections.decrementAndGet();
+	}
+
+	/**
+	 * Aggiorna le statistiche di utilizzo del pool dopo un prestito.
+	 *
+	 * @param waitTime nanosecondi di attesa per ottenere la connessione.
+	 */
+	private void recordBorrow(long waitTime) {
+		borrowCount.incrementAndGet();
+		totalWaitTime.addAndGet(waitTime);
+		maxWaitTime.accumulateAndGet(waitTime, Math::max);
+		peakActiveConnections.accumulateAndGet(activeConnections.incrementAndGet(), Math::max);
+	}
+
+	/**
+	 * Registra il riutilizzo di una query preparata presente in cache.
+	 */
+	void recordStatementHit() {
+		statementHits.incrementAndGet();
+	}
+
+	/**
+	 * Registra la preparazione di una query non presente in cache.
+	 */
+	void recordStatementMiss() {
+		statementMisses.incrementAndGet();
+	}
+
+	/**
+	 * Registra l'apertura di una query preparata su una connessione fisica.
+	 */
+	void statementOpened() {
+		openStatements.incrementAndGet();
+	}
+
+	/**
+	 * Registra la chiusura definitiva di una query preparata.
+	 */
+	void statementClosed() {
+		openStatements.decrementAndGet();
+	}
+
+	/**
+	 * Registra la conferma di una transazione esplicita.
+	 */
+	void recordCommit() {
+		commitCount.incrementAndGet();
+	}
+
+	/**
+	 * Registra l'annullamento di una transazione esplicita.
+	 */
+	void recordRollback() {
+		rollbackCount.incrementAndGet();
+	}
+
+	/**
+	 * Restituisce il tempo medio di attesa per ottenere una connessione.
+	 *
+	 * @return il tempo medio di attesa in millisecondi.
+	 */
+	public double getAverageWaitTime() {
+		long borrows = borrowCount.get();
+		return borrows == 0 ? 0.0 : totalWaitTime.get() / (double) borrows / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il tempo massimo di attesa registrato per ottenere una
+	 * connessione.
+	 *
+	 * @return il tempo massimo di attesa in millisecondi.
+	 */
+	public double getMaxWaitTime() {
+		return maxWaitTime.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il tempo medio durante il quale una connessione rimane in
+	 * prestito, ovvero la durata media delle operazioni eseguite tramite il
+	 * pool.
+	 *
+	 * @return il tempo medio di prestito in millisecondi.
+	 */
+	public double getAverageHoldTime() {
+		long borrows = borrowCount.get();
+		return borrows == 0 ? 0.0 : totalHoldTime.get() / (double) borrows / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il tempo massimo registrato di permanenza in prestito di una
+	 * connessione.
+	 *
+	 * @return il tempo massimo di prestito in millisecondi.
+	 */
+	public double getMaxHoldTime() {
+		return maxHoldTime.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Restituisce il numero stimato di thread in attesa di una connessione.
+	 *
+	 * @return il numero di thread in coda.
+	 */
+	public int getQueueLength() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * Restituisce la frazione di connessioni attualmente in prestito rispetto
+	 * alla dimensione massima del pool.
+	 *
+	 * @return l'utilizzo corrente del pool (tra 0 e 1).
+	 */
+	public double getUtilization() {
+		return activeConnections.get() / (double) maxSize;
+	}
+
+	public PersistenceProfile getProfile() {
+		return profile;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getBorrowTimeout() {
+		return borrowTimeout;
+	}
+
+	public boolean isReadOnly() {
+		return writerPool != null;
+	}
+
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	public int getIdleConnections() {
+		return idleConnections.size();
+	}
+
+	public int getPeakActiveConnections() {
+		return peakActiveConnections.get();
+	}
+
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	public long getInvalidatedCount() {
+		return invalidatedCount.get();
+	}
+
+	public long getStatementHits() {
+		return statementHits.get();
+	}
+
+	public long getStatementMisses() {
+		return statementMisses.get();
+	}
+
+	public int getOpenStatements() {
+		return openStatements.get();
+	}
+
+	public long getCommitCount() {
+		return commitCount.get();
+	}
+
+	public long getRollbackCount() {
+		return rollbackCount.get();
+	}
+
+}
@@ -0,0 +1,94 @@
+package cinema.model.persistence.pool;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Sessione di lavoro sul meccanismo di persistenza dei dati all'interno della
+ * quale eseguire transazioni esplicite.
+ *
+ * <p>
+ * Una sessione viene aperta all'inizio di un'operazione e chiusa al termine
+ * della stessa tramite {@code close()} (pensato per essere usato in un blocco
+ * try-with-resources). Le operazioni eseguite dalle interfacce verso la
+ * persistenza nello stesso thread mentre la sessione è aperta fanno parte
+ * della sua transazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public interface ISession extends AutoCloseable {
+
+	/**
+	 * Indica se ogni operazione della sessione viene confermata automaticamente.
+	 *
+	 * @return true se la sessione non fa parte di una transazione esplicita.
+	 * @throws SQLException se la sessione non è più utilizzabile.
+	 */
+	public boolean getAutoCommit() throws SQLException;
+
+	/**
+	 * Imposta la conferma automatica delle operazioni della sessione: con
+	 * {@code false} inizia una transazione esplicita, che va terminata con
+	 * {@code commit()} o {@code rollback()}.
+	 *
+	 * @param autoCommit true per confermare automaticamente ogni operazione.
+	 * @throws SQLException se la sessione non è più utilizzabile.
+	 */
+	public void setAutoCommit(boolean autoCommit) throws SQLException;
+
+	/**
+	 * Conferma la transazione in corso.
+	 *
+	 * @throws SQLException se la transazione non può essere confermata.
+	 */
+	public void commit() throws SQLException;
+
+	/**
+	 * Annulla la transazione in corso.
+	 *
+	 * @throws SQLException se la transazione non può essere annullata.
+	 */
+	public void rollback() throws SQLException;
+
+	/**
+	 * Crea un punto di salvataggio all'interno della transazione in corso.
+	 *
+	 * @return il punto di salvataggio creato.
+	 * @throws SQLException se non è in corso una transazione esplicita.
+	 */
+	public Savepoint setSavepoint() throws SQLException;
+
+	/**
+	 * Annulla le operazioni eseguite dopo il punto di salvataggio
+	 * {@code savepoint}, mantenendo in corso la transazione.
+	 *
+	 * @param savepoint punto di salvataggio a cui tornare.
+	 * @throws SQLException se il punto di salvataggio non è valido.
+	 */
+	public void rollback(Savepoint savepoint) throws SQLException;
+
+	/**
+	 * Rimuove il punto di salvataggio {@code savepoint}, mantenendo le operazioni
+	 * eseguite dopo di esso nella transazione in corso.
+	 *
+	 * @param savepoint punto di salvataggio da rimuovere.
+	 * @throws SQLException se il punto di salvataggio non è valido.
+	 */
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException;
+
+	/**
+	 * Restituisce il numero di transazioni esplicite confermate.
+	 *
+	 * @return il numero di transazioni confermate.
+	 */
+	public long getCommitCount();
+
+	/**
+	 * Chiude la sessione; se non ci sono altre sessioni annidate aperte dallo
+	 * stesso thread, un'eventuale transazione non confermata viene annullata.
+	 */
+	@Override
+	public void close();
+
+}
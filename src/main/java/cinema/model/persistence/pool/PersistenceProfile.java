@@ -0,0 +1,139 @@
+package cinema.model.persistence.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Profilo di configurazione delle connessioni SQLite, che stabilisce il
+ * compromesso tra durabilità delle scritture e prestazioni.
+ *
+ * <p>
+ * Tutti i profili usano il journal WAL, che permette alle letture di procedere
+ * mentre è in corso una scrittura, e differiscono per la sincronizzazione su
+ * disco e per la memoria dedicata a ogni connessione:
+ * <ul>
+ * <li>{@code DURABLE}: ogni transazione confermata viene sincronizzata su disco
+ * ({@code synchronous=FULL}) e sopravvive anche a un crash del sistema
+ * operativo;</li>
+ * <li>{@code BALANCED}: la sincronizzazione avviene ai checkpoint del WAL
+ * ({@code synchronous=NORMAL}); un crash del sistema operativo può far perdere
+ * le ultime transazioni ma non corrompe il database;</li>
+ * <li>{@code THROUGHPUT}: nessuna sincronizzazione esplicita
+ * ({@code synchronous=OFF}) e più memoria per cache e mappatura del file; da
+ * usare solo quando i dati possono essere ricostruiti.</li>
+ * </ul>
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public enum PersistenceProfile {
+
+	DURABLE("WAL", "FULL", 0, -2000, "DEFAULT", 5000),
+
+	BALANCED("WAL", "NORMAL", 64L * 1024 * 1024, -16000, "MEMORY", 5000),
+
+	THROUGHPUT("WAL", "OFF", 256L * 1024 * 1024, -64000, "MEMORY", 10000);
+
+	/**
+	 * Modalità del journal ({@code journal_mode}).
+	 */
+	private final String journalMode;
+
+	/**
+	 * Livello di sincronizzazione su disco ({@code synchronous}).
+	 */
+	private final String synchronous;
+
+	/**
+	 * Byte del file del database mappati in memoria ({@code mmap_size}).
+	 */
+	private final long mmapSize;
+
+	/**
+	 * Dimensione della cache delle pagine ({@code cache_size}): se negativa è
+	 * espressa in KiB, altrimenti in pagine.
+	 */
+	private final int cacheSize;
+
+	/**
+	 * Posizione delle tabelle e degli indici temporanei ({@code temp_store}).
+	 */
+	private final String tempStore;
+
+	/**
+	 * Millisecondi di attesa massimi per ottenere il lock sul database
+	 * ({@code busy_timeout}).
+	 */
+	private final int busyTimeout;
+
+	private PersistenceProfile(String journalMode, String synchronous, long mmapSize, int cacheSize,
+			String tempStore, int busyTimeout) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+		this.mmapSize = mmapSize;
+		this.cacheSize = cacheSize;
+		this.tempStore = tempStore;
+		this.busyTimeout = busyTimeout;
+	}
+
+	/**
+	 * Restituisce il profilo identificato da {@code name}, indipendentemente da
+	 * maiuscole e minuscole.
+	 *
+	 * @param name nome del profilo.
+	 * @return il profilo identificato da {@code name}.
+	 * @throws IllegalArgumentException se non esiste un profilo con quel nome.
+	 */
+	public static PersistenceProfile fromName(String name) {
+		for (PersistenceProfile profile : values()) {
+			if (profile.name().equalsIgnoreCase(name.trim()))
+				return profile;
+		}
+		throw new IllegalArgumentException("Il profilo di persistenza " + name + " non esiste.");
+	}
+
+	/**
+	 * Applica il profilo a una connessione appena aperta.
+	 *
+	 * @param connection connessione a cui applicare il profilo.
+	 * @throws SQLException se una delle impostazioni non può essere applicata.
+	 */
+	void apply(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			// busy_timeout va impostato per primo: il passaggio al journal WAL
+			// richiede il lock esclusivo sul database
+			statement.execute("PRAGMA busy_timeout = " + busyTimeout + ";");
+			statement.execute("PRAGMA journal_mode = " + journalMode + ";");
+			statement.execute("PRAGMA synchronous = " + synchronous + ";");
+			statement.execute("PRAGMA mmap_size = " + mmapSize + ";");
+			statement.execute("PRAGMA cache_size = " + cacheSize + ";");
+			statement.execute("PRAGMA temp_store = " + tempStore + ";");
+		}
+	}
+
+	public String getJournalMode() {
+		return journalMode;
+	}
+
+	public String getSynchronous() {
+		return synchronous;
+	}
+
+	public long getMmapSize() {
+		return mmapSize;
+	}
+
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	public String getTempStore() {
+		return tempStore;
+	}
+
+	public int getBusyTimeout() {
+		return busyTimeout;
+	}
+
+}
@@ -0,0 +1,242 @@
+package cinema.model.persistence.pool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Connessione fisica al meccanismo di persistenza dei dati gestita da un
+ * {@code ConnectionPool}.
+ *
+ * <p>
+ * Una connessione viene presa in prestito dal pool all'inizio di ogni
+ * operazione e restituita al termine della stessa tramite {@code close()}
+ * (pensato per essere usato in un blocco try-with-resources). All'interno dello
+ * stesso thread il prestito è rientrante: le operazioni annidate riutilizzano la
+ * stessa connessione, che torna al pool solamente quando l'operazione più
+ * esterna viene chiusa.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PooledConnection implements ISession {
+
+	/**
+	 * Connessione fisica al meccanismo di persistenza dei dati.
+	 */
+	private final Connection connection;
+
+	/**
+	 * Pool a cui appartiene la connessione.
+	 */
+	private final ConnectionPool pool;
+
+	/**
+	 * Cache delle query preparate sulla connessione.
+	 */
+	private final StatementCache statementCache;
+
+	/**
+	 * Numero di prestiti annidati ancora aperti dal thread che possiede la
+	 * connessione.
+	 */
+	private int holdCount;
+
+	/**
+	 * Istante (in nanosecondi) in cui la connessione è stata presa in prestito
+	 * dal prestito più esterno ancora aperto.
+	 */
+	private long borrowedAt;
+
+	/**
+	 * Numero di transazioni esplicite confermate sulla connessione.
+	 */
+	private long commitCount;
+
+	/**
+	 * Costruttore della connessione gestita dal pool.
+	 *
+	 * @param connection connessione fisica al meccanismo di persistenza.
+	 * @param pool       pool a cui appartiene la connessione.
+	 */
+	PooledConnection(Connection connection, ConnectionPool pool) {
+		this.connection = connection;
+		this.pool = pool;
+		this.statementCache = new StatementCache(connection, pool, ConnectionPool.STATEMENT_CACHE_SIZE);
+		this.holdCount = 0;
+	}
+
+	/**
+	 * Prepara una query parametrica sulla connessione.
+	 *
+	 * <p>
+	 * Le query vengono mantenute in una cache associata alla connessione e
+	 * identificata dal testo SQL, in modo che ogni query venga analizzata una
+	 * sola volta. La query restituita va chiusa al termine dell'utilizzo
+	 * (chiudendo anche l'eventuale cursore aperto) per renderla nuovamente
+	 * disponibile nella cache.
+	 *
+	 * @param sql testo della query da preparare.
+	 * @return la query preparata.
+	 * @throws SQLException se la query non è valida o la connessione non è più
+	 *                      utilizzabile.
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		return statementCache.prepare(sql);
+	}
+
+	/**
+	 * Indica se ogni operazione sulla connessione viene confermata
+	 * automaticamente.
+	 *
+	 * @return true se la connessione non fa parte di una transazione esplicita.
+	 * @throws SQLException se la connessione non è più utilizzabile.
+	 */
+	@Override
+	public boolean getAutoCommit() throws SQLException {
+		return connection.getAutoCommit();
+	}
+
+	/**
+	 * Imposta la conferma automatica delle operazioni sulla connessione: con
+	 * {@code false} inizia una transazione esplicita, che va terminata con
+	 * {@code commit()} o {@code rollback()}.
+	 *
+	 * @param autoCommit true per confermare automaticamente ogni operazione.
+	 * @throws SQLException se la connessione non è più utilizzabile.
+	 */
+	@Override
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		connection.setAutoCommit(autoCommit);
+	}
+
+	/**
+	 * Conferma la transazione in corso sulla connessione.
+	 *
+	 * @throws SQLException se la transazione non può essere confermata.
+	 */
+	@Override
+	public void commit() throws SQLException {
+		connection.commit();
+		commitCount++;
+		pool.recordCommit();
+	}
+
+	/**
+	 * Annulla la transazione in corso sulla connessione.
+	 *
+	 * @throws SQLException se la transazione non può essere annullata.
+	 */
+	@Override
+	public void rollback() throws SQLException {
+		connection.rollback();
+		pool.recordRollback();
+	}
+
+	/**
+	 * Crea un punto di salvataggio all'interno della transazione in corso.
+	 *
+	 * @return il punto di salvataggio creato.
+	 * @throws SQLException se non è in corso una transazione esplicita.
+	 */
+	@Override
+	public Savepoint setSavepoint() throws SQLException {
+		return connection.setSavepoint();
+	}
+
+	/**
+	 * Annulla le operazioni eseguite dopo il punto di salvataggio
+	 * {@code savepoint}, mantenendo in corso la transazione.
+	 *
+	 * @param savepoint punto di salvataggio a cui tornare.
+	 * @throws SQLException se il punto di salvataggio non è valido.
+	 */
+	@Override
+	public void rollback(Savepoint savepoint) throws SQLException {
+		connection.rollback(savepoint);
+	}
+
+	/**
+	 * Rimuove il punto di salvataggio {@code savepoint}, mantenendo le operazioni
+	 * eseguite dopo di esso nella transazione in corso.
+	 *
+	 * @param savepoint punto di salvataggio da rimuovere.
+	 * @throws SQLException se il punto di salvataggio non è valido.
+	 */
+	@Override
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		connection.releaseSavepoint(savepoint);
+	}
+
+	/**
+	 * Restituisce la connessione al pool se non ci sono altri prestiti annidati
+	 * aperti dallo stesso thread.
+	 */
+	@Override
+	public void close() {
+		if (--holdCount == 0) {
+			pool.release(this);
+		}
+	}
+
+	/**
+	 * Registra un nuovo prestito (eventualmente annidato) della connessione.
+	 */
+	void acquire() {
+		if (holdCount++ == 0)
+			borrowedAt = System.nanoTime();
+	}
+
+	/**
+	 * Restituisce l'istante in cui è iniziato il prestito più esterno della
+	 * connessione.
+	 *
+	 * @return l'istante di inizio del prestito in nanosecondi.
+	 */
+	long getBorrowedAt() {
+		return borrowedAt;
+	}
+
+	/**
+	 * Controlla che la connessione fisica sia ancora utilizzabile.
+	 *
+	 * @param timeout secondi di attesa massimi per la verifica.
+	 * @return true se la connessione è utilizzabile, false altrimenti.
+	 */
+	boolean isValid(int timeout) {
+		try {
+			return !connection.isClosed() && connection.isValid(timeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Chiude la connessione fisica ignorando eventuali errori.
+	 */
+	void closePhysically() {
+		statementCache.closeAll();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// La connessione viene scartata in ogni caso
+		}
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Restituisce il numero di transazioni esplicite confermate sulla connessione
+	 * dalla sua apertura.
+	 *
+	 * @return il numero di transazioni confermate.
+	 */
+	@Override
+	public long getCommitCount() {
+		return commitCount;
+	}
+
+}
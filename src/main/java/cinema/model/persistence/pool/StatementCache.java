@@ -0,0 +1,112 @@
+package cinema.model.persistence.pool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache delle query preparate su una singola connessione, identificate dal
+ * loro testo SQL.
+ *
+ * <p>
+ * Le query usate più frequentemente vengono analizzate dal meccanismo di
+ * persistenza una sola volta per connessione e poi riutilizzate. Quando la
+ * cache supera la dimensione massima viene rimossa la query usata meno di
+ * recente.
+ *
+ * <p>
+ * La cache non è thread-safe: viene usata solamente dal thread che ha in
+ * prestito la connessione a cui appartiene.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+class StatementCache {
+
+	/**
+	 * Connessione fisica su cui vengono preparate le query.
+	 */
+	private final Connection connection;
+
+	/**
+	 * Pool a cui appartiene la connessione (usato per le statistiche).
+	 */
+	private final ConnectionPool pool;
+
+	/**
+	 * Query in cache in ordine di utilizzo (dalla meno recente).
+	 */
+	private final LinkedHashMap<String, CachedStatement> statements;
+
+	/**
+	 * Costruttore della cache.
+	 *
+	 * @param connection connessione fisica su cui vengono preparate le query.
+	 * @param pool       pool a cui appartiene la connessione.
+	 * @param maxSize    numero massimo di query mantenute in cache.
+	 */
+	@SuppressWarnings("serial")
+	StatementCache(Connection connection, ConnectionPool pool, int maxSize) {
+		this.connection = connection;
+		this.pool = pool;
+		this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+				if (size() > maxSize) {
+					eldest.getValue().evict();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Restituisce la query preparata corrispondente a {@code sql}, riutilizzando
+	 * quella in cache se disponibile.
+	 *
+	 * <p>
+	 * Se la query in cache è già in uso (ad esempio da un'operazione annidata che
+	 * ha ancora un cursore aperto) ne viene preparata una nuova che sarà chiusa al
+	 * termine del suo utilizzo.
+	 *
+	 * @param sql testo della query.
+	 * @return la query preparata, da chiudere al termine dell'utilizzo.
+	 * @throws SQLException se la query non è valida.
+	 */
+	PreparedStatement prepare(String sql) throws SQLException {
+		CachedStatement cached = statements.get(sql);
+		if (cached != null && !cached.isInUse()) {
+			pool.recordStatementHit();
+			return cached.lend();
+		}
+		pool.recordStatementMiss();
+		PreparedStatement statement = connection.prepareStatement(sql);
+		pool.statementOpened();
+		CachedStatement newStatement = new CachedStatement(statement, sql, this, cached == null);
+		if (cached == null)
+			statements.put(sql, newStatement);
+		return newStatement.lend();
+	}
+
+	/**
+	 * Chiude tutte le query in cache.
+	 */
+	void closeAll() {
+		for (CachedStatement statement : new ArrayList<CachedStatement>(statements.values())) {
+			statement.evict();
+		}
+		statements.clear();
+	}
+
+	/**
+	 * Notifica il pool della chiusura definitiva di una query.
+	 */
+	void statementClosed() {
+		pool.statementClosed();
+	}
+
+}
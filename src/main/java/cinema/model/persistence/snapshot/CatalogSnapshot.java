@@ -0,0 +1,411 @@
+package cinema.model.persistence.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.cache.NameDictionary;
+import cinema.model.persistence.codec.ColumnCodecs;
+import cinema.model.projection.Projection;
+
+/**
+ * Istantanea del catalogo (film, sale e proiezioni con i posti occupati) salvata
+ * in un file binario, da cui ricostruire il catalogo all'avvio senza
+ * interrogare il database.
+ *
+ * <p>
+ * Il file inizia con un numero magico, la versione del formato e la versione
+ * del catalogo ({@code CatalogVersion}) da cui è stato scritto; seguono i film,
+ * le sale e le proiezioni, ciascuno preceduto dal loro numero. I testi sono
+ * salvati in UTF-8 preceduti dalla loro lunghezza in byte (-1 per null), le
+ * date delle proiezioni in secondi come nel database e i posti occupati come
+ * i byte della sequenza di bit di {@code Projection.getOccupiedSeats()}. Il
+ * file viene letto mappandolo in memoria ed è scritto in un file temporaneo
+ * poi rinominato, quindi un lettore non vede mai un'istantanea scritta a metà.
+ *
+ * <p>
+ * I film e le sale sono condivisi da tutte le proiezioni dell'istantanea,
+ * mentre le proiezioni vengono create nuove a ogni richiesta, dato che i loro
+ * posti possono essere modificati da chi le riceve.
+ *
+ * <p>
+ * L'occupazione dei posti cambia a ogni vendita, quindi non rende superata
+ * l'istantanea: i posti venduti dopo la sua lettura vengono aggiunti tramite
+ * {@code occupySeats(id, seats)} e quelli venduti dopo la sua scrittura
+ * tramite {@code setOccupiedSeats(id, occupied)}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CatalogSnapshot {
+
+	/**
+	 * Numero magico all'inizio del file ("CSNP").
+	 */
+	private static final int MAGIC = 0x43534E50;
+
+	/**
+	 * Versione del formato del file, da incrementare a ogni modifica del formato.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Versione del catalogo da cui è stata scritta l'istantanea.
+	 */
+	private final CatalogVersion version;
+
+	/**
+	 * Film dell'istantanea, in ordine di identificativo.
+	 */
+	private final ArrayList<Movie> movies;
+
+	/**
+	 * Sale dell'istantanea, in ordine di numero.
+	 */
+	private final ArrayList<Room> rooms;
+
+	private final HashMap<Integer, Movie> moviesById;
+
+	private final HashMap<Integer, Room> roomsById;
+
+	/**
+	 * Dati delle proiezioni, in ordine di identificativo.
+	 */
+	private final ArrayList<ProjectionRecord> projections;
+
+	private final HashMap<Integer, ProjectionRecord> projectionsById;
+
+	/**
+	 * Dati di una proiezione dell'istantanea.
+	 */
+	private static final class ProjectionRecord {
+
+		private final int id;
+
+		private final Movie movie;
+
+		private final Room room;
+
+		private final LocalDateTime dateTime;
+
+		private final double price;
+
+		/**
+		 * Posti occupati, sostituiti da una copia aggiornata a ogni modifica.
+		 */
+		private volatile BitSet occupied;
+
+		private ProjectionRecord(int id, Movie movie, Room room, LocalDateTime dateTime, double price,
+				BitSet occupied) {
+			this.id = id;
+			this.movie = movie;
+			this.room = room;
+			this.dateTime = dateTime;
+			this.price = price;
+			this.occupied = occupied;
+		}
+
+		private Projection toProjection() {
+			Projection projection = new Projection(id, movie, dateTime, price, room);
+			projection.occupySeats(occupied);
+			return projection;
+		}
+
+	}
+
+	private CatalogSnapshot(CatalogVersion version, ArrayList<Movie> movies, HashMap<Integer, Movie> moviesById,
+			ArrayList<Room> rooms, HashMap<Integer, Room> roomsById, ArrayList<ProjectionRecord> projections) {
+		this.version = version;
+		this.movies = movies;
+		this.moviesById = moviesById;
+		this.rooms = rooms;
+		this.roomsById = roomsById;
+		this.projections = projections;
+		this.projectionsById = new HashMap<Integer, ProjectionRecord>();
+		for (ProjectionRecord projection : projections)
+			projectionsById.put(projection.id, projection);
+	}
+
+	/**
+	 * Scrive l'istantanea del catalogo nel file {@code file}, sostituendo quella
+	 * eventualmente presente.
+	 *
+	 * @param file        percorso del file dell'istantanea.
+	 * @param version     versione del catalogo letta prima dei dati.
+	 * @param movies      film del catalogo.
+	 * @param rooms       sale del catalogo.
+	 * @param projections proiezioni del catalogo, con i loro posti occupati.
+	 * @throws IOException se il file non può essere scritto.
+	 */
+	public static void write(Path file, CatalogVersion version, List<Movie> movies, List<Room> rooms,
+			List<Projection> projections) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(version.getCatalog());
+			output.writeLong(version.getOccupancy());
+			output.writeInt(movies.size());
+			for (Movie movie : movies) {
+				output.writeInt(movie.getId());
+				writeString(output, movie.getTitle());
+				writeString(output, movie.getDescription());
+				writeStrings(output, movie.getGenres());
+				writeStrings(output, movie.getDirectors());
+				writeStrings(output, movie.getCast());
+				output.writeInt(movie.getRating());
+				output.writeInt(movie.getDuration());
+				writeString(output, movie.getImageURL());
+				writeString(output, movie.getTrailerURL());
+			}
+			output.writeInt(rooms.size());
+			for (Room room : rooms) {
+				output.writeInt(room.getNumber());
+				output.writeInt(room.getNumberOfRows());
+				output.writeInt(room.getNumberOfCols());
+			}
+			output.writeInt(projections.size());
+			for (Projection projection : projections) {
+				output.writeInt(projection.getId());
+				output.writeInt(projection.getMovie().getId());
+				output.writeInt(projection.getRoom().getNumber());
+				output.writeLong(ColumnCodecs.DATE_TIME.encode(projection.getDateTime()));
+				output.writeDouble(projection.getPrice());
+				byte[] occupied = projection.getOccupiedSeats().toByteArray();
+				output.writeInt(occupied.length);
+				output.write(occupied);
+			}
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Legge l'istantanea del catalogo dal file {@code file}, mappandolo in
+	 * memoria.
+	 *
+	 * @param file  percorso del file dell'istantanea.
+	 * @param names dizionario con cui condividere i generi, i registi e gli
+	 *              attori dei film letti.
+	 * @return l'istantanea letta.
+	 * @throws IOException se il file non può essere letto, non è un'istantanea,
+	 *                     ha un formato diverso da {@code FORMAT_VERSION} o è
+	 *                     danneggiato.
+	 */
+	public static CatalogSnapshot read(Path file, NameDictionary names) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC)
+				throw new IOException("Il file " + file + " non è un'istantanea del catalogo.");
+			int format = buffer.getInt();
+			if (format != FORMAT_VERSION)
+				throw new IOException("Il formato " + format + " dell'istantanea " + file + " non è supportato.");
+			CatalogVersion version = new CatalogVersion(buffer.getLong(), buffer.getLong());
+			int movieCount = readCount(buffer);
+			ArrayList<Movie> movies = new ArrayList<Movie>(movieCount);
+			HashMap<Integer, Movie> moviesById = new HashMap<Integer, Movie>();
+			for (int i = 0; i < movieCount; i++) {
+				Movie movie = new Movie(buffer.getInt(), readString(buffer), readString(buffer),
+						readStrings(buffer, names), readStrings(buffer, names), readStrings(buffer, names),
+						buffer.getInt(), buffer.getInt(), readString(buffer), readString(buffer));
+				movies.add(movie);
+				moviesById.put(movie.getId(), movie);
+			}
+			int roomCount = readCount(buffer);
+			ArrayList<Room> rooms = new ArrayList<Room>(roomCount);
+			HashMap<Integer, Room> roomsById = new HashMap<Integer, Room>();
+			for (int i = 0; i < roomCount; i++) {
+				Room room = new Room(buffer.getInt(), buffer.getInt(), buffer.getInt());
+				rooms.add(room);
+				roomsById.put(room.getNumber(), room);
+			}
+			int projectionCount = readCount(buffer);
+			ArrayList<ProjectionRecord> projections = new ArrayList<ProjectionRecord>(projectionCount);
+			for (int i = 0; i < projectionCount; i++) {
+				int id = buffer.getInt();
+				Movie movie = moviesById.get(buffer.getInt());
+				Room room = roomsById.get(buffer.getInt());
+				LocalDateTime dateTime = ColumnCodecs.DATE_TIME.decode(buffer.getLong());
+				double price = buffer.getDouble();
+				byte[] occupied = new byte[readCount(buffer)];
+				buffer.get(occupied);
+				if (movie == null || room == null)
+					throw new IOException("La proiezione " + id + " dell'istantanea " + file + " non è valida.");
+				projections.add(new ProjectionRecord(id, movie, room, dateTime, price, BitSet.valueOf(occupied)));
+			}
+			return new CatalogSnapshot(version, movies, moviesById, rooms, roomsById, projections);
+		} catch (BufferUnderflowException | RoomException e) {
+			throw new IOException("L'istantanea " + file + " è danneggiata.", e);
+		}
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			output.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static void writeStrings(DataOutputStream output, List<String> values) throws IOException {
+		output.writeInt(values.size());
+		for (String value : values)
+			writeString(output, value);
+	}
+
+	/**
+	 * Legge un numero di elementi o di byte, controllando che non superi i byte
+	 * rimanenti del file.
+	 */
+	private static int readCount(ByteBuffer buffer) throws IOException {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining())
+			throw new IOException("Numero di elementi non valido nell'istantanea: " + count);
+		return count;
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if (length == -1)
+			return null;
+		if (length < 0 || length > buffer.remaining())
+			throw new IOException("Lunghezza del testo non valida nell'istantanea: " + length);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static ArrayList<String> readStrings(ByteBuffer buffer, NameDictionary names) throws IOException {
+		int count = readCount(buffer);
+		ArrayList<String> values = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			values.add(names.intern(readString(buffer)));
+		return values;
+	}
+
+	public CatalogVersion getVersion() {
+		return version;
+	}
+
+	/**
+	 * Restituisce i film dell'istantanea, in ordine di identificativo.
+	 *
+	 * @return i film dell'istantanea.
+	 */
+	public ArrayList<Movie> getMovies() {
+		return new ArrayList<Movie>(movies);
+	}
+
+	/**
+	 * Restituisce il film identificato da {@code id}.
+	 *
+	 * @param id identificativo del film.
+	 * @return il film o null se non è presente nell'istantanea.
+	 */
+	public Movie getMovie(int id) {
+		return moviesById.get(id);
+	}
+
+	/**
+	 * Restituisce le sale dell'istantanea, in ordine di numero.
+	 *
+	 * @return le sale dell'istantanea.
+	 */
+	public ArrayList<Room> getRooms() {
+		return new ArrayList<Room>(rooms);
+	}
+
+	/**
+	 * Restituisce la sala identificata da {@code id}.
+	 *
+	 * @param id numero della sala.
+	 * @return la sala o null se non è presente nell'istantanea.
+	 */
+	public Room getRoom(int id) {
+		return roomsById.get(id);
+	}
+
+	/**
+	 * Restituisce nuove istanze delle proiezioni dell'istantanea, con i posti
+	 * occupati, in ordine di identificativo.
+	 *
+	 * @return le proiezioni dell'istantanea.
+	 */
+	public ArrayList<Projection> getProjections() {
+		ArrayList<Projection> result = new ArrayList<Projection>(projections.size());
+		for (ProjectionRecord projection : projections)
+			result.add(projection.toProjection());
+		return result;
+	}
+
+	/**
+	 * Occupa i posti {@code seats} della proiezione identificata da {@code id},
+	 * in aggiunta a quelli già occupati.
+	 *
+	 * @param id    identificativo della proiezione.
+	 * @param seats posti da occupare, con la stessa corrispondenza tra posti e bit
+	 *              di {@code Projection.getOccupiedSeats()}.
+	 */
+	public void occupySeats(int id, BitSet seats) {
+		ProjectionRecord projection = projectionsById.get(id);
+		if (projection == null)
+			return;
+		synchronized (projection) {
+			BitSet occupied = (BitSet) projection.occupied.clone();
+			occupied.or(seats);
+			projection.occupied = occupied;
+		}
+	}
+
+	/**
+	 * Sostituisce i posti occupati della proiezione identificata da {@code id}.
+	 *
+	 * @param id       identificativo della proiezione.
+	 * @param occupied posti occupati, con la stessa corrispondenza tra posti e
+	 *                 bit di {@code Projection.getOccupiedSeats()}.
+	 */
+	public void setOccupiedSeats(int id, BitSet occupied) {
+		ProjectionRecord projection = projectionsById.get(id);
+		if (projection == null)
+			return;
+		synchronized (projection) {
+			projection.occupied = (BitSet) occupied.clone();
+		}
+	}
+
+	/**
+	 * Restituisce una nuova istanza della proiezione identificata da {@code id}.
+	 *
+	 * @param id identificativo della proiezione.
+	 * @return la proiezione o null se non è presente nell'istantanea.
+	 */
+	public Projection getProjection(int id) {
+		ProjectionRecord projection = projectionsById.get(id);
+		return projection == null ? null : projection.toProjection();
+	}
+
+}
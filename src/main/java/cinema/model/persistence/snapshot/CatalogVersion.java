@@ -0,0 +1,63 @@
+package cinema.model.persistence.snapshot;
+
+/**
+ * Versione del catalogo (film, sale e proiezioni) e dell'occupazione dei posti
+ * mantenuti dal meccanismo di persistenza dei dati. Ognuno dei due contatori
+ * viene incrementato a ogni modifica dei dati corrispondenti, quindi due
+ * versioni uguali indicano gli stessi dati. Un'istantanea del catalogo è
+ * superata solamente se cambia il contatore del catalogo, dato che i posti
+ * occupati possono essere aggiornati al suo interno.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public final class CatalogVersion {
+
+	/**
+	 * Numero di modifiche al catalogo.
+	 */
+	private final long catalog;
+
+	/**
+	 * Numero di modifiche all'occupazione dei posti.
+	 */
+	private final long occupancy;
+
+	/**
+	 * Costruttore della versione.
+	 *
+	 * @param catalog   numero di modifiche al catalogo.
+	 * @param occupancy numero di modifiche all'occupazione dei posti.
+	 */
+	public CatalogVersion(long catalog, long occupancy) {
+		this.catalog = catalog;
+		this.occupancy = occupancy;
+	}
+
+	public long getCatalog() {
+		return catalog;
+	}
+
+	public long getOccupancy() {
+		return occupancy;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof CatalogVersion))
+			return false;
+		CatalogVersion version = (CatalogVersion) object;
+		return catalog == version.catalog && occupancy == version.occupancy;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(catalog) * 31 + Long.hashCode(occupancy);
+	}
+
+	@Override
+	public String toString() {
+		return catalog + "." + occupancy;
+	}
+
+}
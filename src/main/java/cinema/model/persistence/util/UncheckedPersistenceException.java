@@ -0,0 +1,25 @@
+package cinema.model.persistence.util;
+
+/**
+ * Lanciata in caso di errori riscontrati durante l'uso di meccanismi di
+ * persistenza all'interno di operazioni che non possono lanciare eccezioni
+ * controllate, come la lettura di un cursore tramite iteratore o stream.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+@SuppressWarnings("serial")
+public class UncheckedPersistenceException extends RuntimeException {
+
+	/**
+	 * Costruttore dell'eccezione.
+	 * 
+	 * @param message messaggio contenente i dettagli dell'errore riscontrato.
+	 * @param cause   errore del meccanismo di persistenza che ha causato
+	 *                l'eccezione.
+	 */
+	public UncheckedPersistenceException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
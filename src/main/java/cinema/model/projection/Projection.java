@@ -3,13 +3,16 @@ package cinema.model.projection;
 import java.time.LocalDateTime;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import cinema.model.cinema.util.RoomException;
 import cinema.model.projection.util.ProjectionException;
 import cinema.model.Movie;
 import cinema.model.cinema.PhysicalSeat;
 import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
 
 /**
  * Comprende tutte le informazioni, e metodi, necessari per rappresentare una
@@ -30,11 +33,6 @@ public class Projection implements Comparable<Projection> {
 	 */
 	private Movie movie;
 
-	/**
-	 * Sala in cui verrà proiettato il film.
-	 */
-	private Room room;
-
 	/**
 	 * Data e ora.
 	 */
@@ -46,9 +44,23 @@ public class Projection implements Comparable<Projection> {
 	private double price;
 
 	/**
-	 * Posti della sala in cui il film è proiettato.
+	 * Sala in cui verrà proiettato il film, insieme alla mappa dei suoi posti
+	 * occupati.
+	 *
+	 * <p>
+	 * Il meccanismo di persistenza restituisce a ogni richiesta una nuova
+	 * proiezione, quindi la mappa non decide tra acquisti concorrenti della
+	 * stessa proiezione: i conflitti vengono risolti alla conferma dell'acquisto
+	 * ({@code PersistenceFacade.commitPurchase(reservation)}). Una proiezione può
+	 * però essere usata da più thread, ad esempio dalle richieste concorrenti
+	 * relative alla stessa prenotazione, quindi i bit vengono modificati
+	 * solamente con operazioni di confronto e scambio sulle singole parole,
+	 * senza acquisire lock. Sala e mappa vengono sostituite insieme, con un'unica
+	 * scrittura del campo volatile, solamente da {@code setRoom(room)}: ogni
+	 * metodo legge il campo una sola volta e lavora su quella disposizione,
+	 * senza poter combinare le dimensioni di una sala con la mappa di un'altra.
 	 */
-	private ArrayList<ArrayList<ProjectionSeat>> seats;
+	private volatile SeatLayout layout;
 
 	/**
 	 * Costruttore della proiezione.
@@ -64,23 +76,15 @@ public class Projection implements Comparable<Projection> {
 		this.movie = movie;
 		this.dateTime = dateTime;
 		this.price = Math.round(price * 100.0) / 100.0;
-		this.room = room;
-		this.seats = new ArrayList<ArrayList<ProjectionSeat>>();
-		for (int i = 0; i < room.getNumberOfRows(); i++) {
-			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
-			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				row.add(new ProjectionSeat(room.getSeat(i, j), true));
-			}
-			seats.add(row);
-		}
+		setRoom(room);
 	}
 
 	/**
-	 * Costruttore di default che inizializza solamente l'ArrayList di posti
-	 * (vuoto).
+	 * Costruttore di default che non associa alcun posto alla proiezione, fino
+	 * all'impostazione della sala con {@code setRoom(room)}.
 	 */
 	public Projection() {
-		seats = new ArrayList<ArrayList<ProjectionSeat>>();
+		layout = new SeatLayout(null, 0, 0);
 	}
 
 	/**
@@ -100,23 +104,13 @@ public class Projection implements Comparable<Projection> {
 	}
 
 	/**
-	 * Associa la proiezione ad una specifica sala e ne inizializza i
-	 * {@code ProjectionSeat}.
+	 * Associa la proiezione ad una specifica sala e ne rende disponibili tutti i
+	 * posti.
 	 *
 	 * @param room sala nella quale si svolge la proiezione.
 	 */
 	public void setRoom(Room room) {
-		this.room = room;
-		if (seats.size() != 0) {
-			seats.removeAll(seats);
-		}
-		for (int i = 0; i < room.getNumberOfRows(); i++) {
-			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
-			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				row.add(new ProjectionSeat(room.getSeat(i, j), true));
-			}
-			seats.add(row);
-		}
+		this.layout = new SeatLayout(room, room.getNumberOfCols(), room.getNumberOfRows() * room.getNumberOfCols());
 	}
 
 	/**
@@ -144,6 +138,18 @@ public class Projection implements Comparable<Projection> {
 		this.price = Math.round(price * 100.0) / 100.0;
 	}
 
+	/**
+	 * Verifica che il posto nella fila {@code row} e nella colonna {@code col}
+	 * esista nella sala della proiezione.
+	 * 
+	 * @param row coordinata riga.
+	 * @param col coordinata colonna.
+	 * @throws RoomException qualora il posto selezionato non esista.
+	 */
+	public void checkSeat(int row, int col) throws RoomException {
+		layout.index(row, col);
+	}
+
 	/**
 	 * Verifica se un posto specifico sia libero.
 	 * 
@@ -153,12 +159,9 @@ public class Projection implements Comparable<Projection> {
 	 * @throws RoomException qualora il posto selezionato non esista.
 	 */
 	public boolean checkIfSeatIsAvailable(int row, int col) throws RoomException {
-		try {
-			return seats.get(row).get(col).isAvailable();
-		} catch (IndexOutOfBoundsException e) {
-			throw new RoomException(
-					"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " non esiste.");
-		}
+		SeatLayout layout = this.layout;
+		int index = layout.index(row, col);
+		return (layout.occupied.get(index >>> 6) & (1L << index)) == 0;
 	}
 
 	/**
@@ -169,19 +172,16 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public int getNumberAvailableSeat() throws RoomException {
-		int availableSeats = 0;
-		for (int i = 0; i < this.getRoom().getNumberOfRows(); i++) {
-			for (int j = 0; j < this.getRoom().getNumberOfCols(); j++) {
-				if (checkIfSeatIsAvailable(i, j)) {
-					availableSeats++;
-				}
-			}
-		}
-		return availableSeats;
+		SeatLayout layout = this.layout;
+		int occupiedSeats = 0;
+		for (int i = 0; i < layout.occupied.length(); i++)
+			occupiedSeats += Long.bitCount(layout.occupied.get(i));
+		return layout.size - occupiedSeats;
 	}
 
 	/**
-	 * Occupa il posto della sala in cui è fatta la proiezione.
+	 * Occupa il posto della sala in cui è fatta la proiezione. Se più thread
+	 * tentano di occupare lo stesso posto, solamente uno di essi ci riesce.
 	 * 
 	 * @param row coordinata riga.
 	 * @param col coordinata colonna.
@@ -191,11 +191,90 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public boolean takeSeat(int row, int col) throws RoomException {
-		if (checkIfSeatIsAvailable(row, col)) {
-			seats.get(row).get(col).setAvailable(false);
-			return true;
+		SeatLayout layout = this.layout;
+		int index = layout.index(row, col);
+		return layout.claim(index >>> 6, 1L << index);
+	}
+
+	/**
+	 * Occupa tutti i posti {@code seatIds} oppure nessuno di essi.
+	 *
+	 * <p>
+	 * I posti appartenenti alla stessa parola della mappa vengono occupati con un
+	 * unico confronto e scambio; se un posto risulta già occupato vengono
+	 * liberati i posti occupati fino a quel momento dalla chiamata. Nel frattempo
+	 * altri thread possono vedere occupata una parte dei posti, ma nessun posto
+	 * può essere occupato da due chiamate contemporaneamente.
+	 *
+	 * @param seatIds identificativi ({@code SeatId}) dei posti da occupare.
+	 * @return True: posti occupati con successo, False: almeno un posto era già
+	 *         occupato e nessun posto è stato occupato.
+	 * @throws RoomException qualora uno dei posti selezionati non esista.
+	 */
+	public boolean takeSeats(int[] seatIds) throws RoomException {
+		SeatLayout layout = this.layout;
+		long[] masks = layout.masks(seatIds);
+		for (int i = 0; i < masks.length; i++) {
+			if (masks[i] != 0 && !layout.claim(i, masks[i])) {
+				for (int j = 0; j < i; j++) {
+					if (masks[j] != 0)
+						layout.release(j, masks[j]);
+				}
+				return false;
+			}
 		}
-		return false;
+		return true;
+	}
+
+	/**
+	 * Libera tutti i posti {@code seatIds}, anche se alcuni di essi sono già
+	 * liberi.
+	 *
+	 * @param seatIds identificativi ({@code SeatId}) dei posti da liberare.
+	 * @throws RoomException qualora uno dei posti selezionati non esista.
+	 */
+	public void freeSeats(int[] seatIds) throws RoomException {
+		SeatLayout layout = this.layout;
+		long[] masks = layout.masks(seatIds);
+		for (int i = 0; i < masks.length; i++) {
+			if (masks[i] != 0)
+				layout.release(i, masks[i]);
+		}
+	}
+
+	/**
+	 * Occupa in blocco i posti indicati da {@code occupied}, in cui il posto nella
+	 * fila {@code row} e nella colonna {@code col} corrisponde al bit
+	 * {@code row * numero di colonne + col}. I bit successivi all'ultimo posto
+	 * della sala vengono ignorati.
+	 * 
+	 * @param occupied posti da occupare.
+	 */
+	public void occupySeats(BitSet occupied) {
+		long[] words = occupied.toLongArray();
+		SeatLayout layout = this.layout;
+		AtomicLongArray map = layout.occupied;
+		int length = map.length();
+		for (int i = 0; i < words.length && i < length; i++) {
+			long mask = words[i];
+			if (i == length - 1 && layout.size % Long.SIZE != 0)
+				mask &= -1L >>> (Long.SIZE - layout.size % Long.SIZE);
+			map.getAndAccumulate(i, mask, (word, bits) -> word | bits);
+		}
+	}
+
+	/**
+	 * Restituisce i posti occupati della proiezione, con la stessa
+	 * corrispondenza tra posti e bit di {@code occupySeats(occupied)}.
+	 * 
+	 * @return i posti occupati.
+	 */
+	public BitSet getOccupiedSeats() {
+		AtomicLongArray occupied = layout.occupied;
+		long[] words = new long[occupied.length()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = occupied.get(i);
+		return BitSet.valueOf(words);
 	}
 
 	/**
@@ -209,11 +288,10 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public boolean freeSeat(int row, int col) throws RoomException {
-		if (!checkIfSeatIsAvailable(row, col)) {
-			seats.get(row).get(col).setAvailable(true);
-			return true;
-		}
-		return false;
+		SeatLayout layout = this.layout;
+		int index = layout.index(row, col);
+		long mask = 1L << index;
+		return (layout.occupied.getAndAccumulate(index >>> 6, mask, (word, bits) -> word & ~bits) & mask) != 0;
 	}
 
 	/**
@@ -226,7 +304,7 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public PhysicalSeat getPhysicalSeat(int row, int col) throws RoomException {
-		return this.getSeats().get(row).get(col).getPhysicalSeat();
+		return layout.room.getSeat(row, col);
 	}
 
 	/**
@@ -238,9 +316,10 @@ public class Projection implements Comparable<Projection> {
 	 *                       del cinema.
 	 */
 	public String getSeatCoordinates(PhysicalSeat s) throws RoomException {
+		Room room = layout.room;
 		for (int i = 0; i < room.getNumberOfRows(); i++) {
 			for (int j = 0; j < room.getNumberOfCols(); j++) {
-				if (getPhysicalSeat(i, j) == s)
+				if (room.getSeat(i, j) == s)
 					return Room.rowIndexToRowLetter(i) + (j + 1);
 			}
 		}
@@ -281,14 +360,34 @@ public class Projection implements Comparable<Projection> {
 	}
 
 	public Room getRoom() {
-		return room;
+		return layout.room;
 	}
 
 	public int getId() {
 		return id;
 	}
 
+	/**
+	 * Restituisce i posti della proiezione, organizzati per fila.
+	 *
+	 * <p>
+	 * I posti non sono memorizzati nella proiezione ma vengono creati a ogni
+	 * chiamata: ciascuno riflette però lo stato del posto nella proiezione e la
+	 * modifica della sua disponibilità con {@code setAvailable(available)} si
+	 * applica alla proiezione.
+	 * 
+	 * @return i posti della proiezione.
+	 */
 	public ArrayList<ArrayList<ProjectionSeat>> getSeats() {
+		SeatLayout layout = this.layout;
+		int cols = layout.cols;
+		ArrayList<ArrayList<ProjectionSeat>> seats = new ArrayList<ArrayList<ProjectionSeat>>();
+		for (int i = 0; cols > 0 && i < layout.size / cols; i++) {
+			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>(cols);
+			for (int j = 0; j < cols; j++)
+				row.add(new BoundSeat(layout, layout.room.getSeat(i, j), i * cols + j));
+			seats.add(row);
+		}
 		return seats;
 	}
 
@@ -296,4 +395,130 @@ public class Projection implements Comparable<Projection> {
 		return movie;
 	}
 
+	/**
+	 * Posto restituito da {@code getSeats()}, la cui disponibilità è quella del
+	 * bit {@code index} della mappa dei posti occupati della proiezione al
+	 * momento della chiamata.
+	 */
+	private static final class BoundSeat extends ProjectionSeat {
+
+		private final SeatLayout layout;
+
+		private final int index;
+
+		private BoundSeat(SeatLayout layout, PhysicalSeat seat, int index) {
+			super(seat, true);
+			this.layout = layout;
+			this.index = index;
+		}
+
+		@Override
+		public boolean isAvailable() {
+			return (layout.occupied.get(index >>> 6) & (1L << index)) == 0;
+		}
+
+		@Override
+		public void setAvailable(boolean available) {
+			if (available)
+				layout.release(index >>> 6, 1L << index);
+			else
+				layout.claim(index >>> 6, 1L << index);
+		}
+
+	}
+
+	/**
+	 * Sala di una proiezione con le sue dimensioni e la mappa dei posti occupati,
+	 * in cui il posto nella fila {@code row} e nella colonna {@code col}
+	 * corrisponde al bit {@code row * cols + col}, impostato se il posto è
+	 * occupato. I bit successivi all'ultimo posto valgono sempre 0.
+	 *
+	 * <p>
+	 * I campi non cambiano dopo la costruzione: cambia solamente il contenuto
+	 * della mappa.
+	 */
+	private static final class SeatLayout {
+
+		/**
+		 * Sala, {@code null} se la sala non è stata impostata.
+		 */
+		private final Room room;
+
+		/**
+		 * Numero di posti per fila della sala, 0 se la sala non è stata impostata.
+		 */
+		private final int cols;
+
+		/**
+		 * Numero totale di posti della sala, 0 se la sala non è stata impostata.
+		 */
+		private final int size;
+
+		/**
+		 * Posti occupati della sala, un bit per posto.
+		 */
+		private final AtomicLongArray occupied;
+
+		private SeatLayout(Room room, int cols, int size) {
+			this.room = room;
+			this.cols = cols;
+			this.size = size;
+			this.occupied = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+		}
+
+		/**
+		 * Restituisce la posizione nella mappa dei posti occupati del posto nella
+		 * fila {@code row} e nella colonna {@code col}.
+		 * 
+		 * @param row coordinata riga.
+		 * @param col coordinata colonna.
+		 * @return la posizione del posto.
+		 * @throws RoomException qualora il posto selezionato non esista.
+		 */
+		private int index(int row, int col) throws RoomException {
+			if (row < 0 || col < 0 || col >= cols || row * cols + col >= size)
+				throw new RoomException(
+						"Il posto selezionato (" + Room.rowIndexToRowLetter(row) + "-" + (col + 1) + " non esiste.");
+			return row * cols + col;
+		}
+
+		/**
+		 * Imposta i bit {@code mask} della parola {@code word} della mappa,
+		 * solamente se nessuno di essi è già impostato.
+		 *
+		 * @return True: bit impostati, False: almeno un bit era già impostato.
+		 */
+		private boolean claim(int word, long mask) {
+			while (true) {
+				long current = occupied.get(word);
+				if ((current & mask) != 0)
+					return false;
+				if (occupied.compareAndSet(word, current, current | mask))
+					return true;
+			}
+		}
+
+		private void release(int word, long mask) {
+			occupied.getAndAccumulate(word, mask, (current, bits) -> current & ~bits);
+		}
+
+		/**
+		 * Restituisce, per ciascuna parola della mappa, i bit dei posti
+		 * {@code seatIds}.
+		 *
+		 * @param seatIds identificativi ({@code SeatId}) dei posti.
+		 * @return i bit dei posti, parola per parola.
+		 * @throws RoomException qualora uno dei posti selezionati non esista.
+		 */
+		private long[] masks(int[] seatIds) throws RoomException {
+			long[] masks = new long[occupied.length()];
+			for (int seatId : seatIds) {
+				int index = index(SeatId.row(seatId), SeatId.col(seatId));
+				masks[index >>> 6] |= 1L << index;
+			}
+			return masks;
+		}
+
+	}
+
 }
@@ -3,6 +3,7 @@ package cinema.model.reservation;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import cinema.model.payment.GreatNorthernAccountingAdapter;
 import cinema.model.payment.methods.paymentCard.PaymentCard;
@@ -12,6 +13,7 @@ import cinema.model.projection.Projection;
 import cinema.model.spectator.Spectator;
 import cinema.model.cinema.PhysicalSeat;
 import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.reservation.discount.IReservationDiscountStrategy;
 import cinema.model.reservation.discount.coupon.Coupon;
@@ -56,6 +58,12 @@ public class Reservation {
 	 */
 	private ArrayList<PhysicalSeat> seats;
 
+	/**
+	 * Identificativi ({@code SeatId}) dei posti selezionati, nello stesso ordine
+	 * di {@code seats}; sono validi solamente i primi {@code seats.size()}.
+	 */
+	private int[] seatIds;
+
 	/**
 	 * Proiezione per la quale lo spettatore desidera prenotare dei posti.
 	 */
@@ -107,6 +115,7 @@ public class Reservation {
 		progressive = id;
 		purchaseDate = java.time.LocalDate.now();
 		seats = new ArrayList<PhysicalSeat>();
+		seatIds = new int[4];
 		paymentCard = null;
 		reportLocation = null;
 		coupon = null;
@@ -127,14 +136,12 @@ public class Reservation {
 	 *                                   prenotazione.
 	 */
 	public void addSeat(int row, int col) throws SeatAvailabilityException, RoomException {
-		boolean findDuplicate = false;
 		if (projection.checkIfSeatIsAvailable(row, col)) {
-			for (PhysicalSeat s : seats) {
-				if (s == projection.getPhysicalSeat(row, col)) {
-					findDuplicate = true;
-				}
-			}
-			if (!findDuplicate) {
+			int seatId = SeatId.of(row, col);
+			if (indexOfSeat(seatId) < 0) {
+				if (seats.size() == seatIds.length)
+					seatIds = Arrays.copyOf(seatIds, seatIds.length * 2);
+				seatIds[seats.size()] = seatId;
 				seats.add(projection.getPhysicalSeat(row, col));
 			} else {
 				throw new SeatAvailabilityException(
@@ -154,7 +161,26 @@ public class Reservation {
 	 *                       sala associata alla prenotazione.
 	 */
 	public void removeSeat(int row, int col) throws RoomException {
-		seats.remove(projection.getPhysicalSeat(row, col));
+		projection.checkSeat(row, col);
+		int index = indexOfSeat(SeatId.of(row, col));
+		if (index >= 0) {
+			System.arraycopy(seatIds, index + 1, seatIds, index, seats.size() - index - 1);
+			seats.remove(index);
+		}
+	}
+
+	/**
+	 * Restituisce la posizione del posto {@code seatId} tra i posti selezionati.
+	 * 
+	 * @param seatId identificativo del posto.
+	 * @return la posizione del posto o -1 se il posto non è stato selezionato.
+	 */
+	private int indexOfSeat(int seatId) {
+		for (int i = 0; i < seats.size(); i++) {
+			if (seatIds[i] == seatId)
+				return i;
+		}
+		return -1;
 	}
 
 	/**
@@ -243,7 +269,7 @@ public class Reservation {
 			pay();
 		} catch (ReservationException | PaymentErrorException | PersistenceException exception) {
 			freeAllSeats();
-			seats.removeAll(seats);
+			removeAllSeats();
 			throw exception;
 		}
 	}
@@ -255,10 +281,17 @@ public class Reservation {
 	 * <p>
 	 * Viene effettuata la prenotazione effettiva dei posti aggiunti alla
 	 * prenotazione in modo tale che essi risultino occupati per altri spettatori
-	 * concorrenti o futuri. Se un posto non può essere riservato al momento della
-	 * chiamata tutti i posti già occupati vengono liberati e viene lanciata
-	 * un'eccezione {@code SeatAvailabilityException} per notificare il chiamante
-	 * dell'errore riscontrato.
+	 * concorrenti o futuri. I posti vengono occupati tutti insieme
+	 * ({@code Projection.takeSeats(seatIds)}): se un posto non può essere
+	 * riservato al momento della chiamata nessun posto resta occupato, i posti
+	 * vengono rimossi dalla prenotazione e viene lanciata un'eccezione
+	 * {@code SeatAvailabilityException} per notificare il chiamante dell'errore
+	 * riscontrato.
+	 *
+	 * <p>
+	 * La proiezione della prenotazione riflette i posti occupati al momento del
+	 * suo recupero, quindi un acquisto concorrente degli stessi posti viene
+	 * rifiutato solamente quando l'acquisto viene reso persistente.
 	 *
 	 * @throws RoomException             se un posto non può essere considerato
 	 *                                   parte della sala della quale dovrebbe fare
@@ -268,15 +301,9 @@ public class Reservation {
 	 *                                   spettatore concorrente.
 	 */
 	public void takeSeat() throws RoomException, SeatAvailabilityException {
-		for (int i = 0; i < seats.size(); i++) {
-			String coordinates = projection.getSeatCoordinates(seats.get(i));
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			if (!projection.takeSeat(row, col)) {
-				freeAllSeats();
-				seats.removeAll(seats);
-				throw new SeatAvailabilityException("Uno dei posti selezionati è già stato occupato.");
-			}
+		if (!projection.takeSeats(getSeatIds())) {
+			removeAllSeats();
+			throw new SeatAvailabilityException("Uno dei posti selezionati è già stato occupato.");
 		}
 	}
 
@@ -305,19 +332,21 @@ public class Reservation {
 	}
 
 	/**
-	 * Libera tutti i posti della prenotazione.
+	 * Libera tutti i posti della prenotazione, occupati in precedenza da
+	 * {@code takeSeat()}.
 	 * 
 	 * @throws RoomException se un posto non può essere considerato parte della sala
 	 *                       della quale dovrebbe fare parte.
 	 */
 	public void freeAllSeats() throws RoomException {
-		for (int i = 0; i < seats.size(); i++) {
-			String coordinates = projection.getSeatCoordinates(seats.get(i));
-			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
-			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
-			if (projection.checkIfSeatIsAvailable(row, col))
-				projection.freeSeat(row, col);
-		}
+		projection.freeSeats(getSeatIds());
+	}
+
+	/**
+	 * Rimuove tutti i posti selezionati dalla prenotazione.
+	 */
+	private void removeAllSeats() {
+		seats.clear();
 	}
 
 	/**
@@ -393,6 +422,17 @@ public class Reservation {
 		return seats;
 	}
 
+	/**
+	 * Restituisce gli identificativi dei posti selezionati, nello stesso ordine
+	 * di {@code getSeats()}.
+	 * 
+	 * @return una copia degli identificativi ({@code SeatId}) dei posti
+	 *         selezionati.
+	 */
+	public int[] getSeatIds() {
+		return Arrays.copyOf(seatIds, seats.size());
+	}
+
 	public IReservationDiscountStrategy getStrategy() {
 		return rd;
 	}
@@ -0,0 +1,230 @@
+package cinema.model.reservation.hold;
+
+import java.util.function.Consumer;
+
+/**
+ * Ruota temporizzata (hashed timer wheel) con cui far scadere un gran numero di
+ * scadenze senza un thread o una ricerca per ciascuna di esse.
+ *
+ * <p>
+ * Il tempo viene diviso in intervalli (tick) di {@code tickMillis}
+ * millisecondi. La ruota ha un numero di posizioni pari a una potenza di 2 e
+ * ogni scadenza viene inserita, in una lista doppiamente collegata, nella
+ * posizione corrispondente al tick in cui scade. Inserimento, rinnovo e
+ * annullamento di una scadenza richiedono quindi un tempo costante, e
+ * {@code advance(nowMillis)} visita solamente le posizioni dei tick trascorsi,
+ * rimuovendo in tempo costante ciascuna scadenza raggiunta. Le scadenze più
+ * lontane di un giro della ruota restano nella loro posizione fino al giro
+ * corretto.
+ *
+ * <p>
+ * Il tempo corrente viene sempre fornito dal chiamante, in millisecondi da un
+ * istante di riferimento qualsiasi. La classe non è thread-safe.
+ *
+ * @param <T> tipo degli oggetti associati alle scadenze.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class HashedTimerWheel<T> {
+
+	/**
+	 * Scadenza inserita nella ruota.
+	 *
+	 * @param <T> tipo dell'oggetto associato alla scadenza.
+	 */
+	public static final class Timeout<T> {
+
+		private final T payload;
+
+		/**
+		 * Tick in cui la scadenza viene raggiunta.
+		 */
+		private long deadline;
+
+		/**
+		 * Posizione della ruota che contiene la scadenza, -1 se la scadenza non è
+		 * inserita nella ruota.
+		 */
+		private int slot = -1;
+
+		private Timeout<T> previous;
+
+		private Timeout<T> next;
+
+		private Timeout(T payload) {
+			this.payload = payload;
+		}
+
+		public T getPayload() {
+			return payload;
+		}
+
+		/**
+		 * Indica se la scadenza è ancora inserita nella ruota, cioè se non è stata
+		 * raggiunta né annullata.
+		 *
+		 * @return True: scadenza in attesa, False: scadenza raggiunta o annullata.
+		 */
+		public boolean isPending() {
+			return slot >= 0;
+		}
+
+	}
+
+	/**
+	 * Durata di un tick in millisecondi.
+	 */
+	private final long tickMillis;
+
+	/**
+	 * Istante corrispondente al tick 0.
+	 */
+	private final long startMillis;
+
+	/**
+	 * Prima scadenza di ciascuna posizione della ruota.
+	 */
+	private final Timeout<T>[] slots;
+
+	/**
+	 * Ultimo tick elaborato da {@code advance(nowMillis)}.
+	 */
+	private long currentTick;
+
+	/**
+	 * Numero di scadenze in attesa.
+	 */
+	private int size;
+
+	/**
+	 * Costruttore della ruota.
+	 *
+	 * @param tickMillis durata di un tick in millisecondi.
+	 * @param wheelSize  numero minimo di posizioni della ruota, arrotondato alla
+	 *                   potenza di 2 successiva.
+	 * @param nowMillis  tempo corrente.
+	 * @throws IllegalArgumentException se la durata del tick o il numero di
+	 *                                  posizioni non sono positivi.
+	 */
+	@SuppressWarnings("unchecked")
+	public HashedTimerWheel(long tickMillis, int wheelSize, long nowMillis) {
+		if (tickMillis <= 0 || wheelSize <= 0 || wheelSize > 1 << 30)
+			throw new IllegalArgumentException("La durata del tick e il numero di posizioni devono essere positivi.");
+		this.tickMillis = tickMillis;
+		this.startMillis = nowMillis;
+		int length = Integer.highestOneBit(wheelSize);
+		this.slots = (Timeout<T>[]) new Timeout<?>[length < wheelSize ? length << 1 : length];
+	}
+
+	/**
+	 * Inserisce una nuova scadenza, raggiunta dopo {@code delayMillis}
+	 * millisecondi (arrotondati al tick successivo).
+	 *
+	 * @param payload     oggetto associato alla scadenza.
+	 * @param delayMillis millisecondi dopo i quali la scadenza viene raggiunta.
+	 * @param nowMillis   tempo corrente.
+	 * @return la scadenza inserita.
+	 */
+	public Timeout<T> schedule(T payload, long delayMillis, long nowMillis) {
+		Timeout<T> timeout = new Timeout<T>(payload);
+		link(timeout, delayMillis, nowMillis);
+		return timeout;
+	}
+
+	/**
+	 * Posticipa (o anticipa) una scadenza in attesa, che verrà raggiunta dopo
+	 * {@code delayMillis} millisecondi. Se la scadenza è già stata raggiunta o
+	 * annullata viene inserita nuovamente.
+	 *
+	 * @param timeout     scadenza da rinnovare.
+	 * @param delayMillis millisecondi dopo i quali la scadenza viene raggiunta.
+	 * @param nowMillis   tempo corrente.
+	 */
+	public void reschedule(Timeout<T> timeout, long delayMillis, long nowMillis) {
+		cancel(timeout);
+		link(timeout, delayMillis, nowMillis);
+	}
+
+	/**
+	 * Annulla una scadenza in attesa.
+	 *
+	 * @param timeout scadenza da annullare.
+	 * @return True: scadenza annullata, False: scadenza già raggiunta o annullata.
+	 */
+	public boolean cancel(Timeout<T> timeout) {
+		if (timeout.slot < 0)
+			return false;
+		if (timeout.previous != null)
+			timeout.previous.next = timeout.next;
+		else
+			slots[timeout.slot] = timeout.next;
+		if (timeout.next != null)
+			timeout.next.previous = timeout.previous;
+		timeout.previous = null;
+		timeout.next = null;
+		timeout.slot = -1;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Raggiunge tutte le scadenze dei tick trascorsi fino a {@code nowMillis},
+	 * rimuovendole dalla ruota e passandone gli oggetti a {@code expired}.
+	 *
+	 * <p>
+	 * Vengono visitate al più tutte le posizioni della ruota, anche se è trascorso
+	 * più di un giro dall'ultima chiamata.
+	 *
+	 * @param nowMillis tempo corrente.
+	 * @param expired   operazione eseguita per ogni scadenza raggiunta.
+	 * @return il numero di scadenze raggiunte.
+	 */
+	public int advance(long nowMillis, Consumer<T> expired) {
+		long targetTick = tickOf(nowMillis);
+		if (targetTick <= currentTick)
+			return 0;
+		long ticks = Math.min(targetTick - currentTick, slots.length);
+		int count = 0;
+		for (long tick = currentTick + 1; tick <= currentTick + ticks; tick++) {
+			Timeout<T> timeout = slots[(int) (tick & (slots.length - 1))];
+			while (timeout != null) {
+				Timeout<T> next = timeout.next;
+				if (timeout.deadline <= targetTick) {
+					cancel(timeout);
+					expired.accept(timeout.payload);
+					count++;
+				}
+				timeout = next;
+			}
+		}
+		currentTick = targetTick;
+		return count;
+	}
+
+	/**
+	 * Restituisce il numero di scadenze in attesa.
+	 *
+	 * @return il numero di scadenze.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private long tickOf(long millis) {
+		return Math.floorDiv(millis - startMillis, tickMillis);
+	}
+
+	private void link(Timeout<T> timeout, long delayMillis, long nowMillis) {
+		long deadline = Math.floorDiv(nowMillis + Math.max(delayMillis, 0) - startMillis + tickMillis - 1, tickMillis);
+		timeout.deadline = Math.max(deadline, currentTick + 1);
+		timeout.slot = (int) (timeout.deadline & (slots.length - 1));
+		timeout.previous = null;
+		timeout.next = slots[timeout.slot];
+		if (timeout.next != null)
+			timeout.next.previous = timeout;
+		slots[timeout.slot] = timeout;
+		size++;
+	}
+
+}
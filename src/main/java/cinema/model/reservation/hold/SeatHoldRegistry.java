@@ -0,0 +1,270 @@
+package cinema.model.reservation.hold;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.LongSupplier;
+
+import cinema.model.reservation.hold.HashedTimerWheel.Timeout;
+
+/**
+ * Blocchi temporanei dei posti selezionati dalle prenotazioni non ancora
+ * acquistate.
+ *
+ * <p>
+ * Quando uno spettatore seleziona un posto, il posto viene bloccato per la sua
+ * prenotazione in modo che gli altri spettatori lo vedano come non disponibile
+ * fino all'acquisto. Il blocco scade dopo {@code ttlMillis} millisecondi
+ * dall'ultima attività sulla prenotazione ({@code hold} o {@code touch}), così
+ * che i posti delle prenotazioni abbandonate tornino disponibili.
+ *
+ * <p>
+ * Le scadenze sono gestite da una {@code HashedTimerWheel}, con una sola
+ * scadenza per prenotazione, fatta avanzare all'inizio di ogni operazione: non
+ * viene creato alcun thread e ogni blocco scaduto viene rilasciato in tempo
+ * costante, indipendentemente dal numero di blocchi presenti. Tutte le
+ * operazioni sono sincronizzate, quindi i blocchi possono essere usati da più
+ * richieste concorrenti.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatHoldRegistry {
+
+	/**
+	 * Durata predefinita di un blocco, in millisecondi.
+	 */
+	public static final long DEFAULT_TTL_MILLIS = 600_000;
+
+	/**
+	 * Durata predefinita di un tick della ruota, in millisecondi.
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 500;
+
+	/**
+	 * Numero predefinito di posizioni della ruota (circa 17 minuti con il tick
+	 * predefinito).
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 2048;
+
+	/**
+	 * Posti bloccati da una prenotazione, che scadono tutti insieme.
+	 */
+	private static final class Holds {
+
+		private final long reservationId;
+
+		/**
+		 * Proiezioni e posti bloccati, come restituiti da {@code key}.
+		 */
+		private final HashSet<Long> seats;
+
+		private final Timeout<Holds> timeout;
+
+		private Holds(long reservationId, HashedTimerWheel<Holds> wheel, long ttlMillis, long now) {
+			this.reservationId = reservationId;
+			this.seats = new HashSet<Long>();
+			this.timeout = wheel.schedule(this, ttlMillis, now);
+		}
+
+	}
+
+	/**
+	 * Durata di un blocco dall'ultima attività sulla prenotazione.
+	 */
+	private final long ttlMillis;
+
+	/**
+	 * Tempo corrente in millisecondi.
+	 */
+	private final LongSupplier clock;
+
+	private final HashedTimerWheel<Holds> wheel;
+
+	/**
+	 * Blocchi delle prenotazioni a cui appartengono i posti bloccati,
+	 * identificati dalla proiezione e dal posto.
+	 */
+	private final HashMap<Long, Holds> holds;
+
+	/**
+	 * Blocchi attivi di ciascuna prenotazione.
+	 */
+	private final HashMap<Long, Holds> reservations;
+
+	/**
+	 * Numero di blocchi scaduti.
+	 */
+	private long expiredHolds;
+
+	/**
+	 * Costruttore dei blocchi con la ruota predefinita e il tempo di sistema.
+	 *
+	 * @param ttlMillis durata di un blocco dall'ultima attività sulla
+	 *                  prenotazione, in millisecondi.
+	 */
+	public SeatHoldRegistry(long ttlMillis) {
+		this(ttlMillis, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, () -> System.nanoTime() / 1_000_000);
+	}
+
+	/**
+	 * Costruttore dei blocchi.
+	 *
+	 * @param ttlMillis  durata di un blocco dall'ultima attività sulla
+	 *                   prenotazione, in millisecondi.
+	 * @param tickMillis durata di un tick della ruota, in millisecondi.
+	 * @param wheelSize  numero di posizioni della ruota.
+	 * @param clock      tempo corrente in millisecondi.
+	 * @throws IllegalArgumentException se la durata di un blocco non è positiva.
+	 */
+	public SeatHoldRegistry(long ttlMillis, long tickMillis, int wheelSize, LongSupplier clock) {
+		if (ttlMillis <= 0)
+			throw new IllegalArgumentException("La durata di un blocco deve essere positiva.");
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		this.wheel = new HashedTimerWheel<Holds>(tickMillis, wheelSize, clock.getAsLong());
+		this.holds = new HashMap<Long, Holds>();
+		this.reservations = new HashMap<Long, Holds>();
+	}
+
+	/**
+	 * Blocca il posto {@code seatId} della proiezione {@code projectionId} per la
+	 * prenotazione {@code reservationId} e rinnova gli altri blocchi della
+	 * prenotazione.
+	 *
+	 * @param reservationId identificativo della prenotazione.
+	 * @param projectionId  identificativo della proiezione.
+	 * @param seatId        identificativo del posto ({@code SeatId}).
+	 * @return True: posto bloccato (anche se lo era già per la stessa
+	 *         prenotazione), False: posto bloccato da un'altra prenotazione.
+	 */
+	public synchronized boolean hold(long reservationId, int projectionId, int seatId) {
+		long now = expire();
+		long seat = key(projectionId, seatId);
+		Holds owner = holds.get(seat);
+		if (owner != null && owner.reservationId != reservationId)
+			return false;
+		Holds reservationHolds = reservations.get(reservationId);
+		if (reservationHolds == null) {
+			reservationHolds = new Holds(reservationId, wheel, ttlMillis, now);
+			reservations.put(reservationId, reservationHolds);
+		} else {
+			wheel.reschedule(reservationHolds.timeout, ttlMillis, now);
+		}
+		if (owner == null) {
+			reservationHolds.seats.add(seat);
+			holds.put(seat, reservationHolds);
+		}
+		return true;
+	}
+
+	/**
+	 * Rilascia il blocco del posto {@code seatId} della proiezione
+	 * {@code projectionId}, se appartiene alla prenotazione {@code reservationId}.
+	 *
+	 * @param reservationId identificativo della prenotazione.
+	 * @param projectionId  identificativo della proiezione.
+	 * @param seatId        identificativo del posto ({@code SeatId}).
+	 */
+	public synchronized void release(long reservationId, int projectionId, int seatId) {
+		expire();
+		long seat = key(projectionId, seatId);
+		Holds owner = holds.get(seat);
+		if (owner != null && owner.reservationId == reservationId) {
+			holds.remove(seat);
+			owner.seats.remove(seat);
+			if (owner.seats.isEmpty()) {
+				wheel.cancel(owner.timeout);
+				reservations.remove(reservationId);
+			}
+		}
+	}
+
+	/**
+	 * Rilascia tutti i blocchi della prenotazione {@code reservationId}.
+	 *
+	 * @param reservationId identificativo della prenotazione.
+	 */
+	public synchronized void releaseAll(long reservationId) {
+		expire();
+		Holds reservationHolds = reservations.get(reservationId);
+		if (reservationHolds != null) {
+			wheel.cancel(reservationHolds.timeout);
+			remove(reservationHolds);
+		}
+	}
+
+	/**
+	 * Rinnova tutti i blocchi della prenotazione {@code reservationId}, che
+	 * scadranno dopo {@code ttlMillis} millisecondi da ora.
+	 *
+	 * @param reservationId identificativo della prenotazione.
+	 */
+	public synchronized void touch(long reservationId) {
+		long now = expire();
+		Holds reservationHolds = reservations.get(reservationId);
+		if (reservationHolds != null)
+			wheel.reschedule(reservationHolds.timeout, ttlMillis, now);
+	}
+
+	/**
+	 * Indica se il posto {@code seatId} della proiezione {@code projectionId} è
+	 * bloccato da una prenotazione.
+	 *
+	 * @param projectionId identificativo della proiezione.
+	 * @param seatId       identificativo del posto ({@code SeatId}).
+	 * @return True: posto bloccato, False: posto non bloccato.
+	 */
+	public synchronized boolean isHeld(int projectionId, int seatId) {
+		expire();
+		return holds.containsKey(key(projectionId, seatId));
+	}
+
+	/**
+	 * Restituisce il numero di blocchi attivi.
+	 *
+	 * @return il numero di blocchi.
+	 */
+	public synchronized int size() {
+		expire();
+		return holds.size();
+	}
+
+	/**
+	 * Restituisce il numero di blocchi scaduti dalla creazione.
+	 *
+	 * @return il numero di blocchi scaduti.
+	 */
+	public synchronized long getExpiredHolds() {
+		expire();
+		return expiredHolds;
+	}
+
+	/**
+	 * Rilascia i blocchi scaduti fino al tempo corrente.
+	 *
+	 * @return il tempo corrente.
+	 */
+	private long expire() {
+		long now = clock.getAsLong();
+		wheel.advance(now, reservationHolds -> {
+			expiredHolds += reservationHolds.seats.size();
+			remove(reservationHolds);
+		});
+		return now;
+	}
+
+	/**
+	 * Rimuove i blocchi di una prenotazione, la cui scadenza è già stata rimossa
+	 * dalla ruota, dai blocchi attivi.
+	 */
+	private void remove(Holds reservationHolds) {
+		reservations.remove(reservationHolds.reservationId);
+		for (long seat : reservationHolds.seats)
+			holds.remove(seat);
+	}
+
+	private static long key(int projectionId, int seatId) {
+		return (long) projectionId << 32 | (seatId & 0xFFFFFFFFL);
+	}
+
+}
@@ -1,5 +1,7 @@
 package cinema.model.reservation.util;
 
+import java.util.ArrayList;
+
 /**
  * Eccezione lanciata se il posto richiesto non è disponibile.
  * 
@@ -9,13 +11,34 @@ package cinema.model.reservation.util;
 @SuppressWarnings("serial")
 public class SeatAvailabilityException extends Exception {
 
+	/**
+	 * Coordinate (ad esempio "B7") dei posti che hanno causato l'errore, se note.
+	 */
+	private final ArrayList<String> unavailableSeats;
+
 	/**
 	 * Costruttore dell'eccezione.
 	 * 
 	 * @param message messaggio contenente i dettagli dell'errore riscontrato.
 	 */
 	public SeatAvailabilityException(String message) {
+		this(message, new ArrayList<String>());
+	}
+
+	/**
+	 * Costruttore dell'eccezione che riporta i posti non disponibili.
+	 * 
+	 * @param message          messaggio contenente i dettagli dell'errore
+	 *                         riscontrato.
+	 * @param unavailableSeats coordinate dei posti non disponibili.
+	 */
+	public SeatAvailabilityException(String message, ArrayList<String> unavailableSeats) {
 		super(message);
+		this.unavailableSeats = unavailableSeats;
+	}
+
+	public ArrayList<String> getUnavailableSeats() {
+		return unavailableSeats;
 	}
 
 }
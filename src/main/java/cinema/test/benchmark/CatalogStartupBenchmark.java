@@ -0,0 +1,140 @@
+package cinema.test.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import cinema.model.Movie;
+import cinema.model.cinema.Room;
+import cinema.model.persistence.PersistenceConfiguration;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.projection.Projection;
+
+/**
+ * Confronta il tempo di avvio del meccanismo di persistenza con e senza
+ * l'istantanea del catalogo ({@code CatalogSnapshot}).
+ *
+ * <p>
+ * Su una copia del database {@code persistence/cinemaDb.db}, eventualmente
+ * ampliata con altre proiezioni, viene misurato più volte il tempo necessario a
+ * creare il facade controller e quello necessario a ottenere poi tutti i film,
+ * le sale e le proiezioni, come avviene alla prima visualizzazione del
+ * catalogo. Al termine vengono stampate le mediane dei tempi in millisecondi
+ * con e senza istantanea. Il database originale non viene modificato.
+ *
+ * <p>
+ * Argomenti (facoltativi): numero di proiezioni da aggiungere al catalogo e
+ * numero di misure per ciascun caso.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class CatalogStartupBenchmark {
+
+	/**
+	 * Database copiato per la misura.
+	 */
+	private static final String DATABASE = "persistence/cinemaDb.db";
+
+	public static void main(String[] args) throws Exception {
+		int extraProjections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Path directory = Files.createTempDirectory("cinema-snapshot");
+		Path database = directory.resolve("cinemaDb.db");
+		Path snapshot = directory.resolve("catalog.snapshot");
+		Files.copy(Paths.get(DATABASE), database, StandardCopyOption.REPLACE_EXISTING);
+		try {
+			PersistenceFacade setup = new PersistenceFacade(configuration(database, null));
+			addProjections(setup, extraProjections);
+			setup.close();
+			PersistenceFacade writer = new PersistenceFacade(configuration(database, snapshot));
+			writer.writeCatalogSnapshot();
+			writer.close();
+			double[] withoutSnapshot = medians(configuration(database, null), false, iterations);
+			double[] withSnapshot = medians(configuration(database, snapshot), true, iterations);
+			System.out.printf("proiezioni: %d, istantanea: %d byte%n", (int) withoutSnapshot[2],
+					Files.size(snapshot));
+			System.out.printf("%-12s %16s %16s %16s%n", "avvio", "creazione (ms)", "catalogo (ms)", "totale (ms)");
+			System.out.printf("%-12s %16.2f %16.2f %16.2f%n", "database", withoutSnapshot[0], withoutSnapshot[1],
+					withoutSnapshot[0] + withoutSnapshot[1]);
+			System.out.printf("%-12s %16.2f %16.2f %16.2f%n", "istantanea", withSnapshot[0], withSnapshot[1],
+					withSnapshot[0] + withSnapshot[1]);
+		} finally {
+			for (Path file : new Path[] { snapshot, database, Paths.get(database + "-wal"),
+					Paths.get(database + "-shm") })
+				Files.deleteIfExists(file);
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private static PersistenceConfiguration configuration(Path database, Path snapshot) {
+		return PersistenceConfiguration.rdb("jdbc:sqlite:" + database)
+				.snapshot(snapshot == null ? null : snapshot.toString()).build();
+	}
+
+	/**
+	 * Aggiunge {@code count} proiezioni al catalogo, copiando film, sala, prezzo
+	 * e data delle proiezioni esistenti a distanza di un giorno l'una
+	 * dall'altra.
+	 */
+	private static void addProjections(PersistenceFacade persistenceFacade, int count) throws Exception {
+		ArrayList<Projection> existing = persistenceFacade.getAllProjections();
+		int nextId = existing.get(existing.size() - 1).getId() + 1;
+		for (int i = 0; i < count; i++) {
+			Projection model = existing.get(i % existing.size());
+			persistenceFacade.putProjection(new Projection(nextId + i, model.getMovie(),
+					model.getDateTime().plusDays(1 + i / existing.size()), model.getPrice(), model.getRoom()));
+		}
+	}
+
+	/**
+	 * Crea il facade controller e ne ottiene il catalogo.
+	 *
+	 * @return i millisecondi impiegati per creare il facade controller e per
+	 *         ottenere il catalogo e il numero di proiezioni ottenute.
+	 */
+	private static double[] load(PersistenceConfiguration configuration, boolean expectSnapshot) throws Exception {
+		long start = System.nanoTime();
+		PersistenceFacade persistenceFacade = new PersistenceFacade(configuration);
+		long created = System.nanoTime();
+		try {
+			ArrayList<Movie> movies = persistenceFacade.getAllMovies();
+			ArrayList<Room> rooms = persistenceFacade.getAllRooms();
+			ArrayList<Projection> projections = persistenceFacade.getAllProjections();
+			long loaded = System.nanoTime();
+			if (movies.isEmpty() || rooms.isEmpty())
+				throw new IllegalStateException("Il catalogo è vuoto.");
+			if (expectSnapshot && persistenceFacade.getMetrics().get("snapshot.loaded").intValue() != 1)
+				throw new IllegalStateException("L'istantanea del catalogo non è stata caricata.");
+			return new double[] { (created - start) / 1e6, (loaded - created) / 1e6, projections.size() };
+		} finally {
+			persistenceFacade.close();
+		}
+	}
+
+	/**
+	 * Restituisce le mediane dei tempi di {@code load(configuration)}, dopo un
+	 * avvio di riscaldamento.
+	 *
+	 * @return le mediane dei millisecondi di creazione e di lettura del catalogo
+	 *         e il numero di proiezioni ottenute.
+	 */
+	private static double[] medians(PersistenceConfiguration configuration, boolean expectSnapshot, int iterations)
+			throws Exception {
+		double size = load(configuration, expectSnapshot)[2];
+		double[] creation = new double[iterations];
+		double[] catalog = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			double[] times = load(configuration, expectSnapshot);
+			creation[i] = times[0];
+			catalog[i] = times[1];
+		}
+		Arrays.sort(creation);
+		Arrays.sort(catalog);
+		return new double[] { creation[iterations / 2], catalog[iterations / 2], size };
+	}
+
+}
@@ -0,0 +1,166 @@
+package cinema.test.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.persistence.PersistenceConfiguration;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.persistence.pool.PersistenceProfile;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.spectator.Spectator;
+
+/**
+ * Confronta il throughput dei profili di persistenza ({@code PersistenceProfile})
+ * con un carico misto di acquisti e letture delle proiezioni.
+ *
+ * <p>
+ * Per ogni profilo viene creata una copia del database
+ * {@code persistence/cinemaDb.db} in una cartella temporanea, su cui alcuni
+ * thread eseguono acquisti (creazione della prenotazione e salvataggio dei suoi
+ * dati) mentre altri leggono tutte le proiezioni. Ogni profilo viene misurato
+ * rendendo persistente ogni acquisto in una propria transazione e tramite il
+ * giornale degli acquisti. Al termine vengono stampate le operazioni al
+ * secondo di ciascun tipo e il numero di transazioni confermate per acquisto.
+ * Lo stesso carico viene infine eseguito mantenendo i dati in memoria, come
+ * limite superiore in assenza di accessi al disco. Il database originale non
+ * viene modificato.
+ *
+ * <p>
+ * Argomenti (facoltativi): secondi di misura per profilo, numero di thread di
+ * scrittura e numero di thread di lettura.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class PersistenceProfileBenchmark {
+
+	/**
+	 * Database copiato per ogni profilo.
+	 */
+	private static final String DATABASE = "persistence/cinemaDb.db";
+
+	/**
+	 * Script con i dati iniziali del meccanismo di persistenza in memoria.
+	 */
+	private static final String MEMORY_SEED = "persistence/dbSchema.sql";
+
+	/**
+	 * Secondi di riscaldamento prima di ogni misura.
+	 */
+	private static final int WARMUP_SECONDS = 1;
+
+	public static void main(String[] args) throws Exception {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int writers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		System.out.printf("%-12s %-9s %12s %12s %18s%n", "profilo", "giornale", "acquisti/s", "letture/s",
+				"conferme/acquisto");
+		for (PersistenceProfile profile : PersistenceProfile.values()) {
+			for (boolean journal : new boolean[] { false, true }) {
+				double[] result = run(profile, journal, false, seconds, writers, readers);
+				System.out.printf("%-12s %-9s %12.1f %12.1f %18.2f%n", profile.name().toLowerCase(),
+						journal ? "sì" : "no", result[0], result[1], result[2]);
+			}
+		}
+		for (boolean journal : new boolean[] { false, true }) {
+			double[] result = run(PersistenceConfiguration.DEFAULT_PROFILE, journal, true, seconds, writers, readers);
+			System.out.printf("%-12s %-9s %12.1f %12.1f %18.2f%n", "memoria", journal ? "sì" : "no", result[0],
+					result[1], result[2]);
+		}
+	}
+
+	/**
+	 * Esegue il carico su una copia del database con il profilo {@code profile}
+	 * o, se {@code memory} è true, sui dati mantenuti in memoria, eventualmente
+	 * rendendo persistenti gli acquisti tramite il giornale.
+	 *
+	 * @return acquisti e letture al secondo e transazioni confermate per
+	 *         acquisto.
+	 */
+	private static double[] run(PersistenceProfile profile, boolean journal, boolean memory, int seconds,
+			int writers, int readers) throws Exception {
+		Path directory = Files.createTempDirectory("cinema-benchmark");
+		Path database = directory.resolve("cinemaDb.db");
+		Files.copy(Paths.get(DATABASE), database, StandardCopyOption.REPLACE_EXISTING);
+		PersistenceConfiguration.Builder configuration = memory ? PersistenceConfiguration.memory(MEMORY_SEED)
+				: PersistenceConfiguration.rdb("jdbc:sqlite:" + database);
+		configuration.profile(profile).pool(writers + readers, writers + readers,
+				PersistenceFacade.DEFAULT_BORROW_TIMEOUT * 2);
+		if (journal)
+			configuration.journal(PersistenceFacade.DEFAULT_JOURNAL_MAX_BATCH,
+					PersistenceFacade.DEFAULT_JOURNAL_MAX_DELAY);
+		PersistenceFacade persistenceFacade = new PersistenceFacade(configuration.build());
+		Projection projection = persistenceFacade.getAllProjections().get(0);
+		AtomicBoolean measuring = new AtomicBoolean(false);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicLong purchases = new AtomicLong();
+		AtomicLong reads = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(writers + readers);
+		ArrayList<Throwable> errors = new ArrayList<Throwable>();
+		for (int i = 0; i < writers + readers; i++) {
+			boolean writer = i < writers;
+			new Thread(() -> {
+				try {
+					while (running.get()) {
+						if (writer) {
+							purchase(persistenceFacade, projection);
+							if (measuring.get())
+								purchases.incrementAndGet();
+						} else {
+							persistenceFacade.getAllProjections();
+							if (measuring.get())
+								reads.incrementAndGet();
+						}
+					}
+				} catch (Exception e) {
+					synchronized (errors) {
+						errors.add(e);
+					}
+				} finally {
+					done.countDown();
+				}
+			}).start();
+		}
+		Thread.sleep(WARMUP_SECONDS * 1000L);
+		long startCommits = persistenceFacade.getMetrics().get("transactions.commits").longValue();
+		measuring.set(true);
+		long start = System.nanoTime();
+		Thread.sleep(seconds * 1000L);
+		measuring.set(false);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		long commits = persistenceFacade.getMetrics().get("transactions.commits").longValue() - startCommits;
+		running.set(false);
+		done.await();
+		persistenceFacade.close();
+		for (String suffix : new String[] { "", "-wal", "-shm" })
+			Files.deleteIfExists(Paths.get(database + suffix));
+		Files.deleteIfExists(directory);
+		if (!errors.isEmpty())
+			throw new IllegalStateException("Il profilo " + profile + " ha generato errori.", errors.get(0));
+		return new double[] { purchases.get() / elapsed, reads.get() / elapsed,
+				purchases.get() == 0 ? 0.0 : (double) commits / purchases.get() };
+	}
+
+	/**
+	 * Esegue un acquisto senza posti: crea la prenotazione e ne rende persistenti
+	 * i dati.
+	 */
+	private static void purchase(PersistenceFacade persistenceFacade, Projection projection) throws Exception {
+		Reservation reservation = new Reservation(new DiscountDay(1), persistenceFacade.nextReservationId());
+		reservation.setProjection(projection);
+		reservation.setPurchaser(new Spectator("Mario", "Rossi", "mario.rossi@example.com"));
+		reservation.setPaymentCard("1234123412341234", "Mario Rossi", "123", YearMonth.now().plusYears(1));
+		persistenceFacade.putEmptyReservation(reservation);
+		persistenceFacade.commitPurchase(reservation);
+	}
+
+}
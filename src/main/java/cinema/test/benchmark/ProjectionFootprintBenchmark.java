@@ -0,0 +1,99 @@
+package cinema.test.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import cinema.model.cinema.Room;
+import cinema.model.projection.Projection;
+import cinema.model.projection.ProjectionSeat;
+
+/**
+ * Confronta la memoria occupata dai posti delle proiezioni con la mappa dei
+ * posti occupati di {@code Projection} e con la precedente rappresentazione,
+ * in cui ogni proiezione conservava una matrice
+ * {@code ArrayList<ArrayList<ProjectionSeat>>} con un {@code ProjectionSeat}
+ * per ciascun posto della sala.
+ *
+ * <p>
+ * Vengono create molte proiezioni nelle sale di {@code persistence/dbSchema.sql}
+ * e misurata, dopo una garbage collection, la crescita dello heap; al termine
+ * viene stampata l'occupazione media per proiezione in byte. La misura è
+ * approssimativa ma sufficiente a confrontare le due rappresentazioni.
+ *
+ * <p>
+ * Argomento (facoltativo): numero di proiezioni da creare.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionFootprintBenchmark {
+
+	/**
+	 * Dimensioni (file, posti per fila) delle sale del cinema.
+	 */
+	private static final int[][] ROOMS = { { 7, 15 }, { 8, 14 }, { 5, 10 }, { 6, 12 }, { 7, 11 } };
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		Room[] rooms = new Room[ROOMS.length];
+		for (int i = 0; i < ROOMS.length; i++)
+			rooms[i] = new Room(i + 1, ROOMS[i][0], ROOMS[i][1]);
+		LocalDateTime dateTime = LocalDateTime.now().plusDays(1);
+
+		long base = usedMemory();
+		ArrayList<Projection> projections = new ArrayList<Projection>(count);
+		for (int i = 0; i < count; i++) {
+			Projection projection = new Projection(i, null, dateTime, 10.0, rooms[i % rooms.length]);
+			projection.takeSeat(0, i % ROOMS[i % rooms.length][1]);
+			projections.add(projection);
+		}
+		double bitmap = (usedMemory() - base) / (double) count;
+
+		base = usedMemory();
+		ArrayList<ArrayList<ArrayList<ProjectionSeat>>> matrices = new ArrayList<ArrayList<ArrayList<ProjectionSeat>>>(
+				count);
+		for (int i = 0; i < count; i++)
+			matrices.add(legacySeats(projections.get(i)));
+		double legacy = bitmap + (usedMemory() - base) / (double) count;
+
+		System.out.printf("proiezioni: %d, posti per proiezione: %.1f%n", count, averageSeats(projections));
+		System.out.printf("%-22s %18s%n", "rappresentazione", "byte/proiezione");
+		System.out.printf("%-22s %18.1f%n", "ArrayList di posti", legacy);
+		System.out.printf("%-22s %18.1f%n", "mappa long[]", bitmap);
+		if (matrices.size() != projections.size())
+			throw new IllegalStateException();
+	}
+
+	/**
+	 * Costruisce la matrice di posti che la proiezione conservava prima della
+	 * mappa dei posti occupati.
+	 */
+	private static ArrayList<ArrayList<ProjectionSeat>> legacySeats(Projection projection) throws Exception {
+		Room room = projection.getRoom();
+		ArrayList<ArrayList<ProjectionSeat>> seats = new ArrayList<ArrayList<ProjectionSeat>>();
+		for (int i = 0; i < room.getNumberOfRows(); i++) {
+			ArrayList<ProjectionSeat> row = new ArrayList<ProjectionSeat>();
+			for (int j = 0; j < room.getNumberOfCols(); j++)
+				row.add(new ProjectionSeat(room.getSeat(i, j), projection.checkIfSeatIsAvailable(i, j)));
+			seats.add(row);
+		}
+		return seats;
+	}
+
+	private static double averageSeats(ArrayList<Projection> projections) {
+		long seats = 0;
+		for (Projection projection : projections)
+			seats += projection.getRoom().getNumberOfSeats();
+		return seats / (double) projections.size();
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
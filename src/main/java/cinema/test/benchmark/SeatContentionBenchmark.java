@@ -0,0 +1,97 @@
+package cinema.test.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
+import cinema.model.projection.Projection;
+
+/**
+ * Misura il throughput dell'occupazione dei posti di un'unica proiezione
+ * condivisa da un numero crescente di thread.
+ *
+ * <p>
+ * Ciascun thread occupa ripetutamente un gruppo di due posti scelti a caso
+ * ({@code Projection.takeSeats(seatIds)}) e, se ci riesce, lo libera subito
+ * dopo, in modo che la contesa sui posti resti costante per tutta la misura.
+ * La stessa misura viene ripetuta serializzando le operazioni con un lock
+ * sulla proiezione, come confronto. Vengono stampate le operazioni al secondo
+ * per ogni numero di thread, da 1 fino al numero di processori disponibili.
+ *
+ * <p>
+ * Argomenti (facoltativi): numero massimo di thread e millisecondi di misura
+ * per ciascun caso.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatContentionBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		Room room = new Room(1, 7, 15);
+		System.out.printf("processori: %d%n", Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-8s %18s %18s%n", "thread", "senza lock (op/s)", "con lock (op/s)");
+		for (int threads = 1;; threads = Math.min(threads * 2, maxThreads)) {
+			run(room, threads, millis / 2, false);
+			double lockFree = run(room, threads, millis, false);
+			run(room, threads, millis / 2, true);
+			double locked = run(room, threads, millis, true);
+			System.out.printf("%-8d %18.0f %18.0f%n", threads, lockFree, locked);
+			if (threads >= maxThreads)
+				break;
+		}
+	}
+
+	/**
+	 * Esegue la misura con {@code threads} thread su una nuova proiezione.
+	 *
+	 * @return le operazioni (tentativi di occupazione) al secondo.
+	 */
+	private static double run(Room room, int threads, long millis, boolean locked) throws Exception {
+		Projection projection = new Projection(1, null, LocalDateTime.now().plusDays(1), 10.0, room);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicLong operations = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long count = 0;
+				try {
+					while (running.get()) {
+						int[] seatIds = { randomSeat(room, random), randomSeat(room, random) };
+						if (locked) {
+							synchronized (projection) {
+								if (projection.takeSeats(seatIds))
+									projection.freeSeats(seatIds);
+							}
+						} else if (projection.takeSeats(seatIds)) {
+							projection.freeSeats(seatIds);
+						}
+						count++;
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				} finally {
+					operations.addAndGet(count);
+					done.countDown();
+				}
+			}).start();
+		}
+		long start = System.nanoTime();
+		Thread.sleep(millis);
+		running.set(false);
+		done.await();
+		return operations.get() / ((System.nanoTime() - start) / 1e9);
+	}
+
+	private static int randomSeat(Room room, ThreadLocalRandom random) {
+		return SeatId.of(random.nextInt(room.getNumberOfRows()), random.nextInt(room.getNumberOfCols()));
+	}
+
+}
@@ -0,0 +1,98 @@
+package cinema.test.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import cinema.model.cinema.SeatId;
+import cinema.model.reservation.hold.SeatHoldRegistry;
+
+/**
+ * Misura il costo dei blocchi temporanei dei posti al crescere del numero di
+ * blocchi presenti.
+ *
+ * <p>
+ * Per ogni dimensione vengono bloccati i posti di più prenotazioni (quattro
+ * posti ciascuna, su proiezioni diverse), le prenotazioni vengono rinnovate una
+ * volta e il tempo viene infine fatto avanzare oltre la durata dei blocchi, in
+ * modo che scadano tutti alla prima operazione successiva. Il tempo è simulato,
+ * quindi viene misurato solamente il costo delle operazioni. Vengono stampati i
+ * nanosecondi per blocco, per rinnovo e per blocco scaduto, che restano
+ * costanti anche con decine di migliaia di blocchi.
+ *
+ * <p>
+ * Argomenti (facoltativi): numeri di blocchi da misurare.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatHoldBenchmark {
+
+	/**
+	 * Posti bloccati da ciascuna prenotazione.
+	 */
+	private static final int SEATS_PER_RESERVATION = 4;
+
+	/**
+	 * Ripetizioni di ciascuna misura, di cui viene stampata la migliore.
+	 */
+	private static final int MEASUREMENTS = 5;
+
+	public static void main(String[] args) {
+		int[] sizes = { 1_000, 10_000, 50_000, 100_000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+		// Riscaldamento
+		for (int i = 0; i < MEASUREMENTS; i++)
+			run(sizes[sizes.length - 1]);
+		System.out.printf("%-10s %14s %14s %14s%n", "blocchi", "ns/blocco", "ns/rinnovo", "ns/scadenza");
+		for (int size : sizes) {
+			double[] best = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+			for (int i = 0; i < MEASUREMENTS; i++) {
+				double[] result = run(size);
+				for (int j = 0; j < best.length; j++)
+					best[j] = Math.min(best[j], result[j]);
+			}
+			System.out.printf("%-10d %14.1f %14.1f %14.1f%n", size, best[0], best[1], best[2]);
+		}
+	}
+
+	/**
+	 * Blocca {@code size} posti, rinnova le prenotazioni e fa scadere i blocchi.
+	 *
+	 * @return i nanosecondi per blocco, per rinnovo e per blocco scaduto.
+	 */
+	private static double[] run(int size) {
+		AtomicLong clock = new AtomicLong();
+		SeatHoldRegistry holds = new SeatHoldRegistry(SeatHoldRegistry.DEFAULT_TTL_MILLIS,
+				SeatHoldRegistry.DEFAULT_TICK_MILLIS, SeatHoldRegistry.DEFAULT_WHEEL_SIZE, clock::get);
+		int reservations = size / SEATS_PER_RESERVATION;
+
+		long start = System.nanoTime();
+		for (int i = 0; i < size; i++) {
+			int reservation = i / SEATS_PER_RESERVATION;
+			holds.hold(reservation, reservation / 64, SeatId.of(reservation % 64 / 8, (reservation % 8) * 4 + i % 4));
+			// Le prenotazioni vengono create in momenti diversi, come nel caso reale
+			if (i % 1000 == 0)
+				clock.incrementAndGet();
+		}
+		long held = System.nanoTime();
+		for (int reservation = 0; reservation < reservations; reservation++)
+			holds.touch(reservation);
+		long touched = System.nanoTime();
+		if (holds.size() != size)
+			throw new IllegalStateException("Blocchi attesi: " + size + ", presenti: " + holds.size());
+
+		clock.addAndGet(SeatHoldRegistry.DEFAULT_TTL_MILLIS + SeatHoldRegistry.DEFAULT_TICK_MILLIS);
+		long expiring = System.nanoTime();
+		long expired = holds.getExpiredHolds();
+		long end = System.nanoTime();
+		if (expired != size || holds.size() != 0)
+			throw new IllegalStateException("Blocchi scaduti: " + expired + " su " + size);
+
+		return new double[] { (double) (held - start) / size, (double) (touched - held) / reservations,
+				(double) (end - expiring) / size };
+	}
+
+}
@@ -0,0 +1,118 @@
+package cinema.test.benchmark;
+
+import java.time.LocalDateTime;
+
+import cinema.model.cinema.PhysicalSeat;
+import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountDay;
+
+/**
+ * Confronta il tempo necessario a ottenere le coordinate dei posti di una
+ * prenotazione tramite gli identificativi {@code SeatId} e tramite la
+ * precedente ricerca del posto fisico nella sala, che costruiva le coordinate
+ * come testo (ad esempio "B7") per poi estrarne fila e posto con delle
+ * espressioni regolari.
+ *
+ * <p>
+ * Per ciascun metodo viene eseguita una fase di riscaldamento e poi alcune
+ * misure di durata fissa, di cui viene stampata la migliore in nanosecondi per
+ * posto. I risultati dei calcoli vengono accumulati in modo che non possano
+ * essere eliminati dal compilatore.
+ *
+ * <p>
+ * Argomenti (facoltativi): numero di posti della prenotazione e millisecondi di
+ * ciascuna misura.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatIdBenchmark {
+
+	/**
+	 * Numero di misure per ciascun metodo, dopo una di riscaldamento.
+	 */
+	private static final int MEASUREMENTS = 5;
+
+	/**
+	 * Accumula i risultati dei calcoli misurati.
+	 */
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		int seats = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+		Room room = new Room(2, 8, 14);
+		Projection projection = new Projection(1, null, LocalDateTime.now().plusDays(1), 10.0, room);
+		Reservation reservation = new Reservation(new DiscountDay(0), 1);
+		reservation.setProjection(projection);
+		for (int i = 0; i < seats; i++)
+			reservation.addSeat(room.getNumberOfRows() - 1 - i % room.getNumberOfRows(),
+					room.getNumberOfCols() - 1 - i / room.getNumberOfRows());
+
+		double legacy = best(() -> legacyCoordinates(reservation), millis) / seats;
+		double packed = best(() -> packedCoordinates(reservation), millis) / seats;
+		System.out.printf("posti per prenotazione: %d%n", seats);
+		System.out.printf("%-32s %12s%n", "metodo", "ns/posto");
+		System.out.printf("%-32s %12.1f%n", "getSeatCoordinates + replaceAll", legacy);
+		System.out.printf("%-32s %12.1f%n", "SeatId", packed);
+		if (sink == 42)
+			System.out.println();
+	}
+
+	/**
+	 * Ricava le coordinate dei posti come avveniva prima degli identificativi
+	 * {@code SeatId}.
+	 */
+	private static long legacyCoordinates(Reservation reservation) throws Exception {
+		long sum = 0;
+		for (PhysicalSeat seat : reservation.getSeats()) {
+			String coordinates = reservation.getProjection().getSeatCoordinates(seat);
+			int row = Room.rowLetterToRowIndex(coordinates.replaceAll("\\d", ""));
+			int col = Integer.valueOf(coordinates.replaceAll("[\\D]", "")) - 1;
+			sum += row * 31 + col;
+		}
+		return sum;
+	}
+
+	private static long packedCoordinates(Reservation reservation) {
+		long sum = 0;
+		for (int seatId : reservation.getSeatIds())
+			sum += SeatId.row(seatId) * 31 + SeatId.col(seatId);
+		return sum;
+	}
+
+	/**
+	 * Calcolo di cui misurare la durata.
+	 */
+	private interface Operation {
+
+		long run() throws Exception;
+
+	}
+
+	/**
+	 * Restituisce la durata media in nanosecondi di {@code operation} nella
+	 * migliore delle misure, dopo una misura di riscaldamento.
+	 */
+	private static double best(Operation operation, long millis) throws Exception {
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i <= MEASUREMENTS; i++) {
+			long end = System.nanoTime() + millis * 1_000_000;
+			long operations = 0;
+			long start = System.nanoTime();
+			long now;
+			do {
+				for (int j = 0; j < 100; j++)
+					sink += operation.run();
+				operations += 100;
+			} while ((now = System.nanoTime()) < end);
+			if (i > 0)
+				best = Math.min(best, (double) (now - start) / operations);
+		}
+		return best;
+	}
+
+}
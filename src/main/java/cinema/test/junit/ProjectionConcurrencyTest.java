@@ -0,0 +1,298 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import cinema.model.cinema.Room;
+import cinema.model.cinema.SeatId;
+import cinema.model.cinema.util.RoomException;
+import cinema.model.persistence.PersistenceConfiguration;
+import cinema.model.persistence.PersistenceFacade;
+import cinema.model.projection.Projection;
+import cinema.model.reservation.Reservation;
+import cinema.model.reservation.discount.types.DiscountDay;
+import cinema.model.reservation.util.SeatAvailabilityException;
+import cinema.model.spectator.Spectator;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sull'occupazione concorrente dei
+ * posti di una proiezione.
+ *
+ * <p>
+ * Più thread tentano contemporaneamente di occupare gruppi di posti
+ * sovrapposti della stessa proiezione: ogni posto deve risultare occupato da
+ * una sola chiamata e le chiamate fallite non devono lasciare occupato alcun
+ * posto.
+ *
+ * <p>
+ * Gli acquisti dell'applicazione non condividono però la proiezione, dato che
+ * il meccanismo di persistenza ne restituisce una nuova a ogni richiesta: per
+ * questo viene verificato anche l'acquisto concorrente degli stessi posti
+ * tramite {@code PersistenceFacade.commitPurchase(reservation)}, su una copia
+ * di {@code persistence/cinemaDb.db}.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class ProjectionConcurrencyTest {
+
+	/**
+	 * Numero di thread che occupano i posti contemporaneamente.
+	 */
+	private static final int THREADS = 8;
+
+	/**
+	 * Numero di proiezioni su cui si ripete la prova di occupazione.
+	 */
+	private static final int ROUNDS = 200;
+
+	/**
+	 * Numero di prove di acquisto concorrente per ciascuna configurazione del
+	 * meccanismo di persistenza.
+	 */
+	private static final int PURCHASE_ROUNDS = 5;
+
+	/**
+	 * Test di occupazione di gruppi di posti (verifica che nessun posto venga
+	 * assegnato a due gruppi e che ogni posto occupato appartenga a un gruppo
+	 * occupato con successo).
+	 *
+	 * @throws Exception se i thread riscontrano errori.
+	 */
+	@Test
+	public void testNoDoubleBooking() throws Exception {
+		Room room = new Room(1, 7, 15);
+		for (int round = 0; round < ROUNDS; round++) {
+			Projection projection = newProjection(room);
+			AtomicIntegerArray owners = new AtomicIntegerArray(room.getNumberOfSeats());
+			runConcurrently(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int attempt = 0; attempt < 20; attempt++) {
+					int[] seatIds = new int[1 + random.nextInt(4)];
+					for (int i = 0; i < seatIds.length; i++)
+						seatIds[i] = SeatId.of(random.nextInt(room.getNumberOfRows()),
+								random.nextInt(room.getNumberOfCols()));
+					if (projection.takeSeats(seatIds)) {
+						for (int seatId : distinct(seatIds))
+							owners.incrementAndGet(SeatId.row(seatId) * room.getNumberOfCols() + SeatId.col(seatId));
+					}
+				}
+			});
+			int taken = 0;
+			for (int i = 0; i < owners.length(); i++) {
+				assertTrue("Posto occupato da più prenotazioni", owners.get(i) <= 1);
+				assertEquals(owners.get(i) == 0,
+						projection.checkIfSeatIsAvailable(i / room.getNumberOfCols(), i % room.getNumberOfCols()));
+				taken += owners.get(i);
+			}
+			assertEquals(room.getNumberOfSeats() - taken, projection.getNumberAvailableSeat());
+		}
+	}
+
+	/**
+	 * Test di occupazione di singoli posti (verifica che solamente un thread
+	 * riesca a occupare ciascun posto).
+	 *
+	 * @throws Exception se i thread riscontrano errori.
+	 */
+	@Test
+	public void testSingleSeatRace() throws Exception {
+		Room room = new Room(2, 8, 14);
+		for (int round = 0; round < ROUNDS; round++) {
+			Projection projection = newProjection(room);
+			AtomicIntegerArray owners = new AtomicIntegerArray(room.getNumberOfSeats());
+			runConcurrently(() -> {
+				for (int i = 0; i < room.getNumberOfSeats(); i++) {
+					if (projection.takeSeat(i / room.getNumberOfCols(), i % room.getNumberOfCols()))
+						owners.incrementAndGet(i);
+				}
+			});
+			for (int i = 0; i < owners.length(); i++)
+				assertEquals(1, owners.get(i));
+			assertEquals(0, projection.getNumberAvailableSeat());
+		}
+	}
+
+	/**
+	 * Test dell'occupazione di un gruppo di posti (verifica che se un posto è già
+	 * occupato non venga occupato nessun posto del gruppo).
+	 *
+	 * @throws RoomException se un posto non esiste.
+	 */
+	@Test
+	public void testAllOrNothing() throws RoomException {
+		Room room = new Room(3, 5, 10);
+		Projection projection = newProjection(room);
+		assertTrue(projection.takeSeat(4, 9));
+		int[] seatIds = { SeatId.of(0, 0), SeatId.of(2, 5), SeatId.of(4, 9) };
+		assertFalse(projection.takeSeats(seatIds));
+		assertTrue(projection.checkIfSeatIsAvailable(0, 0));
+		assertTrue(projection.checkIfSeatIsAvailable(2, 5));
+		assertEquals(room.getNumberOfSeats() - 1, projection.getNumberAvailableSeat());
+		projection.freeSeat(4, 9);
+		assertTrue(projection.takeSeats(seatIds));
+		assertEquals(room.getNumberOfSeats() - 3, projection.getNumberAvailableSeat());
+	}
+
+	/**
+	 * Test dell'acquisto concorrente degli stessi posti (verifica che, anche se
+	 * ciascun acquirente occupa i posti nella propria copia della proiezione,
+	 * solamente un acquisto per posto venga reso persistente e gli altri vengano
+	 * rifiutati con una {@code SeatAvailabilityException}).
+	 *
+	 * @throws Exception se il meccanismo di persistenza o i thread riscontrano
+	 *                   errori.
+	 */
+	@Test
+	public void testConcurrentPurchases() throws Exception {
+		Path directory = Files.createTempDirectory("cinema-purchase");
+		Path database = directory.resolve("cinemaDb.db");
+		Files.copy(Paths.get("persistence/cinemaDb.db"), database, StandardCopyOption.REPLACE_EXISTING);
+		try {
+			String url = "jdbc:sqlite:" + database;
+			testConcurrentPurchases(PersistenceConfiguration.rdb(url).pool(2, THREADS, 5000).build());
+			testConcurrentPurchases(PersistenceConfiguration.rdb(url).pool(2, THREADS, 5000).journal(THREADS, 5).build());
+		} finally {
+			for (String suffix : new String[] { "", "-wal", "-shm" })
+				Files.deleteIfExists(Paths.get(database + suffix));
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	private static void testConcurrentPurchases(PersistenceConfiguration configuration) throws Exception {
+		PersistenceFacade persistenceFacade = new PersistenceFacade(configuration);
+		try {
+			int projectionId = persistenceFacade.getAllProjections().get(0).getId();
+			for (int round = 0; round < PURCHASE_ROUNDS; round++) {
+				// Ogni acquisto condivide un posto con il precedente e uno con il successivo
+				int[] free = freeSeats(persistenceFacade.getProjection(projectionId), THREADS + 1);
+				Reservation[] reservations = new Reservation[THREADS];
+				for (int i = 0; i < THREADS; i++) {
+					reservations[i] = new Reservation(new DiscountDay(1), persistenceFacade.nextReservationId());
+					reservations[i].setProjection(persistenceFacade.getProjection(projectionId));
+					reservations[i].addSeat(SeatId.row(free[i]), SeatId.col(free[i]));
+					reservations[i].addSeat(SeatId.row(free[i + 1]), SeatId.col(free[i + 1]));
+					reservations[i].setPurchaser(new Spectator("Mario", "Rossi", "mario.rossi@email.com"));
+					reservations[i].setPaymentCard("1234123412341234", "Mario Rossi", "123", YearMonth.of(2030, 1));
+					persistenceFacade.putEmptyReservation(reservations[i]);
+				}
+
+				AtomicInteger next = new AtomicInteger();
+				boolean[] purchased = new boolean[THREADS];
+				runConcurrently(() -> {
+					int i = next.getAndIncrement();
+					// La copia della proiezione di ciascun acquirente ha ancora tutti i posti liberi
+					reservations[i].takeSeat();
+					try {
+						persistenceFacade.commitPurchase(reservations[i]);
+						purchased[i] = true;
+					} catch (SeatAvailabilityException e) {
+						purchased[i] = false;
+					}
+				});
+
+				int[] owners = new int[free.length];
+				int purchases = 0;
+				for (int i = 0; i < THREADS; i++) {
+					if (purchased[i]) {
+						owners[i]++;
+						owners[i + 1]++;
+						purchases++;
+					}
+				}
+				assertTrue("Nessun acquisto reso persistente", purchases > 0);
+				for (int i = 0; i < THREADS; i++) {
+					if (!purchased[i])
+						assertTrue("Acquisto rifiutato senza conflitti", owners[i] + owners[i + 1] > 0);
+				}
+				for (int i = 0; i < free.length; i++) {
+					assertTrue("Posto acquistato da più prenotazioni", owners[i] <= 1);
+					assertEquals(owners[i] == 0,
+							persistenceFacade.getOccupiedSeat(projectionId, SeatId.row(free[i]), SeatId.col(free[i])));
+				}
+			}
+		} finally {
+			persistenceFacade.close();
+		}
+	}
+
+	/**
+	 * Restituisce gli identificativi ({@code SeatId}) dei primi {@code count}
+	 * posti liberi di {@code projection}.
+	 */
+	private static int[] freeSeats(Projection projection, int count) throws RoomException {
+		int[] seatIds = new int[count];
+		int found = 0;
+		Room room = projection.getRoom();
+		for (int row = 0; row < room.getNumberOfRows() && found < count; row++) {
+			for (int col = 0; col < room.getNumberOfCols() && found < count; col++) {
+				if (projection.checkIfSeatIsAvailable(row, col))
+					seatIds[found++] = SeatId.of(row, col);
+			}
+		}
+		assertEquals("Posti liberi insufficienti", count, found);
+		return seatIds;
+	}
+
+	private static Projection newProjection(Room room) {
+		return new Projection(1, null, LocalDateTime.now().plusDays(1), 10.0, room);
+	}
+
+	private static ArrayList<Integer> distinct(int[] seatIds) {
+		ArrayList<Integer> distinct = new ArrayList<Integer>();
+		for (int seatId : seatIds) {
+			if (!distinct.contains(seatId))
+				distinct.add(seatId);
+		}
+		return distinct;
+	}
+
+	/**
+	 * Operazione eseguita da ciascun thread del test.
+	 */
+	private interface Task {
+
+		void run() throws Exception;
+
+	}
+
+	/**
+	 * Esegue {@code task} su {@code THREADS} thread che partono insieme e ne
+	 * attende la conclusione, rilanciando il primo errore riscontrato.
+	 */
+	private static void runConcurrently(Task task) throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(THREADS);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			threads[i] = new Thread(() -> {
+				try {
+					barrier.await();
+					task.run();
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+	}
+
+}
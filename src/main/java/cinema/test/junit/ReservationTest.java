@@ -17,6 +17,7 @@ import cinema.model.spectator.Spectator;
 import cinema.model.spectator.util.InvalidSpectatorInfoException;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.payment.util.PaymentErrorException;
+import cinema.model.persistence.PersistenceConfiguration;
 import cinema.model.persistence.util.PersistenceException;
 import cinema.model.projection.Projection;
 import cinema.model.reservation.Reservation;
@@ -31,8 +32,9 @@ import cinema.model.reservation.util.ReservationException;
  * Effettua il test di unità (tramite JUnit) sulla classe Reservation.
  *
  * <p>
- * Se necessario, reimpostare il database
- * ({@code git restore persistence/cinemaDb.db}) prima di avviare il test.
+ * Il test usa il meccanismo di persistenza in memoria, popolato con i dati di
+ * {@code persistence/dbSchema.sql}, quindi non modifica il database
+ * {@code persistence/cinemaDb.db}.
  * 
  * @author Screaming Hairy Armadillo Team
  *
@@ -47,7 +49,8 @@ public class ReservationTest {
 	/**
 	 * Controller di dominio utilizzato come interfaccia verso il modello.
 	 */
-	private static Cinema cinema = new Cinema();
+	private static Cinema cinema = new Cinema(
+			PersistenceConfiguration.memory(PersistenceConfiguration.DEFAULT_MEMORY_SEED).build());
 
 	/**
 	 * Proiezioni create per poter effettuare il test.
@@ -0,0 +1,109 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.model.Movie;
+import cinema.model.persistence.PersistenceConfiguration;
+import cinema.model.persistence.PersistenceFacade;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sul ripristino del database con
+ * lo script {@code persistence/dbSchema.sql}.
+ *
+ * <p>
+ * Il test lavora su una copia di {@code persistence/cinemaDb.db}, quindi non
+ * modifica il database dell'applicazione.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SchemaResetTest {
+
+	/**
+	 * Script di ripristino del database.
+	 */
+	private static final Path SCHEMA = Paths.get("persistence/dbSchema.sql");
+
+	private Path directory;
+
+	private Path database;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("cinema-reset");
+		database = directory.resolve("cinemaDb.db");
+		Files.copy(Paths.get("persistence/cinemaDb.db"), database, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (String suffix : new String[] { "", "-wal", "-shm" })
+			Files.deleteIfExists(Paths.get(database + suffix));
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * Test del ripristino di un database già migrato (verifica che all'avvio
+	 * successivo tutte le migrazioni vengano applicate di nuovo e che il catalogo
+	 * coincida con quello dello script, anche ripetendo il ripristino).
+	 *
+	 * @throws Exception se il ripristino o le migrazioni falliscono.
+	 */
+	@Test
+	public void testResetAndMigrate() throws Exception {
+		PersistenceConfiguration configuration = PersistenceConfiguration.rdb("jdbc:sqlite:" + database).build();
+		PersistenceFacade persistenceFacade = new PersistenceFacade(configuration);
+		Number schemaVersion = persistenceFacade.getMetrics().get("schema.version");
+		persistenceFacade.close();
+
+		PersistenceFacade seed = new PersistenceFacade(
+				PersistenceConfiguration.memory(PersistenceConfiguration.DEFAULT_MEMORY_SEED).build());
+		ArrayList<Movie> expected = seed.getAllMovies();
+		seed.close();
+
+		for (int reset = 0; reset < 2; reset++) {
+			resetDatabase();
+			persistenceFacade = new PersistenceFacade(configuration);
+			try {
+				assertEquals(schemaVersion, persistenceFacade.getMetrics().get("schema.version"));
+				assertEquals(schemaVersion.intValue(),
+						persistenceFacade.getMetrics().get("schema.migrationsApplied").intValue());
+				ArrayList<Movie> movies = persistenceFacade.getAllMovies();
+				assertEquals(expected.size(), movies.size());
+				for (int i = 0; i < movies.size(); i++) {
+					assertEquals(expected.get(i).getTitle(), movies.get(i).getTitle());
+					assertEquals(expected.get(i).getGenres(), movies.get(i).getGenres());
+					assertEquals(expected.get(i).getDirectors(), movies.get(i).getDirectors());
+				}
+			} finally {
+				persistenceFacade.close();
+			}
+		}
+	}
+
+	/**
+	 * Esegue lo script di ripristino sulla copia del database.
+	 */
+	private void resetDatabase() throws Exception {
+		String script = new String(Files.readAllBytes(SCHEMA), StandardCharsets.UTF_8);
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+				Statement statement = connection.createStatement()) {
+			statement.executeUpdate(script);
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package cinema.test.junit;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cinema.model.cinema.SeatId;
+import cinema.model.reservation.hold.SeatHoldRegistry;
+
+/**
+ * Effettua il test di unità (tramite JUnit) sui blocchi temporanei dei posti
+ * selezionati dalle prenotazioni.
+ *
+ * <p>
+ * Il tempo viene fatto avanzare manualmente, in modo da verificare le scadenze
+ * senza attese.
+ *
+ * @author Screaming Hairy Armadillo Team
+ *
+ */
+public class SeatHoldRegistryTest {
+
+	/**
+	 * Durata dei blocchi usata nei test, in millisecondi.
+	 */
+	private static final long TTL = 10_000;
+
+	private AtomicLong clock;
+
+	private SeatHoldRegistry holds;
+
+	@Before
+	public void setUp() {
+		clock = new AtomicLong(1_000_000);
+		holds = new SeatHoldRegistry(TTL, 100, 64, clock::get);
+	}
+
+	/**
+	 * Test del blocco di un posto (verifica che un posto bloccato non possa essere
+	 * bloccato da un'altra prenotazione, ma solamente da quella che lo ha
+	 * bloccato).
+	 */
+	@Test
+	public void testHoldConflict() {
+		assertTrue(holds.hold(1, 1, SeatId.of(0, 0)));
+		assertTrue(holds.hold(1, 1, SeatId.of(0, 0)));
+		assertFalse(holds.hold(2, 1, SeatId.of(0, 0)));
+		assertTrue(holds.hold(2, 2, SeatId.of(0, 0)));
+		assertTrue(holds.isHeld(1, SeatId.of(0, 0)));
+		assertFalse(holds.isHeld(1, SeatId.of(0, 1)));
+		assertEquals(2, holds.size());
+	}
+
+	/**
+	 * Test della scadenza dei blocchi (verifica che i posti tornino disponibili
+	 * solamente dopo la durata del blocco, anche se la ruota ha compiuto più giri).
+	 */
+	@Test
+	public void testExpiry() {
+		holds.hold(1, 1, SeatId.of(0, 0));
+		holds.hold(1, 1, SeatId.of(0, 1));
+		clock.addAndGet(TTL - 1);
+		assertTrue(holds.isHeld(1, SeatId.of(0, 0)));
+		clock.addAndGet(100);
+		assertFalse(holds.isHeld(1, SeatId.of(0, 0)));
+		assertFalse(holds.isHeld(1, SeatId.of(0, 1)));
+		assertEquals(0, holds.size());
+		assertEquals(2, holds.getExpiredHolds());
+		assertTrue(holds.hold(2, 1, SeatId.of(0, 0)));
+	}
+
+	/**
+	 * Test del rinnovo dei blocchi (verifica che l'attività sulla prenotazione
+	 * posticipi la scadenza di tutti i suoi posti).
+	 */
+	@Test
+	public void testTouch() {
+		holds.hold(1, 1, SeatId.of(0, 0));
+		clock.addAndGet(TTL / 2);
+		holds.hold(1, 1, SeatId.of(0, 1));
+		clock.addAndGet(TTL / 2 + 100);
+		assertTrue(holds.isHeld(1, SeatId.of(0, 0)));
+		holds.touch(1);
+		clock.addAndGet(TTL - 100);
+		assertTrue(holds.isHeld(1, SeatId.of(0, 0)));
+		clock.addAndGet(200);
+		assertFalse(holds.isHeld(1, SeatId.of(0, 0)));
+		assertFalse(holds.isHeld(1, SeatId.of(0, 1)));
+	}
+
+	/**
+	 * Test del rilascio dei blocchi (verifica che una prenotazione possa rilasciare
+	 * solamente i propri posti).
+	 */
+	@Test
+	public void testRelease() {
+		holds.hold(1, 1, SeatId.of(0, 0));
+		holds.hold(1, 1, SeatId.of(0, 1));
+		holds.hold(2, 1, SeatId.of(0, 2));
+		holds.release(2, 1, SeatId.of(0, 0));
+		assertTrue(holds.isHeld(1, SeatId.of(0, 0)));
+		holds.release(1, 1, SeatId.of(0, 0));
+		assertFalse(holds.isHeld(1, SeatId.of(0, 0)));
+		holds.releaseAll(1);
+		assertFalse(holds.isHeld(1, SeatId.of(0, 1)));
+		assertTrue(holds.isHeld(1, SeatId.of(0, 2)));
+		clock.addAndGet(TTL);
+		assertEquals(1, holds.getExpiredHolds());
+	}
+
+}
@@ -2,6 +2,7 @@ package cinema.view.cli.admin;
 
 import java.time.LocalDateTime;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 import cinema.controller.Cinema;
 import cinema.controller.util.DiscountNotFoundException;
@@ -11,6 +12,7 @@ import cinema.model.Movie;
 import cinema.model.cinema.Room;
 import cinema.model.cinema.util.RoomException;
 import cinema.model.persistence.util.PersistenceException;
+import cinema.model.persistence.util.UncheckedPersistenceException;
 import cinema.model.projection.Projection;
 import cinema.model.projection.util.ProjectionException;
 
@@ -410,12 +412,12 @@ public class CLIAdminMain {
 	 */
 	private void showAllProjections() {
 		System.out.println("\nLista di tutte le proiezioni esistenti:\n");
-		try {
-			for (Projection projection : cinema.getProjections()) {
+		try (Stream<Projection> projections = cinema.streamProjections()) {
+			projections.forEach(projection -> {
 				System.out.println(projection.getId() + ") ");
 				System.out.println(projection.toString());
-			}
-		} catch (PersistenceException exception) {
+			});
+		} catch (PersistenceException | UncheckedPersistenceException exception) {
 			System.out.println(exception.getMessage() + "\n");
 		}
 	}
@@ -154,9 +154,8 @@ public class WebGUIServlet extends HttpServlet {
 		int projectionId = Integer.parseInt(req.getParameter("id"));
 		long reservationId;
 		try {
-			reservationId = cinema.createReservation();
-			cinema.setReservationProjection(reservationId, projectionId);
-		} catch (ProjectionException | ReservationException | PersistenceException exception) {
+			reservationId = cinema.createReservation(projectionId);
+		} catch (ProjectionException | PersistenceException exception) {
 			renderError(req, resp);
 			return;
 		}